@@ -13,7 +13,16 @@ float linearizeDepth(float depth)
     return (2.0 * NEAR * FAR) / (FAR + NEAR - z * (FAR - NEAR));	
 }
 
+// LOD CROSS-FADE (same dither as the main shader, so both passes keep the same pixels)
+uniform float uFade = 1.0;
+float ditherNoise(vec2 p) {
+    return fract(52.9829189 * fract(dot(p, vec2(0.06711056, 0.00583715))));
+}
+
 void main() {
+    float noise = ditherNoise(gl_FragCoord.xy);
+    if(uFade >= 0.0 ? noise >= uFade : noise < -uFade) discard;
+
     float depth = linearizeDepth(gl_FragCoord.z) / FAR;
     fragColor = vec4(vec3(depth),1);//texture(uTex, oTexCoords);
 }
\ No newline at end of file
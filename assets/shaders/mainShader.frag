@@ -30,9 +30,19 @@ float linearizeDepth(float depth)
     return (2.0 * NEAR * FAR) / (FAR + NEAR - z * (FAR - NEAR));	
 }
 
+// LOD CROSS-FADE
+// 1: opaque, t in ]0,1[: keeps a t part of the pixels, -t: keeps the other part
+uniform float uFade = 1.0;
+float ditherNoise(vec2 p) {
+    return fract(52.9829189 * fract(dot(p, vec2(0.06711056, 0.00583715))));
+}
+
 // MAIN
 
 void main() {
+    float noise = ditherNoise(gl_FragCoord.xy);
+    if(uFade >= 0.0 ? noise >= uFade : noise < -uFade) discard;
+
     // color
     switch(activeMaterial) {
         case 1: {// color mat
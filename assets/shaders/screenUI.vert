@@ -4,7 +4,10 @@ layout (location = 0) in vec3 aPos;
 layout (location = 1) in vec2 aTexCoords;
 
 out vec2 oTexCoords;
-uniform vec2 uScreenSize;
+layout (std140, binding = 0) uniform FrameData {
+    float uTime;
+    vec2 uScreenSize;
+};
 uniform vec2 uPosition;
 
 void main() {
@@ -8,8 +8,10 @@ out vec2 oTexCoords;
 out vec3 oNormals;
 out vec4 oVertexPos;
 
-uniform mat4 uProj;
-uniform mat4 uView;
+layout (std140, binding = 1) uniform CameraData {
+    mat4 uView;
+    mat4 uProj;
+};
 uniform mat4 uModel;
 
 void main() {
@@ -0,0 +1,24 @@
+#version 460 core
+
+layout (location = 0) in vec3 aPos;
+layout (location = 1) in vec3 aNormals;
+layout (location = 2) in vec2 aTexCoords;
+layout (location = 3) in mat4 aModel; // per instance (see InstanceBuffer)
+
+out vec2 oTexCoords;
+out vec3 oNormals;
+out vec4 oVertexPos;
+
+layout (std140, binding = 1) uniform CameraData {
+    mat4 uView;
+    mat4 uProj;
+};
+
+void main() {
+    vec4 pos = uProj * uView * aModel * vec4(aPos, 1);
+    oVertexPos = pos;
+    gl_Position = pos;
+
+    oTexCoords = aTexCoords;
+    oNormals = aNormals;
+}
\ No newline at end of file
@@ -0,0 +1,153 @@
+package olibe.bench;
+
+import olibe.ecs.EntityStore;
+import olibe.ecs.FloatComponentPool;
+
+/**
+ * Measure a simple system (position += velocity * delta) on N entities of an entity store.
+ * The entities are processed three ways: a two types query on object components
+ * ({@link EntityStore#forEach(Class, Class, EntityStore.Each2)}), a join of two float pools
+ * through their sparse arrays, and one float pool holding both position and velocity
+ * (plain column loops). Every other entity is destroyed and recreated before measuring,
+ * so the dense orders of the pools differ like in a running game.
+ * Run with: java -cp "classes:lib/*" olibe.bench.EntityStoreBench [entities]
+ */
+public class EntityStoreBench {
+    /** Default number of entities */
+    protected static final int DEFAULT_ENTITIES = 1_000_000;
+    /** Measured frames */
+    protected static final int FRAMES = 100;
+    /** Warmup frames */
+    protected static final int WARMUP = 30;
+    /** Frame delta time */
+    protected static final float DELTA = 1f / 60f;
+
+    /**
+     * Position component
+     */
+    protected static class Position {
+        /** Coordinates */
+        public float x, y, z;
+    }
+
+    /**
+     * Velocity component
+     */
+    protected static class Velocity {
+        /** Coordinates */
+        public float x, y, z;
+    }
+
+    /**
+     * Run the benchmark
+     * @param args number of entities (optional)
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_ENTITIES;
+        System.out.println("entities=" + count);
+
+        final EntityStore objects = new EntityStore();
+        int[] handles = new int[count];
+        for(int i = 0; i < count; ++i) {
+            handles[i] = objects.createEntity();
+            Velocity velocity = new Velocity();
+            velocity.x = i % 7; velocity.y = 1f; velocity.z = -(i % 3);
+            objects.add(handles[i], Position.class, new Position()).add(handles[i], Velocity.class, velocity);
+        }
+        shuffle(objects, handles);
+        final EntityStore.Each2<Position, Velocity> move = new EntityStore.Each2<Position, Velocity>() {
+            public void accept(int entity, Position p, Velocity v) {
+                p.x += v.x * DELTA;
+                p.y += v.y * DELTA;
+                p.z += v.z * DELTA;
+            }
+        };
+        System.out.println(String.format("object components:  %8.3f ms/frame", time(new Runnable() {
+            public void run() {
+                objects.forEach(Position.class, Velocity.class, move);
+            }
+        })));
+
+        EntityStore floats = new EntityStore();
+        final FloatComponentPool positions = floats.getFloatPool("position", 3);
+        final FloatComponentPool velocities = floats.getFloatPool("velocity", 3);
+        for(int i = 0; i < count; ++i) {
+            handles[i] = floats.createEntity();
+            floats.addFloat(handles[i], positions);
+            floats.addFloat(handles[i], velocities);
+            velocities.set(handles[i], 0, i % 7);
+            velocities.set(handles[i], 1, 1f);
+            velocities.set(handles[i], 2, -(i % 3));
+        }
+        shuffle(floats, handles);
+        System.out.println(String.format("float pools join:   %8.3f ms/frame", time(new Runnable() {
+            public void run() {
+                float[] px = positions.getColumn(0), py = positions.getColumn(1), pz = positions.getColumn(2);
+                float[] vx = velocities.getColumn(0), vy = velocities.getColumn(1), vz = velocities.getColumn(2);
+                for(int i = 0; i < positions.size(); ++i) {
+                    int v = velocities.indexOf(positions.getEntity(i));
+                    if(v == -1) continue;
+                    px[i] += vx[v] * DELTA;
+                    py[i] += vy[v] * DELTA;
+                    pz[i] += vz[v] * DELTA;
+                }
+            }
+        })));
+
+        EntityStore packed = new EntityStore();
+        final FloatComponentPool bodies = packed.getFloatPool("body", 6);
+        for(int i = 0; i < count; ++i) {
+            handles[i] = packed.createEntity();
+            packed.addFloat(handles[i], bodies);
+            bodies.set(handles[i], 3, i % 7);
+            bodies.set(handles[i], 4, 1f);
+            bodies.set(handles[i], 5, -(i % 3));
+        }
+        shuffle(packed, handles);
+        System.out.println(String.format("float pool columns: %8.3f ms/frame", time(new Runnable() {
+            public void run() {
+                float[] px = bodies.getColumn(0), py = bodies.getColumn(1), pz = bodies.getColumn(2);
+                float[] vx = bodies.getColumn(3), vy = bodies.getColumn(4), vz = bodies.getColumn(5);
+                int size = bodies.size();
+                for(int i = 0; i < size; ++i) {
+                    px[i] += vx[i] * DELTA;
+                    py[i] += vy[i] * DELTA;
+                    pz[i] += vz[i] * DELTA;
+                }
+            }
+        })));
+    }
+
+    /**
+     * Destroy every other entity and recreate it with the same components
+     * (swaps the dense orders of the pools)
+     * @param store entity store
+     * @param handles handles of the entities (updated)
+     */
+    protected static void shuffle(EntityStore store, int[] handles) {
+        FloatComponentPool body = store.findFloatPool("body");
+        FloatComponentPool position = store.findFloatPool("position");
+        FloatComponentPool velocity = store.findFloatPool("velocity");
+        for(int i = 0; i < handles.length; i += 2) {
+            Velocity v = store.get(handles[i], Velocity.class);
+            store.destroyEntity(handles[i]);
+            handles[i] = store.createEntity();
+            if(v != null) store.add(handles[i], Velocity.class, v).add(handles[i], Position.class, new Position());
+            if(velocity != null) store.addFloat(handles[i], velocity);
+            if(position != null) store.addFloat(handles[i], position);
+            if(body != null) store.addFloat(handles[i], body);
+        }
+    }
+
+    /**
+     * Time a system
+     * @param system system run once per frame
+     * @return the mean time (in milliseconds per frame)
+     */
+    protected static double time(Runnable system) {
+        for(int i = 0; i < WARMUP; ++i) system.run();
+        long start = System.nanoTime();
+        for(int i = 0; i < FRAMES; ++i) system.run();
+        return (System.nanoTime() - start) / 1e6 / FRAMES;
+    }
+}
@@ -0,0 +1,125 @@
+package olibe.bench;
+
+import static org.lwjgl.opengl.GL46.*;
+
+import org.joml.Matrix4f;
+
+import olibe.core.FrameStats;
+import olibe.core.PackagedShaders;
+import olibe.core.Window;
+import olibe.exception.LWJGLException;
+import olibe.io.ShaderLibrary;
+import olibe.render.Mesh;
+import olibe.render.Model;
+import olibe.render.Shader;
+import olibe.scene.RenderSnapshot;
+
+/**
+ * Measure the draw calls of N models sharing K unique meshes.
+ * The models are extracted into a render snapshot every frame, sorted and grouped into
+ * instanced batches, then drawn with the packaged depth shader, once with its instanced
+ * variant (one call per unique mesh) and once without (one call per model).
+ * The draw calls and the frame times are reported for K = 1, 10, 100... up to N.
+ * Needs an OpenGL 4.6 context (the snapshot and the meshes use LWJGL), skipped without one.
+ * Run with: java -cp "classes:lib/*" olibe.bench.InstancingBench [models]
+ */
+public class InstancingBench {
+    /** Default number of models */
+    protected static final int DEFAULT_MODELS = 10_000;
+    /** Measured frames */
+    protected static final int FRAMES = 100;
+    /** Warmup frames */
+    protected static final int WARMUP = 20;
+    /** Width of the grid the models are placed on */
+    protected static final int GRID = 100;
+
+    /**
+     * Run the benchmark
+     * @param args number of models (optional)
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_MODELS;
+        Window window;
+        try {
+            window = new Window("bench", 64, 64);
+        } catch(RuntimeException | LinkageError e) {
+            System.out.println("No OpenGL context (" + e.getMessage() + "), benchmark skipped");
+            return;
+        }
+        RenderSnapshot snapshot = new RenderSnapshot();
+        Model[] models = new Model[count];
+        int created = 0;
+        try {
+            PackagedShaders.loadAll();
+            Shader shader = ShaderLibrary.Get().getShader("depth");
+            Shader instanced = shader.getInstancedVariant();
+            for(; created < count; ++created) {
+                models[created] = new Model(new Mesh[] { Mesh.Quad(1f) }, null);
+            }
+            System.out.println("models=" + count);
+            System.out.println("   unique   batched draws   batched ms   plain draws   plain ms   extract+sort ms");
+            for(int unique = 1; unique <= count; unique *= 10) {
+                double sortMs = 0, batchedMs = 0, plainMs = 0;
+                int batchedDraws = 0, plainDraws = 0;
+                for(int i = 0; i < WARMUP + FRAMES; ++i) {
+                    long start = System.nanoTime();
+                    extract(snapshot, models, unique, count);
+                    snapshot.sort();
+                    long sortNanos = System.nanoTime() - start;
+
+                    shader.setInstancedVariant(instanced);
+                    long batchedNanos = renderFrame(snapshot, shader);
+                    batchedDraws = FrameStats.Get().getDrawCalls();
+                    shader.setInstancedVariant(null);
+                    long plainNanos = renderFrame(snapshot, shader);
+                    plainDraws = FrameStats.Get().getDrawCalls();
+                    shader.setInstancedVariant(instanced);
+                    if(i < WARMUP) continue;
+                    sortMs += sortNanos / 1e6 / FRAMES;
+                    batchedMs += batchedNanos / 1e6 / FRAMES;
+                    plainMs += plainNanos / 1e6 / FRAMES;
+                }
+                System.out.println(String.format("%9d %15d %12.3f %13d %10.3f %17.3f",
+                    unique, batchedDraws, batchedMs, plainDraws, plainMs, sortMs));
+            }
+        } catch(LWJGLException e) {
+            System.out.println("Failed to create the meshes: " + e.getMessage());
+        } finally {
+            for(int i = 0; i < created; ++i) models[i].getMeshes()[0].delete();
+            snapshot.delete();
+            ShaderLibrary.Get().destroyAll();
+            window.destroy();
+        }
+    }
+
+    /**
+     * Extract the models into the snapshot (model i draws the mesh of model i % unique)
+     * @param snapshot snapshot to fill
+     * @param models models (one mesh each)
+     * @param unique number of unique meshes
+     * @param count number of drawn models
+     */
+    protected static void extract(RenderSnapshot snapshot, Model[] models, int unique, int count) {
+        Matrix4f matrix = new Matrix4f();
+        snapshot.clear();
+        for(int i = 0; i < count; ++i) {
+            Model model = models[i % unique];
+            matrix.translation((i % GRID) * 2f, 0f, (i / GRID) * 2f);
+            snapshot.addModel(model, matrix, 1f, -1, model.getTriangleCount());
+        }
+    }
+
+    /**
+     * Render the snapshot and wait for the GPU
+     * @param snapshot sorted snapshot
+     * @param shader pass shader
+     * @return the frame time (in nanoseconds)
+     */
+    protected static long renderFrame(RenderSnapshot snapshot, Shader shader) {
+        FrameStats.Get().reset();
+        long start = System.nanoTime();
+        snapshot.render(shader);
+        glFinish();
+        return System.nanoTime() - start;
+    }
+}
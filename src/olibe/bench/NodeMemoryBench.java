@@ -0,0 +1,64 @@
+package olibe.bench;
+
+import olibe.scene.Scene;
+import olibe.scene.SceneNode;
+
+/**
+ * Measure the heap used per scene node.
+ * Builds a scene of N nodes (groups of 100 leaves under the root), then compares the
+ * used heap after a full collection with the used heap before.
+ * Run with: java -cp "classes:lib/*" olibe.bench.NodeMemoryBench [nodes]
+ */
+public class NodeMemoryBench {
+    /** Default number of nodes */
+    protected static final int DEFAULT_NODES = 1_000_000;
+    /** Leaves per group node */
+    protected static final int GROUP_SIZE = 100;
+
+    /**
+     * Run the benchmark
+     * @param args number of nodes (optional)
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NODES;
+        long before = usedHeap();
+        Scene scene = new Scene("bench");
+        SceneNode root = scene.getNode("");
+        SceneNode group = null;
+        for(int i = 0; i < count; ++i) {
+            if(i % GROUP_SIZE == 0) {
+                group = new SceneNode("group");
+                root.addChild(group);
+            }
+            SceneNode node = new SceneNode("node");
+            node.getTransform().getPosition().set(i, 0f, 0f);
+            node.getTransform().markDirty();
+            group.addChild(node);
+        }
+        // compute every world matrix so the lazy state is allocated as in a running scene
+        scene.updateTransforms();
+        long after = usedHeap();
+        int nodes = count + (count + GROUP_SIZE - 1) / GROUP_SIZE;
+        System.out.println("nodes=" + nodes + " heap=" + ((after - before) >> 20) + " MB"
+            + " bytes/node=" + ((after - before) / nodes));
+        // keep the scene reachable until measured
+        if(scene.getNode("") == null) System.out.println();
+    }
+
+    /**
+     * Returns the used heap after a full collection
+     * @return the used heap (in bytes)
+     */
+    protected static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 4; ++i) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,176 @@
+package olibe.bench;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import olibe.io.ComponentCodec;
+import olibe.io.SceneSerializer;
+import olibe.render.BoundingBox;
+import olibe.scene.Component;
+import olibe.scene.Scene;
+import olibe.scene.SceneNode;
+
+/**
+ * Compare loading a serialized scene with building the same scene in code.
+ * The scene has N nodes (groups of leaves) with a transform, bounds and a small component.
+ * It is built in code, saved, then both the construction and the memory-mapped load
+ * are repeated from a collected heap and the fastest run of each is reported, with the
+ * time the collector spent during that run (both allocate a whole scene graph).
+ * Run with: java -cp "classes:lib/*" olibe.bench.SceneLoadBench [nodes]
+ */
+public class SceneLoadBench {
+    /** Default number of nodes */
+    protected static final int DEFAULT_NODES = 200_000;
+    /** Leaves per group node */
+    protected static final int GROUP_SIZE = 100;
+    /** Distinct node names */
+    protected static final int NAMES = 1000;
+    /** Timed runs (the fastest is reported) */
+    protected static final int RUNS = 10;
+    /** Warmup runs */
+    protected static final int WARMUP = 5;
+
+    /**
+     * Small gameplay component (health and team)
+     */
+    protected static class HealthComponent implements Component {
+        /** Health */
+        protected float health;
+        /** Team */
+        protected int team;
+
+        /**
+         * Create a health component
+         * @param health health
+         * @param team team
+         */
+        public HealthComponent(float health, int team) {
+            this.health = health;
+            this.team = team;
+        }
+
+        @Override
+        public void delete() {}
+    }
+
+    /** Codec of the health component */
+    protected static final ComponentCodec<HealthComponent> HEALTH_CODEC = new ComponentCodec<HealthComponent>() {
+        public void write(HealthComponent component, DataOutput out) throws IOException {
+            out.writeFloat(component.health);
+            out.writeInt(component.team);
+        }
+
+        public HealthComponent read(ByteBuffer in) throws IOException {
+            return new HealthComponent(in.getFloat(), in.getInt());
+        }
+    };
+
+    /**
+     * Run the benchmark
+     * @param args number of nodes (optional)
+     * @throws IOException failed to write or read the scene file
+     */
+    public static void main(String[] args)
+    throws IOException {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NODES;
+        SceneSerializer serializer = new SceneSerializer();
+        serializer.register(HealthComponent.class, "bench.health", HEALTH_CODEC);
+
+        File file = File.createTempFile("olibe-scene", ".bin");
+        file.deleteOnExit();
+        serializer.save(build(count), file.getPath());
+
+        long buildNanos = Long.MAX_VALUE, loadNanos = Long.MAX_VALUE;
+        long buildGc = 0, loadGc = 0;
+        int built = 0, loaded = 0;
+        for(int i = 0; i < WARMUP + RUNS; ++i) {
+            // each run starts from a collected heap so it does not pay for the garbage of the previous one
+            collect();
+            long gc = gcMillis();
+            long start = System.nanoTime();
+            Scene scene = build(count);
+            long nanos = System.nanoTime() - start;
+            if(i >= WARMUP && nanos < buildNanos) {
+                buildNanos = nanos;
+                buildGc = gcMillis() - gc;
+            }
+            built = scene.getTraversal().size();
+            scene = null;
+
+            collect();
+            gc = gcMillis();
+            start = System.nanoTime();
+            scene = serializer.load(file.getPath());
+            nanos = System.nanoTime() - start;
+            if(i >= WARMUP && nanos < loadNanos) {
+                loadNanos = nanos;
+                loadGc = gcMillis() - gc;
+            }
+            loaded = scene.getTraversal().size();
+        }
+        if(built != loaded) throw new IllegalStateException("The loaded scene differs from the built one");
+        System.out.println("nodes=" + loaded + " file=" + (file.length() >> 10) + " KB");
+        System.out.println(String.format("build in code: %8.1f ms (gc %d ms)", buildNanos / 1e6, buildGc));
+        System.out.println(String.format("load (mapped): %8.1f ms (gc %d ms)", loadNanos / 1e6, loadGc));
+    }
+
+    /**
+     * Returns the time spent in the collectors so far
+     * @return the collection time (in milliseconds)
+     */
+    protected static long gcMillis() {
+        long millis = 0;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Run a few full collections
+     */
+    protected static void collect() {
+        for(int i = 0; i < 2; ++i) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Build the scene in code
+     * @param count number of leaves
+     * @return the scene
+     */
+    protected static Scene build(int count) {
+        Random random = new Random(42);
+        Scene scene = new Scene("bench");
+        SceneNode root = scene.getNode("");
+        SceneNode group = null;
+        for(int i = 0; i < count; ++i) {
+            if(i % GROUP_SIZE == 0) {
+                group = new SceneNode("group");
+                root.addChild(group);
+            }
+            SceneNode node = new SceneNode("prop_" + (i % NAMES));
+            node.getTransform().getPosition().set(random.nextFloat() * 1000f, 0f, random.nextFloat() * 1000f);
+            node.getTransform().getEulerRotations().set(0f, random.nextFloat() * 6.28f, 0f);
+            node.getTransform().markDirty();
+            BoundingBox bounds = new BoundingBox();
+            bounds.min.set(-.5f);
+            bounds.max.set(.5f);
+            node.setBounds(bounds);
+            node.addComponent(new HealthComponent(100f, i & 1));
+            group.addChild(node);
+        }
+        return scene;
+    }
+}
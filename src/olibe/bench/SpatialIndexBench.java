@@ -0,0 +1,89 @@
+package olibe.bench;
+
+import java.util.*;
+
+import olibe.render.BoundingBox;
+import olibe.scene.Scene;
+import olibe.scene.SceneNode;
+import olibe.scene.spatial.SceneSpatialIndex;
+
+/**
+ * Measure the per frame cost of a scene spatial index with moving nodes.
+ * N unit boxes are tracked, a fraction of them moves steadily each frame,
+ * the index is updated (journal driven) and queried with a few boxes.
+ * Run with: java -cp "classes:lib/*" olibe.bench.SpatialIndexBench [nodes] [moving percent]
+ */
+public class SpatialIndexBench {
+    /** Default number of nodes */
+    protected static final int DEFAULT_NODES = 100_000;
+    /** Default percentage of moving nodes */
+    protected static final int DEFAULT_MOVING = 100;
+    /** Measured frames */
+    protected static final int FRAMES = 200;
+    /** Warmup frames */
+    protected static final int WARMUP = 50;
+    /** Size of the world (in units) */
+    protected static final float WORLD_SIZE = 1000f;
+
+    /**
+     * Run the benchmark
+     * @param args number of nodes and percentage of moving nodes (optional)
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NODES;
+        int movingPercent = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_MOVING;
+        Random random = new Random(42);
+        Scene scene = new Scene("bench");
+        SceneNode root = scene.getNode("");
+        SceneSpatialIndex index = new SceneSpatialIndex(scene, .1f);
+        BoundingBox unit = new BoundingBox();
+        unit.min.set(-.5f);
+        unit.max.set(.5f);
+
+        SceneNode[] nodes = new SceneNode[count];
+        float[] velocities = new float[count * 3];
+        for(int i = 0; i < count; ++i) {
+            nodes[i] = new SceneNode("node");
+            nodes[i].getTransform().getPosition().set(random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE);
+            nodes[i].getTransform().markDirty();
+            root.addChild(nodes[i]);
+            index.track(nodes[i], unit);
+            for(int c = 0; c < 3; ++c) velocities[i * 3 + c] = (random.nextFloat() - .5f) * .2f;
+        }
+        int moving = (int)((long)count * movingPercent / 100);
+
+        BoundingBox query = new BoundingBox();
+        List<SceneNode> results = new ArrayList<>();
+        long updateNanos = 0, queryNanos = 0, hits = 0;
+        index.getTree().resetStats();
+        for(int frame = 0; frame < WARMUP + FRAMES; ++frame) {
+            if(frame == WARMUP) {
+                updateNanos = 0;
+                queryNanos = 0;
+                index.getTree().resetStats();
+            }
+            for(int i = 0; i < moving; ++i) {
+                nodes[i].getTransform().getPosition().add(velocities[i * 3], velocities[i * 3 + 1], velocities[i * 3 + 2]);
+                nodes[i].getTransform().markDirty();
+            }
+            long start = System.nanoTime();
+            index.update();
+            updateNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(int q = 0; q < 16; ++q) {
+                query.min.set(random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE);
+                query.max.set(query.min).add(20f, 20f, 20f);
+                results.clear();
+                hits += index.query(query, results).size();
+            }
+            queryNanos += System.nanoTime() - start;
+        }
+        System.out.println("nodes=" + count + " moving=" + moving
+            + " update=" + String.format("%.3f", updateNanos / 1e6 / FRAMES) + " ms/frame"
+            + " query16=" + String.format("%.3f", queryNanos / 1e6 / FRAMES) + " ms/frame"
+            + " reinserts=" + (index.getTree().getReinsertCount() / FRAMES) + "/frame"
+            + " hits=" + hits);
+        index.delete();
+    }
+}
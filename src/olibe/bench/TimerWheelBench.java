@@ -0,0 +1,116 @@
+package olibe.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import olibe.core.TimerCallback;
+import olibe.core.TimerWheel;
+
+/**
+ * Measure a timing wheel with 1M pending timers.
+ * N one-shot timers are scheduled with delays spread over two minutes, a tenth of them
+ * are cancelled, then the wheel is advanced at 60 frames per second until they all fired.
+ * The frame cost is compared with timers counting down the frame delta every frame
+ * (one virtual call per timer per frame, what components do without the wheel).
+ * Run with: java -cp "classes:lib/*" olibe.bench.TimerWheelBench [timers]
+ */
+public class TimerWheelBench {
+    /** Default number of timers */
+    protected static final int DEFAULT_TIMERS = 1_000_000;
+    /** Longest delay (in seconds) */
+    protected static final float MAX_DELAY = 120f;
+    /** Frame delta (in seconds) */
+    protected static final float FRAME = 1f / 60f;
+    /** Frames timed for the countdown reference */
+    protected static final int COUNTDOWN_FRAMES = 200;
+
+    /** Number of fired timers */
+    protected static int fired = 0;
+
+    /**
+     * Timer counting its expiry
+     */
+    protected static class CountTimer extends TimerCallback {
+        /** Remaining time of the countdown reference (in seconds) */
+        protected float remaining;
+
+        @Override
+        public void call() {
+            fired++;
+        }
+
+        /**
+         * Count down a frame (countdown reference)
+         * @param delta frame delta (in seconds)
+         */
+        public void countDown(float delta) {
+            this.remaining -= delta;
+            if(this.remaining <= 0f && this.remaining + delta > 0f) this.call();
+        }
+    }
+
+    /**
+     * Run the benchmark
+     * @param args number of timers (optional)
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_TIMERS;
+        Random random = new Random(42);
+        CountTimer[] timers = new CountTimer[count];
+        float[] delays = new float[count];
+        for(int i = 0; i < count; ++i) {
+            timers[i] = new CountTimer();
+            delays[i] = FRAME + random.nextFloat() * MAX_DELAY;
+        }
+
+        // warm the wheel operations up on a separate wheel
+        TimerWheel warm = new TimerWheel();
+        for(int i = 0; i < count; ++i) warm.schedule(timers[i], delays[i]);
+        for(int i = 0; i < count; ++i) warm.cancel(timers[i]);
+
+        TimerWheel wheel = new TimerWheel();
+        long start = System.nanoTime();
+        for(int i = 0; i < count; ++i) {
+            wheel.schedule(timers[i], delays[i]);
+        }
+        double scheduleNs = (double)(System.nanoTime() - start) / count;
+
+        int cancelled = count / 10;
+        start = System.nanoTime();
+        for(int i = 0; i < cancelled; ++i) {
+            wheel.cancel(timers[i * 10]);
+        }
+        double cancelNs = (double)(System.nanoTime() - start) / cancelled;
+        int pending = wheel.size();
+
+        int frames = 0;
+        long totalNanos = 0;
+        // one second of slack over the longest delay for the rounding of the ticks
+        long[] frameNanos = new long[(int)(MAX_DELAY / FRAME) + 60];
+        while(wheel.size() > 0) {
+            long frameStart = System.nanoTime();
+            wheel.advance(FRAME);
+            long nanos = System.nanoTime() - frameStart;
+            totalNanos += nanos;
+            frameNanos[frames++] = nanos;
+        }
+        // the max is a cascade: far timers moved down a level at once
+        Arrays.sort(frameNanos, 0, frames);
+        if(fired != pending) throw new IllegalStateException("Fired " + fired + " timers instead of " + pending);
+
+        // countdown reference: every timer is updated every frame
+        for(int i = 0; i < count; ++i) timers[i].remaining = delays[i];
+        start = System.nanoTime();
+        for(int f = 0; f < COUNTDOWN_FRAMES; ++f) {
+            for(int i = 0; i < count; ++i) timers[i].countDown(FRAME);
+        }
+        double countdownUs = (System.nanoTime() - start) / 1e3 / COUNTDOWN_FRAMES;
+
+        System.out.println("timers=" + count + " pending=" + pending + " frames=" + frames);
+        System.out.println(String.format("schedule:        %8.1f ns/timer", scheduleNs));
+        System.out.println(String.format("cancel:          %8.1f ns/timer", cancelNs));
+        System.out.println(String.format("wheel frame:     %8.1f us mean, %.1f us p99, %.1f us max (%.0f expiries/frame)",
+            totalNanos / 1e3 / frames, frameNanos[frames * 99 / 100] / 1e3, frameNanos[frames - 1] / 1e3, (double)pending / frames));
+        System.out.println(String.format("countdown frame: %8.1f us", countdownUs));
+    }
+}
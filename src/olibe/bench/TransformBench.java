@@ -0,0 +1,128 @@
+package olibe.bench;
+
+import java.util.*;
+
+import org.joml.Matrix4f;
+
+import olibe.scene.Scene;
+import olibe.scene.SceneNode;
+import olibe.scene.TransformBuffer;
+
+/**
+ * Compare the per node (object) world matrices computation with the
+ * structure-of-arrays one ({@link TransformBuffer}).
+ * N nodes (groups of 16 under the root) move every frame, then:
+ * the scene computes their world matrices node by node, then in bulk,
+ * and the bare buffer kernel is timed alone.
+ * The Vector API kernel is used when run with --add-modules jdk.incubator.vector.
+ * Run with: java -cp "classes:lib/*" olibe.bench.TransformBench [nodes]
+ */
+public class TransformBench {
+    /** Default number of nodes */
+    protected static final int DEFAULT_NODES = 100_000;
+    /** Leaves per group */
+    protected static final int GROUP_SIZE = 16;
+    /** Measured frames */
+    protected static final int FRAMES = 200;
+    /** Warmup frames */
+    protected static final int WARMUP = 100;
+
+    /**
+     * Run the benchmark
+     * @param args number of nodes (optional)
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NODES;
+        boolean vector = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        System.out.println("nodes=" + count + " kernel=" + (vector ? "vector" : "scalar"));
+
+        Scene objects = buildScene(count);
+        Scene bulk = buildScene(count).setBulkTransforms(true);
+        System.out.println("per node: " + String.format("%.3f", timeScene(objects, count)) + " ms/frame");
+        System.out.println("bulk:     " + String.format("%.3f", timeScene(bulk, count)) + " ms/frame");
+        checkSame(objects, bulk);
+
+        TransformBuffer buffer = new TransformBuffer(count);
+        Random random = new Random(1);
+        for(int i = 0; i < count; ++i) {
+            int slot = buffer.allocate((i % GROUP_SIZE == 0 || i == 0) ? -1 : i - i % GROUP_SIZE);
+            buffer.setTRS(slot, random.nextFloat(), random.nextFloat(), random.nextFloat(),
+                random.nextFloat(), random.nextFloat(), random.nextFloat(), 1f, 1f, 1f);
+        }
+        for(int i = 0; i < WARMUP; ++i) buffer.computeWorldMatrices();
+        long start = System.nanoTime();
+        for(int i = 0; i < FRAMES; ++i) buffer.computeWorldMatrices();
+        System.out.println("buffer:   " + String.format("%.3f", (System.nanoTime() - start) / 1e6 / FRAMES) + " ms/frame");
+        buffer.delete();
+    }
+
+    /**
+     * Build a scene of groups of leaves
+     * @param count number of leaves
+     * @return the scene
+     */
+    protected static Scene buildScene(int count) {
+        Scene scene = new Scene("bench");
+        Random random = new Random(1);
+        SceneNode group = null;
+        for(int i = 0; i < count; ++i) {
+            if(i % GROUP_SIZE == 0) {
+                group = new SceneNode("group");
+                scene.getNode("").addChild(group);
+            }
+            SceneNode node = new SceneNode("node");
+            node.getTransform().getEulerRotations().set(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            node.getTransform().getPosition().set(random.nextFloat() * 100f, 0f, random.nextFloat() * 100f);
+            node.getTransform().markDirty();
+            group.addChild(node);
+        }
+        return scene;
+    }
+
+    /**
+     * Move every leaf then update the world matrices, for each frame
+     * @param scene scene
+     * @param count number of leaves
+     * @return the average time of a frame (in ms)
+     */
+    protected static double timeScene(Scene scene, int count) {
+        List<SceneNode> groups = scene.getNode("").getChildren();
+        long nanos = 0;
+        for(int frame = 0; frame < WARMUP + FRAMES; ++frame) {
+            long start = System.nanoTime();
+            for(int g = 0; g < groups.size(); ++g) {
+                List<SceneNode> leaves = groups.get(g).getChildren();
+                for(int i = 0; i < leaves.size(); ++i) {
+                    leaves.get(i).getTransform().getPosition().add(.01f, 0f, 0f);
+                    leaves.get(i).getTransform().markDirty();
+                }
+            }
+            scene.updateTransforms();
+            if(frame >= WARMUP) nanos += System.nanoTime() - start;
+        }
+        return nanos / 1e6 / FRAMES;
+    }
+
+    /**
+     * Check both scenes computed the same world matrices (up to rounding)
+     * @param a first scene
+     * @param b second scene
+     */
+    protected static void checkSame(Scene a, Scene b) {
+        List<SceneNode> groupsA = a.getNode("").getChildren(), groupsB = b.getNode("").getChildren();
+        float maxError = 0f;
+        for(int g = 0; g < groupsA.size(); ++g) {
+            List<SceneNode> leavesA = groupsA.get(g).getChildren(), leavesB = groupsB.get(g).getChildren();
+            for(int i = 0; i < leavesA.size(); ++i) {
+                Matrix4f ma = leavesA.get(i).getTransform().getWorldMatrix();
+                Matrix4f mb = leavesB.get(i).getTransform().getWorldMatrix();
+                for(int c = 0; c < 4; ++c) {
+                    for(int r = 0; r < 4; ++r) {
+                        maxError = Math.max(maxError, Math.abs(ma.get(c, r) - mb.get(c, r)));
+                    }
+                }
+            }
+        }
+        System.out.println("max difference: " + maxError);
+    }
+}
@@ -0,0 +1,132 @@
+package olibe.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import olibe.scene.Scene;
+import olibe.scene.SceneNode;
+import olibe.scene.SceneNodeVisitor;
+import olibe.scene.SceneTraversal;
+
+/**
+ * Measure the scaling of the cached scene traversal from 1k to 1M nodes.
+ * For each size, a scene of groups of leaves is built, then the flattened order is
+ * rebuilt (structure change) and walked with a visitor every frame. A recursive walk
+ * over the children lists is timed as a reference, and the heap allocated by the
+ * cached walks is reported (0 when the traversal allocates nothing per frame).
+ * Run with: java -cp "classes:lib/*" olibe.bench.TraversalBench [max nodes]
+ */
+public class TraversalBench {
+    /** Default largest number of nodes */
+    protected static final int DEFAULT_MAX_NODES = 1_000_000;
+    /** Smallest number of nodes */
+    protected static final int MIN_NODES = 1_000;
+    /** Leaves per group node */
+    protected static final int GROUP_SIZE = 100;
+    /** Visited nodes per size (more frames for the small scenes) */
+    protected static final long VISITS = 200_000_000L;
+    /** Warmup frames */
+    protected static final int WARMUP = 20;
+    /** Timed rebuilds per size (the fastest is reported) */
+    protected static final int REBUILDS = 5;
+
+    /** Number of visited nodes */
+    protected static long visited = 0;
+
+    /** Visitor counting the active nodes (reads each node as a real visitor would) */
+    protected static final SceneNodeVisitor COUNT_VISITOR = new SceneNodeVisitor() {
+        public boolean visit(SceneNode node) {
+            if(node.isActive()) visited++;
+            return true;
+        }
+    };
+
+    /**
+     * Run the benchmark
+     * @param args largest number of nodes (optional)
+     */
+    public static void main(String[] args) {
+        int maxCount = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_MAX_NODES;
+        System.out.println("     nodes   rebuild ms   walk ns/node   recursive ns/node   walk bytes/frame");
+        for(int count = MIN_NODES; count <= maxCount; count *= 10) {
+            Scene scene = buildScene(count);
+            SceneTraversal traversal = scene.getTraversal();
+            SceneNode root = scene.getNode("");
+
+            long rebuildNanos = Long.MAX_VALUE;
+            for(int i = 0; i < REBUILDS; ++i) {
+                long start = System.nanoTime();
+                traversal.invalidate();
+                traversal.validate();
+                rebuildNanos = Math.min(rebuildNanos, System.nanoTime() - start);
+            }
+
+            int frames = (int)Math.max(WARMUP, VISITS / traversal.size());
+            for(int i = 0; i < WARMUP; ++i) {
+                traversal.forEach(COUNT_VISITOR);
+                walk(root);
+            }
+
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            for(int i = 0; i < frames; ++i) {
+                traversal.forEach(COUNT_VISITOR);
+            }
+            double walkNs = (double)(System.nanoTime() - start) / frames / traversal.size();
+            allocated = allocatedBytes() - allocated;
+
+            start = System.nanoTime();
+            for(int i = 0; i < frames; ++i) {
+                walk(root);
+            }
+            double recursiveNs = (double)(System.nanoTime() - start) / frames / traversal.size();
+
+            System.out.println(String.format("%10d %12.3f %14.2f %19.2f %18d",
+                traversal.size(), rebuildNanos / 1e6, walkNs, recursiveNs, allocated / frames));
+        }
+        // keep the visits observable so they are not optimized away
+        if(visited == 0) System.out.println();
+    }
+
+    /**
+     * Build a scene of groups of leaves under the root
+     * @param count number of leaves
+     * @return the scene
+     */
+    protected static Scene buildScene(int count) {
+        Scene scene = new Scene("bench");
+        SceneNode root = scene.getNode("");
+        SceneNode group = null;
+        for(int i = 0; i < count; ++i) {
+            if(i % GROUP_SIZE == 0) {
+                group = new SceneNode("group");
+                root.addChild(group);
+            }
+            group.addChild(new SceneNode("node"));
+        }
+        return scene;
+    }
+
+    /**
+     * Walk a subtree recursively over the children lists (reference)
+     * @param node root of the subtree
+     */
+    protected static void walk(SceneNode node) {
+        if(!node.isActive()) return;
+        visited++;
+        List<SceneNode> children = node.getChildren();
+        for(int i = 0; i < children.size(); ++i) {
+            walk(children.get(i));
+        }
+    }
+
+    /**
+     * Returns the heap allocated by the current thread so far
+     * @return the allocated bytes (0 if the JVM does not report them)
+     */
+    protected static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) return 0;
+        return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,195 @@
+package olibe.bench;
+
+import static org.lwjgl.opengl.GL46.*;
+
+import olibe.core.Window;
+import olibe.exception.LWJGLException;
+import olibe.render.Shader;
+import olibe.render.UniformHandle;
+
+/**
+ * Measure uniform-heavy frames: every uniform of S shaders with U float uniforms is set each frame.
+ * The CPU part times the name to handle lookup of the String overloads against held handles.
+ * If an OpenGL context can be created, the frames are then timed three ways: a driver lookup
+ * per set (glGetUniformLocation, the path before the reflection), the String overloads and the
+ * handle overloads. Without an OpenGL context the GL part is skipped.
+ * Run with: java -cp "classes:lib/*" olibe.bench.UniformBench [shaders] [uniforms]
+ */
+public class UniformBench {
+    /** Default number of shaders */
+    protected static final int DEFAULT_SHADERS = 16;
+    /** Default number of float uniforms per shader */
+    protected static final int DEFAULT_UNIFORMS = 64;
+    /** Measured frames */
+    protected static final int FRAMES = 500;
+    /** Warmup frames */
+    protected static final int WARMUP = 100;
+    /** Frames of the CPU part (no GL call, more frames) */
+    protected static final int CPU_FRAMES = 20_000;
+
+    /** Checksum of the looked up handles (keeps the lookups observable) */
+    protected static long checksum = 0;
+
+    /**
+     * Run the benchmark
+     * @param args number of shaders and uniforms per shader (optional)
+     */
+    public static void main(String[] args) {
+        int shaderCount = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_SHADERS;
+        int uniformCount = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_UNIFORMS;
+        String[] names = new String[uniformCount];
+        UniformHandle[] handles = new UniformHandle[uniformCount];
+        for(int i = 0; i < uniformCount; ++i) {
+            names[i] = "u" + i;
+            handles[i] = UniformHandle.Get(names[i]);
+        }
+        int sets = shaderCount * uniformCount;
+        System.out.println("shaders=" + shaderCount + " uniforms=" + uniformCount + " sets/frame=" + sets);
+
+        for(int i = 0; i < CPU_FRAMES / 10; ++i) {
+            lookupFrame(names, shaderCount);
+            heldFrame(handles, shaderCount);
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < CPU_FRAMES; ++i) lookupFrame(names, shaderCount);
+        double lookupNs = (double)(System.nanoTime() - start) / CPU_FRAMES / sets;
+        start = System.nanoTime();
+        for(int i = 0; i < CPU_FRAMES; ++i) heldFrame(handles, shaderCount);
+        double heldNs = (double)(System.nanoTime() - start) / CPU_FRAMES / sets;
+        System.out.println(String.format("handle by name:  %8.2f ns/set", lookupNs));
+        System.out.println(String.format("held handle:     %8.2f ns/set", heldNs));
+
+        Window window;
+        try {
+            window = new Window("bench", 64, 64);
+        } catch(RuntimeException | LinkageError e) {
+            System.out.println("No OpenGL context (" + e.getMessage() + "), GL frames skipped");
+            return;
+        }
+        try {
+            Shader[] shaders = new Shader[shaderCount];
+            for(int s = 0; s < shaderCount; ++s) {
+                shaders[s] = new Shader(vertexCode(), fragmentCode(uniformCount));
+            }
+            double driverUs = 0, nameUs = 0, handleUs = 0;
+            for(int i = 0; i < WARMUP + FRAMES; ++i) {
+                float value = i * .001f;
+                long driver = driverFrame(shaders, names, value);
+                long name = nameFrame(shaders, names, value);
+                long handle = handleFrame(shaders, handles, value);
+                if(i < WARMUP) continue;
+                driverUs += driver / 1e3 / FRAMES;
+                nameUs += name / 1e3 / FRAMES;
+                handleUs += handle / 1e3 / FRAMES;
+            }
+            System.out.println(String.format("driver lookup:   %8.1f us/frame", driverUs));
+            System.out.println(String.format("String overload: %8.1f us/frame", nameUs));
+            System.out.println(String.format("handle overload: %8.1f us/frame", handleUs));
+            for(Shader shader : shaders) shader.delete();
+        } catch(LWJGLException e) {
+            System.out.println("Failed to create the shaders: " + e.getMessage());
+        } finally {
+            window.destroy();
+        }
+        if(checksum == 0) System.out.println();
+    }
+
+    /**
+     * Look every uniform up by name (CPU cost of the String overloads)
+     * @param names names of the uniforms
+     * @param shaderCount number of shaders
+     */
+    protected static void lookupFrame(String[] names, int shaderCount) {
+        for(int s = 0; s < shaderCount; ++s) {
+            for(int i = 0; i < names.length; ++i) checksum += UniformHandle.Get(names[i]).getId();
+        }
+    }
+
+    /**
+     * Read every held handle (CPU cost of the handle overloads)
+     * @param handles handles of the uniforms
+     * @param shaderCount number of shaders
+     */
+    protected static void heldFrame(UniformHandle[] handles, int shaderCount) {
+        for(int s = 0; s < shaderCount; ++s) {
+            for(int i = 0; i < handles.length; ++i) checksum += handles[i].getId();
+        }
+    }
+
+    /**
+     * Set every uniform with a driver lookup of its location
+     * @param shaders shaders
+     * @param names names of the uniforms
+     * @param value value of the uniforms
+     * @return the frame time (in nanoseconds)
+     */
+    protected static long driverFrame(Shader[] shaders, String[] names, float value) {
+        long start = System.nanoTime();
+        for(Shader shader : shaders) {
+            int program = shader.getRenderID();
+            for(int i = 0; i < names.length; ++i) {
+                glProgramUniform1f(program, glGetUniformLocation(program, names[i]), value);
+            }
+        }
+        glFinish();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Set every uniform with the String overload
+     * @param shaders shaders
+     * @param names names of the uniforms
+     * @param value value of the uniforms
+     * @return the frame time (in nanoseconds)
+     */
+    protected static long nameFrame(Shader[] shaders, String[] names, float value) {
+        long start = System.nanoTime();
+        for(Shader shader : shaders) {
+            for(int i = 0; i < names.length; ++i) shader.setUniform(names[i], value);
+        }
+        glFinish();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Set every uniform with the handle overload
+     * @param shaders shaders
+     * @param handles handles of the uniforms
+     * @param value value of the uniforms
+     * @return the frame time (in nanoseconds)
+     */
+    protected static long handleFrame(Shader[] shaders, UniformHandle[] handles, float value) {
+        long start = System.nanoTime();
+        for(Shader shader : shaders) {
+            for(int i = 0; i < handles.length; ++i) shader.setUniform(handles[i], value);
+        }
+        glFinish();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the vertex shader (full screen triangle)
+     * @return the vertex shader code
+     */
+    protected static String vertexCode() {
+        return "#version 460 core\n"
+            + "void main() {\n"
+            + "    vec2 pos = vec2((gl_VertexID << 1) & 2, gl_VertexID & 2);\n"
+            + "    gl_Position = vec4(pos * 2.0 - 1.0, 0.0, 1.0);\n"
+            + "}\n";
+    }
+
+    /**
+     * Returns a fragment shader using every uniform (so none is optimized out)
+     * @param uniformCount number of float uniforms
+     * @return the fragment shader code
+     */
+    protected static String fragmentCode(int uniformCount) {
+        StringBuilder code = new StringBuilder("#version 460 core\nout vec4 oColor;\n");
+        for(int i = 0; i < uniformCount; ++i) code.append("uniform float u").append(i).append(";\n");
+        code.append("void main() {\n    float sum = 0.0;\n");
+        for(int i = 0; i < uniformCount; ++i) code.append("    sum += u").append(i).append(";\n");
+        code.append("    oColor = vec4(sum, 0.0, 0.0, 1.0);\n}\n");
+        return code.toString();
+    }
+}
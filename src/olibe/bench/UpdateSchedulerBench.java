@@ -0,0 +1,117 @@
+package olibe.bench;
+
+import java.util.concurrent.ForkJoinPool;
+
+import olibe.scene.Component;
+import olibe.scene.Scene;
+import olibe.scene.SceneNode;
+import olibe.scene.SceneTraversal;
+import olibe.scene.UpdateScheduler;
+
+/**
+ * Measure the scaling of the parallel update phase with the number of cores.
+ * N independent CPU-bound components are updated each frame, on the main thread,
+ * then on fork-join pools of 1, 2, 4... threads up to the number of cores.
+ * Run with: java -cp "classes:lib/*" olibe.bench.UpdateSchedulerBench [components] [max threads]
+ */
+public class UpdateSchedulerBench {
+    /** Default number of components */
+    protected static final int DEFAULT_COMPONENTS = 50_000;
+    /** Measured frames */
+    protected static final int FRAMES = 100;
+    /** Warmup frames */
+    protected static final int WARMUP = 30;
+    /** Integration steps per component update (CPU work of a component) */
+    protected static final int STEPS = 16;
+    /** Components per node */
+    protected static final int COMPONENTS_PER_NODE = 4;
+
+    /**
+     * Component integrating a damped spring, independent of the others
+     */
+    protected static class SpringComponent implements Component {
+        /** The component runs on the pool */
+        protected boolean parallel;
+        /** Position */
+        protected double position;
+        /** Velocity */
+        protected double velocity;
+
+        /**
+         * Create a spring
+         * @param seed initial position
+         */
+        public SpringComponent(double seed) {
+            this.position = seed;
+            this.velocity = 0.0;
+        }
+
+        @Override
+        public void onUpdate(double delta) {
+            double dt = delta / STEPS;
+            for(int i = 0; i < STEPS; ++i) {
+                double force = -40.0 * this.position - 0.5 * this.velocity + Math.sin(this.position);
+                this.velocity += force * dt;
+                this.position += this.velocity * dt;
+            }
+        }
+
+        @Override
+        public boolean isParallelUpdate() {
+            return parallel;
+        }
+
+        @Override
+        public void delete() {}
+    }
+
+    /**
+     * Run the benchmark
+     * @param args number of components and max number of threads (optional)
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_COMPONENTS;
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Scene scene = new Scene("bench");
+        SpringComponent[] springs = new SpringComponent[count];
+        SceneNode node = null;
+        for(int i = 0; i < count; ++i) {
+            if(i % COMPONENTS_PER_NODE == 0) {
+                node = new SceneNode("node");
+                scene.getNode("").addChild(node);
+            }
+            springs[i] = new SpringComponent(1.0 + i % 17);
+            node.addComponent(springs[i]);
+        }
+        SceneTraversal traversal = scene.getTraversal();
+        System.out.println("components=" + count + " cores=" + Runtime.getRuntime().availableProcessors());
+
+        double serial = time(new UpdateScheduler(), traversal);
+        System.out.println(String.format("main thread: %8.3f ms/frame", serial));
+
+        for(int i = 0; i < count; ++i) springs[i].parallel = true;
+        for(int threads = 1; threads <= maxThreads; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            double parallel = time(new UpdateScheduler(pool), traversal);
+            pool.shutdown();
+            System.out.println(String.format("%2d threads:  %8.3f ms/frame  speedup %.2fx", threads, parallel, serial / parallel));
+        }
+    }
+
+    /**
+     * Time the update of a scene with a scheduler
+     * @param scheduler scheduler
+     * @param traversal traversal of the scene
+     * @return the mean update time (in milliseconds per frame)
+     */
+    protected static double time(UpdateScheduler scheduler, SceneTraversal traversal) {
+        for(int i = 0; i < WARMUP; ++i) {
+            scheduler.update(traversal, 1f / 60f);
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < FRAMES; ++i) {
+            scheduler.update(traversal, 1f / 60f);
+        }
+        return (System.nanoTime() - start) / 1e6 / FRAMES;
+    }
+}
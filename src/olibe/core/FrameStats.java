@@ -0,0 +1,298 @@
+package olibe.core;
+
+/**
+ * Statistics of the current frame (reset by the pipeline at the beginning of each frame).
+ * Each thread has its own statistics, so the update thread never writes the ones
+ * of the render thread: the pipeline reports the update statistics through the
+ * rendered snapshot (see {@link #recordUpdate(long, long, int)}).
+ */
+public class FrameStats {
+    /** Triangles submitted */
+    protected long triangles;
+    /** Triangles submitted per level of detail */
+    protected long[] lodTriangles;
+    /** Objects drawn per level of detail */
+    protected int[] lodObjects;
+    /** Level of detail transitions started */
+    protected int lodTransitions;
+    /** Time spent updating the rendered scene state (in nanoseconds) */
+    protected long updateNanos;
+    /** Time spent extracting the rendered snapshot (in nanoseconds) */
+    protected long extractNanos;
+    /** Time spent rendering (in nanoseconds) */
+    protected long renderNanos;
+    /** Time the render thread waited for the update thread (in nanoseconds) */
+    protected long waitNanos;
+    /** Duration of the previous frame (in nanoseconds) */
+    protected long frameNanos;
+    /** OpenGL state changes issued */
+    protected int stateIssued;
+    /** Redundant OpenGL state changes elided */
+    protected int stateElided;
+    /** Number of draw calls */
+    protected int drawCalls;
+    /** Visible nodes having bounds in the rendered snapshot (culled once per frame, shared by the passes) */
+    protected int visibleCount;
+    /** Nodes culled from the rendered snapshot */
+    protected int culledCount;
+    /** Frame Stats instance of each thread */
+    protected static final ThreadLocal<FrameStats> instances = new ThreadLocal<FrameStats>() {
+        protected FrameStats initialValue() {
+            return new FrameStats();
+        }
+    };
+
+    /** Maximum number of tracked levels of detail */
+    public static final int MAX_LOD_LEVELS = 8;
+
+    /**
+     * Returns the FrameStats instance of the current thread
+     * @return the FrameStats instance of the current thread
+     */
+    public static FrameStats Get() {
+        return instances.get();
+    }
+
+    /**
+     * Create empty frame statistics
+     */
+    private FrameStats() {
+        this.lodTriangles = new long[MAX_LOD_LEVELS];
+        this.lodObjects = new int[MAX_LOD_LEVELS];
+    }
+
+    /**
+     * Reset the statistics (beginning of a frame)
+     */
+    public void reset() {
+        this.triangles = 0;
+        this.lodTransitions = 0;
+        this.stateIssued = 0;
+        this.stateElided = 0;
+        this.drawCalls = 0;
+        for(int i = 0; i < MAX_LOD_LEVELS; ++i) {
+            this.lodTriangles[i] = 0;
+            this.lodObjects[i] = 0;
+        }
+    }
+
+    /**
+     * Count submitted triangles
+     * @param count number of triangles
+     */
+    public void addTriangles(int count) {
+        this.triangles += count;
+    }
+
+    /**
+     * Count an object drawn at a level of detail
+     * @param level level of detail (levels above the maximum are counted in the last one)
+     * @param triangles number of triangles of the level
+     */
+    public void addLodObject(int level, int triangles) {
+        int l = Math.min(level, MAX_LOD_LEVELS - 1);
+        this.lodTriangles[l] += triangles;
+        this.lodObjects[l]++;
+        this.triangles += triangles;
+    }
+
+    /**
+     * Count a level of detail transition
+     */
+    public void addLodTransition() {
+        this.lodTransitions++;
+    }
+
+    /**
+     * Count an OpenGL state change
+     * @param issued true if the change was issued, false if it was redundant and elided
+     */
+    public void addStateChange(boolean issued) {
+        if(issued) this.stateIssued++;
+        else this.stateElided++;
+    }
+
+    /**
+     * Count a draw call (instanced or not)
+     */
+    public void addDrawCall() {
+        this.drawCalls++;
+    }
+
+    /**
+     * Record the update statistics of the rendered snapshot
+     * @param updateNanos time spent updating (in nanoseconds)
+     * @param extractNanos time spent extracting (in nanoseconds)
+     * @param lodTransitions level of detail transitions started during the update
+     */
+    public void recordUpdate(long updateNanos, long extractNanos, int lodTransitions) {
+        this.updateNanos = updateNanos;
+        this.extractNanos = extractNanos;
+        this.lodTransitions = lodTransitions;
+    }
+
+    /**
+     * Record the frustum culling statistics of the rendered snapshot
+     * @param visibleCount visible nodes having bounds
+     * @param culledCount culled nodes
+     */
+    public void recordCulling(int visibleCount, int culledCount) {
+        this.visibleCount = visibleCount;
+        this.culledCount = culledCount;
+    }
+
+    /**
+     * Record the render time
+     * @param renderNanos time spent rendering (in nanoseconds)
+     */
+    public void recordRender(long renderNanos) {
+        this.renderNanos = renderNanos;
+    }
+
+    /**
+     * Record the time the render thread waited for the update thread
+     * @param waitNanos waited time (in nanoseconds)
+     */
+    public void recordWait(long waitNanos) {
+        this.waitNanos = waitNanos;
+    }
+
+    /**
+     * Record the duration of the previous frame
+     * @param frameNanos duration of the previous frame (in nanoseconds)
+     */
+    public void recordFrame(long frameNanos) {
+        this.frameNanos = frameNanos;
+    }
+
+    /**
+     * Returns the time spent updating the rendered scene state
+     * @return the time spent updating (in nanoseconds)
+     */
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    /**
+     * Returns the time spent extracting the rendered snapshot
+     * @return the time spent extracting (in nanoseconds)
+     */
+    public long getExtractNanos() {
+        return extractNanos;
+    }
+
+    /**
+     * Returns the time spent rendering
+     * @return the time spent rendering (in nanoseconds)
+     */
+    public long getRenderNanos() {
+        return renderNanos;
+    }
+
+    /**
+     * Returns the time the render thread waited for the update thread
+     * @return the waited time (in nanoseconds)
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * Returns the duration of the previous frame
+     * @return the duration of the previous frame (in nanoseconds)
+     */
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+
+    /**
+     * Returns the number of triangles submitted during the frame
+     * @return the number of triangles submitted during the frame
+     */
+    public long getTriangles() {
+        return triangles;
+    }
+
+    /**
+     * Returns the number of triangles submitted at a level of detail during the frame
+     * @param level level of detail
+     * @return the number of triangles submitted at this level
+     */
+    public long getLodTriangles(int level) {
+        return this.lodTriangles[level];
+    }
+
+    /**
+     * Returns the number of objects drawn at a level of detail during the frame
+     * @param level level of detail
+     * @return the number of objects drawn at this level
+     */
+    public int getLodObjects(int level) {
+        return this.lodObjects[level];
+    }
+
+    /**
+     * Returns the number of level of detail transitions started during the frame
+     * @return the number of level of detail transitions started during the frame
+     */
+    public int getLodTransitions() {
+        return lodTransitions;
+    }
+
+    /**
+     * Returns the number of OpenGL state changes issued during the frame
+     * @return the number of OpenGL state changes issued during the frame
+     */
+    public int getStateIssued() {
+        return stateIssued;
+    }
+
+    /**
+     * Returns the number of redundant OpenGL state changes elided during the frame
+     * @return the number of redundant OpenGL state changes elided during the frame
+     */
+    public int getStateElided() {
+        return stateElided;
+    }
+
+    /**
+     * Returns the number of draw calls issued during the frame
+     * @return the number of draw calls issued during the frame
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Returns the number of visible nodes having bounds in the rendered snapshot (frame level, every world pass draws them)
+     * @return the number of visible nodes having bounds
+     */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /**
+     * Returns the number of nodes culled from the rendered snapshot (frame level)
+     * @return the number of culled nodes
+     */
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    /**
+     * Returns the string representation of the statistics
+     * @return the string representation of the statistics
+     */
+    public String toString() {
+        String res = "FrameStats[frame=" + this.frameNanos / 1000 + "us, update=" + this.updateNanos / 1000
+            + "us, extract=" + this.extractNanos / 1000 + "us, render=" + this.renderNanos / 1000
+            + "us, wait=" + this.waitNanos / 1000 + "us, draws=" + this.drawCalls + ", triangles=" + this.triangles
+            + ", culled=" + this.culledCount + "/" + (this.visibleCount + this.culledCount)
+            + ", state=" + this.stateIssued + " issued/" + this.stateElided + " elided, lod=";
+        for(int i = 0; i < MAX_LOD_LEVELS; ++i) {
+            if(this.lodObjects[i] == 0) continue;
+            res += i + ":" + this.lodObjects[i] + "/" + this.lodTriangles[i] + "tris ";
+        }
+        return res + "]";
+    }
+}
@@ -4,6 +4,10 @@ import olibe.exception.LWJGLException;
 import olibe.io.ShaderLibrary;
 import olibe.render.Shader;
 
+/**
+ * Shaders packaged with the engine.
+ * The frame and camera data are read from the shared uniform blocks (see {@link olibe.render.UniformBlocks}).
+ */
 public class PackagedShaders {
     protected static final String SIMPLE_POSNORMTEX_VERT = """
         #version 460 core
@@ -16,8 +20,10 @@ public class PackagedShaders {
         out vec3 oNormals;
         out vec4 oVertexPos;
         
-        uniform mat4 uProj;
-        uniform mat4 uView;
+        layout (std140, binding = 1) uniform CameraData {
+            mat4 uView;
+            mat4 uProj;
+        };
         uniform mat4 uModel;
         
         void main() {
@@ -30,6 +36,33 @@ public class PackagedShaders {
         }
     """;
 
+    protected static final String SIMPLE_POSNORMTEX_INSTANCED_VERT = """
+        #version 460 core
+
+        layout (location = 0) in vec3 aPos;
+        layout (location = 1) in vec3 aNormals;
+        layout (location = 2) in vec2 aTexCoords;
+        layout (location = 3) in mat4 aModel; // per instance (see InstanceBuffer)
+
+        out vec2 oTexCoords;
+        out vec3 oNormals;
+        out vec4 oVertexPos;
+
+        layout (std140, binding = 1) uniform CameraData {
+            mat4 uView;
+            mat4 uProj;
+        };
+
+        void main() {
+            vec4 pos = uProj * uView * aModel * vec4(aPos, 1);
+            oVertexPos = pos;
+            gl_Position = pos;
+
+            oTexCoords = aTexCoords;
+            oNormals = aNormals;
+        }
+    """;
+
     protected static final String SIMPLE_POSTEX_VERT = """
         #version 460 core
 
@@ -39,11 +72,15 @@ public class PackagedShaders {
         out vec2 oTexCoords;
         out vec4 oVertexPos;
         
-        uniform mat4 uProj;
-        uniform mat4 uView;
+        layout (std140, binding = 0) uniform FrameData {
+            float uTime;
+            vec2 uScreenSize;
+        };
+        layout (std140, binding = 1) uniform CameraData {
+            mat4 uView;
+            mat4 uProj;
+        };
         uniform mat4 uModel;
-
-        uniform float uTime;
         
         void main() {
             vec4 pos = uProj * uView * uModel * vec4(aPos, 1);
@@ -88,7 +125,10 @@ public class PackagedShaders {
         layout (location = 1) in vec2 aTexCoords;
 
         out vec2 oTexCoords;
-        uniform vec2 uScreenSize;
+        layout (std140, binding = 0) uniform FrameData {
+            float uTime;
+            vec2 uScreenSize;
+        };
         uniform vec2 uPosition;
 
         void main() {
@@ -115,7 +155,16 @@ public class PackagedShaders {
                 return (2.0 * NEAR * FAR) / (FAR + NEAR - z * (FAR - NEAR));	
             }
             
+            // LOD CROSS-FADE (same dither as the main shader, so both passes keep the same pixels)
+            uniform float uFade = 1.0;
+            float ditherNoise(vec2 p) {
+                return fract(52.9829189 * fract(dot(p, vec2(0.06711056, 0.00583715))));
+            }
+
             void main() {
+                float noise = ditherNoise(gl_FragCoord.xy);
+                if(uFade >= 0.0 ? noise >= uFade : noise < -uFade) discard;
+
                 float depth = linearizeDepth(gl_FragCoord.z) / FAR;
                 fragColor = vec4(vec3(depth),1);//texture(uTex, oTexCoords);
             } 
@@ -212,8 +261,16 @@ public class PackagedShaders {
                 float z = depth * 2.0 - 1.0; // back to NDC 
                 return (2.0 * NEAR * FAR) / (FAR + NEAR - z * (FAR - NEAR));	
             }
+            // LOD CROSS-FADE (1: opaque, t: keeps a t part of the pixels, -t: keeps the other part)
+            uniform float uFade = 1.0;
+            float ditherNoise(vec2 p) {
+                return fract(52.9829189 * fract(dot(p, vec2(0.06711056, 0.00583715))));
+            }
 
             void main() {
+                float noise = ditherNoise(gl_FragCoord.xy);
+                if(uFade >= 0.0 ? noise >= uFade : noise < -uFade) discard;
+
                 switch(activeMaterial) {
                     case 1: {// color mat
                         float lightPower = (dot(oNormals, vec3(0,1,0)) + 1) * .5;
@@ -240,6 +297,12 @@ public class PackagedShaders {
         {"maindeffered", MAINDEFFERED_SHADER[0], MAINDEFFERED_SHADER[1]}
     };
 
+    /** Instanced variants of the packaged shaders drawing models (registered as name + "Instanced") */
+    protected static final String[][] INSTANCED_SHADERS = {
+        {"depth", SIMPLE_POSNORMTEX_INSTANCED_VERT, DEPTH_SHADER[1]},
+        {"maindeffered", SIMPLE_POSNORMTEX_INSTANCED_VERT, MAINDEFFERED_SHADER[1]}
+    };
+
     public static void loadAll() {
         try {
             for(int i = 0; i < SHADERS.length; ++i) {
@@ -249,6 +312,12 @@ public class PackagedShaders {
                 Shader shader = new Shader(vert, frag);
                 ShaderLibrary.Get().registerShader(name, shader);
             }
+            for(int i = 0; i < INSTANCED_SHADERS.length; ++i) {
+                String name = INSTANCED_SHADERS[i][0];
+                Shader variant = new Shader(INSTANCED_SHADERS[i][1], INSTANCED_SHADERS[i][2]);
+                ShaderLibrary.Get().registerShader(name + "Instanced", variant);
+                ShaderLibrary.Get().getShader(name).setInstancedVariant(variant);
+            }
         } catch(LWJGLException e) {
             System.err.print("[ERROR] [PACKAGED SHADER] ");
             e.printStackTrace(System.err);
@@ -4,11 +4,12 @@ import olibe.exception.LWJGLException;
 import olibe.io.ShaderLibrary;
 import olibe.render.*;
 import olibe.scene.*;
+import olibe.scene.streaming.WorldStreamer;
 
 import org.joml.Vector2i;
-import org.joml.Vector2f;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.lwjgl.glfw.GLFW.*;
 
@@ -34,6 +35,34 @@ public class Pipeline {
     protected float lastFrameTime;
     /** Bound textures count */
     protected int boundTextures;
+    /** Scene nodes frustum culler */
+    protected VisibilityCuller culler;
+    /** Frustum culling is enabled */
+    protected boolean cullingEnabled;
+    /** World streamer (null if none) */
+    protected WorldStreamer streamer;
+    /** Render snapshots (double buffered) */
+    protected RenderSnapshot[] snapshots;
+    /** Index of the snapshot being rendered */
+    protected int frontSnapshot;
+    /** The scene is updated on another thread while the previous frame is rendered */
+    protected boolean threadedUpdate;
+    /** Update thread (null until the threaded update is enabled) */
+    protected ExecutorService updateExecutor;
+    /** Update running on the update thread (null if none) */
+    protected Future<?> pendingUpdate;
+    /** Tasks queued for the render thread (from any thread) */
+    protected Queue<Runnable> renderThreadTasks;
+    /** Tasks to run before rendering the front snapshot (render thread) */
+    protected List<Runnable> readyTasks;
+    /** Queues tasks for the render thread, given to the scene and the streamer for their deletions */
+    protected Executor renderThreadExecutor;
+    /** Start of the last frame (in nanoseconds) */
+    protected long lastFrameStart;
+    /** Timers advanced with the frame time */
+    protected TimerWheel timers;
+    /** Frame and camera uniform blocks shared by all the shaders */
+    protected UniformBlocks uniformBlocks;
 
     /**
      * Create the default pipeline
@@ -47,7 +76,24 @@ public class Pipeline {
         this.timeData = new Time();
         this.lastFrameTime = 0f;
 
+        this.renderThreadTasks = new ConcurrentLinkedQueue<>();
+        this.readyTasks = new ArrayList<>();
+        this.renderThreadExecutor = new Executor() {
+            public void execute(Runnable task) {
+                Pipeline.this.runOnRenderThread(task);
+            }
+        };
+
         this.scene = new Scene("default");
+        this.scene.getCommands().setDeleter(this.renderThreadExecutor);
+
+        this.culler = new VisibilityCuller();
+        this.cullingEnabled = true;
+
+        this.snapshots = new RenderSnapshot[] { new RenderSnapshot(), new RenderSnapshot() };
+        this.frontSnapshot = 0;
+        this.threadedUpdate = false;
+        this.timers = new TimerWheel();
     }
 
     /**
@@ -57,6 +103,7 @@ public class Pipeline {
         // Camera
         Vector2i size = window.getSize();
         this.camera = new Camera2D(size.x(), size.y());
+        Camera.makeActive(this.camera);
         window.addCallback(new ResizeCallback(){
             public void call(int w, int h) {
                 try {
@@ -67,13 +114,14 @@ public class Pipeline {
                         rp.getFramebuffer().resize(new Vector2i(w,h));
                     }
                 } catch(Exception e) { Log.Get().error(e.getMessage()); }
+                Pipeline.this.uniformBlocks.setScreenSize(w, h);
                 Pipeline.this.updateCamera();
-                ShaderLibrary.Get().setUniform("uScreenSize", new Vector2f(w,h));
             }
         });
-        ShaderLibrary.Get().setUniform("uScreenSize", new Vector2f(size.x(), size.y()));
 
         try {
+            this.uniformBlocks = new UniformBlocks();
+            this.uniformBlocks.setScreenSize(size.x(), size.y());
             this.screenQuad = Mesh.Quad(2f, 2f);
         } catch(Exception e) { Log.Get().error(e.getMessage()); return; }
 
@@ -89,18 +137,7 @@ public class Pipeline {
      */
     private void setupDefaultsShaders() {
         PackagedShaders.loadAll();
-        
-        Vector2i size = window.getSize();
 
-        Shader textShader = ShaderLibrary.Get().getShader("text");
-        textShader.setUniform("uScreenSize", new Vector2f(size));
-
-        Shader screenUIShader = ShaderLibrary.Get().getShader("screenUI");
-        screenUIShader.setUniform("uScreenSize", new Vector2f(size));
-
-        Shader spriteShader = ShaderLibrary.Get().getShader("sprite");
-        spriteShader.setUniform("uScreenSize", new Vector2f(size));
-        
         Shader screenShader = ShaderLibrary.Get().getShader("screen");
         screenShader.setUniform("screenTexture", 0);
     }
@@ -142,26 +179,179 @@ public class Pipeline {
      * Begin a frame
      */
     public void beginFrame() {
+        FrameStats.Get().reset();
+        long now = System.nanoTime();
+        if(this.lastFrameStart != 0) FrameStats.Get().recordFrame(now - this.lastFrameStart);
+        this.lastFrameStart = now;
         this.timeData.time = (float)glfwGetTime();
         this.timeData.delta = this.timeData.time - this.lastFrameTime;
         this.lastFrameTime = this.timeData.time;
     }
 
     /**
-     * Update the pipeline
+     * Update the pipeline: update the scene and extract its render state into a snapshot.
+     * The camera is copied into the view of the snapshot first (main thread).
+     * Without the threaded update, the scene is extracted at the beginning of {@link #render()},
+     * so the edits of the renderer loop are rendered in the same frame.
+     * With the threaded update, the update of the next frame is started on the update
+     * thread and the snapshot of the previous update is rendered meanwhile.
      */
     public void update() {
-        this.scene.update(this.timeData.delta);
-    } 
+        if(!this.threadedUpdate) {
+            RenderSnapshot back = this.snapshots[1 - this.frontSnapshot];
+            back.getView().set(this.camera);
+            this.updateScene(this.timeData.delta, back);
+            return;
+        }
+
+        this.waitUpdate();
+        final float delta = this.timeData.delta;
+        final RenderSnapshot back = this.snapshots[1 - this.frontSnapshot];
+        back.getView().set(this.camera);
+        this.pendingUpdate = this.updateExecutor.submit(new Runnable() {
+            public void run() {
+                Pipeline.this.updateScene(delta, back);
+                Pipeline.this.extractScene(back);
+            }
+        });
+    }
+
+    /**
+     * Update the scene, the camera is only read through the view of the snapshot
+     * @param delta frame delta time (in seconds)
+     * @param snapshot snapshot the scene is then extracted into
+     */
+    protected void updateScene(float delta, RenderSnapshot snapshot) {
+        long start = System.nanoTime();
+        FrameStats stats = FrameStats.Get();
+        int lodTransitions = stats.getLodTransitions();
+        SceneView view = snapshot.getView();
+        this.scene.setView(view);
+        // frame boundary: attach the streamed cells before updating them
+        if(this.streamer != null) this.streamer.update(view.getPosition());
+        this.timers.advance(delta);
+        this.scene.update(delta);
+        snapshot.setLodTransitions(stats.getLodTransitions() - lodTransitions);
+        snapshot.setUpdateNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Extract the scene into a snapshot
+     * @param snapshot snapshot to fill
+     */
+    protected void extractScene(RenderSnapshot snapshot) {
+        this.scene.extract(snapshot, this.cullingEnabled ? this.culler : null, snapshot.getView().getFrustum());
+        this.scene.setView(null);
+    }
 
     /**
-     * Render the pipeline
+     * Wait for the update running on the update thread (if any) and render its snapshot next
+     */
+    protected void waitUpdate() {
+        if(this.pendingUpdate == null) return;
+        long start = System.nanoTime();
+        try {
+            this.pendingUpdate.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            Log.Get().error("Scene update failed: " + e.getCause());
+        }
+        this.pendingUpdate = null;
+        FrameStats.Get().recordWait(System.nanoTime() - start);
+        this.collectRenderThreadTasks();
+        this.swapSnapshots();
+    }
+
+    /**
+     * Take the tasks queued so far to run them before the next render: the snapshot rendered
+     * next is extracted after them, so the objects they delete are not drawn anymore
+     */
+    protected void collectRenderThreadTasks() {
+        Runnable task;
+        while((task = this.renderThreadTasks.poll()) != null) {
+            this.readyTasks.add(task);
+        }
+    }
+
+    /**
+     * Run the collected render thread tasks
+     */
+    protected void runRenderThreadTasks() {
+        for(int i = 0; i < this.readyTasks.size(); ++i) {
+            this.readyTasks.get(i).run();
+        }
+        this.readyTasks.clear();
+    }
+
+    /**
+     * Render the last extracted snapshot next
+     */
+    protected void swapSnapshots() {
+        this.frontSnapshot = 1 - this.frontSnapshot;
+        RenderSnapshot front = this.snapshots[this.frontSnapshot];
+        FrameStats stats = FrameStats.Get();
+        stats.recordUpdate(front.getUpdateNanos(), front.getExtractNanos(), front.getLodTransitions());
+        // the snapshot is culled once against the camera frustum and shared by every world pass
+        stats.recordCulling(front.getVisibleCount(), front.getCulledCount());
+    }
+
+    /**
+     * Enable or disable the threaded update: the scene of the next frame is updated on
+     * an update thread while the current one is rendered (one frame of latency).
+     * While enabled, the scene must only be modified from the components updates,
+     * other code must record its edits in the scene command buffer, and OpenGL work
+     * must be queued with {@link #runOnRenderThread(Runnable)}.
+     * Components without {@link Component#onExtract(RenderSnapshot)} are rendered live:
+     * their onRender/onRenderUI run on the render thread while the update thread runs the
+     * next frame, so they must not read state written by the updates (the packaged
+     * components all extract their render state).
+     * @param threadedUpdate the threaded update is enabled
+     */
+    public void setThreadedUpdate(boolean threadedUpdate) {
+        if(this.threadedUpdate == threadedUpdate) return;
+        if(!threadedUpdate) this.waitUpdate();
+        if(threadedUpdate && this.updateExecutor == null) {
+            this.updateExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "olibe-update");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        this.threadedUpdate = threadedUpdate;
+    }
+
+    /**
+     * Run a task on the render thread, for OpenGL work requested from the update thread.
+     * The task runs before rendering the first snapshot extracted after it was queued
+     * (the next frame for tasks queued by the renderer loop while the update is threaded)
+     * @param task task to run
+     */
+    public void runOnRenderThread(Runnable task) {
+        this.renderThreadTasks.add(task);
+    }
+
+    /**
+     * Render the pipeline (last extracted snapshot)
      */
     public void render() {
+        if(!this.threadedUpdate) {
+            this.extractScene(this.snapshots[1 - this.frontSnapshot]);
+            this.collectRenderThreadTasks();
+            this.swapSnapshots();
+        }
+        long start = System.nanoTime();
+        this.runRenderThreadTasks();
+
+        this.uniformBlocks.setTime(this.timeData.time);
+        this.uniformBlocks.bind();
         this.updateRenderPasses();
         this.renderToScreen();
     
         this.unbindAllRenderPassTextures();
+        FrameStats.Get().recordRender(System.nanoTime() - start);
     }
 
     /**
@@ -180,6 +370,7 @@ public class Pipeline {
      */
     public void setCamera(Camera camera) {
         this.camera = camera;
+        Camera.makeActive(camera);
         // force camera to window size
         Vector2i winSize = this.window.getSize();
         this.camera.resize(winSize.x(), winSize.y());
@@ -189,9 +380,10 @@ public class Pipeline {
      * Update the world render passes
      */
     protected void updateRenderPasses() {
+        RenderSnapshot snapshot = this.snapshots[this.frontSnapshot];
         for (RenderPass rPass : this.renderPasses) {
             rPass.begin();
-            scene.render(rPass.getShader());
+            snapshot.render(rPass.getShader());
             rPass.end();
         }
 
@@ -236,7 +428,7 @@ public class Pipeline {
         screenQuad.draw(ShaderLibrary.Get().getShader("screen"));
 
         // ui
-        scene.renderUI();
+        this.snapshots[this.frontSnapshot].renderUI();
     }
 
     /** Unbind all textures */
@@ -263,8 +455,23 @@ public class Pipeline {
     public void updateCamera() {
         Vector2i size = this.window.getSize();
         this.camera.resize(size.x(), size.y());
-        ShaderLibrary.Get().setMat4("uView", this.camera.getViewMat());
-        ShaderLibrary.Get().setMat4("uProj", this.camera.getProjectionMat());
+        this.uniformBlocks.setCamera(this.camera);
+    }
+
+    /**
+     * Enable or disable frustum culling of the world render passes
+     * @param cullingEnabled frustum culling is enabled
+     */
+    public void setCullingEnabled(boolean cullingEnabled) {
+        this.cullingEnabled = cullingEnabled;
+    }
+
+    /**
+     * Returns the world render passes (for their culling statistics)
+     * @return the world render passes
+     */
+    public List<RenderPass> getRenderPasses() {
+        return renderPasses;
     }
 
     /**
@@ -279,7 +486,30 @@ public class Pipeline {
      * @param scene the scene to render
      */
     public void setScene(Scene scene) {
+        this.waitUpdate();
         this.scene = scene;
+        this.scene.getCommands().setDeleter(this.renderThreadExecutor);
+    }
+
+    /**
+     * Sets the world streamer, updated around the camera position each frame
+     * @param streamer world streamer (null for none)
+     */
+    public void setStreamer(WorldStreamer streamer) {
+        this.waitUpdate();
+        this.streamer = streamer;
+        if(streamer != null) {
+            streamer.setDeleter(this.renderThreadExecutor);
+            streamer.setUploader(this.renderThreadExecutor);
+        }
+    }
+
+    /**
+     * Returns the world streamer of this pipeline
+     * @return the world streamer of this pipeline (or null)
+     */
+    public WorldStreamer getStreamer() {
+        return streamer;
     }
     /**
      * Returns the active camera of this pipeline
@@ -297,6 +527,22 @@ public class Pipeline {
         return window;
     }
 
+    /**
+     * Returns the timers of this pipeline, run on the update thread before the scene update
+     * @return the timers of this pipeline
+     */
+    public TimerWheel getTimers() {
+        return timers;
+    }
+
+    /**
+     * Returns the frame and camera uniform blocks shared by all the shaders
+     * @return the shared uniform blocks
+     */
+    public UniformBlocks getUniformBlocks() {
+        return uniformBlocks;
+    }
+
     /**
      * Returns the time data of this pipeline
      * @return the time data of this pipeline
@@ -309,7 +555,15 @@ public class Pipeline {
      * Delete the pipeline
      */
     public void delete() {
+        this.waitUpdate();
+        this.collectRenderThreadTasks();
+        this.runRenderThreadTasks();
+        if(this.updateExecutor != null) this.updateExecutor.shutdown();
         ShaderLibrary.Get().destroyAll();
+        if(this.uniformBlocks != null) this.uniformBlocks.delete();
+        for(RenderSnapshot snapshot : this.snapshots) {
+            snapshot.delete();
+        }
         window.destroy();
     }
 }
@@ -1,6 +1,5 @@
 package olibe.core;
 
-import olibe.io.ShaderLibrary;
 import olibe.scene.*;
 
 public abstract class Renderer {
@@ -23,12 +22,10 @@ public abstract class Renderer {
     while(this.pipeline.isRunning()) {
       this.pipeline.beginFrame();
       { 
-        Time d = this.pipeline.getTimeData();
         this.pipeline.update();
 
         this.loop();
 
-        ShaderLibrary.Get().setUniform("uTime", d.time);
         this.pipeline.render();
       }
       this.pipeline.endFrame();
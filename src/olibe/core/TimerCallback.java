@@ -0,0 +1,56 @@
+package olibe.core;
+
+/**
+ * Timer callback (called when the timer expires, see {@link TimerWheel}).
+ * A timer is scheduled on a single wheel at a time and can be rescheduled once expired or cancelled.
+ */
+public abstract class TimerCallback implements Callback {
+    /** Wheel the timer is scheduled on (null if not pending) */
+    protected TimerWheel wheel;
+    /** Expiry tick */
+    protected long expiry;
+    /** Repeat period in ticks (0 for a one-shot timer) */
+    protected long period;
+    /** Slot of the timer in the wheel (-1 if not pending) */
+    protected int slot;
+    /** Previous timer in the slot */
+    protected TimerCallback prev;
+    /** Next timer in the slot */
+    protected TimerCallback next;
+
+    /**
+     * Create a TimerCallback
+     */
+    protected TimerCallback() {
+        this.slot = -1;
+    }
+
+    /**
+     * Called when the timer expires
+     */
+    public abstract void call();
+
+    /**
+     * Cancel the timer (does nothing if it is not pending)
+     */
+    public void cancel() {
+        TimerWheel current = this.wheel;
+        if(current != null) current.cancel(this);
+    }
+
+    /**
+     * Returns true if the timer is scheduled
+     * @return true if the timer is scheduled
+     */
+    public boolean isPending() {
+        return wheel != null;
+    }
+
+    /**
+     * Returns true if the timer repeats
+     * @return true if the timer repeats
+     */
+    public boolean isRepeating() {
+        return period > 0;
+    }
+}
@@ -0,0 +1,270 @@
+package olibe.core;
+
+/**
+ * Hierarchical timing wheel running timers on the frame time.
+ * Scheduling and cancelling are O(1) (timers are linked in the slot of their expiry),
+ * advancing the time only visits the slots of the elapsed ticks: pending timers
+ * cost nothing until they expire, far timers are moved down one level every
+ * {@code SLOTS^level} ticks.
+ * Delays are rounded up to the tick and clamped to 2^32 ticks (about 49 days with the default tick).
+ */
+public class TimerWheel {
+    /** Slots of each level (LEVELS * SLOTS, heads of the timer lists) */
+    protected TimerCallback[] slots;
+    /** Duration of a tick (in seconds) */
+    protected double tickDuration;
+    /** Current tick */
+    protected long now;
+    /** Elapsed time not converted in ticks yet (in seconds) */
+    protected double remainder;
+    /** Number of pending timers */
+    protected int size;
+    /** Number of timers expired during the last advance */
+    protected int expiredCount;
+
+    /** Number of bits of a level */
+    protected static final int BITS = 8;
+    /** Number of slots of a level */
+    protected static final int SLOTS = 1 << BITS;
+    /** Slot index mask */
+    protected static final int MASK = SLOTS - 1;
+    /** Number of levels */
+    protected static final int LEVELS = 4;
+    /** Max delay in ticks (further timers are clamped and re-evaluated when cascaded) */
+    protected static final long MAX_DELAY = (1L << (BITS * LEVELS)) - 1;
+    /** Default duration of a tick (in seconds) */
+    public static final double DEFAULT_TICK = 0.001;
+
+    /**
+     * Create a timing wheel with a 1ms tick
+     */
+    public TimerWheel() {
+        this(DEFAULT_TICK);
+    }
+
+    /**
+     * Create a timing wheel
+     * @param tickDuration duration of a tick (in seconds), resolution of the timers
+     */
+    public TimerWheel(double tickDuration) {
+        if(tickDuration <= 0.0) {
+            throw new IllegalArgumentException("[TimerWheel] tick duration must be positive: " + tickDuration);
+        }
+        this.tickDuration = tickDuration;
+        this.slots = new TimerCallback[LEVELS * SLOTS];
+        this.now = 0;
+        this.remainder = 0.0;
+        this.size = 0;
+    }
+
+    /**
+     * Schedule a one-shot timer (rescheduled if it is already pending)
+     * @param timer timer to schedule
+     * @param delay delay before the timer expires (in seconds)
+     * @return the timer
+     */
+    public TimerCallback schedule(TimerCallback timer, float delay) {
+        return this.schedule(timer, delay, 0f);
+    }
+
+    /**
+     * Schedule a repeating timer (rescheduled if it is already pending)
+     * @param timer timer to schedule
+     * @param delay delay before the timer first expires (in seconds)
+     * @param period delay between two expirations (in seconds)
+     * @return the timer
+     */
+    public synchronized TimerCallback scheduleRepeating(TimerCallback timer, float delay, float period) {
+        if(period <= 0f) {
+            throw new IllegalArgumentException("[TimerWheel] period must be positive: " + period);
+        }
+        return this.schedule(timer, delay, period);
+    }
+
+    /**
+     * Schedule a timer
+     * @param timer timer to schedule
+     * @param delay delay before the timer expires (in seconds)
+     * @param period delay between two expirations (in seconds, 0 for a one-shot timer)
+     * @return the timer
+     */
+    protected synchronized TimerCallback schedule(TimerCallback timer, float delay, float period) {
+        if(timer.wheel != null) timer.wheel.cancel(timer);
+        timer.wheel = this;
+        timer.period = (period > 0f) ? this.toTicks(period) : 0;
+        timer.expiry = this.now + this.toTicks(delay);
+        this.size++;
+        this.insert(timer);
+        return timer;
+    }
+
+    /**
+     * Cancel a pending timer
+     * @param timer timer to cancel
+     */
+    public synchronized void cancel(TimerCallback timer) {
+        if(timer.wheel != this) return;
+        this.unlink(timer);
+        timer.wheel = null;
+        this.size--;
+    }
+
+    /**
+     * Advance the time and run the expired timers
+     * @param delta elapsed time (in seconds)
+     * @return the number of expired timers
+     */
+    public synchronized int advance(float delta) {
+        this.expiredCount = 0;
+        this.remainder += delta;
+        long ticks = (long)(this.remainder / this.tickDuration);
+        this.remainder -= ticks * this.tickDuration;
+        for(long i = 0; i < ticks; ++i) {
+            this.tick();
+        }
+        return this.expiredCount;
+    }
+
+    /**
+     * Advance the time of a frame and run the expired timers
+     * @param time time data of the frame
+     * @return the number of expired timers
+     */
+    public int update(Time time) {
+        return this.advance(time.delta);
+    }
+
+    /**
+     * Returns the number of pending timers
+     * @return the number of pending timers
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the current time of the wheel (in seconds)
+     * @return the current time of the wheel
+     */
+    public synchronized double getTime() {
+        return this.now * this.tickDuration + this.remainder;
+    }
+
+    /**
+     * Convert a delay in ticks (at least one tick, clamped to the wheel range)
+     * @param seconds delay (in seconds)
+     * @return the delay in ticks
+     */
+    protected long toTicks(float seconds) {
+        long ticks = (long)Math.ceil(seconds / this.tickDuration);
+        return Math.max(1L, Math.min(MAX_DELAY, ticks));
+    }
+
+    /**
+     * Advance of one tick: move down the timers of the higher levels reaching their turn,
+     * then run the timers of the current slot
+     */
+    protected void tick() {
+        this.now++;
+        if((this.now & MASK) == 0) {
+            int level = 1;
+            while(level < LEVELS - 1 && ((this.now >>> (BITS * level)) & MASK) == 0) level++;
+            for(int l = level; l >= 1; --l) {
+                this.cascade(l, (int)((this.now >>> (BITS * l)) & MASK));
+            }
+        }
+
+        int slot = (int)(this.now & MASK);
+        TimerCallback timer = this.slots[slot];
+        if(timer == null) return;
+        // detach the list so timers scheduled by the callbacks go to later ticks
+        this.slots[slot] = null;
+        while(timer != null) {
+            TimerCallback next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            timer.slot = -1;
+            if(timer.expiry > this.now) {
+                this.insert(timer); // clamped far timer
+            } else {
+                this.expire(timer);
+            }
+            timer = next;
+        }
+    }
+
+    /**
+     * Run an expired timer (rescheduled first if repeating so its callback can cancel it)
+     * @param timer expired timer
+     */
+    protected void expire(TimerCallback timer) {
+        if(timer.period > 0) {
+            timer.expiry = this.now + timer.period;
+            this.insert(timer);
+        } else {
+            timer.wheel = null;
+            this.size--;
+        }
+        this.expiredCount++;
+        try {
+            timer.call();
+        } catch(RuntimeException e) {
+            Log.Get().error("[TimerWheel] timer failed: " + e);
+        }
+    }
+
+    /**
+     * Reinsert the timers of a slot of a higher level
+     * @param level level of the slot
+     * @param index index of the slot in its level
+     */
+    protected void cascade(int level, int index) {
+        int slot = level * SLOTS + index;
+        TimerCallback timer = this.slots[slot];
+        this.slots[slot] = null;
+        while(timer != null) {
+            TimerCallback next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            this.insert(timer);
+            timer = next;
+        }
+    }
+
+    /**
+     * Link a timer in the slot of its expiry
+     * @param timer timer to link
+     */
+    protected void insert(TimerCallback timer) {
+        long delay = timer.expiry - this.now;
+        long expiry = timer.expiry;
+        if(delay > MAX_DELAY) expiry = this.now + MAX_DELAY; // re-evaluated when cascaded
+        int level = 0;
+        while(level < LEVELS - 1 && delay >= (1L << (BITS * (level + 1)))) level++;
+        int slot = level * SLOTS + (int)((expiry >>> (BITS * level)) & MASK);
+
+        TimerCallback head = this.slots[slot];
+        timer.prev = null;
+        timer.next = head;
+        if(head != null) head.prev = timer;
+        this.slots[slot] = timer;
+        timer.slot = slot;
+    }
+
+    /**
+     * Unlink a timer from its slot
+     * @param timer timer to unlink
+     */
+    protected void unlink(TimerCallback timer) {
+        if(timer.slot < 0) return;
+        if(timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            this.slots[timer.slot] = timer.next;
+        }
+        if(timer.next != null) timer.next.prev = timer.prev;
+        timer.prev = null;
+        timer.next = null;
+        timer.slot = -1;
+    }
+}
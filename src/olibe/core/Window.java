@@ -6,6 +6,7 @@ import org.lwjgl.glfw.*;
 import org.lwjgl.opengl.*;
 
 import olibe.render.Color;
+import olibe.render.GLState;
 
 import java.util.*;
 
@@ -96,8 +97,7 @@ public class Window {
         glViewport(0, 0, this.size.x(), this.size.y());
         glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
 
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA); 
+        GLState.Get().setEnabled(GL_BLEND, true);
         glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA); 
 
         resizeCallbacks = new ArrayList<ResizeCallback>();
@@ -268,12 +268,12 @@ public class Window {
      */
     public void beginFrame(boolean clearDepth) {
         if(clearDepth) {
-            glEnable(GL_DEPTH_TEST);
-            glDisable(GL_BLEND);
+            GLState.Get().setEnabled(GL_DEPTH_TEST, true);
+            GLState.Get().setEnabled(GL_BLEND, false);
             glClear(GL_COLOR_BUFFER_BIT| GL_DEPTH_BUFFER_BIT | GL_STENCIL_BUFFER_BIT);
         } else {
-            glEnable(GL_BLEND);
-            glDisable(GL_DEPTH_TEST);
+            GLState.Get().setEnabled(GL_BLEND, true);
+            GLState.Get().setEnabled(GL_DEPTH_TEST, false);
             glClear(GL_COLOR_BUFFER_BIT | GL_STENCIL_BUFFER_BIT); // clear the framebuffer
         }
     }
@@ -0,0 +1,107 @@
+package olibe.ecs;
+
+import java.util.*;
+
+/**
+ * Packed storage of the components of one type (sparse set).
+ * Components are kept in a dense array, so iterating a pool does not
+ * depend on the number of entities that do not own this type.
+ * The dense array holds references: iterating it still loads each component
+ * object, use a {@link FloatComponentPool} for plain numeric data.
+ * @param <T> component type
+ */
+public class ComponentPool<T> extends SparseSet {
+    /** Component type */
+    protected final Class<T> type;
+    /** Dense components */
+    protected Object[] dense;
+
+    /**
+     * Create a component pool
+     * @param type component type
+     */
+    public ComponentPool(Class<T> type) {
+        this.type = type;
+        this.dense = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Add (or replace) the component of an entity
+     * @param entity entity
+     * @param component component
+     */
+    public void add(int entity, T component) {
+        int index = this.insert(entity);
+        this.dense[index] = component;
+    }
+
+    /**
+     * Remove the component of an entity (the last component takes its place)
+     * @param entity entity
+     * @return the removed component or null if the entity had none
+     */
+    public T remove(int entity) {
+        int index = this.indexOf(entity);
+        if(index == -1) return null;
+        T removed = this.get(index);
+        this.erase(entity);
+        return removed;
+    }
+
+    /**
+     * Returns the component of an entity
+     * @param entity entity
+     * @return the component of the entity or null if it has none
+     */
+    @SuppressWarnings("unchecked")
+    public T getOf(int entity) {
+        int index = this.indexOf(entity);
+        return (index == -1) ? null : (T)this.dense[index];
+    }
+
+    /**
+     * Returns the component at a dense index
+     * @param index dense index (0 to size-1)
+     * @return the component at this index
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T)this.dense[index];
+    }
+
+    /**
+     * Returns the component type of this pool
+     * @return the component type of this pool
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Grow the components array
+     * @param capacity new capacity
+     */
+    @Override
+    protected void grow(int capacity) {
+        this.dense = Arrays.copyOf(this.dense, capacity);
+    }
+
+    /**
+     * Move a component to another dense index
+     * @param from source dense index
+     * @param to destination dense index
+     */
+    @Override
+    protected void move(int from, int to) {
+        this.dense[to] = this.dense[from];
+    }
+
+    /**
+     * Release the reference to a removed component
+     * @param index dense index
+     */
+    @Override
+    protected void release(int index) {
+        this.dense[index] = null;
+    }
+}
@@ -0,0 +1,453 @@
+package olibe.ecs;
+
+import java.util.*;
+
+import olibe.scene.Component;
+import olibe.scene.RenderSnapshot;
+import olibe.scene.SceneNode;
+
+/**
+ * Data-oriented component storage.
+ * Entities are int handles packing a slot index ({@link #INDEX_BITS} low bits) and the
+ * generation of the slot, incremented each time the slot is destroyed, so handles of
+ * destroyed entities are rejected instead of aliasing the entity reusing their slot.
+ * Their components are stored in one packed {@link ComponentPool} per type. Pools whose type implements
+ * {@link Component} are updated, extracted and rendered by {@link #update(double)},
+ * {@link #extract(RenderSnapshot)}, {@link #render()} and {@link #renderUI()}, so existing components can
+ * be stored here too (see {@link EntityStoreComponent} to drive a store from a scene).
+ * Plain numeric data is better stored in named {@link FloatComponentPool}s, iterated
+ * as primitive columns instead of component objects.
+ */
+public class EntityStore {
+    /** Pools by component type */
+    protected Map<Class<?>, ComponentPool<?>> pools;
+    /** All the pools (for destroyEntity) */
+    protected List<ComponentPool<?>> poolList;
+    /** Float component pools by name */
+    protected Map<String, FloatComponentPool> floatPools;
+    /** All the float component pools (for destroyEntity) */
+    protected List<FloatComponentPool> floatPoolList;
+    /** Pools storing scene components */
+    protected List<ComponentPool<? extends Component>> componentPools;
+    /** Next never used slot */
+    protected int nextEntity;
+    /** Generation of each slot */
+    protected int[] generations;
+    /** The slot holds an alive entity */
+    protected boolean[] alive;
+    /** Destroyed slots that can be reused */
+    protected int[] freeEntities;
+    /** Number of reusable entities */
+    protected int freeCount;
+    /** Number of alive entities */
+    protected int aliveCount;
+
+    /** Number of bits of the slot index in an entity handle */
+    public static final int INDEX_BITS = 22;
+    /** Slot index mask of an entity handle */
+    public static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    /** Generation mask (after shifting, keeps the handles positive) */
+    protected static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+    /** Initial number of slots */
+    protected static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Function applied to each entity of a single type query
+     * @param <A> component type
+     */
+    public interface Each<A> {
+        /**
+         * Function applied to an entity
+         * @param entity entity
+         * @param a component of the entity
+         */
+        public void accept(int entity, A a);
+    }
+
+    /**
+     * Function applied to each entity of a two types query
+     * @param <A> first component type
+     * @param <B> second component type
+     */
+    public interface Each2<A, B> {
+        /**
+         * Function applied to an entity
+         * @param entity entity
+         * @param a first component of the entity
+         * @param b second component of the entity
+         */
+        public void accept(int entity, A a, B b);
+    }
+
+    /**
+     * Create an empty entity store
+     */
+    public EntityStore() {
+        this.pools = new HashMap<>();
+        this.poolList = new ArrayList<>();
+        this.componentPools = new ArrayList<>();
+        this.floatPools = new HashMap<>();
+        this.floatPoolList = new ArrayList<>();
+        this.nextEntity = 0;
+        this.generations = new int[INITIAL_CAPACITY];
+        this.alive = new boolean[INITIAL_CAPACITY];
+        this.freeEntities = new int[INITIAL_CAPACITY];
+        this.freeCount = 0;
+        this.aliveCount = 0;
+    }
+
+    /**
+     * Create an entity
+     * @return the created entity
+     * @throws IllegalStateException all the slots are used
+     */
+    public int createEntity() throws IllegalStateException {
+        int index;
+        if(this.freeCount > 0) {
+            index = this.freeEntities[--this.freeCount];
+        } else {
+            if(this.nextEntity > INDEX_MASK)
+                throw new IllegalStateException("Entity store is full [" + (INDEX_MASK + 1) + "]");
+            index = this.nextEntity++;
+            if(index == this.generations.length) {
+                this.generations = Arrays.copyOf(this.generations, index * 2);
+                this.alive = Arrays.copyOf(this.alive, index * 2);
+            }
+        }
+        this.alive[index] = true;
+        this.aliveCount++;
+        return (this.generations[index] << INDEX_BITS) | index;
+    }
+
+    /**
+     * Returns true if an entity handle refers to an alive entity (false for destroyed or stale handles)
+     * @param entity entity
+     * @return true if the entity is alive
+     */
+    public boolean isAlive(int entity) {
+        int index = entity & INDEX_MASK;
+        return entity >= 0 && index < this.nextEntity && this.alive[index]
+            && this.generations[index] == (entity >>> INDEX_BITS);
+    }
+
+    /**
+     * Returns the slot index of an entity handle
+     * @param entity entity
+     * @return the slot index of the entity
+     */
+    public static int indexOf(int entity) {
+        return entity & INDEX_MASK;
+    }
+
+    /**
+     * Check that an entity handle refers to an alive entity
+     * @param entity entity
+     * @throws IllegalArgumentException the entity is destroyed or the handle is stale
+     */
+    protected void checkAlive(int entity) throws IllegalArgumentException {
+        if(!this.isAlive(entity))
+            throw new IllegalArgumentException("Entity [" + entity + "] is not alive");
+    }
+
+    /**
+     * Create an entity bound to a scene node, the node is stored as a component of the entity
+     * @param node scene node
+     * @return the created entity
+     */
+    public int createEntity(SceneNode node) {
+        int entity = this.createEntity();
+        this.add(entity, SceneNode.class, node);
+        return entity;
+    }
+
+    /**
+     * Destroy an entity and remove all its components (scene components are deleted)
+     * @param entity entity to destroy
+     * @throws IllegalArgumentException the entity is already destroyed or the handle is stale
+     */
+    public void destroyEntity(int entity) throws IllegalArgumentException {
+        this.checkAlive(entity);
+        for(int i = 0; i < this.poolList.size(); ++i) {
+            Object removed = this.poolList.get(i).remove(entity);
+            if(removed instanceof Component) {
+                ((Component)removed).delete();
+            }
+        }
+        for(int i = 0; i < this.floatPoolList.size(); ++i) {
+            this.floatPoolList.get(i).remove(entity);
+        }
+        if(this.freeCount == this.freeEntities.length) {
+            this.freeEntities = Arrays.copyOf(this.freeEntities, this.freeCount * 2);
+        }
+        int index = entity & INDEX_MASK;
+        this.alive[index] = false;
+        this.generations[index] = (this.generations[index] + 1) & GENERATION_MASK;
+        this.freeEntities[this.freeCount++] = index;
+        this.aliveCount--;
+    }
+
+    /**
+     * Returns the pool of a component type (created if needed)
+     * @param <T> component type
+     * @param type component type
+     * @return the pool of this component type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ComponentPool<T> getPool(Class<T> type) {
+        ComponentPool<T> pool = (ComponentPool<T>)this.pools.get(type);
+        if(pool == null) {
+            pool = new ComponentPool<>(type);
+            this.pools.put(type, pool);
+            this.poolList.add(pool);
+            if(Component.class.isAssignableFrom(type)) {
+                this.componentPools.add((ComponentPool<? extends Component>)pool);
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the pool of a component type without creating it
+     * @param <T> component type
+     * @param type component type
+     * @return the pool of this component type (null if no component of this type was ever added)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ComponentPool<T> findPool(Class<T> type) {
+        return (ComponentPool<T>)this.pools.get(type);
+    }
+
+    /**
+     * Returns a float component pool (created if needed)
+     * @param name name of the pool
+     * @param fields number of float fields of its components
+     * @return the float component pool
+     * @throws IllegalArgumentException the pool exists with another number of fields
+     */
+    public FloatComponentPool getFloatPool(String name, int fields) throws IllegalArgumentException {
+        FloatComponentPool pool = this.floatPools.get(name);
+        if(pool == null) {
+            pool = new FloatComponentPool(name, fields);
+            this.floatPools.put(name, pool);
+            this.floatPoolList.add(pool);
+        } else if(pool.getFieldCount() != fields) {
+            throw new IllegalArgumentException("Float pool [" + name + "] has " + pool.getFieldCount() + " fields, not " + fields);
+        }
+        return pool;
+    }
+
+    /**
+     * Returns a float component pool without creating it
+     * @param name name of the pool
+     * @return the float component pool (null if it was never created)
+     */
+    public FloatComponentPool findFloatPool(String name) {
+        return this.floatPools.get(name);
+    }
+
+    /**
+     * Add a float component to an entity (fields set to 0, an existing component is kept)
+     * @param entity entity
+     * @param pool float component pool of this store
+     * @return the dense index of the component in the pool
+     * @throws IllegalArgumentException the entity is not alive
+     */
+    public int addFloat(int entity, FloatComponentPool pool) throws IllegalArgumentException {
+        this.checkAlive(entity);
+        return pool.add(entity);
+    }
+
+    /**
+     * Add a component to an entity
+     * @param <T> component type
+     * @param entity entity
+     * @param type component type (pool to store the component in)
+     * @param component component
+     * @return this
+     * @throws IllegalArgumentException the entity is not alive
+     */
+    public <T> EntityStore add(int entity, Class<T> type, T component) throws IllegalArgumentException {
+        this.checkAlive(entity);
+        this.getPool(type).add(entity, component);
+        return this;
+    }
+
+    /**
+     * Add a component to an entity, stored in the pool of its runtime class
+     * @param entity entity
+     * @param component component
+     * @return this
+     * @throws IllegalArgumentException the entity is not alive
+     */
+    @SuppressWarnings("unchecked")
+    public EntityStore add(int entity, Object component) throws IllegalArgumentException {
+        this.checkAlive(entity);
+        ((ComponentPool<Object>)this.getPool(component.getClass())).add(entity, component);
+        return this;
+    }
+
+    /**
+     * Returns the component of an entity
+     * @param <T> component type
+     * @param entity entity
+     * @param type component type
+     * @return the component or null if the entity has none (or is not alive)
+     */
+    public <T> T get(int entity, Class<T> type) {
+        ComponentPool<T> pool = this.findPool(type);
+        return (pool != null) ? pool.getOf(entity) : null;
+    }
+
+    /**
+     * Returns true if an entity has a component
+     * @param entity entity
+     * @param type component type
+     * @return true if the entity has a component of this type
+     */
+    public boolean has(int entity, Class<?> type) {
+        ComponentPool<?> pool = this.pools.get(type);
+        return pool != null && pool.has(entity);
+    }
+
+    /**
+     * Remove a component from an entity (scene components are not deleted)
+     * @param <T> component type
+     * @param entity entity
+     * @param type component type
+     * @return the removed component or null if the entity had none (or is not alive)
+     */
+    public <T> T remove(int entity, Class<T> type) {
+        ComponentPool<T> pool = this.findPool(type);
+        return (pool != null) ? pool.remove(entity) : null;
+    }
+
+    /**
+     * Apply a function on each entity having a component of a type
+     * @param <A> component type
+     * @param typeA component type
+     * @param function function to apply
+     */
+    public <A> void forEach(Class<A> typeA, Each<A> function) {
+        ComponentPool<A> pool = this.findPool(typeA);
+        if(pool == null) return;
+        for(int i = 0; i < pool.size(); ++i) {
+            function.accept(pool.getEntity(i), pool.get(i));
+        }
+    }
+
+    /**
+     * Apply a function on each entity having components of two types
+     * (iterates the smallest pool)
+     * @param <A> first component type
+     * @param <B> second component type
+     * @param typeA first component type
+     * @param typeB second component type
+     * @param function function to apply
+     */
+    public <A, B> void forEach(Class<A> typeA, Class<B> typeB, Each2<A, B> function) {
+        ComponentPool<A> poolA = this.findPool(typeA);
+        ComponentPool<B> poolB = this.findPool(typeB);
+        if(poolA == null || poolB == null) return;
+        if(poolA.size() <= poolB.size()) {
+            for(int i = 0; i < poolA.size(); ++i) {
+                int entity = poolA.getEntity(i);
+                if(!poolB.has(entity)) continue;
+                function.accept(entity, poolA.get(i), poolB.getOf(entity));
+            }
+        } else {
+            for(int i = 0; i < poolB.size(); ++i) {
+                int entity = poolB.getEntity(i);
+                if(!poolA.has(entity)) continue;
+                function.accept(entity, poolA.getOf(entity), poolB.get(i));
+            }
+        }
+    }
+
+    /**
+     * Update the stored scene components
+     * @param delta frame delta time (in seconds)
+     */
+    public void update(double delta) {
+        for(int p = 0; p < this.componentPools.size(); ++p) {
+            ComponentPool<? extends Component> pool = this.componentPools.get(p);
+            for(int i = 0; i < pool.size(); ++i) {
+                pool.get(i).onUpdate(delta);
+            }
+        }
+    }
+
+    /**
+     * Render the stored scene components (world)
+     */
+    public void render() {
+        for(int p = 0; p < this.componentPools.size(); ++p) {
+            ComponentPool<? extends Component> pool = this.componentPools.get(p);
+            for(int i = 0; i < pool.size(); ++i) {
+                pool.get(i).onRender();
+            }
+        }
+    }
+
+    /**
+     * Render the stored scene components (screen/ui)
+     */
+    public void renderUI() {
+        for(int p = 0; p < this.componentPools.size(); ++p) {
+            ComponentPool<? extends Component> pool = this.componentPools.get(p);
+            for(int i = 0; i < pool.size(); ++i) {
+                pool.get(i).onRenderUI();
+            }
+        }
+    }
+
+    /**
+     * Copy the render state of the stored scene components into a snapshot,
+     * the components without extraction are rendered live
+     * @param snapshot snapshot of the frame
+     */
+    public void extract(RenderSnapshot snapshot) {
+        for(int p = 0; p < this.componentPools.size(); ++p) {
+            ComponentPool<? extends Component> pool = this.componentPools.get(p);
+            for(int i = 0; i < pool.size(); ++i) {
+                Component component = pool.get(i);
+                if(component.onExtract(snapshot)) continue;
+                snapshot.addLive(component);
+                snapshot.addLiveUI(component);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of alive entities
+     * @return the number of alive entities
+     */
+    public int getEntityCount() {
+        return aliveCount;
+    }
+
+    /**
+     * Delete the stored scene components and remove every entity
+     */
+    public void delete() {
+        for(int p = 0; p < this.componentPools.size(); ++p) {
+            ComponentPool<? extends Component> pool = this.componentPools.get(p);
+            for(int i = 0; i < pool.size(); ++i) {
+                pool.get(i).delete();
+            }
+        }
+        for(ComponentPool<?> pool : this.poolList) {
+            pool.clear();
+        }
+        for(FloatComponentPool pool : this.floatPoolList) {
+            pool.clear();
+        }
+        // the slots are reused from 0, bump the alive ones so their handles become stale
+        for(int i = 0; i < this.nextEntity; ++i) {
+            if(this.alive[i]) this.generations[i] = (this.generations[i] + 1) & GENERATION_MASK;
+            this.alive[i] = false;
+        }
+        this.nextEntity = 0;
+        this.freeCount = 0;
+        this.aliveCount = 0;
+    }
+}
@@ -0,0 +1,54 @@
+package olibe.ecs;
+
+import olibe.scene.Component;
+import olibe.scene.RenderSnapshot;
+
+/**
+ * Component driving an entity store from a scene node
+ */
+public class EntityStoreComponent implements Component {
+    /** Entity store */
+    protected EntityStore store;
+
+    /**
+     * Create an entity store component
+     * @param store entity store to drive
+     */
+    public EntityStoreComponent(EntityStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void onUpdate(double delta) {
+        this.store.update(delta);
+    }
+
+    @Override
+    public void onRender() {
+        this.store.render();
+    }
+
+    @Override
+    public void onRenderUI() {
+        this.store.renderUI();
+    }
+
+    @Override
+    public boolean onExtract(RenderSnapshot snapshot) {
+        this.store.extract(snapshot);
+        return true;
+    }
+
+    @Override
+    public void delete() {
+        this.store.delete();
+    }
+
+    /**
+     * Returns the driven entity store
+     * @return the driven entity store
+     */
+    public EntityStore getStore() {
+        return store;
+    }
+}
@@ -0,0 +1,141 @@
+package olibe.ecs;
+
+import java.util.*;
+
+/**
+ * Packed storage of plain float components (sparse set).
+ * Each component is a fixed number of float fields, each field is stored in its own
+ * dense column (structure of arrays), so a system iterates primitive arrays in a
+ * unit-stride loop with no object load per entity. The columns are indexed like the
+ * entities ({@link #getEntity(int)}), a second pool is joined through {@link #indexOf(int)}.
+ */
+public class FloatComponentPool extends SparseSet {
+    /** Name of the pool */
+    protected final String name;
+    /** Dense columns, one per field */
+    protected float[][] columns;
+
+    /**
+     * Create a float component pool
+     * @param name name of the pool
+     * @param fields number of float fields of a component
+     * @throws IllegalArgumentException the number of fields is not positive
+     */
+    public FloatComponentPool(String name, int fields) throws IllegalArgumentException {
+        if(fields <= 0) throw new IllegalArgumentException("Invalid number of fields [" + fields + "]");
+        this.name = name;
+        this.columns = new float[fields][INITIAL_CAPACITY];
+    }
+
+    /**
+     * Add the component of an entity (fields set to 0), an existing component is kept
+     * @param entity entity
+     * @return the dense index of the component
+     */
+    public int add(int entity) {
+        boolean added = !this.has(entity);
+        int index = this.insert(entity);
+        if(added) {
+            for(float[] column : this.columns) column[index] = 0f;
+        }
+        return index;
+    }
+
+    /**
+     * Remove the component of an entity (the last component takes its place)
+     * @param entity entity
+     * @return true if the entity had a component
+     */
+    public boolean remove(int entity) {
+        return this.erase(entity);
+    }
+
+    /**
+     * Returns a field of the component of an entity
+     * @param entity entity
+     * @param field field index
+     * @return the value of the field
+     * @throws IllegalArgumentException the entity has no component in this pool
+     */
+    public float get(int entity, int field) throws IllegalArgumentException {
+        return this.columns[field][this.checkIndex(entity)];
+    }
+
+    /**
+     * Sets a field of the component of an entity
+     * @param entity entity
+     * @param field field index
+     * @param value value of the field
+     * @throws IllegalArgumentException the entity has no component in this pool
+     */
+    public void set(int entity, int field, float value) throws IllegalArgumentException {
+        this.columns[field][this.checkIndex(entity)] = value;
+    }
+
+    /**
+     * Returns the dense column of a field, valid until the pool grows
+     * (the first size() values are in use)
+     * @param field field index
+     * @return the column of the field
+     */
+    public float[] getColumn(int field) {
+        return this.columns[field];
+    }
+
+    /**
+     * Returns the number of float fields of a component
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return this.columns.length;
+    }
+
+    /**
+     * Returns the name of this pool
+     * @return the name of this pool
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the dense index of an entity component
+     * @param entity entity
+     * @return the dense index of the component
+     * @throws IllegalArgumentException the entity has no component in this pool
+     */
+    protected int checkIndex(int entity) throws IllegalArgumentException {
+        int index = this.indexOf(entity);
+        if(index == -1)
+            throw new IllegalArgumentException("Entity [" + entity + "] has no [" + this.name + "] component");
+        return index;
+    }
+
+    /**
+     * Grow the columns
+     * @param capacity new capacity
+     */
+    @Override
+    protected void grow(int capacity) {
+        for(int f = 0; f < this.columns.length; ++f) {
+            this.columns[f] = Arrays.copyOf(this.columns[f], capacity);
+        }
+    }
+
+    /**
+     * Move the fields of a component to another dense index
+     * @param from source dense index
+     * @param to destination dense index
+     */
+    @Override
+    protected void move(int from, int to) {
+        for(float[] column : this.columns) column[to] = column[from];
+    }
+
+    /**
+     * Nothing to release (no references)
+     * @param index dense index
+     */
+    @Override
+    protected void release(int index) {}
+}
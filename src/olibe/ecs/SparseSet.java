@@ -0,0 +1,156 @@
+package olibe.ecs;
+
+import java.util.*;
+
+/**
+ * Sparse set of entities, base of the packed pools.
+ * The entities are kept in a dense array, the sparse array maps the slot index of
+ * each entity (see {@link EntityStore#indexOf(int)}) to its dense index.
+ * Lookups compare the full handle so stale handles find nothing.
+ * Subclasses store their data at the same dense indices.
+ */
+public abstract class SparseSet {
+    /** Entity at each dense index */
+    protected int[] entities;
+    /** Dense index of each entity slot (-1 if the slot is not in the set) */
+    protected int[] sparse;
+    /** Number of entities in the set */
+    protected int size;
+
+    /** Initial capacity of the arrays */
+    protected static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Create an empty sparse set
+     */
+    protected SparseSet() {
+        this.entities = new int[INITIAL_CAPACITY];
+        this.sparse = new int[INITIAL_CAPACITY];
+        Arrays.fill(this.sparse, -1);
+        this.size = 0;
+    }
+
+    /**
+     * Insert an entity, a stale handle still owning its slot is replaced
+     * @param entity entity
+     * @return the dense index of the entity
+     */
+    protected int insert(int entity) {
+        int slot = EntityStore.indexOf(entity);
+        if(slot >= this.sparse.length) {
+            int oldLength = this.sparse.length;
+            this.sparse = Arrays.copyOf(this.sparse, Math.max(slot + 1, oldLength * 2));
+            Arrays.fill(this.sparse, oldLength, this.sparse.length, -1);
+        }
+        int index = this.sparse[slot];
+        if(index != -1) {
+            this.entities[index] = entity;
+            return index;
+        }
+        if(this.size == this.entities.length) {
+            this.entities = Arrays.copyOf(this.entities, this.size * 2);
+            this.grow(this.size * 2);
+        }
+        index = this.size++;
+        this.entities[index] = entity;
+        this.sparse[slot] = index;
+        return index;
+    }
+
+    /**
+     * Erase an entity (the last entity takes its place)
+     * @param entity entity
+     * @return true if the entity was in the set
+     */
+    protected boolean erase(int entity) {
+        int index = this.indexOf(entity);
+        if(index == -1) return false;
+        int last = this.size - 1;
+        if(index != last) {
+            this.move(last, index);
+            this.entities[index] = this.entities[last];
+            this.sparse[EntityStore.indexOf(this.entities[index])] = index;
+        }
+        this.release(last);
+        this.sparse[EntityStore.indexOf(entity)] = -1;
+        this.size = last;
+        return true;
+    }
+
+    /**
+     * Returns the dense index of an entity
+     * @param entity entity
+     * @return the dense index of the entity (-1 if it is not in the set)
+     */
+    public int indexOf(int entity) {
+        int slot = EntityStore.indexOf(entity);
+        if(entity < 0 || slot >= this.sparse.length) return -1;
+        int index = this.sparse[slot];
+        return (index != -1 && this.entities[index] == entity) ? index : -1;
+    }
+
+    /**
+     * Returns true if an entity is in this set
+     * @param entity entity
+     * @return true if the entity is in this set
+     */
+    public boolean has(int entity) {
+        return this.indexOf(entity) != -1;
+    }
+
+    /**
+     * Returns the entity at a dense index
+     * @param index dense index (0 to size-1)
+     * @return the entity at this index
+     */
+    public int getEntity(int index) {
+        return this.entities[index];
+    }
+
+    /**
+     * Returns the number of entities in this set
+     * @return the number of entities in this set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove the entity of a handle (and its data)
+     * @param entity entity
+     * @return true if the entity was in the set
+     */
+    public boolean removeEntity(int entity) {
+        return this.erase(entity);
+    }
+
+    /**
+     * Remove all the entities
+     */
+    public void clear() {
+        for(int i = 0; i < this.size; ++i) {
+            this.sparse[EntityStore.indexOf(this.entities[i])] = -1;
+            this.release(i);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Grow the data arrays
+     * @param capacity new capacity
+     */
+    protected abstract void grow(int capacity);
+
+    /**
+     * Move the data of a dense index to another one
+     * @param from source dense index
+     * @param to destination dense index
+     */
+    protected abstract void move(int from, int to);
+
+    /**
+     * Release the data of a dense index that is no longer used
+     * @param index dense index
+     */
+    protected abstract void release(int index);
+}
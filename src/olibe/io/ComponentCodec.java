@@ -0,0 +1,29 @@
+package olibe.io;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import olibe.scene.Component;
+
+/**
+ * Binary codec of a component type (see {@link SceneSerializer})
+ * @param <T> component type
+ */
+public interface ComponentCodec<T extends Component> {
+    /**
+     * Write a component
+     * @param component component to write
+     * @param out output
+     * @throws IOException failed to write the component
+     */
+    public void write(T component, DataOutput out) throws IOException;
+
+    /**
+     * Read a component, the buffer is positioned on its data and limited to it
+     * @param in input (big endian)
+     * @return the read component
+     * @throws IOException failed to read the component
+     */
+    public T read(ByteBuffer in) throws IOException;
+}
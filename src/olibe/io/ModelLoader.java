@@ -88,8 +88,10 @@ public class ModelLoader {
         
         List<Float> vertices = new ArrayList<Float>(aiMesh.mNumVertices() * (3 + 3 + 2));
         int vertexCount = 0;
+        BoundingBox bounds = new BoundingBox();
         while(aiVertices.remaining() > 0) {
             AIVector3D vertex = aiVertices.get();
+            bounds.union(vertex.x(), vertex.y(), vertex.z());
             vertices.add(vertex.x());
             vertices.add(vertex.y());
             vertices.add(vertex.z());
@@ -115,6 +117,7 @@ public class ModelLoader {
 
         Mesh m = new Mesh(vbo, ebo, attribs);
         m.setMaterial(materials[aiMesh.mMaterialIndex()]);
+        m.setBounds(bounds);
         return m;
     } 
 
@@ -0,0 +1,385 @@
+package olibe.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import org.joml.Vector3f;
+
+import olibe.core.Log;
+import olibe.render.BoundingBox;
+import olibe.scene.*;
+
+/**
+ * Binary scene format.
+ * <pre>
+ * int    magic ('OLSC'), short version, short flags (0)
+ * int    string count, strings (int byte length + UTF-8 bytes)
+ * int    scene name (string index, -1 for a null name)
+ * int    component type count, type names (string index)
+ * int    node count, nodes in DFS pre-order:
+ *          int name (string index, -1 for a null name), int parent (lower node index, -1 for the first node, the root)
+ *          byte flags (active, has bounds)
+ *          9 floats position, euler rotations, scale
+ *          [6 floats bounds min, max]
+ *          short component count, components:
+ *            short type index, int byte length, data (see {@link ComponentCodec})
+ * </pre>
+ * Loading reads a memory-mapped file directly, components of unregistered
+ * types are skipped.
+ */
+public class SceneSerializer {
+    /** Codecs by component class */
+    protected Map<Class<?>, Registration> codecsByClass;
+    /** Codecs by type name */
+    protected Map<String, Registration> codecsByName;
+
+    /** File magic ('OLSC') */
+    public static final int MAGIC = 0x4F4C5343;
+    /** Current format version */
+    public static final short VERSION = 1;
+
+    /** Node flag: the node is active */
+    protected static final byte FLAG_ACTIVE = 1;
+    /** Node flag: the node has bounds */
+    protected static final byte FLAG_BOUNDS = 2;
+
+    /**
+     * Registered component type
+     */
+    protected static class Registration {
+        /** Type name (stored in files) */
+        protected final String name;
+        /** Codec */
+        protected final ComponentCodec<Component> codec;
+
+        /**
+         * Create a registration
+         * @param name type name
+         * @param codec codec
+         */
+        protected Registration(String name, ComponentCodec<Component> codec) {
+            this.name = name;
+            this.codec = codec;
+        }
+    }
+
+    /**
+     * Create a serializer without registered component types
+     */
+    public SceneSerializer() {
+        this.codecsByClass = new HashMap<>();
+        this.codecsByName = new HashMap<>();
+    }
+
+    /**
+     * Register a component type
+     * @param <T> component type
+     * @param type component class
+     * @param name type name stored in the files (must stay the same between versions)
+     * @param codec codec of the component type
+     * @throws IllegalArgumentException the name is null or already registered
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Component> void register(Class<T> type, String name, ComponentCodec<T> codec) {
+        if(name == null) throw new IllegalArgumentException("Component type name can't be null");
+        if(this.codecsByName.containsKey(name)) {
+            throw new IllegalArgumentException("Component type [" + name + "] is already registered");
+        }
+        Registration registration = new Registration(name, (ComponentCodec<Component>)codec);
+        this.codecsByClass.put(type, registration);
+        this.codecsByName.put(name, registration);
+    }
+
+    /**
+     * Save a scene (components of unregistered types are not saved)
+     * @param scene scene to save
+     * @param filepath path to the file
+     * @throws IOException failed to write the file
+     */
+    public void save(Scene scene, String filepath)
+    throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filepath), 1 << 16))) {
+            this.write(scene, out);
+        }
+    }
+
+    /**
+     * Write a scene
+     * @param scene scene to write
+     * @param out output
+     * @throws IOException failed to write the scene
+     */
+    public void write(Scene scene, DataOutputStream out)
+    throws IOException {
+        // flatten the tree (DFS pre-order) and collect the strings and types
+        final List<SceneNode> nodes = new ArrayList<>();
+        final List<Integer> parents = new ArrayList<>();
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        final Map<Registration, Integer> types = new LinkedHashMap<>();
+        intern(strings, scene.getName());
+
+        Deque<SceneNode> stack = new ArrayDeque<>();
+        Deque<Integer> stackParents = new ArrayDeque<>();
+        stack.push(scene.getNode(""));
+        stackParents.push(-1);
+        while(!stack.isEmpty()) {
+            SceneNode node = stack.pop();
+            int index = nodes.size();
+            nodes.add(node);
+            parents.add(stackParents.pop());
+            intern(strings, node.getName());
+            for(Component component : node.getComponents()) {
+                Registration registration = this.codecsByClass.get(component.getClass());
+                if(registration != null && !types.containsKey(registration)) {
+                    types.put(registration, types.size());
+                    intern(strings, registration.name);
+                }
+            }
+            List<SceneNode> children = node.getChildren();
+            for(int i = children.size() - 1; i >= 0; --i) {
+                stack.push(children.get(i));
+                stackParents.push(index);
+            }
+        }
+
+        // header
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+
+        // string table
+        out.writeInt(strings.size());
+        for(String s : strings.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(stringIndex(strings, scene.getName()));
+
+        // component types
+        out.writeInt(types.size());
+        for(Registration registration : types.keySet()) {
+            out.writeInt(strings.get(registration.name));
+        }
+
+        // nodes
+        ByteArrayOutputStream componentBytes = new ByteArrayOutputStream();
+        DataOutputStream componentOut = new DataOutputStream(componentBytes);
+        out.writeInt(nodes.size());
+        for(int n = 0; n < nodes.size(); ++n) {
+            SceneNode node = nodes.get(n);
+            Transform transform = node.getTransform();
+            BoundingBox bounds = node.getBounds();
+            out.writeInt(stringIndex(strings, node.getName()));
+            out.writeInt(parents.get(n));
+            out.writeByte((node.isActive() ? FLAG_ACTIVE : 0) | (bounds != null ? FLAG_BOUNDS : 0));
+            writeVector(out, transform.getPosition());
+            writeVector(out, transform.getEulerRotations());
+            writeVector(out, transform.getScale());
+            if(bounds != null) {
+                writeVector(out, bounds.min);
+                writeVector(out, bounds.max);
+            }
+
+            int componentCount = 0;
+            for(Component component : node.getComponents()) {
+                if(this.codecsByClass.containsKey(component.getClass())) componentCount++;
+            }
+            out.writeShort(componentCount);
+            for(Component component : node.getComponents()) {
+                Registration registration = this.codecsByClass.get(component.getClass());
+                if(registration == null) continue;
+                componentBytes.reset();
+                registration.codec.write(component, componentOut);
+                componentOut.flush();
+                out.writeShort(types.get(registration));
+                out.writeInt(componentBytes.size());
+                componentBytes.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Load a scene from a file (memory mapped)
+     * @param filepath path to the file
+     * @return the loaded scene
+     * @throws IOException failed to read the file or invalid file
+     */
+    public Scene load(String filepath)
+    throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return this.read(buffer);
+        }
+    }
+
+    /**
+     * Read a scene
+     * @param in input, positioned on the scene header
+     * @return the read scene
+     * @throws IOException invalid scene data
+     */
+    public Scene read(ByteBuffer in)
+    throws IOException {
+        try {
+            if(in.getInt() != MAGIC) throw new IOException("Not a scene file");
+            short version = in.getShort();
+            if(version != VERSION) throw new IOException("Unsupported scene version " + version);
+            in.getShort(); // flags
+
+            // string table
+            String[] strings = new String[readLength(in)];
+            for(int i = 0; i < strings.length; ++i) {
+                int length = readLength(in);
+                ByteBuffer bytes = in.slice();
+                bytes.limit(length);
+                strings[i] = StandardCharsets.UTF_8.decode(bytes).toString();
+                in.position(in.position() + length);
+            }
+            Scene scene = new Scene(readString(in, strings));
+
+            // component types
+            Registration[] types = new Registration[readLength(in)];
+            for(int i = 0; i < types.length; ++i) {
+                String name = readString(in, strings);
+                types[i] = this.codecsByName.get(name);
+                if(types[i] == null) {
+                    Log.Get().log("[SCENE] Unknown component type [" + name + "] skipped");
+                }
+            }
+
+            // nodes
+            int nodeCount = readLength(in);
+            SceneNode[] nodes = new SceneNode[nodeCount];
+            for(int n = 0; n < nodeCount; ++n) {
+                String name = readString(in, strings);
+                int parent = in.getInt();
+                // nodes are in pre-order: the root first, each parent before its children
+                if((n == 0) ? parent != -1 : (parent < 0 || parent >= n)) {
+                    throw new IOException("Invalid parent " + parent + " of node " + n);
+                }
+                byte flags = in.get();
+                SceneNode node;
+                if(parent < 0) {
+                    node = scene.getNode("");
+                } else {
+                    node = new SceneNode(name);
+                    nodes[parent].addChild(node);
+                }
+                nodes[n] = node;
+                if((flags & FLAG_ACTIVE) == 0) node.setActive(false);
+
+                readTransform(in, node.getTransform());
+                if((flags & FLAG_BOUNDS) != 0) {
+                    node.setBounds(new BoundingBox(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat()));
+                }
+
+                int componentCount = in.getShort();
+                for(int c = 0; c < componentCount; ++c) {
+                    Registration registration = types[in.getShort()];
+                    int length = readLength(in);
+                    int end = in.position() + length;
+                    if(registration != null) {
+                        ByteBuffer data = in.slice();
+                        data.limit(length);
+                        node.addComponent(registration.codec.read(data));
+                    }
+                    in.position(end);
+                }
+            }
+            return scene;
+        } catch(java.nio.BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or corrupted scene data", e);
+        }
+    }
+
+    /**
+     * Returns the index of a string in a string table (added if needed, null strings are not stored)
+     * @param strings string table
+     * @param s string (or null)
+     * @return the index of the string (-1 for null)
+     */
+    private static int intern(Map<String, Integer> strings, String s) {
+        if(s == null) return -1;
+        Integer index = strings.get(s);
+        if(index == null) {
+            index = strings.size();
+            strings.put(s, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of an interned string
+     * @param strings string table
+     * @param s string (or null)
+     * @return the index of the string (-1 for null)
+     */
+    private static int stringIndex(Map<String, Integer> strings, String s) {
+        return (s == null) ? -1 : strings.get(s);
+    }
+
+    /**
+     * Read a string index and returns its string
+     * @param in input
+     * @param strings string table
+     * @return the string (null for index -1)
+     * @throws IOException invalid string index
+     */
+    private static String readString(ByteBuffer in, String[] strings)
+    throws IOException {
+        int index = in.getInt();
+        if(index == -1) return null;
+        if(index < 0 || index >= strings.length) throw new IOException("Invalid string index " + index);
+        return strings[index];
+    }
+
+    /**
+     * Read a length or a count, it can't exceed the remaining bytes
+     * @param in input
+     * @return the length
+     * @throws IOException invalid length
+     */
+    private static int readLength(ByteBuffer in)
+    throws IOException {
+        int length = in.getInt();
+        if(length < 0 || length > in.remaining()) throw new IOException("Invalid length " + length);
+        return length;
+    }
+
+    /**
+     * Write a vector
+     * @param out output
+     * @param v vector
+     * @throws IOException failed to write
+     */
+    private static void writeVector(DataOutput out, Vector3f v)
+    throws IOException {
+        out.writeFloat(v.x);
+        out.writeFloat(v.y);
+        out.writeFloat(v.z);
+    }
+
+    /**
+     * Read the position, euler rotations and scale of a transform into it.
+     * The rotation and the scale are only set when they are not the identity,
+     * so the transform keeps them unallocated (see {@link Transform})
+     * @param in input
+     * @param transform transform to set
+     */
+    private static void readTransform(ByteBuffer in, Transform transform) {
+        transform.getPosition().set(in.getFloat(), in.getFloat(), in.getFloat());
+        float x = in.getFloat(), y = in.getFloat(), z = in.getFloat();
+        if(x != 0f || y != 0f || z != 0f) transform.getEulerRotations().set(x, y, z);
+        x = in.getFloat();
+        y = in.getFloat();
+        z = in.getFloat();
+        if(x != 1f || y != 1f || z != 1f) transform.getScale().set(x, y, z);
+        transform.markDirty();
+    }
+}
@@ -10,6 +10,7 @@ import org.joml.Vector2f;
 import olibe.core.Log;
 import olibe.exception.LWJGLException;
 import olibe.render.Shader;
+import olibe.render.UniformHandle;
 
 /**
  * Shader Library
@@ -43,8 +44,16 @@ public class ShaderLibrary {
             String vertShaderPath = assetsDir+vertexShaderName+".vert";
             String fragShaderPath = assetsDir+fragShaderName+".frag";
             // scene shader
-            Shader shader = new Shader(getContent(vertShaderPath), getContent(fragShaderPath));
+            String fragCode = getContent(fragShaderPath);
+            Shader shader = new Shader(getContent(vertShaderPath), fragCode);
             ShaderLibrary.Get().registerShader(fragShaderName, shader);
+            // instanced variant (optional, see Shader#setInstancedVariant)
+            Path instancedPath = Path.of(assetsDir+vertexShaderName+"Instanced.vert");
+            if(Files.exists(instancedPath)) {
+                Shader variant = new Shader(getContent(instancedPath.toString()), fragCode);
+                ShaderLibrary.Get().registerShader(fragShaderName+"Instanced", variant);
+                shader.setInstancedVariant(variant);
+            }
             return shader;
         } catch (LWJGLException e) { 
             Log.Get().error(e.getMessage()); 
@@ -111,8 +120,17 @@ public class ShaderLibrary {
      * @param value value of the uniform
      */
     public void setMat4(String name, Matrix4f value) {
+        this.setMat4(UniformHandle.Get(name), value);
+    }
+
+    /**
+     * Set the uniform for all registered shaders 
+     * @param handle handle of the uniform
+     * @param value value of the uniform
+     */
+    public void setMat4(UniformHandle handle, Matrix4f value) {
         for(Shader shader : this.shaders.values()) {
-            shader.setUniform(name, value);
+            shader.setUniform(handle, value);
         }
     }
 
@@ -122,8 +140,17 @@ public class ShaderLibrary {
      * @param value value of the uniform
      */
     public void setUniform(String name, int value) {
+        this.setUniform(UniformHandle.Get(name), value);
+    }
+
+    /**
+     * Set the uniform for all registered shaders 
+     * @param handle handle of the uniform
+     * @param value value of the uniform
+     */
+    public void setUniform(UniformHandle handle, int value) {
         for(Shader shader : this.shaders.values()) {
-            shader.setUniform(name, value);
+            shader.setUniform(handle, value);
         }
     }
 
@@ -133,8 +160,17 @@ public class ShaderLibrary {
      * @param value value of the uniform
      */
     public void setUniform(String name, float value) {
+        this.setUniform(UniformHandle.Get(name), value);
+    }
+
+    /**
+     * Set the uniform for all registered shaders 
+     * @param handle handle of the uniform
+     * @param value value of the uniform
+     */
+    public void setUniform(UniformHandle handle, float value) {
         for(Shader shader : this.shaders.values()) {
-            shader.setUniform(name, value);
+            shader.setUniform(handle, value);
         }
     }
     
@@ -144,8 +180,17 @@ public class ShaderLibrary {
      * @param value value of the uniform
      */
     public void setUniform(String name, Vector2f value) {
+        this.setUniform(UniformHandle.Get(name), value);
+    }
+
+    /**
+     * Set the uniform for all registered shaders 
+     * @param handle handle of the uniform
+     * @param value value of the uniform
+     */
+    public void setUniform(UniformHandle handle, Vector2f value) {
         for(Shader shader : this.shaders.values()) {
-            shader.setUniform(name, value);
+            shader.setUniform(handle, value);
         }
     }
 
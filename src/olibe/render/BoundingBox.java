@@ -0,0 +1,121 @@
+package olibe.render;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+/**
+ * Axis aligned bounding box
+ */
+public class BoundingBox {
+    /** Min corner */
+    public final Vector3f min;
+    /** Max corner */
+    public final Vector3f max;
+
+    /**
+     * Create an empty bounding box (contains nothing, grows with union)
+     */
+    public BoundingBox() {
+        this.min = new Vector3f();
+        this.max = new Vector3f();
+        this.empty();
+    }
+
+    /**
+     * Create a bounding box
+     * @param minX min x
+     * @param minY min y
+     * @param minZ min z
+     * @param maxX max x
+     * @param maxY max y
+     * @param maxZ max z
+     */
+    public BoundingBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        this.min = new Vector3f(minX, minY, minZ);
+        this.max = new Vector3f(maxX, maxY, maxZ);
+    }
+
+    /**
+     * Make this bounding box empty
+     * @return this
+     */
+    public BoundingBox empty() {
+        this.min.set(Float.POSITIVE_INFINITY);
+        this.max.set(Float.NEGATIVE_INFINITY);
+        return this;
+    }
+
+    /**
+     * Returns true if this bounding box contains nothing
+     * @return true if this bounding box contains nothing
+     */
+    public boolean isEmpty() {
+        return this.min.x > this.max.x || this.min.y > this.max.y || this.min.z > this.max.z;
+    }
+
+    /**
+     * Copy another bounding box
+     * @param other bounding box to copy
+     * @return this
+     */
+    public BoundingBox set(BoundingBox other) {
+        this.min.set(other.min);
+        this.max.set(other.max);
+        return this;
+    }
+
+    /**
+     * Grow this bounding box to contain a point
+     * @param x point x
+     * @param y point y
+     * @param z point z
+     * @return this
+     */
+    public BoundingBox union(float x, float y, float z) {
+        this.min.set(Math.min(this.min.x, x), Math.min(this.min.y, y), Math.min(this.min.z, z));
+        this.max.set(Math.max(this.max.x, x), Math.max(this.max.y, y), Math.max(this.max.z, z));
+        return this;
+    }
+
+    /**
+     * Grow this bounding box to contain another one
+     * @param other other bounding box
+     * @return this
+     */
+    public BoundingBox union(BoundingBox other) {
+        this.min.min(other.min);
+        this.max.max(other.max);
+        return this;
+    }
+
+    /**
+     * Returns true if this bounding box overlaps another one
+     * @param other other bounding box
+     * @return true if this bounding box overlaps another one
+     */
+    public boolean intersects(BoundingBox other) {
+        return this.min.x <= other.max.x && this.max.x >= other.min.x
+            && this.min.y <= other.max.y && this.max.y >= other.min.y
+            && this.min.z <= other.max.z && this.max.z >= other.min.z;
+    }
+
+    /**
+     * Transform this bounding box and store the bounding box of the result
+     * @param matrix transform matrix
+     * @param dest destination bounding box
+     * @return dest
+     */
+    public BoundingBox transform(Matrix4f matrix, BoundingBox dest) {
+        matrix.transformAab(this.min.x, this.min.y, this.min.z, this.max.x, this.max.y, this.max.z, dest.min, dest.max);
+        return dest;
+    }
+
+    /**
+     * Returns the string representation of this bounding box
+     * @return the string representation of this bounding box
+     */
+    @Override
+    public String toString() {
+        return "BoundingBox[min="+this.min+",max="+this.max+"]";
+    }
+}
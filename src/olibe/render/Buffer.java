@@ -13,6 +13,7 @@ import static org.lwjgl.system.MemoryStack.*;
 
 /**
  * Abstract OpenGL buffer Object
+ * (created with direct state access, its data is edited without binding it)
  */
 public abstract class Buffer extends OpenGLObject {
     /** OpenGL buffer type */
@@ -27,7 +28,7 @@ public abstract class Buffer extends OpenGLObject {
         try(MemoryStack stack = stackPush()) {
 			IntBuffer bufferID = stack.mallocInt(1); // int*
 
-            glGenBuffers(bufferID);
+            glCreateBuffers(bufferID);
             this.renderID = bufferID.get(0);
             if(this.renderID == 0) {
                 throw new LWJGLException("Unable to generate buffer");
@@ -40,14 +41,14 @@ public abstract class Buffer extends OpenGLObject {
      * Bind this buffer
      */
     public void bind() {
-        glBindBuffer(this.bufferType, this.renderID);
+        GLState.Get().bindBuffer(this.bufferType, this.renderID);
     }
 
     /**
      * Unbind this buffer
      */
     public void unbind() {
-        glBindBuffer(this.bufferType, 0);
+        GLState.Get().bindBuffer(this.bufferType, 0);
     }
 
     /**
@@ -55,8 +56,8 @@ public abstract class Buffer extends OpenGLObject {
      */
     public void delete() {
         if(this.renderID != 0) {
-            this.unbind();
             glDeleteBuffers(this.renderID);
+            GLState.Get().forgetBuffer(this.renderID);
             this.renderID = 0;
         }
     }
@@ -20,6 +20,8 @@ public abstract class Camera {
     protected final static float NEAR_PLANE = .01f;
     /** Far plane distance */
     protected final static float FAR_PLANE = 1000f;
+    /** Active camera */
+    protected static Camera activeCamera;
 
     /**
      * Create a camera
@@ -106,4 +108,20 @@ public abstract class Camera {
      * @param delta frame delta time (in seconds)
      */
     public void update(float delta) {}
-}
\ No newline at end of file
+
+    /**
+     * Make a camera the active camera
+     * @param camera camera to make active
+     */
+    public static void makeActive(Camera camera) {
+        activeCamera = camera;
+    }
+
+    /**
+     * Returns the currently active camera
+     * @return the currently active camera
+     */
+    public static Camera GetActive() {
+        return activeCamera;
+    }
+}
@@ -1,6 +1,7 @@
 package olibe.render;
 
 import org.joml.Vector2i;
+import org.joml.Vector4f;
 
 import olibe.core.Window;
 
@@ -17,5 +18,21 @@ public class Camera2D extends Camera {
 
         viewMatrix.setTranslation(this.position);
     }
+
+    /**
+     * Returns the world area visible by this camera
+     * @param dest destination (minX, minY, maxX, maxY)
+     * @return dest
+     */
+    public Vector4f getVisibleArea(Vector4f dest) {
+        Vector2i winSize = Window.Get().getSize();
+        float halfWidth  = winSize.x() * .5f;
+        float halfHeight = winSize.y() * .5f;
+        // the view translates the world by the camera position
+        return dest.set(
+            -halfWidth  - this.position.x, -halfHeight - this.position.y,
+             halfWidth  - this.position.x,  halfHeight - this.position.y
+        );
+    }
     
 }
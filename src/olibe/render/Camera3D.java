@@ -37,6 +37,19 @@ public class Camera3D extends Camera {
     }
 
 
+    /**
+     * Returns the vertical field of view
+     * @return the vertical field of view (degrees)
+     */
+    public float getFov() {
+        return fov;
+    }
+
+    @Override
+    public Vector3f getPosition() {
+        return position;
+    }
+
     /**
      * Set the camera target position
      * @param targetPosition target position
@@ -18,8 +18,8 @@ public class ColorMaterial extends Material {
     
     @Override
     public void setUniforms(Shader shader) {
-        shader.setUniform("cmaterial.color", color);
-        shader.setUniform("activeMaterial", 1);
+        shader.setUniform(Uniforms.MATERIAL_COLOR, color);
+        shader.setUniform(Uniforms.ACTIVE_MATERIAL, 1);
     }
 
     @Override
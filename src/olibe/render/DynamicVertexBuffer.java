@@ -46,9 +46,7 @@ public class DynamicVertexBuffer extends VertexBuffer {
             return;
         }
 
-        this.bind();
-        glBufferSubData(GL_ARRAY_BUFFER, currentVertexIndex * vertexDataSize, data);
-        this.unbind();
+        glNamedBufferSubData(this.renderID, currentVertexIndex * vertexDataSize, data);
         this.currentVertexIndex += vertexCount;
     }
 
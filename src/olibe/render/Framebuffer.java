@@ -182,14 +182,14 @@ public class Framebuffer extends OpenGLObject {
      * Bind this framebuffer
      */
     public void bind() {
-        glBindFramebuffer(GL_FRAMEBUFFER, this.renderID);
+        GLState.Get().bindFramebuffer(this.renderID);
     }
 
     /**
      * Unind this framebuffer
      */
     public void unbind() {
-        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        GLState.Get().bindFramebuffer(0);
     }
 
     /**
@@ -215,6 +215,7 @@ public class Framebuffer extends OpenGLObject {
         }
         this.rbAttachments.clear();
         glDeleteFramebuffers(this.renderID);
+        GLState.Get().forgetFramebuffer(this.renderID);
     }
 
     @Override
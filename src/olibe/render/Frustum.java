@@ -0,0 +1,114 @@
+package olibe.render;
+
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+
+/**
+ * View frustum (6 planes) extracted from a camera view/projection matrices
+ */
+public class Frustum {
+    /** Planes (nx, ny, nz, d per plane, normals point inside) */
+    protected float[] planes;
+    /** View projection matrix */
+    protected Matrix4f viewProj;
+    /** Plane extraction temp */
+    protected Vector4f plane;
+
+    /** Number of planes */
+    protected static final int PLANE_COUNT = 6;
+    /** The Vector API kernel can be used */
+    protected static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /**
+     * Create a frustum (call update before testing)
+     */
+    public Frustum() {
+        this.planes = new float[PLANE_COUNT * 4];
+        this.viewProj = new Matrix4f();
+        this.plane = new Vector4f();
+    }
+
+    /**
+     * Extract the planes from a camera
+     * @param camera camera
+     */
+    public void update(Camera camera) {
+        this.update(camera.getProjectionMat(), camera.getViewMat());
+    }
+
+    /**
+     * Extract the planes from projection and view matrices
+     * @param proj projection matrix
+     * @param view view matrix
+     */
+    public void update(Matrix4f proj, Matrix4f view) {
+        proj.mul(view, this.viewProj);
+        for(int i = 0; i < PLANE_COUNT; ++i) {
+            this.viewProj.frustumPlane(i, this.plane); // normalized
+            this.planes[i*4]   = this.plane.x;
+            this.planes[i*4+1] = this.plane.y;
+            this.planes[i*4+2] = this.plane.z;
+            this.planes[i*4+3] = this.plane.w;
+        }
+    }
+
+    /**
+     * Test a bounding box against the frustum
+     * @param box bounding box (world space)
+     * @return true if the box is (at least partially) inside the frustum
+     */
+    public boolean test(BoundingBox box) {
+        for(int p = 0; p < PLANE_COUNT; ++p) {
+            float nx = this.planes[p*4], ny = this.planes[p*4+1], nz = this.planes[p*4+2], d = this.planes[p*4+3];
+            float x = (nx >= 0f) ? box.max.x : box.min.x;
+            float y = (ny >= 0f) ? box.max.y : box.min.y;
+            float z = (nz >= 0f) ? box.max.z : box.min.z;
+            if(nx * x + ny * y + nz * z + d < 0f) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Test bounding boxes stored as contiguous arrays against the frustum.
+     * When the jdk.incubator.vector module is available, the boxes are tested with
+     * the Vector API (see {@link FrustumKernel}), the remaining ones with the scalar loop.
+     * @param minX min x of each box
+     * @param minY min y of each box
+     * @param minZ min z of each box
+     * @param maxX max x of each box
+     * @param maxY max y of each box
+     * @param maxZ max z of each box
+     * @param count number of boxes
+     * @param visible visibility of each box, boxes outside the frustum are set to false
+     */
+    public void test(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int count, boolean[] visible) {
+        int done = VECTOR_API ? FrustumKernel.test(this.planes, PLANE_COUNT, minX, minY, minZ, maxX, maxY, maxZ, count, visible) : 0;
+        this.test(minX, minY, minZ, maxX, maxY, maxZ, done, count, visible);
+    }
+
+    /**
+     * Test a range of bounding boxes stored as contiguous arrays against the frustum.
+     * Each plane is tested on every box in a branch-free loop (the nearest
+     * corner arrays are selected once per plane), so the JIT can vectorize it.
+     * @param minX min x of each box
+     * @param minY min y of each box
+     * @param minZ min z of each box
+     * @param maxX max x of each box
+     * @param maxY max y of each box
+     * @param maxZ max z of each box
+     * @param from first box
+     * @param to end box (exclusive)
+     * @param visible visibility of each box, boxes outside the frustum are set to false
+     */
+    protected void test(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int from, int to, boolean[] visible) {
+        for(int p = 0; p < PLANE_COUNT; ++p) {
+            float nx = this.planes[p*4], ny = this.planes[p*4+1], nz = this.planes[p*4+2], d = this.planes[p*4+3];
+            float[] xs = (nx >= 0f) ? maxX : minX;
+            float[] ys = (ny >= 0f) ? maxY : minY;
+            float[] zs = (nz >= 0f) ? maxZ : minZ;
+            for(int i = from; i < to; ++i) {
+                visible[i] &= nx * xs[i] + ny * ys[i] + nz * zs[i] + d >= 0f;
+            }
+        }
+    }
+}
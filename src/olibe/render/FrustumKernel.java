@@ -0,0 +1,55 @@
+package olibe.render;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernel of {@link Frustum}.
+ * Only loaded when the jdk.incubator.vector module is present
+ * (run with --add-modules jdk.incubator.vector), the frustum falls back to its scalar loop otherwise.
+ */
+public final class FrustumKernel {
+    /** Vector shape used by the kernel */
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * Not instantiable
+     */
+    private FrustumKernel() {}
+
+    /**
+     * Test bounding boxes against frustum planes, a whole number of vectors at a time.
+     * The 6 planes are tested on a vector of boxes before moving to the next one
+     * @param planes planes (nx, ny, nz, d per plane, normals point inside)
+     * @param planeCount number of planes
+     * @param minX min x of each box
+     * @param minY min y of each box
+     * @param minZ min z of each box
+     * @param maxX max x of each box
+     * @param maxY max y of each box
+     * @param maxZ max z of each box
+     * @param count number of boxes
+     * @param visible visibility of each box, boxes outside the frustum are set to false
+     * @return number of tested boxes (the remaining ones are left to the scalar loop)
+     */
+    public static int test(float[] planes, int planeCount, float[] minX, float[] minY, float[] minZ,
+            float[] maxX, float[] maxY, float[] maxZ, int count, boolean[] visible) {
+        int bound = SPECIES.loopBound(count);
+        for(int i = 0; i < bound; i += SPECIES.length()) {
+            VectorMask<Float> inside = VectorMask.fromArray(SPECIES, visible, i);
+            for(int p = 0; p < planeCount; ++p) {
+                float nx = planes[p*4], ny = planes[p*4+1], nz = planes[p*4+2], d = planes[p*4+3];
+                // nearest corner along the plane normal
+                FloatVector x = FloatVector.fromArray(SPECIES, (nx >= 0f) ? maxX : minX, i);
+                FloatVector y = FloatVector.fromArray(SPECIES, (ny >= 0f) ? maxY : minY, i);
+                FloatVector z = FloatVector.fromArray(SPECIES, (nz >= 0f) ? maxZ : minZ, i);
+                FloatVector distance = x.mul(nx).add(y.mul(ny)).add(z.mul(nz)).add(d);
+                inside = inside.and(distance.compare(VectorOperators.GE, 0f));
+            }
+            inside.intoArray(visible, i);
+        }
+        return bound;
+    }
+}
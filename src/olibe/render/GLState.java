@@ -0,0 +1,297 @@
+package olibe.render;
+
+import java.util.Arrays;
+
+import olibe.core.FrameStats;
+
+import static org.lwjgl.opengl.GL46.*;
+
+/**
+ * Cache of the OpenGL binding and capability state (render thread only).
+ * Every wrapper of this package binds through it so a state already set is never
+ * submitted again; the issued and elided changes are counted in {@link FrameStats}.
+ * Bindings are not restored after use, each user binds what it needs.
+ * The cached state starts unknown, call {@link #invalidate()} if OpenGL is used behind its back.
+ */
+public class GLState {
+    /** Current program */
+    protected int program;
+    /** Current vertex array */
+    protected int vertexArray;
+    /** Current framebuffer */
+    protected int framebuffer;
+    /** Current render buffer */
+    protected int renderbuffer;
+    /** Current active texture unit */
+    protected int activeUnit;
+    /** Texture bound on each unit */
+    protected int[] textures;
+    /** Buffer bound on each target (see {@link #bufferSlot(int)}) */
+    protected int[] buffers;
+    /** Buffer bound on each indexed binding point of each target (see {@link #bufferSlot(int)}) */
+    protected int[][] indexedBuffers;
+    /** State of each tracked capability (see {@link #capabilitySlot(int)}): 1 enabled, 0 disabled, -1 unknown */
+    protected int[] capabilities;
+    /** Frame statistics */
+    protected FrameStats stats;
+    /** Unique GL State instance (Singleton) */
+    protected static GLState instance = null;
+
+    /** Unknown binding */
+    protected static final int UNKNOWN = -1;
+    /** Number of tracked texture units */
+    protected static final int TEXTURE_UNITS = 32;
+    /** Number of tracked indexed binding points per target */
+    protected static final int INDEXED_BINDINGS = 16;
+    /** Tracked buffer targets */
+    protected static final int[] BUFFER_TARGETS = {
+        GL_ARRAY_BUFFER, GL_ELEMENT_ARRAY_BUFFER, GL_UNIFORM_BUFFER, GL_SHADER_STORAGE_BUFFER
+    };
+    /** Tracked capabilities */
+    protected static final int[] CAPABILITIES = { GL_BLEND, GL_DEPTH_TEST, GL_CULL_FACE, GL_STENCIL_TEST };
+
+    /**
+     * Returns the current GLState instance
+     * @return the current GLState instance
+     */
+    public static GLState Get() {
+        if(instance == null) instance = new GLState();
+        return instance;
+    }
+
+    /**
+     * Create an unknown state
+     */
+    private GLState() {
+        this.textures = new int[TEXTURE_UNITS];
+        this.buffers = new int[BUFFER_TARGETS.length];
+        this.indexedBuffers = new int[BUFFER_TARGETS.length][INDEXED_BINDINGS];
+        this.capabilities = new int[CAPABILITIES.length];
+        this.stats = FrameStats.Get();
+        this.invalidate();
+    }
+
+    /**
+     * Forget the cached state (the next changes are all issued)
+     */
+    public void invalidate() {
+        this.program = UNKNOWN;
+        this.vertexArray = UNKNOWN;
+        this.framebuffer = UNKNOWN;
+        this.renderbuffer = UNKNOWN;
+        this.activeUnit = UNKNOWN;
+        Arrays.fill(this.textures, UNKNOWN);
+        Arrays.fill(this.buffers, UNKNOWN);
+        for(int[] bindings : this.indexedBuffers) {
+            Arrays.fill(bindings, UNKNOWN);
+        }
+        Arrays.fill(this.capabilities, UNKNOWN);
+    }
+
+    /**
+     * Use a program
+     * @param program program to use (0 for none)
+     */
+    public void useProgram(int program) {
+        if(this.program == program) { this.stats.addStateChange(false); return; }
+        glUseProgram(program);
+        this.program = program;
+        this.stats.addStateChange(true);
+    }
+
+    /**
+     * Bind a vertex array (the element buffer binding belongs to the vertex array)
+     * @param vertexArray vertex array to bind (0 for none)
+     */
+    public void bindVertexArray(int vertexArray) {
+        if(this.vertexArray == vertexArray) { this.stats.addStateChange(false); return; }
+        glBindVertexArray(vertexArray);
+        this.vertexArray = vertexArray;
+        this.buffers[this.bufferSlot(GL_ELEMENT_ARRAY_BUFFER)] = UNKNOWN;
+        this.stats.addStateChange(true);
+    }
+
+    /**
+     * Bind a buffer
+     * @param target buffer target
+     * @param buffer buffer to bind (0 for none)
+     */
+    public void bindBuffer(int target, int buffer) {
+        int slot = this.bufferSlot(target);
+        if(slot >= 0 && this.buffers[slot] == buffer) { this.stats.addStateChange(false); return; }
+        glBindBuffer(target, buffer);
+        if(slot >= 0) this.buffers[slot] = buffer;
+        this.stats.addStateChange(true);
+    }
+
+    /**
+     * Bind a buffer to an indexed binding point (also binds it to the target)
+     * @param target buffer target
+     * @param index binding point
+     * @param buffer buffer to bind
+     */
+    public void bindBufferBase(int target, int index, int buffer) {
+        int slot = this.bufferSlot(target);
+        boolean tracked = slot >= 0 && index < INDEXED_BINDINGS;
+        if(tracked && this.indexedBuffers[slot][index] == buffer) { this.stats.addStateChange(false); return; }
+        glBindBufferBase(target, index, buffer);
+        if(tracked) this.indexedBuffers[slot][index] = buffer;
+        if(slot >= 0) this.buffers[slot] = buffer;
+        this.stats.addStateChange(true);
+    }
+
+    /**
+     * Bind a texture to a texture unit
+     * @param unit texture unit
+     * @param target texture target
+     * @param texture texture to bind (0 for none)
+     */
+    public void bindTexture(int unit, int target, int texture) {
+        boolean tracked = unit < TEXTURE_UNITS;
+        if(tracked && this.textures[unit] == texture) { this.stats.addStateChange(false); return; }
+        if(this.activeUnit != unit) {
+            glActiveTexture(GL_TEXTURE0 + unit);
+            this.activeUnit = unit;
+            this.stats.addStateChange(true);
+        }
+        glBindTexture(target, texture);
+        if(tracked) this.textures[unit] = texture;
+        this.stats.addStateChange(true);
+    }
+
+    /**
+     * Bind a framebuffer
+     * @param framebuffer framebuffer to bind (0 for the default framebuffer)
+     */
+    public void bindFramebuffer(int framebuffer) {
+        if(this.framebuffer == framebuffer) { this.stats.addStateChange(false); return; }
+        glBindFramebuffer(GL_FRAMEBUFFER, framebuffer);
+        this.framebuffer = framebuffer;
+        this.stats.addStateChange(true);
+    }
+
+    /**
+     * Bind a render buffer
+     * @param renderbuffer render buffer to bind (0 for none)
+     */
+    public void bindRenderbuffer(int renderbuffer) {
+        if(this.renderbuffer == renderbuffer) { this.stats.addStateChange(false); return; }
+        glBindRenderbuffer(GL_RENDERBUFFER, renderbuffer);
+        this.renderbuffer = renderbuffer;
+        this.stats.addStateChange(true);
+    }
+
+    /**
+     * Enable or disable a capability
+     * @param capability capability (GL_BLEND, GL_DEPTH_TEST...)
+     * @param enabled the capability is enabled
+     */
+    public void setEnabled(int capability, boolean enabled) {
+        int slot = this.capabilitySlot(capability);
+        int state = enabled ? 1 : 0;
+        if(slot >= 0 && this.capabilities[slot] == state) { this.stats.addStateChange(false); return; }
+        if(enabled) glEnable(capability);
+        else glDisable(capability);
+        if(slot >= 0) this.capabilities[slot] = state;
+        this.stats.addStateChange(true);
+    }
+
+    /**
+     * Forget a deleted program (its id may be reused)
+     * @param program deleted program
+     */
+    public void forgetProgram(int program) {
+        if(this.program == program) this.program = UNKNOWN;
+    }
+
+    /**
+     * Forget a deleted vertex array (its id may be reused)
+     * @param vertexArray deleted vertex array
+     */
+    public void forgetVertexArray(int vertexArray) {
+        if(this.vertexArray != vertexArray) return;
+        // deleting the bound vertex array reverts the binding to 0
+        this.vertexArray = 0;
+        this.buffers[this.bufferSlot(GL_ELEMENT_ARRAY_BUFFER)] = UNKNOWN;
+    }
+
+    /**
+     * Forget a deleted buffer (its id may be reused)
+     * @param buffer deleted buffer
+     */
+    public void forgetBuffer(int buffer) {
+        for(int slot = 0; slot < BUFFER_TARGETS.length; ++slot) {
+            if(this.buffers[slot] == buffer) this.buffers[slot] = UNKNOWN;
+            int[] bindings = this.indexedBuffers[slot];
+            for(int i = 0; i < INDEXED_BINDINGS; ++i) {
+                if(bindings[i] == buffer) bindings[i] = UNKNOWN;
+            }
+        }
+    }
+
+    /**
+     * Forget a deleted texture (its id may be reused)
+     * @param texture deleted texture
+     */
+    public void forgetTexture(int texture) {
+        for(int unit = 0; unit < TEXTURE_UNITS; ++unit) {
+            if(this.textures[unit] == texture) this.textures[unit] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Forget a deleted framebuffer (its id may be reused)
+     * @param framebuffer deleted framebuffer
+     */
+    public void forgetFramebuffer(int framebuffer) {
+        if(this.framebuffer == framebuffer) this.framebuffer = UNKNOWN;
+    }
+
+    /**
+     * Forget a deleted render buffer (its id may be reused)
+     * @param renderbuffer deleted render buffer
+     */
+    public void forgetRenderbuffer(int renderbuffer) {
+        if(this.renderbuffer == renderbuffer) this.renderbuffer = UNKNOWN;
+    }
+
+    /**
+     * Returns the current program
+     * @return the current program (-1 if unknown)
+     */
+    public int getProgram() {
+        return program;
+    }
+
+    /**
+     * Returns the current vertex array
+     * @return the current vertex array (-1 if unknown)
+     */
+    public int getVertexArray() {
+        return vertexArray;
+    }
+
+    /**
+     * Returns the slot of a tracked buffer target
+     * @param target buffer target
+     * @return the slot of the target (-1 if not tracked)
+     */
+    protected int bufferSlot(int target) {
+        for(int i = 0; i < BUFFER_TARGETS.length; ++i) {
+            if(BUFFER_TARGETS[i] == target) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of a tracked capability
+     * @param capability capability
+     * @return the slot of the capability (-1 if not tracked)
+     */
+    protected int capabilitySlot(int capability) {
+        for(int i = 0; i < CAPABILITIES.length; ++i) {
+            if(CAPABILITIES[i] == capability) return i;
+        }
+        return -1;
+    }
+}
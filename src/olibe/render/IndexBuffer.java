@@ -21,9 +21,7 @@ public class IndexBuffer extends Buffer {
     public IndexBuffer(int[] indices) throws LWJGLException {
         super(GL_ELEMENT_ARRAY_BUFFER);
         this.indexCount = indices.length;
-        this.bind();
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
-        this.unbind();
+        glNamedBufferData(this.renderID, indices, GL_STATIC_DRAW);
     }
 
     
@@ -36,9 +34,7 @@ public class IndexBuffer extends Buffer {
     public IndexBuffer(List<Integer> indices, int indexCount) throws LWJGLException {
         super(GL_ELEMENT_ARRAY_BUFFER);
         this.indexCount = indexCount;
-        this.bind();
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, asIntArray(indices), GL_STATIC_DRAW);
-        this.unbind();
+        glNamedBufferData(this.renderID, asIntArray(indices), GL_STATIC_DRAW);
     }
 
     /**
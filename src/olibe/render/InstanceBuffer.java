@@ -0,0 +1,53 @@
+package olibe.render;
+
+import olibe.exception.*;
+
+import java.nio.*;
+
+import static org.lwjgl.opengl.GL46.*;
+
+/**
+ * OpenGL per-instance vertex buffer wrapper class.
+ * Holds one model matrix (16 floats, column major) per instance, read by the
+ * instanced vertex shaders at the attribute locations {@link #MODEL_LOCATION} to
+ * {@link #MODEL_LOCATION} + 3 (see {@link Mesh#drawInstanced(Shader, Material, InstanceBuffer, int, int)}).
+ */
+public class InstanceBuffer extends Buffer {
+    /** Size of the buffer store (in bytes) */
+    protected long size;
+
+    /** First attribute location of the instance model matrix (one per column) */
+    public static final int MODEL_LOCATION = 3;
+    /** Vertex buffer binding index of the instance buffer (kept away from the mesh bindings) */
+    public static final int BINDING = 15;
+    /** Size of an instance (in bytes) */
+    public static final int STRIDE = 16 * Float.BYTES;
+
+    /**
+     * Create an empty instance buffer
+     * @throws LWJGLException error while creating the buffer
+     */
+    public InstanceBuffer() throws LWJGLException {
+        super(GL_ARRAY_BUFFER);
+        this.size = 0;
+    }
+
+    /**
+     * Upload the instance matrices (the store is orphaned each upload, the previous draws are not waited for)
+     * @param data instance matrices (from its position to its limit, 16 floats per instance)
+     */
+    public void setData(FloatBuffer data) {
+        long dataSize = (long)data.remaining() * Float.BYTES;
+        if(dataSize > this.size) this.size = dataSize;
+        glNamedBufferData(this.renderID, this.size, GL_STREAM_DRAW);
+        glNamedBufferSubData(this.renderID, 0, data);
+    }
+
+    /**
+     * Returns the size of the buffer store (in bytes)
+     * @return the size of the buffer store (in bytes)
+     */
+    public long getSize() {
+        return size;
+    }
+}
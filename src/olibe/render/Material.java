@@ -1,14 +1,30 @@
 package olibe.render;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Material class
  */
 public abstract class Material {
+    /** Sort id of this material (see {@link RenderQueue}) */
+    protected final int sortId;
+    /** Next sort id */
+    protected static final AtomicInteger nextSortId = new AtomicInteger(1);
 
     /**
      * Create a Material
      */
-    public Material() {}
+    public Material() {
+        this.sortId = nextSortId.getAndIncrement();
+    }
+
+    /**
+     * Returns the sort id of this material, unique per material (0 is kept for no material)
+     * @return the sort id of this material
+     */
+    public int getSortId() {
+        return sortId;
+    }
 
     /**
      * Set the materials uniform 
@@ -1,5 +1,6 @@
 package olibe.render;
 
+import olibe.core.FrameStats;
 import olibe.core.Log;
 import olibe.exception.*;
 
@@ -24,6 +25,12 @@ public class Mesh {
     protected IndexBuffer ebo;
     /** Material */
     protected Material material;
+    /** Bounds of the vertices (local space) */
+    protected BoundingBox bounds;
+    /** Number of vertex attributes */
+    protected int attributeCount;
+    /** Instance buffer attached to the vertex array (0 if none) */
+    protected int instanceBufferID;
 
     /**
      * Create a mesh from a Vertex buffer and index buffer
@@ -52,15 +59,18 @@ public class Mesh {
         
         Log.Get().debug("Create vertex array [id="+vertexArrayID+"]");
 
-        glBindVertexArray(vertexArrayID);
+        GLState.Get().bindVertexArray(vertexArrayID);
         this.vbo.bind();
         if(this.ebo != null) this.ebo.bind();
         
         // set layout
         bindAttributes(attributes);	
-        glBindVertexArray(0);
+        GLState.Get().bindVertexArray(0);
 
         material = null;
+        bounds = new BoundingBox();
+        attributeCount = attributes.length;
+        instanceBufferID = 0;
     }
 
     /**
@@ -83,6 +93,30 @@ public class Mesh {
         this.material = material;
     }
 
+    /**
+     * Returns the material
+     * @return the material (null if none)
+     */
+    public Material getMaterial() {
+        return material;
+    }
+
+    /**
+     * Change the bounds of the vertices
+     * @param bounds new bounds (local space)
+     */
+    public void setBounds(BoundingBox bounds) {
+        this.bounds = bounds;
+    }
+
+    /**
+     * Returns the bounds of the vertices (local space)
+     * @return the bounds of the vertices (local space)
+     */
+    public BoundingBox getBounds() {
+        return bounds;
+    }
+
     /**
      * Bind the mesh attributes to the vertex array
      * @param attributes mesh attributes to bind
@@ -108,23 +142,91 @@ public class Mesh {
      * @param shader shader to use
      */
     public void draw(Shader shader) {
+        this.draw(shader, this.material);
+    }
+
+    /**
+     * Draw this mesh with another material (the mesh material is not changed)
+     * @param shader shader to use
+     * @param material material to use (null for none)
+     */
+    public void draw(Shader shader, Material material) {
         shader.bind();
 
         if(material != null) {
             material.setUniforms(shader);
         }
 
-        glBindVertexArray(vertexArrayID);
-        // this.vbo.bind();
+        // the program and vertex array stay bound (see GLState), the next draw of the same mesh binds nothing
+        GLState.Get().bindVertexArray(vertexArrayID);
         if(this.ebo != null) {
-            // this.ebo.bind();
             glDrawElements(GL_TRIANGLES, this.ebo.getIndexCount(), GL_UNSIGNED_INT, 0);
         } else {
             glDrawArrays(GL_TRIANGLES, 0, this.vbo.getVertexCount());
         }
-        glBindVertexArray(0);
+        FrameStats.Get().addDrawCall();
+    }
+
+    /**
+     * Returns true if this mesh can be drawn instanced (its attributes leave
+     * the instance matrix locations free, see {@link InstanceBuffer#MODEL_LOCATION})
+     * @return true if this mesh can be drawn instanced
+     */
+    public boolean supportsInstancing() {
+        return this.attributeCount <= InstanceBuffer.MODEL_LOCATION;
+    }
+
+    /**
+     * Draw instances of this mesh in one call, each with its model matrix read from an instance buffer
+     * @param shader instanced shader to use (model matrix at {@link InstanceBuffer#MODEL_LOCATION})
+     * @param material material to use (null for none)
+     * @param instances instance buffer
+     * @param first first instance in the instance buffer
+     * @param count number of instances
+     */
+    public void drawInstanced(Shader shader, Material material, InstanceBuffer instances, int first, int count) {
+        if(!this.supportsInstancing())
+            throw new IllegalStateException("Mesh attributes overlap the instance attributes.");
+        shader.bind();
+
+        if(material != null) {
+            material.setUniforms(shader);
+        }
 
-        shader.unbind();
+        if(this.instanceBufferID != instances.getRenderID()) this.attachInstances(instances);
+        GLState.Get().bindVertexArray(vertexArrayID);
+        if(this.ebo != null) {
+            glDrawElementsInstancedBaseInstance(GL_TRIANGLES, this.ebo.getIndexCount(), GL_UNSIGNED_INT, 0, count, first);
+        } else {
+            glDrawArraysInstancedBaseInstance(GL_TRIANGLES, 0, this.vbo.getVertexCount(), count, first);
+        }
+        FrameStats.Get().addDrawCall();
+    }
+
+    /**
+     * Attach an instance buffer to the vertex array: the 4 columns of the
+     * instance model matrix, advancing once per instance
+     * @param instances instance buffer
+     */
+    protected void attachInstances(InstanceBuffer instances) {
+        glVertexArrayVertexBuffer(vertexArrayID, InstanceBuffer.BINDING, instances.getRenderID(), 0, InstanceBuffer.STRIDE);
+        glVertexArrayBindingDivisor(vertexArrayID, InstanceBuffer.BINDING, 1);
+        for(int column = 0; column < 4; ++column) {
+            int location = InstanceBuffer.MODEL_LOCATION + column;
+            glEnableVertexArrayAttrib(vertexArrayID, location);
+            glVertexArrayAttribFormat(vertexArrayID, location, 4, GL_FLOAT, false, column * 4 * Float.BYTES);
+            glVertexArrayAttribBinding(vertexArrayID, location, InstanceBuffer.BINDING);
+        }
+        this.instanceBufferID = instances.getRenderID();
+    }
+
+    /**
+     * Returns the number of triangles drawn by this mesh
+     * @return the number of triangles drawn by this mesh
+     */
+    public int getTriangleCount() {
+        if(this.ebo != null) return this.ebo.getIndexCount() / 3;
+        return this.vbo.getVertexCount() / 3;
     }
 
     /**
@@ -151,8 +253,8 @@ public class Mesh {
 
 
         if(this.vertexArrayID != 0) {
-            glBindVertexArray(0);
             glDeleteVertexArrays(this.vertexArrayID);
+            GLState.Get().forgetVertexArray(this.vertexArrayID);
             this.vertexArrayID = 0;
         }
     }
@@ -195,7 +297,9 @@ public class Mesh {
             MeshAttributeType.FLOAT3,
             MeshAttributeType.FLOAT2
         };
-        return new Mesh(quadVbo, attribs);
+        Mesh quad = new Mesh(quadVbo, attribs);
+        quad.setBounds(new BoundingBox(-halfX, -halfY, 0f, halfX, halfY, 0f));
+        return quad;
     }
 
     /**
@@ -45,23 +45,123 @@ public class Model {
             .translation(this.position);
     }
 
+    /**
+     * Returns the model matrix of this model
+     * @return the model matrix of this model
+     */
+    public Matrix4f getModelMatrix() {
+        return model;
+    }
+
     /**
      * Draw this model using a shader
      * @param shader shader to use
      */
     public void draw(Shader shader) {
+        this.draw(shader, this.model);
+    }
+
+    /**
+     * Draw this model using a shader and a model matrix (instead of its own)
+     * @param shader shader to use
+     * @param modelMatrix model matrix
+     */
+    public void draw(Shader shader, Matrix4f modelMatrix) {
+        this.draw(shader, modelMatrix, null);
+    }
+
+    /**
+     * Draw this model using a shader, a model matrix and a material override
+     * @param shader shader to use
+     * @param modelMatrix model matrix
+     * @param material material used for all the meshes instead of their own (null to keep them)
+     */
+    public void draw(Shader shader, Matrix4f modelMatrix, Material material) {
+        if(textures != null) {
+            for(int i = 0; i < this.textures.length; ++i) {
+                shader.setUniform(Uniforms.texture(i), i);
+                this.textures[i].bind(i);
+            }
+        }
+
+        shader.setUniform(Uniforms.MODEL, modelMatrix);
+        for(int i = 0; i < this.meshes.length; ++i) {
+            if(material != null) this.meshes[i].draw(shader, material);
+            else this.meshes[i].draw(shader);
+        }
+    }
+
+    /**
+     * Draw instances of this model in one call per mesh
+     * @param shader instanced shader to use (see {@link Shader#getInstancedVariant()})
+     * @param material material used for all the meshes instead of their own (null to keep them)
+     * @param instances instance buffer holding the model matrices
+     * @param first first instance in the instance buffer
+     * @param count number of instances
+     */
+    public void drawInstanced(Shader shader, Material material, InstanceBuffer instances, int first, int count) {
         if(textures != null) {
             for(int i = 0; i < this.textures.length; ++i) {
-                shader.setUniform("uTex"+i, i);
+                shader.setUniform(Uniforms.texture(i), i);
                 this.textures[i].bind(i);
             }
         }
 
-        shader.setUniform("uModel", this.model);
         for(int i = 0; i < this.meshes.length; ++i) {
-            this.meshes[i].draw(shader);
+            Material meshMaterial = material != null ? material : this.meshes[i].getMaterial();
+            this.meshes[i].drawInstanced(shader, meshMaterial, instances, first, count);
         }
     }
 
-    
+    /**
+     * Returns true if all the meshes of this model can be drawn instanced
+     * @return true if all the meshes of this model can be drawn instanced
+     */
+    public boolean supportsInstancing() {
+        for(int i = 0; i < this.meshes.length; ++i) {
+            if(!this.meshes[i].supportsInstancing()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the meshes of this model
+     * @return the meshes of this model
+     */
+    public Mesh[] getMeshes() {
+        return meshes;
+    }
+
+    /**
+     * Returns the textures of this model
+     * @return the textures of this model (may be null)
+     */
+    public Texture[] getTextures() {
+        return textures;
+    }
+
+    /**
+     * Returns the bounds of all the meshes of this model (local space)
+     * @param dest destination bounds
+     * @return dest
+     */
+    public BoundingBox getBounds(BoundingBox dest) {
+        dest.empty();
+        for(int i = 0; i < this.meshes.length; ++i) {
+            dest.union(this.meshes[i].getBounds());
+        }
+        return dest;
+    }
+
+    /**
+     * Returns the number of triangles drawn by this model
+     * @return the number of triangles drawn by this model
+     */
+    public int getTriangleCount() {
+        int count = 0;
+        for(int i = 0; i < this.meshes.length; ++i) {
+            count += this.meshes[i].getTriangleCount();
+        }
+        return count;
+    }
 }
@@ -73,14 +73,14 @@ public class RenderBuffer extends OpenGLObject {
      * Bind this render buffer
      */
     public void bind() {
-        glBindRenderbuffer(GL_RENDERBUFFER, this.renderID);  
+        GLState.Get().bindRenderbuffer(this.renderID);
     }
 
     /**
      * Unbind this render buffer
      */
     public void unbind() {
-        glBindRenderbuffer(GL_RENDERBUFFER, 0);  
+        GLState.Get().bindRenderbuffer(0);
     }
 
     /**
@@ -98,8 +98,8 @@ public class RenderBuffer extends OpenGLObject {
      */
     public void delete() {
         if(this.renderID != 0) {
-            this.unbind();
             glDeleteRenderbuffers(this.renderID);
+            GLState.Get().forgetRenderbuffer(this.renderID);
             this.renderID = 0;
         }
     }
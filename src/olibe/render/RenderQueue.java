@@ -0,0 +1,199 @@
+package olibe.render;
+
+import java.util.Arrays;
+
+/**
+ * Queue of draw items sorted by 64 bits keys (LSD radix sort, stable).
+ * The key packs, from the most significant bits:
+ * <pre>
+ * layer (2) | translucent (1) | opaque:      shader (12) | material (12) | texture (12) | depth (24) | unused (1)
+ *                              | translucent: inverted depth (24) | shader (12) | material (12) | texture (12) | unused (1)
+ * </pre>
+ * so items are drawn layer by layer, opaque items grouped by state then front to back
+ * (early depth test), translucent items back to front. Equal keys keep their submission order.
+ */
+public class RenderQueue {
+    /** Sort key of each item */
+    protected long[] keys;
+    /** Submitted item of each key */
+    protected int[] items;
+    /** Sort buffer (keys) */
+    protected long[] tmpKeys;
+    /** Sort buffer (items) */
+    protected int[] tmpItems;
+    /** Radix histogram */
+    protected int[] histogram;
+    /** Number of items */
+    protected int count;
+    /** The items are sorted */
+    protected boolean sorted;
+
+    /** Number of layers */
+    public static final int LAYERS = 4;
+    /** Max state id (shader, material or texture), larger ids are wrapped */
+    protected static final int STATE_MASK = (1 << 12) - 1;
+    /** Depth mask */
+    protected static final int DEPTH_MASK = (1 << 24) - 1;
+    /** Radix bits per pass */
+    protected static final int RADIX_BITS = 8;
+    /** Radix buckets */
+    protected static final int RADIX = 1 << RADIX_BITS;
+    /** Initial capacity */
+    protected static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Create an empty render queue
+     */
+    public RenderQueue() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.items = new int[INITIAL_CAPACITY];
+        this.tmpKeys = new long[INITIAL_CAPACITY];
+        this.tmpItems = new int[INITIAL_CAPACITY];
+        this.histogram = new int[RADIX];
+        this.count = 0;
+        this.sorted = true;
+    }
+
+    /**
+     * Pack the sort key of an opaque item
+     * @param layer layer (drawn in increasing order, 0 to {@link #LAYERS} - 1)
+     * @param shader shader id
+     * @param material material id
+     * @param texture texture id
+     * @param depth distance to the viewer (positive)
+     * @return the sort key
+     */
+    public static long opaqueKey(int layer, int shader, int material, int texture, float depth) {
+        return ((long)(layer & (LAYERS - 1)) << 62)
+            | ((long)(shader & STATE_MASK) << 49)
+            | ((long)(material & STATE_MASK) << 37)
+            | ((long)(texture & STATE_MASK) << 25)
+            | ((long)quantizeDepth(depth) << 1);
+    }
+
+    /**
+     * Pack the sort key of a translucent item
+     * @param layer layer (drawn in increasing order, 0 to {@link #LAYERS} - 1)
+     * @param shader shader id
+     * @param material material id
+     * @param texture texture id
+     * @param depth distance to the viewer (positive)
+     * @return the sort key
+     */
+    public static long translucentKey(int layer, int shader, int material, int texture, float depth) {
+        return ((long)(layer & (LAYERS - 1)) << 62)
+            | (1L << 61)
+            | ((long)(DEPTH_MASK - quantizeDepth(depth)) << 37)
+            | ((long)(shader & STATE_MASK) << 25)
+            | ((long)(material & STATE_MASK) << 13)
+            | ((long)(texture & STATE_MASK) << 1);
+    }
+
+    /**
+     * Returns the state part of an opaque key (layer, translucency, shader, material and texture)
+     * @param key sort key of an opaque item
+     * @return the key without the depth
+     */
+    public static long opaqueState(long key) {
+        return key >>> 25;
+    }
+
+    /**
+     * Quantize a depth on 24 bits keeping its order (top bits of its float representation)
+     * @param depth distance to the viewer (negative values are clamped to 0)
+     * @return the quantized depth
+     */
+    protected static int quantizeDepth(float depth) {
+        if(!(depth > 0f)) return 0;
+        return (Float.floatToRawIntBits(depth) >>> 7) & DEPTH_MASK;
+    }
+
+    /**
+     * Submit an item
+     * @param key sort key of the item
+     * @param item submitted item (index in the caller data)
+     */
+    public void add(long key, int item) {
+        if(this.count == this.keys.length) {
+            int capacity = this.count * 2;
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.items = Arrays.copyOf(this.items, capacity);
+            this.tmpKeys = new long[capacity];
+            this.tmpItems = new int[capacity];
+        }
+        this.keys[this.count] = key;
+        this.items[this.count] = item;
+        this.count++;
+        this.sorted = false;
+    }
+
+    /**
+     * Sort the items by key (does nothing if they are already sorted),
+     * passes on bytes shared by all the keys are skipped
+     */
+    public void sort() {
+        if(this.sorted) return;
+        this.sorted = true;
+        if(this.count < 2) return;
+        long[] srcKeys = this.keys, dstKeys = this.tmpKeys;
+        int[] srcItems = this.items, dstItems = this.tmpItems;
+        for(int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(this.histogram, 0);
+            for(int i = 0; i < this.count; ++i) {
+                this.histogram[(int)(srcKeys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if(this.histogram[(int)(srcKeys[0] >>> shift) & (RADIX - 1)] == this.count) continue;
+            int offset = 0;
+            for(int b = 0; b < RADIX; ++b) {
+                int bucket = this.histogram[b];
+                this.histogram[b] = offset;
+                offset += bucket;
+            }
+            for(int i = 0; i < this.count; ++i) {
+                int dst = this.histogram[(int)(srcKeys[i] >>> shift) & (RADIX - 1)]++;
+                dstKeys[dst] = srcKeys[i];
+                dstItems[dst] = srcItems[i];
+            }
+            long[] swapKeys = srcKeys; srcKeys = dstKeys; dstKeys = swapKeys;
+            int[] swapItems = srcItems; srcItems = dstItems; dstItems = swapItems;
+        }
+        this.keys = srcKeys;
+        this.items = srcItems;
+        this.tmpKeys = dstKeys;
+        this.tmpItems = dstItems;
+    }
+
+    /**
+     * Remove all the items
+     */
+    public void clear() {
+        this.count = 0;
+        this.sorted = true;
+    }
+
+    /**
+     * Returns the number of items
+     * @return the number of items
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the item at a position of the queue (sorted order once {@link #sort()} is called)
+     * @param index position in the queue
+     * @return the submitted item
+     */
+    public int getItem(int index) {
+        return this.items[index];
+    }
+
+    /**
+     * Returns the key at a position of the queue (sorted order once {@link #sort()} is called)
+     * @param index position in the queue
+     * @return the sort key
+     */
+    public long getKey(int index) {
+        return this.keys[index];
+    }
+}
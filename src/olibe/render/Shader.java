@@ -9,15 +9,32 @@ import org.joml.Vector3f;
 
 import org.lwjgl.system.*;
 
+import java.util.Arrays;
+
 import static org.lwjgl.opengl.GL46.*;
 import static org.lwjgl.system.MemoryStack.*;
 
 /**
- * OpenGL Shader wrapper class
+ * OpenGL Shader wrapper class.
+ * The active uniforms are reflected once the program is linked, their locations,
+ * types and sizes are cached in arrays indexed by {@link UniformHandle#getId()}.
  */
 public class Shader extends OpenGLObject {
     /** Current active shader (last bound shader) */
     protected static Shader activeShader;
+    /** Location of each uniform handle (-1 if the uniform is not active in this shader) */
+    protected int[] locations;
+    /** GL type of each uniform handle (0 if the uniform is not active in this shader) */
+    protected int[] types;
+    /** Array size of each uniform handle (0 if the uniform is not active in this shader) */
+    protected int[] sizes;
+    /** Number of active uniforms */
+    protected int uniformCount;
+    /** Variant of this shader reading the model matrix from an instance buffer (null if none) */
+    protected Shader instancedVariant;
+
+    /** Properties queried for each uniform resource */
+    protected static final int[] UNIFORM_PROPERTIES = { GL_TYPE, GL_ARRAY_SIZE, GL_LOCATION };
 
     /**
      * Create a shader
@@ -46,12 +63,105 @@ public class Shader extends OpenGLObject {
         }
 
         this.disposeShaders(vert, frag);
+        this.reflectUniforms();
 
         activeShader = this;
 
         Log.Get().debug("Create shader program [id="+renderID+"]");
     }
 
+    /**
+     * Cache the location, type and size of the active uniforms
+     * (block members are skipped, array elements are cached one by one)
+     */
+    protected void reflectUniforms() {
+        this.locations = new int[0];
+        this.types = new int[0];
+        this.sizes = new int[0];
+        this.uniformCount = glGetProgramInterfacei(renderID, GL_UNIFORM, GL_ACTIVE_RESOURCES);
+        int[] values = new int[UNIFORM_PROPERTIES.length];
+        for(int i = 0; i < this.uniformCount; ++i) {
+            glGetProgramResourceiv(renderID, GL_UNIFORM, i, UNIFORM_PROPERTIES, null, values);
+            int type = values[0], size = values[1], location = values[2];
+            if(location < 0) continue; // uniform block member
+            String name = glGetProgramResourceName(renderID, GL_UNIFORM, i);
+            this.cacheUniform(UniformHandle.Get(name), location, type, size);
+            if(!name.endsWith("[0]")) continue;
+            String baseName = name.substring(0, name.length() - 3);
+            this.cacheUniform(UniformHandle.Get(baseName), location, type, size);
+            for(int e = 1; e < size; ++e) {
+                String elementName = baseName + "[" + e + "]";
+                this.cacheUniform(UniformHandle.Get(elementName), glGetUniformLocation(renderID, elementName), type, 1);
+            }
+        }
+    }
+
+    /**
+     * Cache the reflection of a uniform
+     * @param handle handle of the uniform
+     * @param location location of the uniform
+     * @param type GL type of the uniform
+     * @param size array size of the uniform
+     */
+    protected void cacheUniform(UniformHandle handle, int location, int type, int size) {
+        if(handle.id >= this.locations.length) {
+            int capacity = Math.max(handle.id + 1, this.locations.length * 2);
+            int oldLength = this.locations.length;
+            this.locations = Arrays.copyOf(this.locations, capacity);
+            Arrays.fill(this.locations, oldLength, capacity, -1);
+            this.types = Arrays.copyOf(this.types, capacity);
+            this.sizes = Arrays.copyOf(this.sizes, capacity);
+        }
+        this.locations[handle.id] = location;
+        this.types[handle.id] = type;
+        this.sizes[handle.id] = size;
+    }
+
+    /**
+     * Returns the location of a uniform
+     * (handles created after the link are not active in this shader)
+     * @param handle handle of the uniform
+     * @return the location of the uniform (-1 if not active)
+     */
+    public int getLocation(UniformHandle handle) {
+        return (handle.id < this.locations.length) ? this.locations[handle.id] : -1;
+    }
+
+    /**
+     * Returns the GL type of a uniform
+     * @param handle handle of the uniform
+     * @return the GL type of the uniform (0 if not active)
+     */
+    public int getUniformType(UniformHandle handle) {
+        return (handle.id < this.types.length) ? this.types[handle.id] : 0;
+    }
+
+    /**
+     * Returns the array size of a uniform
+     * @param handle handle of the uniform
+     * @return the array size of the uniform (0 if not active)
+     */
+    public int getUniformSize(UniformHandle handle) {
+        return (handle.id < this.sizes.length) ? this.sizes[handle.id] : 0;
+    }
+
+    /**
+     * Returns true if a uniform is active in this shader
+     * @param handle handle of the uniform
+     * @return true if the uniform is active in this shader
+     */
+    public boolean hasUniform(UniformHandle handle) {
+        return this.getLocation(handle) != -1;
+    }
+
+    /**
+     * Returns the number of active uniforms of this shader
+     * @return the number of active uniforms of this shader
+     */
+    public int getUniformCount() {
+        return uniformCount;
+    }
+
     /**
      * Compile a shader
      * @param type OpenGL shader type
@@ -108,14 +218,14 @@ public class Shader extends OpenGLObject {
      * Bind this shader program
      */
     public void bind() {
-        glUseProgram(renderID);
+        GLState.Get().useProgram(renderID);
     }
 
     /**
      * Unbind this shader program
      */
     public void unbind() {
-        glUseProgram(0);
+        GLState.Get().useProgram(0);
     }
 
     /**
@@ -124,6 +234,7 @@ public class Shader extends OpenGLObject {
     public void delete() {
         if(renderID != 0) {
             glDeleteProgram(renderID);
+            GLState.Get().forgetProgram(renderID);
             renderID = 0;
         }
     }
@@ -134,7 +245,16 @@ public class Shader extends OpenGLObject {
      * @param value value of the uniform
      */
     public void setUniform(String name, Matrix4f value) {
-        int location = glGetUniformLocation(renderID, name);
+        this.setUniform(UniformHandle.Get(name), value);
+    }
+
+    /**
+     * Set the uniform
+     * @param handle handle of the uniform
+     * @param value value of the uniform
+     */
+    public void setUniform(UniformHandle handle, Matrix4f value) {
+        int location = this.getLocation(handle);
         if(location == -1) return;
         try(MemoryStack stack = stackPush()) {
             glProgramUniformMatrix4fv(renderID, location, false, value.get(stack.mallocFloat(16)));
@@ -147,7 +267,16 @@ public class Shader extends OpenGLObject {
      * @param value value of the uniform
      */
     public void setUniform(String name, float value) {
-        int location = glGetUniformLocation(renderID, name);
+        this.setUniform(UniformHandle.Get(name), value);
+    }
+
+    /**
+     * Set the uniform
+     * @param handle handle of the uniform
+     * @param value value of the uniform
+     */
+    public void setUniform(UniformHandle handle, float value) {
+        int location = this.getLocation(handle);
         if(location == -1) return;
         glProgramUniform1f(renderID, location, value);
     }
@@ -158,7 +287,16 @@ public class Shader extends OpenGLObject {
      * @param value value of the uniform
      */
     public void setUniform(String name, Vector2f value) {
-        int location = glGetUniformLocation(renderID, name);
+        this.setUniform(UniformHandle.Get(name), value);
+    }
+
+    /**
+     * Set the uniform
+     * @param handle handle of the uniform
+     * @param value value of the uniform
+     */
+    public void setUniform(UniformHandle handle, Vector2f value) {
+        int location = this.getLocation(handle);
         if(location == -1) return;
         glProgramUniform2f(renderID, location, value.x(), value.y());
     }
@@ -169,7 +307,16 @@ public class Shader extends OpenGLObject {
      * @param value value of the uniform
      */
     public void setUniform(String name, Vector3f value) {
-        int location = glGetUniformLocation(renderID, name);
+        this.setUniform(UniformHandle.Get(name), value);
+    }
+
+    /**
+     * Set the uniform
+     * @param handle handle of the uniform
+     * @param value value of the uniform
+     */
+    public void setUniform(UniformHandle handle, Vector3f value) {
+        int location = this.getLocation(handle);
         if(location == -1) return;
         glProgramUniform3f(renderID, location, value.x(), value.y(), value.z());
     }
@@ -180,7 +327,16 @@ public class Shader extends OpenGLObject {
      * @param value value of the uniform
      */
     public void setUniform(String name, Color value) {
-        int location = glGetUniformLocation(renderID, name);
+        this.setUniform(UniformHandle.Get(name), value);
+    }
+
+    /**
+     * Set the uniform
+     * @param handle handle of the uniform
+     * @param value value of the uniform
+     */
+    public void setUniform(UniformHandle handle, Color value) {
+        int location = this.getLocation(handle);
         if(location == -1) return;
         glProgramUniform4f(renderID, location, value.r, value.g, value.b, value.a);
     }
@@ -190,12 +346,38 @@ public class Shader extends OpenGLObject {
      * @param name name of the uniform
      * @param value value of the uniform
      */
-    public void setUniform(String name, int value)  {
-        int location = glGetUniformLocation(renderID, name);
+    public void setUniform(String name, int value) {
+        this.setUniform(UniformHandle.Get(name), value);
+    }
+
+    /**
+     * Set the uniform
+     * @param handle handle of the uniform
+     * @param value value of the uniform
+     */
+    public void setUniform(UniformHandle handle, int value) {
+        int location = this.getLocation(handle);
         if(location == -1) return;
         glProgramUniform1i(renderID, location, value);
     }
 
+    /**
+     * Sets the instanced variant of this shader: same fragment stage, model matrix read at
+     * {@link InstanceBuffer#MODEL_LOCATION} instead of uModel
+     * @param instancedVariant instanced variant (null for none)
+     */
+    public void setInstancedVariant(Shader instancedVariant) {
+        this.instancedVariant = instancedVariant;
+    }
+
+    /**
+     * Returns the instanced variant of this shader
+     * @return the instanced variant of this shader (null if none, the items are drawn one by one)
+     */
+    public Shader getInstancedVariant() {
+        return instancedVariant;
+    }
+
     /**
      * Returns the string representation of this shader
      * @return the string representation of this shader
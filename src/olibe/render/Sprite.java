@@ -43,8 +43,8 @@ public class Sprite {
     public void draw() {
         this.shader.bind();
         this.texture.bind(0);
-        this.shader.setUniform("uTex", 0);
-        this.shader.setUniform("uPosition", this.position);
+        this.shader.setUniform(Uniforms.TEX, 0);
+        this.shader.setUniform(Uniforms.POSITION, this.position);
         this.quad.draw(this.shader);
         this.shader.unbind();
     }
@@ -65,6 +65,14 @@ public class Sprite {
         return shader;
     }
 
+    /**
+     * Returns the texture of this sprite
+     * @return the texture of this sprite
+     */
+    public Texture getTexture() {
+        return texture;
+    }
+
     /**
      * Delete the sprite background quad
      */
@@ -80,4 +88,29 @@ public class Sprite {
     public Vector2f getPosition() {
         return position;
     }
+
+    /**
+     * Sets the sprite position
+     * @param x new x position (pixel)
+     * @param y new y position (pixel)
+     */
+    public void setPosition(float x, float y) {
+        this.position.set(x, y);
+    }
+
+    /**
+     * Returns the sprite width
+     * @return the sprite width (pixel)
+     */
+    public float getWidth() {
+        return this.texture.getSize().x();
+    }
+
+    /**
+     * Returns the sprite height
+     * @return the sprite height (pixel)
+     */
+    public float getHeight() {
+        return this.texture.getSize().y();
+    }
 }
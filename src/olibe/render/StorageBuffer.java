@@ -0,0 +1,54 @@
+package olibe.render;
+
+import olibe.exception.*;
+
+import java.nio.*;
+
+import static org.lwjgl.opengl.GL46.*;
+
+/**
+ * OpenGL Shader Storage Buffer (SSBO) wrapper class
+ */
+public class StorageBuffer extends Buffer {
+    /** Size of the buffer store (in bytes) */
+    protected long size;
+
+    /**
+     * Create an empty shader storage buffer
+     * @throws LWJGLException error while creating the buffer
+     */
+    public StorageBuffer() throws LWJGLException {
+        super(GL_SHADER_STORAGE_BUFFER);
+        this.size = 0;
+    }
+
+    /**
+     * Upload data in this buffer (the store is reallocated only if it grows)
+     * @param data data to upload (from its position to its limit)
+     */
+    public void setData(FloatBuffer data) {
+        long dataSize = (long)data.remaining() * Float.BYTES;
+        if(dataSize > this.size) {
+            glNamedBufferData(this.renderID, data, GL_DYNAMIC_DRAW);
+            this.size = dataSize;
+        } else {
+            glNamedBufferSubData(this.renderID, 0, data);
+        }
+    }
+
+    /**
+     * Bind this buffer to an indexed binding point (<code>layout(binding = index)</code>)
+     * @param index binding point
+     */
+    public void bindBase(int index) {
+        GLState.Get().bindBufferBase(GL_SHADER_STORAGE_BUFFER, index, this.renderID);
+    }
+
+    /**
+     * Returns the size of the buffer store (in bytes)
+     * @return the size of the buffer store (in bytes)
+     */
+    public long getSize() {
+        return size;
+    }
+}
@@ -105,16 +105,14 @@ public class Texture extends OpenGLObject {
      */
     public void bind(int location) {
         this.lastLocation = location;
-        glActiveTexture(GL_TEXTURE0 + location);
-        glBindTexture(GL_TEXTURE_2D, this.renderID);
+        GLState.Get().bindTexture(location, GL_TEXTURE_2D, this.renderID);
     }
 
     /**
      * Unbind this texture from its last bound location
      */
     public void unbind() {
-        glActiveTexture(GL_TEXTURE0 + this.lastLocation);
-        glBindTexture(GL_TEXTURE_2D, this.renderID);
+        GLState.Get().bindTexture(this.lastLocation, GL_TEXTURE_2D, this.renderID);
     }
 
     /**
@@ -141,8 +139,8 @@ public class Texture extends OpenGLObject {
      */
     public void delete() {
         if(this.renderID != 0) {
-            this.unbind();
             glDeleteTextures(this.renderID);
+            GLState.Get().forgetTexture(this.renderID);
             this.renderID = 0;
         }
     }
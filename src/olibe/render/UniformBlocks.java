@@ -0,0 +1,148 @@
+package olibe.render;
+
+import java.nio.ByteBuffer;
+
+import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
+
+import olibe.exception.LWJGLException;
+
+/**
+ * Uniform blocks shared by all the shaders (std140), uploaded once per change and bound once per frame
+ * whatever the number of shaders:
+ * <pre>
+ * layout(std140, binding = 0) uniform FrameData { float uTime; vec2 uScreenSize; };
+ * layout(std140, binding = 1) uniform CameraData { mat4 uView; mat4 uProj; };
+ * </pre>
+ */
+public class UniformBlocks {
+    /** Frame data buffer */
+    protected UniformBuffer frameBuffer;
+    /** Camera data buffer */
+    protected UniformBuffer cameraBuffer;
+    /** Frame data staging memory */
+    protected ByteBuffer frameData;
+    /** Camera data staging memory */
+    protected ByteBuffer cameraData;
+    /** Last uploaded view matrix */
+    protected Matrix4f view;
+    /** Last uploaded projection matrix */
+    protected Matrix4f proj;
+    /** Time of the frame (in seconds) */
+    protected float time;
+    /** Screen width (in pixels) */
+    protected float screenWidth;
+    /** Screen height (in pixels) */
+    protected float screenHeight;
+    /** The frame data changed since the last upload */
+    protected boolean frameDirty;
+    /** The camera data was uploaded at least once */
+    protected boolean cameraUploaded;
+    /** Number of camera data uploads */
+    protected int cameraUploads;
+
+    /** Binding point of the frame data block */
+    public static final int FRAME_BINDING = 0;
+    /** Binding point of the camera data block */
+    public static final int CAMERA_BINDING = 1;
+    /** Size of the frame data block (std140) */
+    protected static final int FRAME_SIZE = 16;
+    /** Offset of uTime in the frame data block */
+    protected static final int TIME_OFFSET = 0;
+    /** Offset of uScreenSize in the frame data block */
+    protected static final int SCREEN_SIZE_OFFSET = 8;
+    /** Size of the camera data block (std140) */
+    protected static final int CAMERA_SIZE = 128;
+    /** Offset of uView in the camera data block */
+    protected static final int VIEW_OFFSET = 0;
+    /** Offset of uProj in the camera data block */
+    protected static final int PROJ_OFFSET = 64;
+
+    /**
+     * Create the shared uniform blocks
+     * @throws LWJGLException error while creating the buffers
+     */
+    public UniformBlocks() throws LWJGLException {
+        this.frameBuffer = new UniformBuffer(FRAME_SIZE);
+        this.cameraBuffer = new UniformBuffer(CAMERA_SIZE);
+        this.frameData = MemoryUtil.memCalloc(FRAME_SIZE);
+        this.cameraData = MemoryUtil.memCalloc(CAMERA_SIZE);
+        this.view = new Matrix4f();
+        this.proj = new Matrix4f();
+        this.frameDirty = true;
+        this.cameraUploaded = false;
+        this.bind();
+    }
+
+    /**
+     * Sets the time of the frame
+     * @param time time since the start (in seconds)
+     */
+    public void setTime(float time) {
+        if(this.time == time) return;
+        this.time = time;
+        this.frameDirty = true;
+    }
+
+    /**
+     * Sets the screen size
+     * @param width screen width (in pixels)
+     * @param height screen height (in pixels)
+     */
+    public void setScreenSize(float width, float height) {
+        if(this.screenWidth == width && this.screenHeight == height) return;
+        this.screenWidth = width;
+        this.screenHeight = height;
+        this.frameDirty = true;
+    }
+
+    /**
+     * Upload the matrices of a camera (skipped if they did not change since the last upload)
+     * @param camera camera to upload
+     */
+    public void setCamera(Camera camera) {
+        Matrix4f cameraView = camera.getViewMat();
+        Matrix4f cameraProj = camera.getProjectionMat();
+        if(this.cameraUploaded && this.view.equals(cameraView) && this.proj.equals(cameraProj)) return;
+        this.view.set(cameraView);
+        this.proj.set(cameraProj);
+        this.view.get(VIEW_OFFSET, this.cameraData);
+        this.proj.get(PROJ_OFFSET, this.cameraData);
+        this.cameraBuffer.setSubData(0, this.cameraData);
+        this.cameraUploaded = true;
+        this.cameraUploads++;
+    }
+
+    /**
+     * Upload the frame data if it changed and bind the blocks to their binding points
+     */
+    public void bind() {
+        if(this.frameDirty) {
+            this.frameData.putFloat(TIME_OFFSET, this.time);
+            this.frameData.putFloat(SCREEN_SIZE_OFFSET, this.screenWidth);
+            this.frameData.putFloat(SCREEN_SIZE_OFFSET + Float.BYTES, this.screenHeight);
+            this.frameBuffer.setSubData(0, this.frameData);
+            this.frameDirty = false;
+        }
+        this.frameBuffer.bindBase(FRAME_BINDING);
+        this.cameraBuffer.bindBase(CAMERA_BINDING);
+    }
+
+    /**
+     * Returns the number of camera data uploads
+     * @return the number of camera data uploads
+     */
+    public int getCameraUploads() {
+        return cameraUploads;
+    }
+
+    /**
+     * Delete the buffers
+     */
+    public void delete() {
+        this.frameBuffer.delete();
+        this.cameraBuffer.delete();
+        MemoryUtil.memFree(this.frameData);
+        MemoryUtil.memFree(this.cameraData);
+    }
+}
@@ -0,0 +1,51 @@
+package olibe.render;
+
+import olibe.exception.*;
+
+import java.nio.*;
+
+import static org.lwjgl.opengl.GL46.*;
+
+/**
+ * OpenGL Uniform Buffer (UBO) wrapper class
+ */
+public class UniformBuffer extends Buffer {
+    /** Size of the buffer store (in bytes) */
+    protected long size;
+
+    /**
+     * Create a uniform buffer with a fixed size store
+     * @param size size of the store (in bytes)
+     * @throws LWJGLException error while creating the buffer
+     */
+    public UniformBuffer(long size) throws LWJGLException {
+        super(GL_UNIFORM_BUFFER);
+        this.size = size;
+        glNamedBufferData(this.renderID, size, GL_DYNAMIC_DRAW);
+    }
+
+    /**
+     * Upload data in this buffer
+     * @param offset offset in the store (in bytes)
+     * @param data data to upload (from its position to its limit)
+     */
+    public void setSubData(long offset, ByteBuffer data) {
+        glNamedBufferSubData(this.renderID, offset, data);
+    }
+
+    /**
+     * Bind this buffer to an indexed binding point (<code>layout(binding = index)</code>)
+     * @param index binding point
+     */
+    public void bindBase(int index) {
+        GLState.Get().bindBufferBase(GL_UNIFORM_BUFFER, index, this.renderID);
+    }
+
+    /**
+     * Returns the size of the buffer store (in bytes)
+     * @return the size of the buffer store (in bytes)
+     */
+    public long getSize() {
+        return size;
+    }
+}
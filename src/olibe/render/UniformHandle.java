@@ -0,0 +1,86 @@
+package olibe.render;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precompiled uniform name.
+ * Each uniform name gets a unique handle with a global id, shaders cache the
+ * location of each handle in an array indexed by this id so setting a uniform
+ * through a handle costs neither string hashing nor a driver round trip.
+ * Handles are meant to be created once and kept (ex: in static fields).
+ */
+public final class UniformHandle {
+    /** Name of the uniform */
+    protected final String name;
+    /** Global id of the handle */
+    protected final int id;
+
+    /** Handles by name */
+    protected static final Map<String, UniformHandle> handles = new ConcurrentHashMap<>();
+    /** Number of handles created */
+    protected static int handleCount = 0;
+
+    /**
+     * Create a uniform handle
+     * @param name name of the uniform
+     * @param id global id of the handle
+     */
+    private UniformHandle(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Returns the handle of a uniform name (created on the first call)
+     * @param name name of the uniform
+     * @return the handle of the uniform
+     */
+    public static UniformHandle Get(String name) {
+        UniformHandle handle = handles.get(name);
+        if(handle != null) return handle;
+        synchronized(handles) {
+            handle = handles.get(name);
+            if(handle == null) {
+                handle = new UniformHandle(name, handleCount++);
+                handles.put(name, handle);
+            }
+            return handle;
+        }
+    }
+
+    /**
+     * Returns the number of handles created
+     * @return the number of handles created
+     */
+    public static int Count() {
+        synchronized(handles) {
+            return handleCount;
+        }
+    }
+
+    /**
+     * Returns the name of the uniform
+     * @return the name of the uniform
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the global id of this handle
+     * @return the global id of this handle
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the string representation of this handle
+     * @return the string representation of this handle
+     */
+    @Override
+    public String toString() {
+        return "UniformHandle[" + this.name + "#" + this.id + "]";
+    }
+}
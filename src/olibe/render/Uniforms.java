@@ -0,0 +1,53 @@
+package olibe.render;
+
+/**
+ * Handles of the uniforms shared by the engine shaders
+ */
+public final class Uniforms {
+    /** Model matrix */
+    public static final UniformHandle MODEL = UniformHandle.Get("uModel");
+    /** View matrix */
+    public static final UniformHandle VIEW = UniformHandle.Get("uView");
+    /** Projection matrix */
+    public static final UniformHandle PROJ = UniformHandle.Get("uProj");
+    /** Time since the start (in seconds) */
+    public static final UniformHandle TIME = UniformHandle.Get("uTime");
+    /** Size of the screen (in pixels) */
+    public static final UniformHandle SCREEN_SIZE = UniformHandle.Get("uScreenSize");
+    /** Position (screen/ui) */
+    public static final UniformHandle POSITION = UniformHandle.Get("uPosition");
+    /** Alpha (sprites) */
+    public static final UniformHandle ALPHA = UniformHandle.Get("uAlpha");
+    /** Level of detail cross-fade */
+    public static final UniformHandle FADE = UniformHandle.Get("uFade");
+    /** Texture unit (sprites/images) */
+    public static final UniformHandle TEX = UniformHandle.Get("uTex");
+    /** Color material color */
+    public static final UniformHandle MATERIAL_COLOR = UniformHandle.Get("cmaterial.color");
+    /** Active material type */
+    public static final UniformHandle ACTIVE_MATERIAL = UniformHandle.Get("activeMaterial");
+
+    /** Number of precompiled model texture handles */
+    protected static final int TEXTURE_COUNT = 16;
+    /** Model textures (uTex0, uTex1, ...) */
+    protected static final UniformHandle[] TEXTURES = new UniformHandle[TEXTURE_COUNT];
+    static {
+        for(int i = 0; i < TEXTURE_COUNT; ++i) {
+            TEXTURES[i] = UniformHandle.Get("uTex" + i);
+        }
+    }
+
+    /**
+     * Uniforms handles holder
+     */
+    private Uniforms() {}
+
+    /**
+     * Returns the handle of a model texture unit (uTex0, uTex1, ...)
+     * @param index index of the texture
+     * @return the handle of the texture uniform
+     */
+    public static UniformHandle texture(int index) {
+        return (index < TEXTURE_COUNT) ? TEXTURES[index] : UniformHandle.Get("uTex" + index);
+    }
+}
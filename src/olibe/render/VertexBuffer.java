@@ -22,9 +22,7 @@ public class VertexBuffer extends Buffer {
     public VertexBuffer(float[] vertices, int vertexCount) throws LWJGLException {
         super(GL_ARRAY_BUFFER);
         this.vertexCount = vertexCount;
-        this.bind();
-        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
-        this.unbind();
+        glNamedBufferData(this.renderID, vertices, GL_STATIC_DRAW);
     }
 
     /**
@@ -46,10 +44,8 @@ public class VertexBuffer extends Buffer {
     protected VertexBuffer(int reservedVertexCount, int vertexDataSize) throws LWJGLException {
         super(GL_ARRAY_BUFFER);
         this.vertexCount = reservedVertexCount;
-        this.bind();
         final int totalSize = reservedVertexCount * vertexDataSize;
-        glBufferData(GL_ARRAY_BUFFER, totalSize, GL_DYNAMIC_DRAW);
-        this.unbind();
+        glNamedBufferData(this.renderID, totalSize, GL_DYNAMIC_DRAW);
     }
 
     /**
@@ -4,15 +4,71 @@ package olibe.scene;
  * Component of a node
  */
 public interface Component {
+    /**
+     * Called when the component is added to a node
+     * @param node node owning the component
+     */
+    default public void onAttach(SceneNode node){}
     /** World render method */
     default public void onRender(){}
+    /**
+     * Pre update method, called on the main thread before the update phase
+     * @param delta frame delta time (in seconds)
+     */
+    default public void onPreUpdate(double delta){}
     /**
      * Update render method
      * @param delta frame delta time (in seconds)
      */
     default public void onUpdate(double delta){}
+    /**
+     * Late update method, called on the main thread after the update phase
+     * @param delta frame delta time (in seconds)
+     */
+    default public void onLateUpdate(double delta){}
     /** Screen/UI render method */
     default public void onRenderUI(){}
+    /**
+     * Copy the render state of this component into a snapshot
+     * (may run on the update thread, must not use the OpenGL context)
+     * @param snapshot snapshot of the frame
+     * @return true if extracted, false to render this component live
+     * ({@link #onRender()} and {@link #onRenderUI()} called while rendering the snapshot)
+     */
+    default public boolean onExtract(RenderSnapshot snapshot){ return false; }
+
+    /**
+     * Create a copy of this component for a prefab instance (see {@link Prefab}),
+     * the copy shares the immutable resources (meshes, models, textures...) and
+     * must not delete them
+     * @return the copy, or null if this component cannot be instantiated
+     */
+    default public Component instantiate() { return null; }
+
+    /**
+     * Reset a copy made by {@link #instantiate()} to the state of its template component,
+     * in place, when a pooled prefab instance is recycled (see {@link Prefab#despawn(SceneNode)})
+     * @param template template component (same class as this component)
+     * @return true if reset, false to replace this component with a fresh copy
+     */
+    default public boolean resetFrom(Component template) { return false; }
+
+    /**
+     * Returns the update rate of this component, a rate-limited component only
+     * gets its update methods called at this frequency (spread across frames)
+     * with the time elapsed since its previous update
+     * @return the update rate (in Hz, 0 to update every frame)
+     */
+    default public float getUpdateRate() { return 0f; }
+
+    /**
+     * Returns true if {@link #onUpdate(double)} can run on a worker thread,
+     * concurrently with the other parallel components.
+     * Such components must not touch shared state nor the OpenGL context,
+     * and must defer structural changes with {@link Scene#defer(Runnable)}.
+     * @return true if the update of this component can run in parallel
+     */
+    default public boolean isParallelUpdate() { return false; }
 
     /** Delete the component */
     public void delete();
@@ -0,0 +1,30 @@
+package olibe.scene;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dense ids of the component types, used to index the per-node type slots
+ */
+public final class ComponentTypes {
+    /** Next type id */
+    private static final AtomicInteger nextId = new AtomicInteger();
+    /** Id of each type (computed once per class) */
+    private static final ClassValue<Integer> ids = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return nextId.getAndIncrement();
+        }
+    };
+
+    /** Useless component types constructor */
+    private ComponentTypes() {}
+
+    /**
+     * Returns the id of a component type
+     * @param type component type
+     * @return the id of the type
+     */
+    public static int idOf(Class<?> type) {
+        return ids.get(type);
+    }
+}
@@ -0,0 +1,113 @@
+package olibe.scene;
+
+import java.util.*;
+
+/**
+ * Compiled path to a node (ex: 'MainMenu/PlayButton').
+ * The path is split once, and its resolution is cached until the
+ * structure of the resolved tree changes.
+ * The cached resolution is published as one immutable entry, so a path
+ * can be shared between threads.
+ */
+public class NodePath {
+    /** Source path */
+    protected final String path;
+    /** Names of the nodes along the path */
+    protected final String[] segments;
+    /** Last resolution (null if none) */
+    protected volatile Resolution cached;
+
+    /**
+     * Result of a resolution and the tree state it is valid for
+     */
+    protected static final class Resolution {
+        /** Node the path was resolved from */
+        protected final SceneNode root;
+        /** Context of the tree at the resolution (a detached or moved subtree changes context) */
+        protected final SceneContext context;
+        /** Structure version of the tree at the resolution */
+        protected final int version;
+        /** Resolved node (or null) */
+        protected final SceneNode node;
+
+        /**
+         * Create a resolution
+         * @param root node the path was resolved from
+         * @param context context of the tree
+         * @param version structure version of the tree
+         * @param node resolved node
+         */
+        protected Resolution(SceneNode root, SceneContext context, int version, SceneNode node) {
+            this.root = root;
+            this.context = context;
+            this.version = version;
+            this.node = node;
+        }
+    }
+
+    /**
+     * Compile a path
+     * @param path path to the node, separated by '/' (empty path is the root)
+     */
+    public NodePath(String path) {
+        this.path = path;
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        while(start <= path.length()) {
+            int sep = path.indexOf('/', start);
+            if(sep == -1) sep = path.length();
+            if(sep > start) parts.add(path.substring(start, sep));
+            start = sep + 1;
+        }
+        this.segments = parts.toArray(new String[0]);
+        this.cached = null;
+    }
+
+    /**
+     * Resolve this path from a root node
+     * @param root node the path starts from
+     * @return the resolved node or null if not found
+     */
+    public SceneNode resolve(SceneNode root) {
+        SceneContext context = root.context;
+        int version = root.getStructureVersion();
+        Resolution resolution = this.cached;
+        if(resolution != null && resolution.root == root && resolution.context == context && resolution.version == version) {
+            return resolution.node;
+        }
+
+        SceneNode node = root;
+        for(int i = 0; i < this.segments.length && node != null; ++i) {
+            node = node.getChild(this.segments[i]);
+        }
+
+        this.cached = new Resolution(root, context, version, node);
+        return node;
+    }
+
+    /**
+     * Resolve this path in a scene
+     * @param scene scene to resolve the path in
+     * @return the resolved node or null if not found
+     */
+    public SceneNode resolve(Scene scene) {
+        return this.resolve(scene.root);
+    }
+
+    /**
+     * Returns the names of the nodes along this path
+     * @return the names of the nodes along this path
+     */
+    public String[] getSegments() {
+        return segments.clone();
+    }
+
+    /**
+     * Returns the source path
+     * @return the source path
+     */
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,385 @@
+package olibe.scene;
+
+import java.util.*;
+
+/**
+ * Template subtree instantiated by cloning lightweight nodes.
+ * The instances share the GPU data of the template (meshes, models, sprites)
+ * through {@link Component#instantiate()}, per instance changes are overrides
+ * on the cloned components (copy on write, the shared data is never modified).
+ * Despawned instances are recycled in a bounded pool instead of being deleted,
+ * their whole state is reset to the template one (transforms, active flag, tags,
+ * bounds, components and children). The components are reset in place
+ * ({@link Component#resetFrom(Component)}), only the ones added, removed or not
+ * resettable are rebuilt, so recycling an unchanged instance does not allocate.
+ * The template must not be modified once the prefab is created.
+ */
+public class Prefab {
+    /** Template subtree (not part of a scene) */
+    protected SceneNode template;
+    /** Template nodes (pre-order) */
+    protected SceneNode[] templateNodes;
+    /** Index of the parent of each template node (-1 for the template root) */
+    protected int[] templateParents;
+    /** Indices of the children of each template node */
+    protected int[][] templateChildren;
+    /** Components of each template node (without the prefab instance mappings) */
+    protected Component[][] templateComponents;
+    /** Recycled instances */
+    protected ArrayDeque<SceneNode> pool;
+    /** Max number of pooled instances (despawned instances are deleted past it) */
+    protected int maxPoolSize;
+    /** Number of instances created (pooled ones included) */
+    protected int instanceCount;
+
+    /** Default max number of pooled instances */
+    public static final int DEFAULT_MAX_POOL_SIZE = 256;
+
+    /**
+     * Clone mapping of an instance, attached to the instance root
+     * (the instance nodes pair with the template nodes by index)
+     */
+    public static class Instance implements Component {
+        /** Prefab of the instance */
+        protected final Prefab prefab;
+        /** Instance nodes (same order as {@link Prefab#templateNodes}) */
+        protected final SceneNode[] nodes;
+        /** The instance is in the pool */
+        protected boolean pooled;
+        /** Context of the instance while it is detached (reused on each despawn) */
+        protected final SceneContext detachedContext;
+
+        /**
+         * Create the clone mapping of an instance
+         * @param prefab prefab of the instance
+         * @param nodes instance nodes
+         */
+        protected Instance(Prefab prefab, SceneNode[] nodes) {
+            this.prefab = prefab;
+            this.nodes = nodes;
+            this.pooled = false;
+            this.detachedContext = nodes[0].getContext();
+        }
+
+        /**
+         * Returns the prefab of the instance
+         * @return the prefab of the instance
+         */
+        public Prefab getPrefab() {
+            return prefab;
+        }
+
+        @Override
+        public void delete() {}
+    }
+
+    /**
+     * Create a prefab
+     * @param template template subtree (owned by the prefab, it must not have a parent)
+     */
+    public Prefab(SceneNode template) {
+        if(template == null) {
+            throw new IllegalArgumentException("[Prefab] template is null.");
+        }
+        if(template.getParent() != null) {
+            throw new IllegalArgumentException("[Prefab] template " + template.getName() + " has a parent.");
+        }
+        this.template = template;
+        List<SceneNode> nodes = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        this.flatten(template, -1, nodes, parents);
+        this.templateNodes = nodes.toArray(new SceneNode[0]);
+        this.templateParents = new int[parents.size()];
+        for(int i = 0; i < this.templateParents.length; ++i) {
+            this.templateParents[i] = parents.get(i);
+        }
+        this.templateChildren = new int[this.templateNodes.length][];
+        this.templateComponents = new Component[this.templateNodes.length][];
+        for(int i = 0; i < this.templateNodes.length; ++i) {
+            this.templateChildren[i] = new int[this.templateNodes[i].children.size()];
+            List<Component> components = new ArrayList<>();
+            for(Component component : this.templateNodes[i].components) {
+                // an instance used as a template is not an instance of this prefab
+                if(!(component instanceof Instance)) components.add(component);
+            }
+            this.templateComponents[i] = components.toArray(new Component[0]);
+        }
+        int[] childCounts = new int[this.templateNodes.length];
+        for(int i = 1; i < this.templateNodes.length; ++i) {
+            int parent = this.templateParents[i];
+            this.templateChildren[parent][childCounts[parent]++] = i;
+        }
+        this.pool = new ArrayDeque<>();
+        this.maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+        this.instanceCount = 0;
+    }
+
+    /**
+     * Sets the max number of pooled instances
+     * @param maxPoolSize max number of pooled instances (0 to disable pooling)
+     * @return this
+     */
+    public Prefab setMaxPoolSize(int maxPoolSize) {
+        if(maxPoolSize < 0) {
+            throw new IllegalArgumentException("[Prefab] max pool size must be positive: " + maxPoolSize);
+        }
+        this.maxPoolSize = maxPoolSize;
+        while(this.pool.size() > maxPoolSize) {
+            this.pool.pollLast().delete();
+        }
+        return this;
+    }
+
+    /**
+     * Returns an instance of the template (recycled from the pool if possible)
+     * @return a detached instance of the template
+     */
+    public SceneNode instantiate() {
+        SceneNode instance = this.pool.pollLast();
+        if(instance != null) {
+            instance.getComponent(Instance.class).pooled = false;
+            return instance;
+        }
+        this.instanceCount++;
+        return this.cloneInstance();
+    }
+
+    /**
+     * Instantiate the template under a parent
+     * @param parent parent of the instance
+     * @return the instance
+     */
+    public SceneNode spawn(SceneNode parent) {
+        SceneNode instance = this.instantiate();
+        parent.addChild(instance);
+        return instance;
+    }
+
+    /**
+     * Detach an instance and recycle it, its state is reset to the template one
+     * (deleted instead if the pool is full)
+     * @param instance instance of this prefab to recycle
+     * @throws IllegalArgumentException the node is not a spawned instance of this prefab
+     */
+    public void despawn(SceneNode instance) throws IllegalArgumentException {
+        Instance mapping = instance.getComponent(Instance.class);
+        if(mapping == null || mapping.prefab != this) {
+            throw new IllegalArgumentException("[Prefab] " + instance.getName() + " is not an instance of this prefab.");
+        }
+        if(mapping.pooled) {
+            throw new IllegalArgumentException("[Prefab] " + instance.getName() + " is already despawned.");
+        }
+        instance.detach(mapping.detachedContext);
+        if(this.pool.size() >= this.maxPoolSize) {
+            instance.delete();
+            return;
+        }
+        this.reset(mapping);
+        mapping.pooled = true;
+        this.pool.addLast(instance);
+    }
+
+    /**
+     * Create instances in advance so the next spawns do not allocate
+     * @param count number of pooled instances wanted
+     */
+    public void prewarm(int count) {
+        count = Math.min(count, this.maxPoolSize);
+        while(this.pool.size() < count) {
+            this.instanceCount++;
+            SceneNode instance = this.cloneInstance();
+            instance.getComponent(Instance.class).pooled = true;
+            this.pool.addLast(instance);
+        }
+    }
+
+    /**
+     * Returns the number of pooled instances
+     * @return the number of pooled instances
+     */
+    public int getPoolSize() {
+        return pool.size();
+    }
+
+    /**
+     * Returns the number of instances created by this prefab (pooled ones included)
+     * @return the number of instances created by this prefab
+     */
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    /**
+     * Returns the template of this prefab
+     * @return the template of this prefab
+     */
+    public SceneNode getTemplate() {
+        return template;
+    }
+
+    /**
+     * List the template nodes in pre-order
+     * @param node template node
+     * @param parent index of its parent (-1 for the root)
+     * @param nodes template nodes
+     * @param parents index of the parent of each template node
+     */
+    private void flatten(SceneNode node, int parent, List<SceneNode> nodes, List<Integer> parents) {
+        int index = nodes.size();
+        nodes.add(node);
+        parents.add(parent);
+        List<SceneNode> children = node.children;
+        for(int i = 0; i < children.size(); ++i) {
+            this.flatten(children.get(i), index, nodes, parents);
+        }
+    }
+
+    /**
+     * Clone the template and record the clone mapping on the instance root
+     * @return the instance root
+     */
+    protected SceneNode cloneInstance() {
+        SceneNode[] nodes = new SceneNode[this.templateNodes.length];
+        for(int i = 0; i < nodes.length; ++i) {
+            SceneNode source = this.templateNodes[i];
+            SceneNode node = new SceneNode(source.getName());
+            this.copyState(source, node);
+            for(int c = 0; c < this.templateComponents[i].length; ++c) {
+                node.addComponent(this.copyComponent(source, this.templateComponents[i][c]));
+            }
+            // parents are before their children in pre-order
+            if(this.templateParents[i] >= 0) nodes[this.templateParents[i]].attachChild(node);
+            nodes[i] = node;
+        }
+        nodes[0].addComponent(new Instance(this, nodes));
+        return nodes[0];
+    }
+
+    /**
+     * Reset an instance to the template: the nodes added under it are deleted, the nodes
+     * detached from it are put back, then each node gets the state of its template node
+     * and its components are reset (see {@link #resetComponents(Instance, int)})
+     * @param mapping clone mapping of the instance
+     */
+    protected void reset(Instance mapping) {
+        SceneNode[] nodes = mapping.nodes;
+        for(int i = 0; i < nodes.length; ++i) {
+            List<SceneNode> children = nodes[i].children;
+            for(int c = children.size() - 1; c >= 0; --c) {
+                SceneNode child = children.get(c);
+                if(this.isClonedChild(nodes, i, child)) continue;
+                nodes[i].detachChild(child);
+                child.delete();
+            }
+        }
+        for(int i = 1; i < nodes.length; ++i) {
+            SceneNode parent = nodes[this.templateParents[i]];
+            if(nodes[i].getParent() == parent) continue;
+            nodes[i].detach();
+            parent.attachChild(nodes[i]);
+        }
+        for(int i = 0; i < nodes.length; ++i) {
+            this.copyState(this.templateNodes[i], nodes[i]);
+            this.resetComponents(mapping, i);
+        }
+    }
+
+    /**
+     * Returns true if a child of an instance node is the clone of a child of its template node
+     * @param nodes instance nodes
+     * @param index index of the instance node
+     * @param child child of the instance node
+     * @return true if the child is part of the instance
+     */
+    private boolean isClonedChild(SceneNode[] nodes, int index, SceneNode child) {
+        int[] children = this.templateChildren[index];
+        for(int c = 0; c < children.length; ++c) {
+            if(nodes[children[c]] == child) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reset the components of an instance node in place: the components matching their
+     * template component (in order) are reset, the others (added at runtime or not resettable)
+     * are deleted, then fresh copies of the missing template components are added
+     * @param mapping clone mapping of the instance
+     * @param index index of the instance node
+     */
+    protected void resetComponents(Instance mapping, int index) {
+        SceneNode node = mapping.nodes[index];
+        Component[] sources = this.templateComponents[index];
+        List<Component> components = node.components;
+        int s = 0;
+        for(int c = 0; c < components.size();) {
+            Component component = components.get(c);
+            if(component == mapping) {
+                ++c;
+                continue;
+            }
+            if(s < sources.length && component.getClass() == sources[s].getClass() && component.resetFrom(sources[s])) {
+                ++s;
+                ++c;
+                continue;
+            }
+            node.removeComponent(component);
+            component.delete();
+        }
+        for(; s < sources.length; ++s) {
+            node.addComponent(this.copyComponent(this.templateNodes[index], sources[s]));
+        }
+    }
+
+    /**
+     * Copy the transform, bounds, tags and active flag of a template node
+     * @param source template node
+     * @param node instance node
+     */
+    protected void copyState(SceneNode source, SceneNode node) {
+        this.copyTransform(source.getTransform(), node.getTransform());
+        node.setBounds(source.getBounds());
+        node.removeTags(~source.getTags());
+        node.addTags(source.getTags());
+        node.setActive(source.isActive());
+    }
+
+    /**
+     * Returns a fresh copy of a template component
+     * @param source template node
+     * @param component template component
+     * @return the copy
+     * @throws IllegalArgumentException the component cannot be instantiated
+     */
+    protected Component copyComponent(SceneNode source, Component component) throws IllegalArgumentException {
+        Component copy = component.instantiate();
+        if(copy == null) {
+            throw new IllegalArgumentException("[Prefab] " + component.getClass().getSimpleName()
+                + " of " + source.getName() + " cannot be instantiated.");
+        }
+        return copy;
+    }
+
+    /**
+     * Copy the position, rotation and scale of a transform (into the existing vectors)
+     * @param source source transform
+     * @param dest destination transform
+     */
+    protected void copyTransform(Transform source, Transform dest) {
+        dest.getPosition().set(source.getPosition());
+        // rotation and scale are only allocated when one of the transforms has them
+        if(source.eulerRotations != null || dest.eulerRotations != null) dest.getEulerRotations().set(source.getEulerRotations());
+        if(source.scale != null || dest.scale != null) dest.getScale().set(source.getScale());
+        dest.markDirty();
+    }
+
+    /**
+     * Delete the template (and its GPU data) and drop the pooled instances
+     */
+    public void delete() {
+        SceneNode instance;
+        while((instance = this.pool.pollLast()) != null) {
+            instance.delete();
+        }
+        this.template.delete();
+    }
+}
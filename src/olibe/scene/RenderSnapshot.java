@@ -0,0 +1,705 @@
+package olibe.scene;
+
+import java.nio.FloatBuffer;
+import java.util.*;
+
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.lwjgl.system.MemoryUtil;
+
+import olibe.core.FrameStats;
+import olibe.core.Log;
+import olibe.exception.LWJGLException;
+import olibe.render.*;
+import olibe.ui.Button;
+import olibe.ui.Image;
+import olibe.ui.Text;
+
+/**
+ * Copy of the render state of a scene for one frame.
+ * Components copy what they draw during the extraction
+ * ({@link Component#onExtract(RenderSnapshot)}), the snapshot is then
+ * rendered without reading the scene, so the next frame can be updated
+ * (and extracted into another snapshot) while this one is rendered.
+ * Components without extraction are rendered live (their render methods
+ * are called while rendering the snapshot, see {@link olibe.core.Pipeline#setThreadedUpdate(boolean)}).
+ * The world items are drawn in the order of a {@link RenderQueue}, sorted once
+ * at the end of the extraction: opaque items grouped by shader, material and texture
+ * then front to back, sprites and live components after them in submission order.
+ * Models sharing their meshes and material within the same state are grouped into
+ * instanced batches: their matrices are packed once per snapshot into an {@link InstanceBuffer}
+ * and each batch is drawn with one instanced call per mesh (when the pass shader has an
+ * instanced variant, see {@link Shader#getInstancedVariant()}).
+ */
+public class RenderSnapshot {
+    /** Kind of each world item */
+    protected byte[] kinds;
+    /** Drawn object of each world item (model, mesh, sprite or component) */
+    protected Object[] refs;
+    /** Shader of each world item (null for the pass shader) */
+    protected Shader[] shaders;
+    /** Model matrix of each world item (16 floats per item) */
+    protected float[] matrices;
+    /** Parameter of each world item (fade for models, alpha for sprites) */
+    protected float[] params;
+    /** Material override of each world item (null if none) */
+    protected Material[] materials;
+    /** Level of detail of each world item (-1 if none) */
+    protected int[] levels;
+    /** Triangle count of each world item */
+    protected int[] triangles;
+    /** Number of world items */
+    protected int count;
+    /** Draw order of the world items */
+    protected RenderQueue queue;
+    /** View the snapshot is extracted for (depth of the items, culling) */
+    protected SceneView view;
+    /** Level of detail transitions started during the update */
+    protected int lodTransitions;
+    /** The items are sorted and batched */
+    protected boolean batched;
+
+    /** Instanced batch of each world item (-1 if drawn alone) */
+    protected int[] itemBatches;
+    /** Model of each batch */
+    protected Model[] batchModels;
+    /** Material override of each batch */
+    protected Material[] batchMaterials;
+    /** State run of each batch (batches only group items of the same state) */
+    protected int[] batchRuns;
+    /** First instance of each batch (-1 if too small to be instanced) */
+    protected int[] batchFirsts;
+    /** Number of instances of each batch */
+    protected int[] batchCounts;
+    /** First item of each batch in draw order (the whole batch is drawn there) */
+    protected int[] batchLeaders;
+    /** Number of batches */
+    protected int batchCount;
+    /** Number of instanced batches */
+    protected int instancedBatchCount;
+    /** Last batch of each model */
+    protected Map<Model, Integer> lastBatches;
+    /** Instance matrices of the instanced batches (16 floats per instance) */
+    protected FloatBuffer instanceData;
+    /** Number of instances */
+    protected int instanceCount;
+    /** Instance buffer (created on the render thread) */
+    protected InstanceBuffer instanceBuffer;
+    /** The instance matrices are uploaded */
+    protected boolean instancesUploaded;
+
+    /** Kind of each screen item */
+    protected byte[] uiKinds;
+    /** Drawn object of each screen item (text, button, image or component) */
+    protected Object[] uiRefs;
+    /** Shader of each screen item */
+    protected Shader[] uiShaders;
+    /** Parameters of each screen item (2 floats per item: hover state of buttons, position of images) */
+    protected float[] uiParams;
+    /** Number of screen items */
+    protected int uiCount;
+
+    /** The node being extracted is visible */
+    protected boolean nodeVisible;
+    /** Number of visible nodes having bounds */
+    protected int visibleCount;
+    /** Number of culled nodes */
+    protected int culledCount;
+    /** Time spent extracting (in nanoseconds) */
+    protected long extractNanos;
+    /** Time spent updating the scene before the extraction (in nanoseconds) */
+    protected long updateNanos;
+    /** Temp model matrix */
+    protected Matrix4f matrix;
+    /** Temp screen position */
+    protected Vector2f uiPosition;
+
+    /** Model item */
+    protected static final byte MODEL = 0;
+    /** Mesh item */
+    protected static final byte MESH = 1;
+    /** Sprite item */
+    protected static final byte SPRITE = 2;
+    /** Live component item */
+    protected static final byte LIVE = 3;
+    /** Text item */
+    protected static final byte TEXT = 4;
+    /** Button item */
+    protected static final byte BUTTON = 5;
+    /** Image item */
+    protected static final byte IMAGE = 6;
+    /** Initial capacity */
+    protected static final int INITIAL_CAPACITY = 64;
+    /** Layer of the models and meshes */
+    protected static final int LAYER_WORLD = 0;
+    /** Layer of the sprites */
+    protected static final int LAYER_SPRITE = 1;
+    /** Layer of the live components */
+    protected static final int LAYER_LIVE = 2;
+    /** Minimum number of instances of an instanced batch */
+    protected static final int MIN_INSTANCES = 2;
+
+    /**
+     * Create an empty snapshot
+     */
+    public RenderSnapshot() {
+        this.kinds = new byte[INITIAL_CAPACITY];
+        this.refs = new Object[INITIAL_CAPACITY];
+        this.shaders = new Shader[INITIAL_CAPACITY];
+        this.matrices = new float[INITIAL_CAPACITY * 16];
+        this.params = new float[INITIAL_CAPACITY];
+        this.materials = new Material[INITIAL_CAPACITY];
+        this.levels = new int[INITIAL_CAPACITY];
+        this.triangles = new int[INITIAL_CAPACITY];
+        this.uiKinds = new byte[INITIAL_CAPACITY];
+        this.uiRefs = new Object[INITIAL_CAPACITY];
+        this.uiShaders = new Shader[INITIAL_CAPACITY];
+        this.uiParams = new float[INITIAL_CAPACITY * 2];
+        this.matrix = new Matrix4f();
+        this.uiPosition = new Vector2f();
+        this.queue = new RenderQueue();
+        this.view = new SceneView();
+        this.itemBatches = new int[INITIAL_CAPACITY];
+        this.batchModels = new Model[INITIAL_CAPACITY];
+        this.batchMaterials = new Material[INITIAL_CAPACITY];
+        this.batchRuns = new int[INITIAL_CAPACITY];
+        this.batchFirsts = new int[INITIAL_CAPACITY];
+        this.batchCounts = new int[INITIAL_CAPACITY];
+        this.batchLeaders = new int[INITIAL_CAPACITY];
+        this.lastBatches = new IdentityHashMap<>();
+        this.instanceData = MemoryUtil.memAllocFloat(INITIAL_CAPACITY * 16);
+        this.nodeVisible = true;
+        this.batched = true;
+    }
+
+    /**
+     * Clear the snapshot before an extraction
+     */
+    public void clear() {
+        Arrays.fill(this.refs, 0, this.count, null);
+        Arrays.fill(this.shaders, 0, this.count, null);
+        Arrays.fill(this.materials, 0, this.count, null);
+        Arrays.fill(this.uiRefs, 0, this.uiCount, null);
+        Arrays.fill(this.uiShaders, 0, this.uiCount, null);
+        Arrays.fill(this.batchModels, 0, this.batchCount, null);
+        Arrays.fill(this.batchMaterials, 0, this.batchCount, null);
+        this.lastBatches.clear();
+        this.batchCount = 0;
+        this.instancedBatchCount = 0;
+        this.instanceCount = 0;
+        this.batched = true;
+        this.count = 0;
+        this.queue.clear();
+        this.uiCount = 0;
+        this.nodeVisible = true;
+        this.visibleCount = 0;
+        this.culledCount = 0;
+    }
+
+    /**
+     * Begin the extraction of a node
+     * @param visible the node is visible (world items of culled nodes are dropped)
+     */
+    public void beginNode(boolean visible) {
+        this.nodeVisible = visible;
+    }
+
+    /**
+     * Returns true if the node being extracted is visible
+     * @return true if the node being extracted is visible
+     */
+    public boolean isNodeVisible() {
+        return nodeVisible;
+    }
+
+    /**
+     * Returns the view the snapshot is extracted for, set on the main thread before the update
+     * @return the view of the snapshot
+     */
+    public SceneView getView() {
+        return view;
+    }
+
+    /**
+     * Add a model
+     * @param model model
+     * @param modelMatrix model matrix (copied)
+     * @param fade cross-fade value (see the uFade uniform, 1 for opaque)
+     * @param level level of detail (-1 if none)
+     * @param triangleCount triangle count of the model
+     */
+    public void addModel(Model model, Matrix4f modelMatrix, float fade, int level, int triangleCount) {
+        this.addModel(model, modelMatrix, null, fade, level, triangleCount);
+    }
+
+    /**
+     * Add a model drawn with a material override
+     * @param model model
+     * @param modelMatrix model matrix (copied)
+     * @param material material used for all the meshes (null to keep theirs)
+     * @param fade cross-fade value (see the uFade uniform, 1 for opaque)
+     * @param level level of detail (-1 if none)
+     * @param triangleCount triangle count of the model
+     */
+    public void addModel(Model model, Matrix4f modelMatrix, Material material, float fade, int level, int triangleCount) {
+        if(!this.nodeVisible) return;
+        int i = this.addItem(MODEL, model, null);
+        this.materials[i] = material;
+        modelMatrix.get(this.matrices, i * 16);
+        this.params[i] = fade;
+        this.levels[i] = level;
+        this.triangles[i] = triangleCount;
+
+        Mesh[] meshes = model.getMeshes();
+        Texture[] textures = model.getTextures();
+        if(material == null && meshes.length > 0) material = meshes[0].getMaterial();
+        int texture = textures != null && textures.length > 0 ? textures[0].getRenderID() : 0;
+        float depth = this.view.getPosition().distance(this.matrices[i * 16 + 12], this.matrices[i * 16 + 13], this.matrices[i * 16 + 14]);
+        this.queue.add(RenderQueue.opaqueKey(LAYER_WORLD, 0, sortId(material), texture, depth), i);
+    }
+
+    /**
+     * Add a mesh drawn with its own shader
+     * @param mesh mesh
+     * @param shader shader (null for the pass shader)
+     */
+    public void addMesh(Mesh mesh, Shader shader) {
+        if(!this.nodeVisible) return;
+        int i = this.addItem(MESH, mesh, shader);
+        this.triangles[i] = mesh.getTriangleCount();
+        int program = shader != null ? shader.getRenderID() : 0;
+        this.queue.add(RenderQueue.opaqueKey(LAYER_WORLD, program, sortId(mesh.getMaterial()), 0, 0f), i);
+    }
+
+    /**
+     * Add a sprite
+     * @param sprite sprite
+     * @param x x position (pixel)
+     * @param y y position (pixel)
+     * @param alpha alpha
+     */
+    public void addSprite(Sprite sprite, float x, float y, float alpha) {
+        if(!this.nodeVisible) return;
+        int i = this.addItem(SPRITE, sprite, sprite.getShader());
+        this.matrix.translation(x, y, 0f).get(this.matrices, i * 16);
+        this.params[i] = alpha;
+        this.triangles[i] = 2;
+        // 2D sprites have no depth, keep their submission order (painter's order)
+        this.queue.add(RenderQueue.translucentKey(LAYER_SPRITE, 0, 0, 0, 0f), i);
+    }
+
+    /**
+     * Add a component rendered live (world)
+     * @param component component
+     */
+    public void addLive(Component component) {
+        if(!this.nodeVisible) return;
+        int i = this.addItem(LIVE, component, null);
+        this.queue.add(RenderQueue.opaqueKey(LAYER_LIVE, 0, 0, 0, 0f), i);
+    }
+
+    /**
+     * Add a text (screen)
+     * @param text text
+     * @param shader shader
+     */
+    public void addText(Text text, Shader shader) {
+        this.addUIItem(TEXT, text, shader);
+    }
+
+    /**
+     * Add a button (screen)
+     * @param button button
+     * @param hovered hover state of the button (copied)
+     */
+    public void addButton(Button button, boolean hovered) {
+        int i = this.addUIItem(BUTTON, button, null);
+        this.uiParams[i * 2] = hovered ? 1f : 0f;
+    }
+
+    /**
+     * Add an image (screen)
+     * @param image image
+     * @param position position of the image (screen UV, copied)
+     */
+    public void addImage(Image image, Vector2f position) {
+        int i = this.addUIItem(IMAGE, image, null);
+        this.uiParams[i * 2] = position.x();
+        this.uiParams[i * 2 + 1] = position.y();
+    }
+
+    /**
+     * Add a component rendered live (screen)
+     * @param component component
+     */
+    public void addLiveUI(Component component) {
+        this.addUIItem(LIVE, component, null);
+    }
+
+    /**
+     * Sets the culling statistics of the extraction
+     * @param visibleCount number of visible nodes having bounds
+     * @param culledCount number of culled nodes
+     */
+    public void setCullingStats(int visibleCount, int culledCount) {
+        this.visibleCount = visibleCount;
+        this.culledCount = culledCount;
+    }
+
+    /**
+     * Sort the world items in draw order and group the models into instanced batches
+     * (done once per snapshot, the order and the batches are kept for all the passes)
+     */
+    public void sort() {
+        if(this.batched) return;
+        this.queue.sort();
+        this.buildBatches();
+        this.batched = true;
+    }
+
+    /**
+     * Render the world items (in sorted order)
+     * @param passShader shader of the render pass
+     */
+    public void render(Shader passShader) {
+        Shader.makeActive(passShader);
+        FrameStats stats = FrameStats.Get();
+        this.sort();
+        Shader instancedShader = passShader.getInstancedVariant();
+        if(instancedShader != null && !this.uploadInstances()) instancedShader = null;
+        for(int q = 0; q < this.queue.size(); ++q) {
+            int i = this.queue.getItem(q);
+            switch(this.kinds[i]) {
+            case MODEL:
+                int batch = this.itemBatches[i];
+                if(instancedShader != null && batch >= 0) {
+                    if(this.batchLeaders[batch] == i) {
+                        this.batchModels[batch].drawInstanced(instancedShader, this.batchMaterials[batch],
+                            this.instanceBuffer, this.batchFirsts[batch], this.batchCounts[batch]);
+                    }
+                    if(this.levels[i] >= 0) stats.addLodObject(this.levels[i], this.triangles[i]);
+                    else stats.addTriangles(this.triangles[i]);
+                    break;
+                }
+                this.matrix.set(this.matrices, i * 16);
+                if(this.params[i] != 1f) passShader.setUniform(Uniforms.FADE, this.params[i]);
+                ((Model)this.refs[i]).draw(passShader, this.matrix, this.materials[i]);
+                if(this.params[i] != 1f) passShader.setUniform(Uniforms.FADE, 1f);
+                if(this.levels[i] >= 0) stats.addLodObject(this.levels[i], this.triangles[i]);
+                else stats.addTriangles(this.triangles[i]);
+                break;
+            case MESH:
+                ((Mesh)this.refs[i]).draw(this.shaders[i] != null ? this.shaders[i] : passShader);
+                stats.addTriangles(this.triangles[i]);
+                break;
+            case SPRITE:
+                this.matrix.set(this.matrices, i * 16);
+                Shader spriteShader = this.shaders[i];
+                spriteShader.setUniform(Uniforms.ALPHA, this.params[i]);
+                spriteShader.setUniform(Uniforms.MODEL, this.matrix);
+                ((Sprite)this.refs[i]).draw();
+                stats.addTriangles(this.triangles[i]);
+                break;
+            case LIVE:
+                ((Component)this.refs[i]).onRender();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Render the screen items
+     */
+    public void renderUI() {
+        for(int i = 0; i < this.uiCount; ++i) {
+            switch(this.uiKinds[i]) {
+            case TEXT:
+                ((Text)this.uiRefs[i]).draw(this.uiShaders[i]);
+                break;
+            case BUTTON:
+                ((Button)this.uiRefs[i]).draw(this.uiParams[i * 2] != 0f);
+                break;
+            case IMAGE:
+                ((Image)this.uiRefs[i]).draw(this.uiPosition.set(this.uiParams[i * 2], this.uiParams[i * 2 + 1]));
+                break;
+            case LIVE:
+                ((Component)this.uiRefs[i]).onRenderUI();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of world items
+     * @return the number of world items
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the number of instanced batches (each drawn with one call per mesh)
+     * @return the number of instanced batches
+     */
+    public int getInstancedBatchCount() {
+        return instancedBatchCount;
+    }
+
+    /**
+     * Returns the number of models drawn through the instanced batches
+     * @return the number of models drawn through the instanced batches
+     */
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    /**
+     * Delete the instance buffer and free the instance matrices (render thread)
+     */
+    public void delete() {
+        if(this.instanceBuffer != null) {
+            this.instanceBuffer.delete();
+            this.instanceBuffer = null;
+        }
+        if(this.instanceData != null) {
+            MemoryUtil.memFree(this.instanceData);
+            this.instanceData = null;
+        }
+    }
+
+    /**
+     * Returns the number of visible nodes having bounds
+     * @return the number of visible nodes having bounds
+     */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /**
+     * Returns the number of culled nodes
+     * @return the number of culled nodes
+     */
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    /**
+     * Sets the time spent extracting this snapshot
+     * @param extractNanos time spent extracting (in nanoseconds)
+     */
+    public void setExtractNanos(long extractNanos) {
+        this.extractNanos = extractNanos;
+    }
+
+    /**
+     * Returns the time spent extracting this snapshot
+     * @return the time spent extracting (in nanoseconds)
+     */
+    public long getExtractNanos() {
+        return extractNanos;
+    }
+
+    /**
+     * Sets the time spent updating the scene before the extraction
+     * @param updateNanos time spent updating (in nanoseconds)
+     */
+    public void setUpdateNanos(long updateNanos) {
+        this.updateNanos = updateNanos;
+    }
+
+    /**
+     * Returns the time spent updating the scene before the extraction
+     * @return the time spent updating (in nanoseconds)
+     */
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    /**
+     * Sets the number of level of detail transitions started during the update
+     * @param lodTransitions number of transitions
+     */
+    public void setLodTransitions(int lodTransitions) {
+        this.lodTransitions = lodTransitions;
+    }
+
+    /**
+     * Returns the number of level of detail transitions started during the update
+     * @return the number of transitions
+     */
+    public int getLodTransitions() {
+        return lodTransitions;
+    }
+
+    /**
+     * Add a world item
+     * @param kind kind of the item
+     * @param ref drawn object
+     * @param shader shader (or null)
+     * @return the index of the item
+     */
+    protected int addItem(byte kind, Object ref, Shader shader) {
+        if(this.count == this.kinds.length) {
+            int capacity = this.count * 2;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.refs = Arrays.copyOf(this.refs, capacity);
+            this.shaders = Arrays.copyOf(this.shaders, capacity);
+            this.matrices = Arrays.copyOf(this.matrices, capacity * 16);
+            this.params = Arrays.copyOf(this.params, capacity);
+            this.materials = Arrays.copyOf(this.materials, capacity);
+            this.levels = Arrays.copyOf(this.levels, capacity);
+            this.triangles = Arrays.copyOf(this.triangles, capacity);
+            this.itemBatches = Arrays.copyOf(this.itemBatches, capacity);
+        }
+        this.batched = false;
+        int i = this.count++;
+        this.kinds[i] = kind;
+        this.refs[i] = ref;
+        this.shaders[i] = shader;
+        this.params[i] = 1f;
+        this.levels[i] = -1;
+        this.triangles[i] = 0;
+        return i;
+    }
+
+    /**
+     * Group the sorted models into batches: consecutive items of the same state drawing the
+     * same model with the same material, fully opaque (no cross-fade). The matrices of the
+     * batches large enough to be instanced are packed in draw order.
+     */
+    protected void buildBatches() {
+        int run = 0;
+        long runState = -1;
+        for(int q = 0; q < this.queue.size(); ++q) {
+            int i = this.queue.getItem(q);
+            this.itemBatches[i] = -1;
+            if(this.kinds[i] != MODEL || this.params[i] != 1f) continue;
+            Model model = (Model)this.refs[i];
+            if(!model.supportsInstancing()) continue;
+            long state = RenderQueue.opaqueState(this.queue.getKey(q));
+            if(state != runState) {
+                runState = state;
+                run++;
+            }
+            Integer last = this.lastBatches.get(model);
+            int batch;
+            if(last != null && this.batchRuns[last] == run && this.batchMaterials[last] == this.materials[i]) {
+                batch = last;
+            } else {
+                batch = this.addBatch(model, this.materials[i], run);
+                this.lastBatches.put(model, batch);
+            }
+            this.batchCounts[batch]++;
+            this.itemBatches[i] = batch;
+        }
+
+        // instance ranges
+        int instances = 0;
+        for(int b = 0; b < this.batchCount; ++b) {
+            if(this.batchCounts[b] < MIN_INSTANCES) {
+                this.batchFirsts[b] = -1;
+                continue;
+            }
+            this.batchFirsts[b] = instances;
+            instances += this.batchCounts[b];
+            this.batchCounts[b] = 0;
+            this.instancedBatchCount++;
+        }
+        if(instances * 16 > this.instanceData.capacity()) {
+            this.instanceData = MemoryUtil.memRealloc(this.instanceData, Math.max(instances * 16, this.instanceData.capacity() * 2));
+        }
+
+        // pack the matrices in draw order (front to back inside a batch)
+        for(int q = 0; q < this.queue.size(); ++q) {
+            int i = this.queue.getItem(q);
+            int batch = this.itemBatches[i];
+            if(batch < 0) continue;
+            if(this.batchFirsts[batch] < 0) {
+                this.itemBatches[i] = -1;
+                continue;
+            }
+            if(this.batchCounts[batch] == 0) this.batchLeaders[batch] = i;
+            int instance = this.batchFirsts[batch] + this.batchCounts[batch]++;
+            this.instanceData.put(instance * 16, this.matrices, i * 16, 16);
+        }
+        this.instanceCount = instances;
+        this.instancesUploaded = false;
+    }
+
+    /**
+     * Add an empty batch
+     * @param model model of the batch
+     * @param material material override of the batch (or null)
+     * @param run state run of the batch
+     * @return the index of the batch
+     */
+    protected int addBatch(Model model, Material material, int run) {
+        if(this.batchCount == this.batchModels.length) {
+            int capacity = this.batchCount * 2;
+            this.batchModels = Arrays.copyOf(this.batchModels, capacity);
+            this.batchMaterials = Arrays.copyOf(this.batchMaterials, capacity);
+            this.batchRuns = Arrays.copyOf(this.batchRuns, capacity);
+            this.batchFirsts = Arrays.copyOf(this.batchFirsts, capacity);
+            this.batchCounts = Arrays.copyOf(this.batchCounts, capacity);
+            this.batchLeaders = Arrays.copyOf(this.batchLeaders, capacity);
+        }
+        int b = this.batchCount++;
+        this.batchModels[b] = model;
+        this.batchMaterials[b] = material;
+        this.batchRuns[b] = run;
+        this.batchCounts[b] = 0;
+        return b;
+    }
+
+    /**
+     * Upload the instance matrices once per snapshot (render thread)
+     * @return true if the instanced batches can be drawn
+     */
+    protected boolean uploadInstances() {
+        if(this.instanceCount == 0 || this.instancesUploaded) return true;
+        if(this.instanceBuffer == null) {
+            try {
+                this.instanceBuffer = new InstanceBuffer();
+            } catch(LWJGLException e) {
+                Log.Get().error("Failed to create the instance buffer: " + e.getMessage());
+                return false;
+            }
+        }
+        this.instanceData.limit(this.instanceCount * 16).position(0);
+        this.instanceBuffer.setData(this.instanceData);
+        this.instanceData.clear();
+        this.instancesUploaded = true;
+        return true;
+    }
+
+    /**
+     * Returns the sort id of a material
+     * @param material material (or null)
+     * @return the sort id of the material (0 if null)
+     */
+    protected static int sortId(Material material) {
+        return material != null ? material.getSortId() : 0;
+    }
+
+    /**
+     * Add a screen item
+     * @param kind kind of the item
+     * @param ref drawn object
+     * @param shader shader (or null)
+     * @return the index of the item
+     */
+    protected int addUIItem(byte kind, Object ref, Shader shader) {
+        if(this.uiCount == this.uiRefs.length) {
+            int capacity = this.uiCount * 2;
+            this.uiKinds = Arrays.copyOf(this.uiKinds, capacity);
+            this.uiRefs = Arrays.copyOf(this.uiRefs, capacity);
+            this.uiShaders = Arrays.copyOf(this.uiShaders, capacity);
+            this.uiParams = Arrays.copyOf(this.uiParams, capacity * 2);
+        }
+        int i = this.uiCount++;
+        this.uiKinds[i] = kind;
+        this.uiRefs[i] = ref;
+        this.uiShaders[i] = shader;
+        return i;
+    }
+}
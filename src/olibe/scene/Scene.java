@@ -1,8 +1,10 @@
 package olibe.scene;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import olibe.core.Log;
+import olibe.render.Frustum;
 import olibe.render.Shader;
 
 /**
@@ -13,38 +15,56 @@ public class Scene {
     protected String name;
     /** Root node of this scene */
     protected SceneNode root;
+    /** Cached traversal of the scene tree */
+    protected SceneTraversal traversal;
+    /** Compiled paths used by getNode */
+    protected Map<String, NodePath> pathCache;
+    /** Max number of compiled paths kept by getNode */
+    protected static final int PATH_CACHE_SIZE = 1024;
+    /** Phased component update scheduler */
+    protected UpdateScheduler scheduler;
+    /** Structural edits applied after the update */
+    protected SceneCommandBuffer commands;
+    /** Index of the nodes by component type and tag */
+    protected SceneIndex index;
+    /** Bulk world matrices, one slot per traversed node (null if disabled) */
+    protected TransformBuffer bulkTransforms;
+    /** Transform version of each slot when its local data was stored */
+    protected int[] bulkStoredVersions;
+    /** Structure version of the tree when the bulk slots were built (-1 to rebuild) */
+    protected int bulkVersion;
 
-    /** Function for updating each node */
-    protected static final SceneNodeFunction UPDATE_FUNC = new SceneNodeFunction() {
-        public <T> void call(SceneNode node, T delta) {
-            if(node != null) {
-                for(Component comp : node.getComponents()) {
-                    comp.onUpdate((float)delta);
-                }
-            }
-        };
+    /** Visitor recalculating the world matrices of dirty subtrees */
+    protected static final SceneNodeVisitor TRANSFORM_VISITOR = new SceneNodeVisitor() {
+        public boolean visit(SceneNode node) {
+            Transform transform = node.getTransform();
+            transform.refreshWorld();
+            boolean descend = transform.childDirty;
+            transform.childDirty = false;
+            return descend;
+        }
     };
 
-    /** Function for rendering each node (world) */
-    protected static final SceneNodeFunction RENDER_FUNC = new SceneNodeFunction() {
-        public <T> void call(SceneNode node, T extra) {
-            if(node != null) {
-                for(Component comp : node.getComponents()) {
-                    comp.onRender();
-                }
+    /** Visitor rendering each node (world) */
+    protected static final SceneNodeVisitor RENDER_VISITOR = new SceneNodeVisitor() {
+        public boolean visit(SceneNode node) {
+            List<Component> components = node.components;
+            for(int i = 0; i < components.size(); ++i) {
+                components.get(i).onRender();
             }
-        };
+            return true;
+        }
     };
 
-    /** Function for rendering each node (screen/ui) */
-    protected static SceneNodeFunction RENDER_UI_FUNC = new SceneNodeFunction() {
-        public <T> void call(SceneNode node, T extra) {
-            if(node != null) {
-                for(Component comp : node.getComponents()) {
-                    comp.onRenderUI();
-                }
+    /** Visitor rendering each node (screen/ui) */
+    protected static final SceneNodeVisitor RENDER_UI_VISITOR = new SceneNodeVisitor() {
+        public boolean visit(SceneNode node) {
+            List<Component> components = node.components;
+            for(int i = 0; i < components.size(); ++i) {
+                components.get(i).onRenderUI();
             }
-        };
+            return true;
+        }
     };
 
     /**
@@ -54,6 +74,14 @@ public class Scene {
     public Scene(String name) {
         this.name = name;
         this.root = new SceneNode("root");
+        this.traversal = new SceneTraversal(this.root);
+        this.scheduler = new UpdateScheduler();
+        this.commands = new SceneCommandBuffer();
+        this.index = new SceneIndex();
+        this.root.getContext().index = this.index;
+        this.pathCache = new ConcurrentHashMap<>();
+        this.bulkTransforms = null;
+        this.bulkVersion = -1;
     }
 
     /**
@@ -64,24 +92,22 @@ public class Scene {
     public SceneNode getNode(String path) {
         if(path.length() == 0) return root;
 
-        int sep = path.indexOf('/');
-        if(sep == -1)
-            return root.getChild(path);
-
-        String sceneNode      = path.substring(0, sep);
-        String currentPath    = path.substring(sep+1);
-        SceneNode currentNode = root.getChild(sceneNode);
-        
-        while(currentPath.length() > 0 && !currentPath.equals("/")) {
-            sep = currentPath.indexOf('/');
-            if(sep == -1) sep = currentPath.length();
-            sceneNode   = currentPath.substring(0,sep);
-            currentPath = currentPath.substring(sep);
-        
-            currentNode = currentNode.getChild(sceneNode);
-            if(currentNode == null) return null;
+        NodePath nodePath = this.pathCache.get(path);
+        if(nodePath == null) {
+            if(this.pathCache.size() >= PATH_CACHE_SIZE) this.pathCache.clear();
+            nodePath = new NodePath(path);
+            this.pathCache.put(path, nodePath);
         }
-        return currentNode;
+        return nodePath.resolve(this.root);
+    }
+
+    /**
+     * Returns a node from a compiled path
+     * @param path compiled path to the node
+     * @return the resolved node from the path
+     */
+    public SceneNode getNode(NodePath path) {
+        return path.resolve(this.root);
     }
 
     /**
@@ -102,28 +128,30 @@ public class Scene {
 
     /**
      * Apply a node function for each node of this scene using DFS
+     * (children of inactive nodes are not explored)
      * @param <T> extra argument type
      * @param function function to apply for each node
      * @param extra extra argument
      */
     public <T> void applyNode(SceneNodeFunction function, T extra) {
-        Queue<SceneNode> toExplore = new ArrayDeque<>();
-        toExplore.add(root);
-        List<SceneNode> explored = new ArrayList<SceneNode>();
-
-        while(toExplore.size() != 0) {
-            SceneNode node = toExplore.remove();
-            explored.add(node);
-
-            function.call(node, extra);
-            if(node.isActive()) {
-                for(SceneNode child : node.getChildren()) {
-                    if(!explored.contains(child)) {
-                        toExplore.add(child);
-                    }
-                }
-            }
-        }
+        this.traversal.forEach(function, extra);
+    }
+
+    /**
+     * Visit each node of this scene using DFS
+     * (children of inactive nodes are not explored)
+     * @param visitor visitor to apply, returning false skips the subtree of the visited node
+     */
+    public void visit(SceneNodeVisitor visitor) {
+        this.traversal.forEach(visitor);
+    }
+
+    /**
+     * Returns the cached traversal of this scene
+     * @return the cached traversal of this scene
+     */
+    public SceneTraversal getTraversal() {
+        return traversal;
     }
 
     /**
@@ -131,8 +159,186 @@ public class Scene {
      * @param delta frame delta time (in seconds)
      */
     public void update(float delta) {
-        applyNode(UPDATE_FUNC, delta);
-    }   
+        this.scheduler.update(this.traversal, delta);
+        this.commands.apply();
+        this.updateTransforms();
+    }
+
+    /**
+     * Defer a structural edit (adding/removing nodes or components) until the end
+     * of the current update phase, runs it immediately outside of an update
+     * @param edit edit to run
+     */
+    public void defer(Runnable edit) {
+        this.scheduler.defer(edit);
+    }
+
+    /**
+     * Returns the nodes of this scene having a component of a type
+     * @param type component type (exact class)
+     * @return the nodes having a component of this type (read only)
+     */
+    public Set<SceneNode> getNodesWith(Class<? extends Component> type) {
+        return this.index.getNodes(type);
+    }
+
+    /**
+     * Returns the nodes of this scene having all the tags of a mask
+     * @param mask tags mask (see {@link #tag(String)})
+     * @return the nodes having all the tags of the mask
+     */
+    public List<SceneNode> getNodesWithTags(long mask) {
+        return this.index.getNodesWithTags(mask, new ArrayList<>());
+    }
+
+    /**
+     * Returns the mask of a tag of this scene
+     * @param name name of the tag
+     * @return the mask of the tag
+     */
+    public long tag(String name) {
+        return this.index.tag(name);
+    }
+
+    /**
+     * Enable the change journal of this scene (nodes, activation, transforms and components changes)
+     * @param capacity number of events kept before lagging consumers overflow (ignored if already enabled)
+     * @return the change journal of this scene
+     */
+    public SceneJournal enableJournal(int capacity) {
+        SceneContext sceneContext = this.root.getContext();
+        if(sceneContext.journal == null) {
+            sceneContext.journal = new SceneJournal(capacity);
+        }
+        return sceneContext.journal;
+    }
+
+    /**
+     * Returns the change journal of this scene
+     * @return the change journal of this scene (null if not enabled)
+     */
+    public SceneJournal getJournal() {
+        return this.root.getContext().journal;
+    }
+
+    /**
+     * Sets the view of the frame being updated, read by the components instead of the active camera
+     * @param view view of the frame (null to read the active camera)
+     */
+    public void setView(SceneView view) {
+        this.root.getContext().view = view;
+    }
+
+    /**
+     * Returns the view of the frame being updated
+     * @return the view of the frame being updated (null if none)
+     */
+    public SceneView getView() {
+        return this.root.getContext().view;
+    }
+
+    /**
+     * Returns the index of the nodes by component type and tag
+     * @return the index of the nodes by component type and tag
+     */
+    public SceneIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the name of this scene
+     * @return the name of this scene
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the command buffer of this scene, its structural edits are applied
+     * in one batch after the components update
+     * @return the command buffer of this scene
+     */
+    public SceneCommandBuffer getCommands() {
+        return commands;
+    }
+
+    /**
+     * Returns the update scheduler of this scene
+     * @return the update scheduler of this scene
+     */
+    public UpdateScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Compute the world matrices of every node in bulk (see {@link TransformBuffer}) instead of
+     * node by node. Worth it when most transforms change each frame, clean subtrees are
+     * not skipped but the matrices are only copied back to the changed transforms
+     * @param enabled use the bulk computation
+     * @return this
+     */
+    public Scene setBulkTransforms(boolean enabled) {
+        if(enabled && this.bulkTransforms == null) {
+            this.bulkTransforms = new TransformBuffer(this.traversal.size());
+            this.bulkStoredVersions = new int[0];
+            this.bulkVersion = -1;
+        } else if(!enabled && this.bulkTransforms != null) {
+            this.bulkTransforms.delete();
+            this.bulkTransforms = null;
+            this.bulkStoredVersions = null;
+        }
+        return this;
+    }
+
+    /**
+     * Recalculate the world matrices of the nodes whose transform (or a parent transform) changed,
+     * clean subtrees are skipped
+     */
+    public void updateTransforms() {
+        if(this.bulkTransforms != null) {
+            this.updateTransformsBulk();
+            return;
+        }
+        this.traversal.forEach(TRANSFORM_VISITOR);
+    }
+
+    /**
+     * Recalculate the world matrices with the bulk transforms: the slots follow the
+     * traversal order (parents first), only the transforms changed since their last store
+     * are stored again, then the matrices of the changed transforms are copied back
+     */
+    protected void updateTransformsBulk() {
+        SceneTraversal t = this.traversal;
+        t.validate();
+        TransformBuffer buffer = this.bulkTransforms;
+        boolean rebuilt = this.bulkVersion != t.builtVersion || buffer.size() != t.size;
+        if(rebuilt) {
+            buffer.clear();
+            int[] ancestors = new int[t.size];
+            int top = -1;
+            for(int i = 0; i < t.size; ++i) {
+                while(top >= 0 && t.subtreeEnds[ancestors[top]] <= i) top--;
+                buffer.allocate((top >= 0) ? ancestors[top] : -1);
+                ancestors[++top] = i;
+            }
+            if(this.bulkStoredVersions.length < t.size) this.bulkStoredVersions = new int[t.size];
+            this.bulkVersion = t.builtVersion;
+        }
+
+        for(int i = 0; i < t.size; ++i) {
+            Transform transform = t.nodes[i].transform;
+            if(rebuilt || transform.worldDirty || transform.version != this.bulkStoredVersions[i]) {
+                buffer.store(i, transform);
+            }
+        }
+        buffer.computeWorldMatrices();
+        for(int i = 0; i < t.size; ++i) {
+            Transform transform = t.nodes[i].transform;
+            transform.refreshWorld(buffer, i);
+            transform.childDirty = false;
+            this.bulkStoredVersions[i] = transform.version;
+        }
+    }
 
     /**
      * Render this scene (world)
@@ -140,14 +346,49 @@ public class Scene {
      */
     public void render(Shader shader) {
         Shader.makeActive(shader);
-        applyNode(RENDER_FUNC, null);
+        this.traversal.forEach(RENDER_VISITOR);
+    }
+
+    /**
+     * Copy the render state of this scene into a snapshot, sorted in draw order
+     * @param snapshot snapshot to fill (cleared first)
+     * @param culler culler of the nodes (null for no culling)
+     * @param frustum frustum to cull against (null for no culling)
+     */
+    public void extract(RenderSnapshot snapshot, VisibilityCuller culler, Frustum frustum) {
+        long start = System.nanoTime();
+        snapshot.clear();
+        boolean culling = culler != null && frustum != null;
+        if(culling) {
+            culler.cull(this.traversal, frustum);
+            snapshot.setCullingStats(culler.getVisibleCount(), culler.getCulledCount());
+        }
+        this.traversal.validate();
+        this.traversal.traversing++;
+        try {
+            for(int i = 0; i < this.traversal.size; ++i) {
+                snapshot.beginNode(!culling || culler.isVisible(i));
+                List<Component> components = this.traversal.getNode(i).components;
+                for(int c = 0; c < components.size(); ++c) {
+                    Component component = components.get(c);
+                    if(component.onExtract(snapshot)) continue;
+                    snapshot.addLive(component);
+                    snapshot.addLiveUI(component);
+                }
+            }
+        } finally {
+            this.traversal.traversing--;
+        }
+        snapshot.sort();
+        snapshot.setExtractNanos(System.nanoTime() - start);
     }
 
     /**
-     * Render this scene (screen/ui)
+     * Render this scene (screen/ui), in DFS pre-order: a node and its whole subtree
+     * are drawn before its next sibling, so a subtree is layered above its previous siblings
      */
     public void renderUI() {
-        applyNode(RENDER_UI_FUNC, null);
+        this.traversal.forEach(RENDER_UI_VISITOR);
     }
 
     /**
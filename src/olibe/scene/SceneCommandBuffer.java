@@ -0,0 +1,220 @@
+package olibe.scene;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+
+import olibe.core.Log;
+
+/**
+ * Deferred structural edits of a scene.
+ * Edits (create, attach, detach, destroy) are recorded during the frame
+ * (from any thread) and applied in one batch at a sync point,
+ * the trees are only notified once per batch.
+ */
+public class SceneCommandBuffer {
+    /** Recorded operations */
+    protected byte[] ops;
+    /** Node of each operation */
+    protected SceneNode[] nodes;
+    /** Parent of each operation (attach only) */
+    protected SceneNode[] parents;
+    /** Number of recorded operations */
+    protected int count;
+    /** Operations being applied */
+    protected byte[] applyOps;
+    /** Nodes of the operations being applied */
+    protected SceneNode[] applyNodes;
+    /** Parents of the operations being applied */
+    protected SceneNode[] applyParents;
+    /** Roots of the trees changed by the current batch (identity set) */
+    protected Set<SceneNode> changedRoots;
+    /** Runs the deletion of the destroyed nodes (null to delete them when applied) */
+    protected Executor deleter;
+
+    /** Attach a node to a parent */
+    protected static final byte OP_ATTACH = 0;
+    /** Detach a node from its parent */
+    protected static final byte OP_DETACH = 1;
+    /** Detach and delete a node */
+    protected static final byte OP_DESTROY = 2;
+    /** Initial capacity */
+    protected static final int INITIAL_CAPACITY = 32;
+
+    /**
+     * Create an empty command buffer
+     */
+    public SceneCommandBuffer() {
+        this.ops = new byte[INITIAL_CAPACITY];
+        this.nodes = new SceneNode[INITIAL_CAPACITY];
+        this.parents = new SceneNode[INITIAL_CAPACITY];
+        this.applyOps = new byte[INITIAL_CAPACITY];
+        this.applyNodes = new SceneNode[INITIAL_CAPACITY];
+        this.applyParents = new SceneNode[INITIAL_CAPACITY];
+        this.changedRoots = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.deleter = null;
+        this.count = 0;
+    }
+
+    /**
+     * Sets the executor running the deletion of the destroyed nodes. The buffer may be applied
+     * on the update thread while their OpenGL objects must be deleted on the render thread
+     * @param deleter executor running the deletions (null to delete the nodes when applied)
+     */
+    public void setDeleter(Executor deleter) {
+        this.deleter = deleter;
+    }
+
+    /**
+     * Create a node, it is attached to its parent when the buffer is applied
+     * @param name name of the node
+     * @param parent parent of the node
+     * @return the created node
+     */
+    public SceneNode create(String name, SceneNode parent) {
+        SceneNode node = new SceneNode(name);
+        this.attach(node, parent);
+        return node;
+    }
+
+    /**
+     * Attach a node to a parent (it is detached from its current parent first)
+     * @param node node to attach
+     * @param parent new parent
+     */
+    public synchronized void attach(SceneNode node, SceneNode parent) {
+        if(node == null || parent == null) throw new IllegalArgumentException("Cannot attach a null node");
+        this.record(OP_ATTACH, node, parent);
+    }
+
+    /**
+     * Detach a node from its parent
+     * @param node node to detach
+     */
+    public synchronized void detach(SceneNode node) {
+        this.record(OP_DETACH, node, null);
+    }
+
+    /**
+     * Detach a node from its parent and delete it (its children and components included)
+     * @param node node to destroy
+     */
+    public synchronized void destroy(SceneNode node) {
+        this.record(OP_DESTROY, node, null);
+    }
+
+    /**
+     * Returns the number of recorded operations
+     * @return the number of recorded operations
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Apply the recorded operations (in recording order) then notify each changed tree once
+     * @return the number of applied operations
+     */
+    public int apply() {
+        int applied;
+        synchronized(this) {
+            if(this.count == 0) return 0;
+            // swap the buffers so edits recorded while applying go to the next batch
+            byte[] tmpOps = this.ops; this.ops = this.applyOps; this.applyOps = tmpOps;
+            SceneNode[] tmpNodes = this.nodes; this.nodes = this.applyNodes; this.applyNodes = tmpNodes;
+            SceneNode[] tmpParents = this.parents; this.parents = this.applyParents; this.applyParents = tmpParents;
+            applied = this.count;
+            this.count = 0;
+        }
+
+        for(int i = 0; i < applied; ++i) {
+            SceneNode node = this.applyNodes[i];
+            SceneNode oldParent = node.getParent();
+            if(oldParent != null) {
+                this.markChanged(oldParent.getRoot());
+            }
+            switch(this.applyOps[i]) {
+            case OP_ATTACH:
+                SceneNode parent = this.applyParents[i];
+                if(node.isAncestorOf(parent)) {
+                    Log.Get().error("Cannot attach node [" + node.getName() + "] under itself or its descendant [" + parent.getName() + "]");
+                    break;
+                }
+                if(oldParent != null) {
+                    parent.moveChild(node);
+                } else {
+                    parent.attachChild(node);
+                }
+                this.markChanged(parent.getRoot());
+                break;
+            case OP_DETACH:
+                if(oldParent != null) oldParent.detachChild(node);
+                break;
+            case OP_DESTROY:
+                if(oldParent != null) oldParent.detachChild(node);
+                this.delete(node);
+                break;
+            }
+            this.applyNodes[i] = null;
+            this.applyParents[i] = null;
+        }
+
+        for(SceneNode root : this.changedRoots) {
+            root.notifyStructureChanged();
+        }
+        this.changedRoots.clear();
+        return applied;
+    }
+
+    /**
+     * Drop the recorded operations
+     */
+    public synchronized void clear() {
+        Arrays.fill(this.nodes, 0, this.count, null);
+        Arrays.fill(this.parents, 0, this.count, null);
+        this.count = 0;
+    }
+
+    /**
+     * Record an operation
+     * @param op operation
+     * @param node node
+     * @param parent parent (attach only)
+     */
+    protected void record(byte op, SceneNode node, SceneNode parent) {
+        if(node == null) throw new IllegalArgumentException("Cannot record an operation on a null node");
+        if(this.count == this.ops.length) {
+            int capacity = this.count * 2;
+            this.ops = Arrays.copyOf(this.ops, capacity);
+            this.nodes = Arrays.copyOf(this.nodes, capacity);
+            this.parents = Arrays.copyOf(this.parents, capacity);
+        }
+        this.ops[this.count] = op;
+        this.nodes[this.count] = node;
+        this.parents[this.count] = parent;
+        this.count++;
+    }
+
+    /**
+     * Delete a destroyed node (detached), through the deleter if any
+     * @param node node to delete
+     */
+    protected void delete(final SceneNode node) {
+        if(this.deleter == null) {
+            node.delete();
+            return;
+        }
+        this.deleter.execute(new Runnable() {
+            public void run() {
+                node.delete();
+            }
+        });
+    }
+
+    /**
+     * Remember a tree changed by the current batch
+     * @param root root of the tree
+     */
+    private void markChanged(SceneNode root) {
+        this.changedRoots.add(root);
+    }
+}
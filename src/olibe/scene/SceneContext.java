@@ -0,0 +1,61 @@
+package olibe.scene;
+
+/**
+ * State shared by all the nodes of a tree: structure version, index, change journal and view.
+ * Nodes reference the context of their tree instead of each carrying this state,
+ * so it is reached in O(1) from any node. A subtree adopts the context of its new
+ * parent when attached and gets a new context when detached.
+ */
+public class SceneContext {
+    /** Structure version of the tree */
+    protected int structureVersion;
+    /** Index of the scene (null if the tree is not a scene) */
+    protected SceneIndex index;
+    /** Change journal of the scene (null if disabled) */
+    protected SceneJournal journal;
+    /** View of the frame being updated (null outside of a pipeline update) */
+    protected SceneView view;
+
+    /**
+     * Create an empty context
+     * @param structureVersion initial structure version
+     */
+    public SceneContext(int structureVersion) {
+        this.structureVersion = structureVersion;
+        this.index = null;
+        this.journal = null;
+        this.view = null;
+    }
+
+    /**
+     * Returns the structure version of the tree
+     * @return the structure version of the tree
+     */
+    public int getStructureVersion() {
+        return structureVersion;
+    }
+
+    /**
+     * Returns the index of the scene
+     * @return the index of the scene (null if the tree is not a scene)
+     */
+    public SceneIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the change journal of the scene
+     * @return the change journal of the scene (null if disabled)
+     */
+    public SceneJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns the view of the frame being updated, components read it instead of the active camera
+     * @return the view of the frame being updated (null outside of a pipeline update)
+     */
+    public SceneView getView() {
+        return view;
+    }
+}
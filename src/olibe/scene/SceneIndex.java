@@ -0,0 +1,195 @@
+package olibe.scene;
+
+import java.util.*;
+
+/**
+ * Scene-wide index of the nodes by component type and by tag.
+ * It is owned by the root of a scene and kept up to date by the nodes
+ * (components added/removed, tags changed, subtrees attached/detached/deleted),
+ * queries cost the number of matches instead of the size of the scene.
+ */
+public class SceneIndex {
+    /** Nodes by component type (exact class) */
+    protected Map<Class<?>, Set<SceneNode>> byType;
+    /** Nodes by tag bit */
+    protected List<Set<SceneNode>> byTag;
+    /** Bit of each tag name */
+    protected Map<String, Integer> tagBits;
+    /** Nodes left to visit by the subtree operations (reused) */
+    protected ArrayDeque<SceneNode> stack;
+
+    /** Maximum number of tags */
+    public static final int MAX_TAGS = 64;
+
+    /**
+     * Create an empty index
+     */
+    public SceneIndex() {
+        this.byType = new HashMap<>();
+        this.byTag = new ArrayList<>(MAX_TAGS);
+        for(int i = 0; i < MAX_TAGS; ++i) {
+            this.byTag.add(null);
+        }
+        this.tagBits = new HashMap<>();
+        this.stack = new ArrayDeque<>();
+    }
+
+    /**
+     * Returns the mask of a tag (a new bit is assigned to unknown tags)
+     * @param name name of the tag
+     * @return the mask of the tag
+     * @throws IllegalStateException all the tag bits are used
+     */
+    public long tag(String name) {
+        Integer bit = this.tagBits.get(name);
+        if(bit == null) {
+            if(this.tagBits.size() == MAX_TAGS) throw new IllegalStateException("Too many tags (max " + MAX_TAGS + ")");
+            bit = this.tagBits.size();
+            this.tagBits.put(name, bit);
+        }
+        return 1L << bit;
+    }
+
+    /**
+     * Returns the nodes having a component of a type
+     * @param type component type (exact class)
+     * @return the nodes having a component of this type (read only)
+     */
+    public Set<SceneNode> getNodes(Class<? extends Component> type) {
+        Set<SceneNode> nodes = this.byType.get(type);
+        return (nodes == null) ? Collections.emptySet() : Collections.unmodifiableSet(nodes);
+    }
+
+    /**
+     * Add the nodes having all the tags of a mask to a list
+     * (only the nodes of the rarest tag are checked)
+     * @param mask tags mask
+     * @param dest destination list
+     * @return dest
+     */
+    public List<SceneNode> getNodesWithTags(long mask, List<SceneNode> dest) {
+        if(mask == 0L) return dest;
+        Set<SceneNode> rarest = null;
+        for(long bits = mask; bits != 0L; bits &= bits - 1) {
+            Set<SceneNode> nodes = this.byTag.get(Long.numberOfTrailingZeros(bits));
+            if(nodes == null) return dest;
+            if(rarest == null || nodes.size() < rarest.size()) rarest = nodes;
+        }
+        for(SceneNode node : rarest) {
+            if(node.hasTags(mask)) dest.add(node);
+        }
+        return dest;
+    }
+
+    /**
+     * Index a component type of a node
+     * @param node node
+     * @param type component type
+     */
+    protected void addComponent(SceneNode node, Class<?> type) {
+        Set<SceneNode> nodes = this.byType.get(type);
+        if(nodes == null) {
+            nodes = new LinkedHashSet<>();
+            this.byType.put(type, nodes);
+        }
+        nodes.add(node);
+    }
+
+    /**
+     * Unindex a component type of a node
+     * @param node node
+     * @param type component type
+     */
+    protected void removeComponent(SceneNode node, Class<?> type) {
+        Set<SceneNode> nodes = this.byType.get(type);
+        // the empty set is kept for the next node of this type
+        if(nodes != null) nodes.remove(node);
+    }
+
+    /**
+     * Index tags of a node
+     * @param node node
+     * @param mask added tags
+     */
+    protected void addTags(SceneNode node, long mask) {
+        for(long bits = mask; bits != 0L; bits &= bits - 1) {
+            int bit = Long.numberOfTrailingZeros(bits);
+            Set<SceneNode> nodes = this.byTag.get(bit);
+            if(nodes == null) {
+                nodes = new LinkedHashSet<>();
+                this.byTag.set(bit, nodes);
+            }
+            nodes.add(node);
+        }
+    }
+
+    /**
+     * Unindex tags of a node
+     * @param node node
+     * @param mask removed tags
+     */
+    protected void removeTags(SceneNode node, long mask) {
+        for(long bits = mask; bits != 0L; bits &= bits - 1) {
+            Set<SceneNode> nodes = this.byTag.get(Long.numberOfTrailingZeros(bits));
+            if(nodes != null) nodes.remove(node);
+        }
+    }
+
+    /**
+     * Index a node (components and tags)
+     * @param node node
+     */
+    protected void addNode(SceneNode node) {
+        List<Component> components = node.components;
+        for(int i = 0; i < components.size(); ++i) {
+            this.addComponent(node, components.get(i).getClass());
+        }
+        this.addTags(node, node.getTags());
+    }
+
+    /**
+     * Unindex a node (components and tags)
+     * @param node node
+     */
+    protected void removeNode(SceneNode node) {
+        List<Component> components = node.components;
+        for(int i = 0; i < components.size(); ++i) {
+            this.removeComponent(node, components.get(i).getClass());
+        }
+        this.removeTags(node, node.getTags());
+    }
+
+    /**
+     * Index a node and its descendants
+     * @param subtree root of the subtree
+     */
+    protected void addSubtree(SceneNode subtree) {
+        ArrayDeque<SceneNode> stack = this.stack;
+        stack.push(subtree);
+        while(!stack.isEmpty()) {
+            SceneNode node = stack.pop();
+            this.addNode(node);
+            List<SceneNode> children = node.children;
+            for(int i = 0; i < children.size(); ++i) {
+                stack.push(children.get(i));
+            }
+        }
+    }
+
+    /**
+     * Unindex a node and its descendants
+     * @param subtree root of the subtree
+     */
+    protected void removeSubtree(SceneNode subtree) {
+        ArrayDeque<SceneNode> stack = this.stack;
+        stack.push(subtree);
+        while(!stack.isEmpty()) {
+            SceneNode node = stack.pop();
+            this.removeNode(node);
+            List<SceneNode> children = node.children;
+            for(int i = 0; i < children.size(); ++i) {
+                stack.push(children.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package olibe.scene;
+
+import java.util.*;
+
+/**
+ * Append-only journal of the changes of a scene tree.
+ * Each change gets a sequence number, consumers keep a {@link Cursor} and only
+ * read the changes recorded since their last poll, so keeping a cache, an index
+ * or a mirror in sync costs the amount of change instead of the size of the scene.
+ * <p>
+ * The journal is a ring: a consumer lagging more than the capacity behind
+ * is told it overflowed and must resync from the tree.
+ * Added and removed events cover the whole subtree of the node.
+ * Slots read by every open cursor are cleared, so the ring does not keep removed
+ * nodes and components alive; events recorded while no cursor is open are not kept.
+ */
+public class SceneJournal {
+
+    /**
+     * Type of a change
+     */
+    public enum EventType {
+        /** A node (and its subtree) was added, extra is the parent */
+        NODE_ADDED,
+        /** A node (and its subtree) was removed, extra is the old parent */
+        NODE_REMOVED,
+        /** A node was moved to another parent of the same tree, extra is the new parent */
+        NODE_REPARENTED,
+        /** A node was activated */
+        NODE_ACTIVATED,
+        /** A node was deactivated */
+        NODE_DEACTIVATED,
+        /** The transform of a node was modified (recorded once until its world matrix is recalculated) */
+        TRANSFORM_DIRTY,
+        /** A component was added, extra is the component */
+        COMPONENT_ADDED,
+        /** A component was removed, extra is the component */
+        COMPONENT_REMOVED
+    }
+
+    /**
+     * Consumer of the journal events
+     */
+    public interface Listener {
+        /**
+         * Called for each event read
+         * @param sequence sequence number of the event
+         * @param type type of the event
+         * @param node changed node
+         * @param extra parent or component of the event (see {@link EventType})
+         */
+        public void onEvent(long sequence, EventType type, SceneNode node, Object extra);
+
+        /**
+         * Called when the events since the last poll were overwritten, the consumer must resync from the tree
+         */
+        public void onOverflow();
+    }
+
+    /**
+     * Read position of a consumer
+     */
+    public class Cursor {
+        /** Sequence of the next event to read */
+        protected long position;
+
+        /**
+         * Create a cursor at the end of the journal
+         */
+        protected Cursor() {
+            this.position = SceneJournal.this.getSequence();
+        }
+
+        /**
+         * Read the events recorded since the last poll
+         * @param listener consumer of the events
+         * @return the number of events read (-1 on overflow)
+         */
+        public int poll(Listener listener) {
+            return SceneJournal.this.read(this, listener);
+        }
+
+        /**
+         * Close this cursor, the journal stops keeping events for it
+         */
+        public void close() {
+            SceneJournal.this.closeCursor(this);
+        }
+
+        /**
+         * Returns the sequence of the next event to read
+         * @return the sequence of the next event to read
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * Returns the number of events waiting to be read
+         * @return the number of events waiting to be read
+         */
+        public long getPending() {
+            return SceneJournal.this.getSequence() - this.position;
+        }
+    }
+
+    /** Types of the events (ring) */
+    protected EventType[] types;
+    /** Nodes of the events (ring) */
+    protected SceneNode[] nodes;
+    /** Extras of the events (ring) */
+    protected Object[] extras;
+    /** Index mask of the ring (capacity - 1) */
+    protected int mask;
+    /** Sequence of the next recorded event */
+    protected long head;
+    /** Open cursors */
+    protected List<Cursor> cursors;
+    /** Sequence up to which the slots are cleared */
+    protected long cleared;
+
+    /** Default number of events kept */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /**
+     * Create a journal keeping {@link #DEFAULT_CAPACITY} events
+     */
+    public SceneJournal() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a journal
+     * @param capacity number of events kept (rounded up to a power of two)
+     */
+    public SceneJournal(int capacity) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("[SceneJournal] capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity) size <<= 1;
+        this.types = new EventType[size];
+        this.nodes = new SceneNode[size];
+        this.extras = new Object[size];
+        this.mask = size - 1;
+        this.head = 0;
+        this.cursors = new ArrayList<>();
+        this.cleared = 0;
+    }
+
+    /**
+     * Create a cursor reading the events recorded from now on
+     * @return a new cursor
+     */
+    public synchronized Cursor newCursor() {
+        Cursor cursor = new Cursor();
+        this.cursors.add(cursor);
+        return cursor;
+    }
+
+    /**
+     * Close a cursor
+     * @param cursor cursor to close
+     */
+    protected synchronized void closeCursor(Cursor cursor) {
+        if(this.cursors.remove(cursor)) this.clearRead();
+    }
+
+    /**
+     * Record an event
+     * @param type type of the event
+     * @param node changed node
+     * @param extra parent or component of the event
+     */
+    public synchronized void record(EventType type, SceneNode node, Object extra) {
+        if(this.cursors.isEmpty()) {
+            // nobody can read it
+            this.head++;
+            this.cleared = this.head;
+            return;
+        }
+        int slot = (int)(this.head & this.mask);
+        this.types[slot] = type;
+        this.nodes[slot] = node;
+        this.extras[slot] = extra;
+        this.head++;
+    }
+
+    /**
+     * Read the events of a cursor and move it to the end of the journal
+     * @param cursor cursor to read from
+     * @param listener consumer of the events
+     * @return the number of events read (-1 on overflow)
+     */
+    protected synchronized int read(Cursor cursor, Listener listener) {
+        if(this.head - cursor.position > this.types.length) {
+            cursor.position = this.head;
+            listener.onOverflow();
+            return -1;
+        }
+        int count = (int)(this.head - cursor.position);
+        for(long sequence = cursor.position; sequence < this.head; ++sequence) {
+            int slot = (int)(sequence & this.mask);
+            listener.onEvent(sequence, this.types[slot], this.nodes[slot], this.extras[slot]);
+        }
+        cursor.position = this.head;
+        this.clearRead();
+        return count;
+    }
+
+    /**
+     * Clear the slots every open cursor has read
+     */
+    protected void clearRead() {
+        long read = this.head;
+        for(int i = 0; i < this.cursors.size(); ++i) {
+            read = Math.min(read, this.cursors.get(i).position);
+        }
+        // older slots were overwritten already
+        long from = Math.max(this.cleared, this.head - this.types.length);
+        for(long sequence = from; sequence < read; ++sequence) {
+            int slot = (int)(sequence & this.mask);
+            this.nodes[slot] = null;
+            this.extras[slot] = null;
+        }
+        this.cleared = Math.max(this.cleared, read);
+    }
+
+    /**
+     * Returns the sequence of the next recorded event
+     * @return the sequence of the next recorded event
+     */
+    public synchronized long getSequence() {
+        return head;
+    }
+
+    /**
+     * Returns the number of events kept
+     * @return the number of events kept
+     */
+    public int getCapacity() {
+        return types.length;
+    }
+}
@@ -2,20 +2,56 @@ package olibe.scene;
 
 import java.util.*;
 
+import org.joml.Matrix4f;
+
+import olibe.render.BoundingBox;
+
 /**
- * Represent a Node in a scene
+ * Represent a Node in a scene.
+ * Nodes are kept compact for large scenes: the children and components lists are
+ * only allocated when the first element is added (shared empty lists otherwise),
+ * children are only indexed by name past {@link #NAME_INDEX_THRESHOLD} children
+ * and names are interned so repeated names share a single string.
+ * The state of the whole tree (structure version, index, journal) lives in a
+ * {@link SceneContext} referenced by every node of the tree.
  */
 public class SceneNode {
     /** Name of this node */
     protected String name;
-    /** List of its children */
+    /** List of its children ({@link #NO_CHILDREN} until a child is added) */
     protected List<SceneNode> children;
+    /** Children indexed by name, first child added with a name wins (null while there are few children) */
+    protected Map<String, SceneNode> childrenByName;
     /** Transform of this node */
     protected Transform transform;
-    /** Components of this node */
+    /** Components of this node ({@link #NO_COMPONENTS} until a component is added) */
     protected List<Component> components;
     /** The node is active or not */
     protected boolean isActive;
+    /** Parent of this node (null if it is a root or detached) */
+    protected SceneNode parent;
+    /** Index of this node in the children of its parent */
+    protected int indexInParent;
+    /** Context shared by the nodes of the tree (null on a root without children until needed) */
+    protected SceneContext context;
+    /** Bounds of this node geometry (local space, null if none) */
+    protected BoundingBox bounds;
+    /** Cached world bounds */
+    protected BoundingBox worldBounds;
+    /** Transform version used for the cached world bounds */
+    protected int worldBoundsVersion;
+    /** First component of each type (indexed by {@link ComponentTypes#idOf(Class)}) */
+    protected Component[] typeSlots;
+    /** Tags bitmask */
+    protected long tags;
+    /** Empty type slots */
+    protected static final Component[] NO_SLOTS = new Component[0];
+    /** Shared empty children list */
+    protected static final List<SceneNode> NO_CHILDREN = Collections.emptyList();
+    /** Shared empty components list */
+    protected static final List<Component> NO_COMPONENTS = Collections.emptyList();
+    /** Number of children above which the children are indexed by name (linear search below) */
+    protected static final int NAME_INDEX_THRESHOLD = 8;
     /** Indentation string for toString formatting */
     protected static final String INDENT_STRING = "  ";
 
@@ -24,11 +60,16 @@ public class SceneNode {
      * @param name name of the node
      */
     public SceneNode(String name) {
-        this.name = name;
-        this.children = new ArrayList<SceneNode>();
+        this.name = (name == null) ? null : name.intern();
+        this.children = NO_CHILDREN;
+        this.childrenByName = null;
         this.transform = new Transform();
-        this.components = new ArrayList<>();
+        this.transform.owner = this;
+        this.components = NO_COMPONENTS;
+        this.typeSlots = NO_SLOTS;
         this.isActive = true;
+        this.parent = null;
+        this.context = null;
     }
 
     /**
@@ -36,7 +77,15 @@ public class SceneNode {
      * @param isActive new active state
      */
     public void setActive(boolean isActive) {
+        if(this.isActive == isActive) return;
         this.isActive = isActive;
+        // children may have been skipped by transform updates while inactive
+        if(isActive) this.transform.markDirty();
+        this.notifyStructureChanged();
+        SceneJournal sceneJournal = this.findJournal();
+        if(sceneJournal != null) {
+            sceneJournal.record(isActive ? SceneJournal.EventType.NODE_ACTIVATED : SceneJournal.EventType.NODE_DEACTIVATED, this, null);
+        }
     }
 
     /**
@@ -54,20 +103,366 @@ public class SceneNode {
      */
     public SceneNode addComponent(Component component) {
         if(component == null) return this; // don't add null components :(
+        if(this.components == NO_COMPONENTS) this.components = new ArrayList<>(2);
         this.components.add(component);
+        int typeId = ComponentTypes.idOf(component.getClass());
+        if(typeId >= this.typeSlots.length) {
+            this.typeSlots = Arrays.copyOf(this.typeSlots, Math.max(typeId + 1, this.typeSlots.length * 2));
+        }
+        if(this.typeSlots[typeId] == null) this.typeSlots[typeId] = component;
+        if(this.context != null) {
+            if(this.context.index != null) this.context.index.addComponent(this, component.getClass());
+            if(this.context.journal != null) this.context.journal.record(SceneJournal.EventType.COMPONENT_ADDED, this, component);
+        }
+        component.onAttach(this);
+        return this;
+    }
+
+    /**
+     * Remove a component from this node (the component is not deleted)
+     * @param component component to remove
+     * @return true if the component was removed
+     */
+    public boolean removeComponent(Component component) {
+        if(!this.components.remove(component)) return false;
+        SceneJournal sceneJournal = this.findJournal();
+        if(sceneJournal != null) sceneJournal.record(SceneJournal.EventType.COMPONENT_REMOVED, this, component);
+        Class<?> type = component.getClass();
+        int typeId = ComponentTypes.idOf(type);
+        if(this.typeSlots[typeId] == component) {
+            // another component of the same type takes the slot
+            this.typeSlots[typeId] = null;
+            for(int i = 0; i < this.components.size(); ++i) {
+                if(this.components.get(i).getClass() == type) {
+                    this.typeSlots[typeId] = this.components.get(i);
+                    break;
+                }
+            }
+            SceneIndex sceneIndex = this.findIndex();
+            if(sceneIndex != null && this.typeSlots[typeId] == null) sceneIndex.removeComponent(this, type);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first component of a type (exact class, subclasses are not matched)
+     * @param <T> component type
+     * @param type component class
+     * @return the first component of this type (or null)
+     */
+    public <T extends Component> T getComponent(Class<T> type) {
+        int typeId = ComponentTypes.idOf(type);
+        if(typeId >= this.typeSlots.length) return null;
+        return type.cast(this.typeSlots[typeId]);
+    }
+
+    /**
+     * Add tags to this node
+     * @param mask tags to add (see {@link SceneIndex#tag(String)})
+     * @return this
+     */
+    public SceneNode addTags(long mask) {
+        long added = mask & ~this.tags;
+        this.tags |= mask;
+        SceneIndex sceneIndex = (added != 0L) ? this.findIndex() : null;
+        if(sceneIndex != null) sceneIndex.addTags(this, added);
         return this;
     }
 
+    /**
+     * Remove tags from this node
+     * @param mask tags to remove
+     * @return this
+     */
+    public SceneNode removeTags(long mask) {
+        long removed = mask & this.tags;
+        this.tags &= ~mask;
+        SceneIndex sceneIndex = (removed != 0L) ? this.findIndex() : null;
+        if(sceneIndex != null) sceneIndex.removeTags(this, removed);
+        return this;
+    }
+
+    /**
+     * Returns the tags of this node
+     * @return the tags bitmask of this node
+     */
+    public long getTags() {
+        return tags;
+    }
+
+    /**
+     * Returns true if this node has all the tags of a mask
+     * @param mask tags mask
+     * @return true if this node has all the tags of the mask
+     */
+    public boolean hasTags(long mask) {
+        return (this.tags & mask) == mask;
+    }
+
+    /**
+     * Returns the index of the scene containing this node
+     * @return the index of the scene containing this node (null if not in a scene)
+     */
+    protected SceneIndex findIndex() {
+        return (this.context == null) ? null : this.context.index;
+    }
+
+    /**
+     * Returns the change journal of the scene containing this node
+     * @return the change journal of the scene containing this node (or null)
+     */
+    protected SceneJournal findJournal() {
+        return (this.context == null) ? null : this.context.journal;
+    }
+
+    /**
+     * Returns the context shared by the nodes of the tree containing this node
+     * @return the context of the tree containing this node
+     */
+    public SceneContext getContext() {
+        // only roots without children have no context yet
+        if(this.context == null) this.context = new SceneContext(0);
+        return context;
+    }
+
+    /**
+     * Sets the context of this node and its subtree (the previous context is notified)
+     * @param sceneContext new context (null to drop it)
+     */
+    protected void setContext(SceneContext sceneContext) {
+        if(this.context != null && this.context != sceneContext) this.context.structureVersion++;
+        this.adoptContext(sceneContext);
+    }
+
+    /**
+     * Sets the context of this node and its subtree
+     * @param sceneContext new context
+     */
+    private void adoptContext(SceneContext sceneContext) {
+        this.context = sceneContext;
+        for(int i = 0; i < this.children.size(); ++i) {
+            this.children.get(i).adoptContext(sceneContext);
+        }
+    }
+
     /**
      * Add a child in this node
      * @param child child to add
      * @return this
+     * @throws IllegalArgumentException the child is this node or one of its ancestors
      */
     public SceneNode addChild(SceneNode child) {
-        this.children.add(child);
+        if(child.isAncestorOf(this))
+            throw new IllegalArgumentException("Cannot add node [" + child.name + "] under itself or its descendant");
+        if(child.parent != null) {
+            this.moveChild(child);
+        } else {
+            this.attachChild(child);
+        }
+        this.notifyStructureChanged();
+        return this;
+    }
+
+    /**
+     * Remove a child from this node (O(1), the last child takes its place)
+     * @param child child to remove
+     * @return true if the child was removed
+     */
+    public boolean removeChild(SceneNode child) {
+        if(child.parent != this) return false;
+        this.detachChild(child);
+        this.notifyStructureChanged();
+        return true;
+    }
+
+    /**
+     * Detach this node from its parent
+     * @return this
+     */
+    public SceneNode detach() {
+        if(this.parent != null) this.parent.removeChild(this);
+        return this;
+    }
+
+    /**
+     * Detach this node from its parent, its subtree reuses a context instead of a new one
+     * (recycled subtrees, see {@link Prefab})
+     * @param sceneContext context of the detached subtree (not used by another tree)
+     * @return this
+     */
+    protected SceneNode detach(SceneContext sceneContext) {
+        SceneNode oldParent = this.parent;
+        if(oldParent == null) return this;
+        oldParent.unlinkChild(this, true);
+        // the version keeps increasing, the traversals cached on the reused context are rebuilt
+        sceneContext.structureVersion = Math.max(sceneContext.structureVersion + 1, oldParent.context.structureVersion);
+        this.setContext(sceneContext);
+        oldParent.notifyStructureChanged();
         return this;
     }
 
+    /**
+     * Move a child from its parent to this node without notifying the trees
+     * (recorded as a reparent when both parents share the same journal)
+     * @param child child to move (must have a parent)
+     */
+    protected void moveChild(SceneNode child) {
+        SceneJournal sceneJournal = this.findJournal();
+        boolean sameJournal = sceneJournal != null && child.parent.findJournal() == sceneJournal;
+        // the context is kept on moves inside the same tree
+        child.parent.unlinkChild(child, !sameJournal);
+        this.attachChild(child, !sameJournal);
+        if(sameJournal) sceneJournal.record(SceneJournal.EventType.NODE_REPARENTED, child, this);
+    }
+
+    /**
+     * Append a child without notifying the tree (the child must not have a parent)
+     * @param child child to append
+     */
+    protected void attachChild(SceneNode child) {
+        this.attachChild(child, true);
+    }
+
+    /**
+     * Append a child without notifying the tree (the child must not have a parent),
+     * the child subtree adopts the context of this tree
+     * @param child child to append
+     * @param journaled record the addition in the journal
+     */
+    protected void attachChild(SceneNode child, boolean journaled) {
+        if(this.children == NO_CHILDREN) this.children = new ArrayList<>(4);
+        child.indexInParent = this.children.size();
+        this.children.add(child);
+        if(this.childrenByName != null) {
+            this.childrenByName.putIfAbsent(child.name, child);
+        } else if(this.children.size() > NAME_INDEX_THRESHOLD) {
+            this.childrenByName = new HashMap<>();
+            for(int i = 0; i < this.children.size(); ++i) {
+                this.childrenByName.putIfAbsent(this.children.get(i).name, this.children.get(i));
+            }
+        }
+        child.parent = this;
+        child.transform.setParent(this.transform);
+        SceneContext sceneContext = this.getContext();
+        sceneContext.structureVersion++;
+        if(child.context != sceneContext) child.setContext(sceneContext);
+        if(sceneContext.index != null) sceneContext.index.addSubtree(child);
+        if(journaled && sceneContext.journal != null) {
+            sceneContext.journal.record(SceneJournal.EventType.NODE_ADDED, child, this);
+        }
+    }
+
+    /**
+     * Swap-remove a child without notifying the tree
+     * @param child child to remove (must be a child of this node)
+     */
+    protected void detachChild(SceneNode child) {
+        this.detachChild(child, true);
+    }
+
+    /**
+     * Swap-remove a child without notifying the tree, the child subtree gets a new context
+     * @param child child to remove (must be a child of this node)
+     * @param journaled record the removal in the journal
+     */
+    protected void detachChild(SceneNode child, boolean journaled) {
+        this.unlinkChild(child, journaled);
+        child.setContext(new SceneContext(this.context.structureVersion));
+    }
+
+    /**
+     * Swap-remove a child keeping its context (it must be attached right after)
+     * @param child child to remove (must be a child of this node)
+     * @param journaled record the removal in the journal
+     */
+    protected void unlinkChild(SceneNode child, boolean journaled) {
+        // a node with children always has a context
+        SceneContext sceneContext = this.context;
+        if(sceneContext.index != null) sceneContext.index.removeSubtree(child);
+        if(journaled && sceneContext.journal != null) {
+            sceneContext.journal.record(SceneJournal.EventType.NODE_REMOVED, child, this);
+        }
+        int index = child.indexInParent;
+        SceneNode last = this.children.remove(this.children.size() - 1);
+        if(last != child) {
+            this.children.set(index, last);
+            last.indexInParent = index;
+        }
+        if(this.childrenByName != null && this.childrenByName.get(child.name) == child) {
+            this.childrenByName.remove(child.name);
+            // less names than children: some names are shared, another child may take over
+            if(this.childrenByName.size() < this.children.size()) {
+                this.reindexName(child.name);
+            }
+        }
+        child.parent = null;
+        child.indexInParent = 0;
+        child.transform.setParent(null);
+        sceneContext.structureVersion++;
+    }
+
+    /**
+     * Index the first child (in children order) having a name
+     * @param name name of the child
+     */
+    private void reindexName(String name) {
+        for(int i = 0; i < this.children.size(); ++i) {
+            SceneNode c = this.children.get(i);
+            if(Objects.equals(c.name, name)) {
+                this.childrenByName.put(name, c);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the parent of this node (or null if it is a root)
+     * @return the parent of this node (or null if it is a root)
+     */
+    public SceneNode getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the root of the tree containing this node
+     * @return the root of the tree containing this node
+     */
+    public SceneNode getRoot() {
+        SceneNode node = this;
+        while(node.parent != null) {
+            node = node.parent;
+        }
+        return node;
+    }
+
+    /**
+     * Returns true if this node is the given node or one of its ancestors (walks up from the node)
+     * @param node node to test
+     * @return true if this node is the node or one of its ancestors
+     */
+    public boolean isAncestorOf(SceneNode node) {
+        for(SceneNode n = node; n != null; n = n.parent) {
+            if(n == this) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the structure version of the tree containing this node,
+     * it changes each time a node is added, removed, activated or deactivated
+     * @return the structure version of the tree containing this node
+     */
+    public int getStructureVersion() {
+        return (this.context == null) ? 0 : this.context.structureVersion;
+    }
+
+    /**
+     * Notify the tree containing this node that its structure changed
+     */
+    protected void notifyStructureChanged() {
+        this.getContext().structureVersion++;
+    }
+
     /**
      * Returns the string representation of this node and its children
      * @return the string representation of this node and its children
@@ -82,10 +477,10 @@ public class SceneNode {
      * @return null or the child with the same name as wanted
      */
     public SceneNode getChild(String name) {
-        for(SceneNode child : this.children) {
-            if(child.getName().equals(name)) {
-                return child;
-            }
+        if(this.childrenByName != null) return this.childrenByName.get(name);
+        for(int i = 0; i < this.children.size(); ++i) {
+            SceneNode child = this.children.get(i);
+            if(Objects.equals(child.name, name)) return child;
         }
         return null;
     }
@@ -120,40 +515,113 @@ public class SceneNode {
     }
 
     /**
-     * Returns the children of this node
+     * Sets the bounds of this node geometry, used for culling (null for always visible)
+     * @param bounds bounds in the local space of this node
+     * @return this
+     */
+    public SceneNode setBounds(BoundingBox bounds) {
+        this.bounds = bounds;
+        this.worldBoundsVersion = -1;
+        return this;
+    }
+
+    /**
+     * Returns the bounds of this node geometry (local space)
+     * @return the bounds of this node geometry (or null)
+     */
+    public BoundingBox getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the bounds of this node geometry in world space
+     * @return the world bounds of this node geometry (or null)
+     */
+    public BoundingBox getWorldBounds() {
+        if(this.bounds == null) return null;
+        if(this.worldBounds == null) this.worldBounds = new BoundingBox();
+        Matrix4f world = this.transform.getWorldMatrix();
+        if(this.worldBoundsVersion != this.transform.getVersion()) {
+            this.bounds.transform(world, this.worldBounds);
+            this.worldBoundsVersion = this.transform.getVersion();
+        }
+        return this.worldBounds;
+    }
+
+    /**
+     * Returns the children of this node, as a read-only view
+     * (use {@link #addChild(SceneNode)} and {@link #removeChild(SceneNode)} to edit them)
      * @return the children of this node
      */
     public List<SceneNode> getChildren() {
-        return children;
+        return Collections.unmodifiableList(this.children);
     }
 
     /**
      * Remove and clear all childrens
      */
     public void clearChildren() {
+        if(this.children.isEmpty()) return;
+        SceneIndex sceneIndex = this.findIndex();
+        SceneJournal sceneJournal = this.findJournal();
         for(SceneNode child : this.children) {
-            child.delete();
+            // detach first so the subtree is unindexed once
+            if(sceneIndex != null) sceneIndex.removeSubtree(child);
+            if(sceneJournal != null) sceneJournal.record(SceneJournal.EventType.NODE_REMOVED, child, this);
+            child.parent = null;
+            child.indexInParent = 0;
+            child.transform.setParent(null);
+            child.deleteDetached();
+        }
+        this.children = NO_CHILDREN;
+        this.childrenByName = null;
+        this.notifyStructureChanged();
+    }
+
+    /**
+     * Delete this node and its children once the subtree is removed from its scene
+     * (already unindexed, its scene is notified once by the caller)
+     */
+    protected void deleteDetached() {
+        for(int i = 0; i < this.children.size(); ++i) {
+            SceneNode child = this.children.get(i);
+            child.parent = null;
+            child.indexInParent = 0;
+            child.transform.setParent(null);
+            child.deleteDetached();
+        }
+        this.children = NO_CHILDREN;
+        this.childrenByName = null;
+        this.context = null;
+
+        for(Component c : this.components) {
+            c.delete();
         }
-        this.children.clear();
+        this.components = NO_COMPONENTS;
+        this.typeSlots = NO_SLOTS;
     }
 
     /**
-     * Returns the components of this node 
+     * Returns the components of this node, as a read-only view
+     * (use {@link #addComponent(Component)} and {@link #removeComponent(Component)} to edit them)
      * @return the components of this node
      */
     public List<Component> getComponents() {
-        return components;
+        return Collections.unmodifiableList(this.components);
     }
 
     /**
      * Delete this node and its children
      */
     public void delete() {
+        SceneIndex sceneIndex = this.findIndex();
+        if(sceneIndex != null) sceneIndex.removeNode(this);
         this.clearChildren();
 
         for(Component c : this.components) {
             c.delete();
         }
-        this.components.clear();
+        this.components = NO_COMPONENTS;
+        this.typeSlots = NO_SLOTS;
     }
 }
@@ -0,0 +1,13 @@
+package olibe.scene;
+
+/**
+ * Visitor applied to the nodes of a scene traversal
+ */
+public interface SceneNodeVisitor {
+    /**
+     * Visit a node
+     * @param node current node
+     * @return true to visit the children of this node, false to skip its subtree
+     */
+    public boolean visit(SceneNode node);
+}
@@ -0,0 +1,212 @@
+package olibe.scene;
+
+import java.util.*;
+
+/**
+ * Cached flattened (DFS pre-order) traversal of a scene tree.
+ * The node order is only rebuilt when the structure of the tree changes
+ * (see {@link SceneNode#getStructureVersion()}), visiting it does not allocate.
+ * The pre-order keeps each subtree contiguous (so it can be skipped), it replaces the
+ * breadth-first order of the former applyNode: a node's descendants are now visited
+ * before its next siblings, which changes the update and draw order (ex: UI layering)
+ * of scenes deeper than one level.
+ */
+public class SceneTraversal {
+    /** Root of the traversed tree */
+    protected SceneNode root;
+    /** Flattened nodes (DFS pre-order) */
+    protected SceneNode[] nodes;
+    /** For each flattened node, index of the first node after its subtree */
+    protected int[] subtreeEnds;
+    /** Number of flattened nodes */
+    protected int size;
+    /** Structure version of the tree when the order was built */
+    protected int builtVersion;
+    /** The order needs to be rebuilt */
+    protected boolean invalid;
+    /** Number of traversals currently running (no rebuild while iterating) */
+    protected int traversing;
+
+    /** Rebuild stack (nodes) */
+    protected SceneNode[] stackNodes;
+    /** Rebuild stack (flattened index of the node) */
+    protected int[] stackIndices;
+    /** Rebuild stack (next child to explore) */
+    protected int[] stackCursors;
+
+    /** Initial capacity of the arrays */
+    protected static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Create a traversal of a tree
+     * @param root root of the tree
+     */
+    public SceneTraversal(SceneNode root) {
+        this.root = root;
+        this.nodes = new SceneNode[INITIAL_CAPACITY];
+        this.subtreeEnds = new int[INITIAL_CAPACITY];
+        this.stackNodes = new SceneNode[INITIAL_CAPACITY];
+        this.stackIndices = new int[INITIAL_CAPACITY];
+        this.stackCursors = new int[INITIAL_CAPACITY];
+        this.size = 0;
+        this.invalid = true;
+    }
+
+    /**
+     * Force the order to be rebuilt on the next traversal
+     */
+    public void invalidate() {
+        this.invalid = true;
+    }
+
+    /**
+     * Rebuild the cached order if the tree structure changed
+     * @return true if the order was rebuilt
+     */
+    public boolean validate() {
+        if(this.traversing > 0) return false;
+        if(!this.invalid && this.builtVersion == this.root.getStructureVersion()) return false;
+        this.rebuild();
+        return true;
+    }
+
+    /**
+     * Rebuild the flattened order (iterative DFS, children of inactive nodes are skipped)
+     */
+    protected void rebuild() {
+        // clear stale references so removed nodes can be collected
+        for(int i = 0; i < this.size; ++i) {
+            this.nodes[i] = null;
+        }
+        this.size = 0;
+        this.builtVersion = this.root.getStructureVersion();
+        this.invalid = false;
+
+        int rootIndex = this.append(this.root);
+        if(!this.root.isActive() || this.root.children.isEmpty()) {
+            this.subtreeEnds[rootIndex] = this.size;
+            return;
+        }
+
+        int top = 0;
+        this.push(top, this.root, rootIndex);
+        while(top >= 0) {
+            List<SceneNode> children = this.stackNodes[top].children;
+            int cursor = this.stackCursors[top];
+            if(cursor < children.size()) {
+                this.stackCursors[top] = cursor + 1;
+                SceneNode child = children.get(cursor);
+                int childIndex = this.append(child);
+                if(child.isActive() && !child.children.isEmpty()) {
+                    top++;
+                    this.push(top, child, childIndex);
+                } else {
+                    this.subtreeEnds[childIndex] = this.size;
+                }
+            } else {
+                this.subtreeEnds[this.stackIndices[top]] = this.size;
+                this.stackNodes[top] = null;
+                top--;
+            }
+        }
+    }
+
+    /**
+     * Append a node to the flattened order
+     * @param node node to append
+     * @return index of the appended node
+     */
+    protected int append(SceneNode node) {
+        if(this.size == this.nodes.length) {
+            int capacity = this.nodes.length * 2;
+            this.nodes = Arrays.copyOf(this.nodes, capacity);
+            this.subtreeEnds = Arrays.copyOf(this.subtreeEnds, capacity);
+        }
+        this.nodes[this.size] = node;
+        return this.size++;
+    }
+
+    /**
+     * Push a node on the rebuild stack
+     * @param top stack slot
+     * @param node node to push
+     * @param index flattened index of the node
+     */
+    protected void push(int top, SceneNode node, int index) {
+        if(top == this.stackNodes.length) {
+            int capacity = this.stackNodes.length * 2;
+            this.stackNodes = Arrays.copyOf(this.stackNodes, capacity);
+            this.stackIndices = Arrays.copyOf(this.stackIndices, capacity);
+            this.stackCursors = Arrays.copyOf(this.stackCursors, capacity);
+        }
+        this.stackNodes[top] = node;
+        this.stackIndices[top] = index;
+        this.stackCursors[top] = 0;
+    }
+
+    /**
+     * Visit each node of the tree (DFS pre-order)
+     * @param visitor visitor to apply, returning false skips the subtree of the visited node
+     */
+    public void forEach(SceneNodeVisitor visitor) {
+        this.validate();
+        this.traversing++;
+        try {
+            int i = 0;
+            while(i < this.size) {
+                if(visitor.visit(this.nodes[i])) {
+                    i++;
+                } else {
+                    i = this.subtreeEnds[i];
+                }
+            }
+        } finally {
+            this.traversing--;
+        }
+    }
+
+    /**
+     * Apply a node function on each node of the tree (DFS pre-order)
+     * @param <T> extra argument type
+     * @param function function to apply for each node
+     * @param extra extra argument
+     */
+    public <T> void forEach(SceneNodeFunction function, T extra) {
+        this.validate();
+        this.traversing++;
+        try {
+            for(int i = 0; i < this.size; ++i) {
+                function.call(this.nodes[i], extra);
+            }
+        } finally {
+            this.traversing--;
+        }
+    }
+
+    /**
+     * Returns the number of nodes in the flattened order
+     * @return the number of nodes in the flattened order
+     */
+    public int size() {
+        this.validate();
+        return this.size;
+    }
+
+    /**
+     * Returns the node at an index of the flattened order
+     * @param index index in the flattened order
+     * @return the node at this index
+     */
+    public SceneNode getNode(int index) {
+        return this.nodes[index];
+    }
+
+    /**
+     * Returns the index of the first node after the subtree of a node
+     * @param index index of the node in the flattened order
+     * @return the index of the first node after its subtree
+     */
+    public int getSubtreeEnd(int index) {
+        return this.subtreeEnds[index];
+    }
+}
@@ -0,0 +1,100 @@
+package olibe.scene;
+
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+import olibe.render.Camera;
+import olibe.render.Camera2D;
+import olibe.render.Camera3D;
+import olibe.render.Frustum;
+
+/**
+ * Copy of the camera state for one frame.
+ * The pipeline copies the camera on the main thread before the scene update,
+ * so the update (possibly running on the update thread) never reads the camera
+ * while the main thread moves it.
+ */
+public class SceneView {
+    /** Position of the camera */
+    protected Vector3f position;
+    /** Frustum of the camera */
+    protected Frustum frustum;
+    /** Field of view of the camera (degrees, 0 if not a 3D camera) */
+    protected float fov;
+    /** World area visible by a 2D camera (minX, minY, maxX, maxY) */
+    protected Vector4f visibleArea;
+    /** The camera is a 3D camera */
+    protected boolean perspective;
+    /** The camera is a 2D camera (the visible area is set) */
+    protected boolean flat;
+
+    /**
+     * Create an empty view (call set before using it)
+     */
+    public SceneView() {
+        this.position = new Vector3f();
+        this.frustum = new Frustum();
+        this.visibleArea = new Vector4f();
+        this.fov = 0f;
+        this.perspective = false;
+        this.flat = false;
+    }
+
+    /**
+     * Copy the state of a camera (main thread)
+     * @param camera camera to copy
+     * @return this
+     */
+    public SceneView set(Camera camera) {
+        this.position.set(camera.getPosition());
+        this.frustum.update(camera);
+        this.perspective = camera instanceof Camera3D;
+        this.fov = this.perspective ? ((Camera3D)camera).getFov() : 0f;
+        this.flat = camera instanceof Camera2D;
+        if(this.flat) ((Camera2D)camera).getVisibleArea(this.visibleArea);
+        return this;
+    }
+
+    /**
+     * Returns the position of the camera
+     * @return the position of the camera
+     */
+    public Vector3f getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the frustum of the camera
+     * @return the frustum of the camera
+     */
+    public Frustum getFrustum() {
+        return frustum;
+    }
+
+    /**
+     * Returns the field of view of the camera
+     * @return the field of view (degrees, 0 if not a 3D camera)
+     */
+    public float getFov() {
+        return fov;
+    }
+
+    /**
+     * Returns true if the camera is a 3D camera
+     * @return true if the camera is a 3D camera
+     */
+    public boolean isPerspective() {
+        return perspective;
+    }
+
+    /**
+     * Returns the world area visible by a 2D camera
+     * @param dest destination (minX, minY, maxX, maxY)
+     * @return true if the camera is a 2D camera (dest is set), false otherwise
+     */
+    public boolean getVisibleArea(Vector4f dest) {
+        if(!this.flat) return false;
+        dest.set(this.visibleArea);
+        return true;
+    }
+}
@@ -0,0 +1,248 @@
+package olibe.scene;
+
+import java.lang.ref.*;
+import java.util.*;
+
+/**
+ * Time-sliced ticking of the components declaring an update rate
+ * (see {@link Component#getUpdateRate()}).
+ * The components sharing a period get evenly spread phase offsets
+ * (golden ratio sequence), so they do not all tick on the same frame.
+ * A ticked component receives the time elapsed since its previous tick.
+ * The slots of the components not seen for a while are released, their tick times
+ * are kept (weakly) so a component coming back resumes like it never left.
+ */
+public class TickScheduler {
+    /** Slot of each scheduled component */
+    protected Map<Component, Integer> slots;
+    /** Component of each slot (null for free slots) */
+    protected Component[] owners;
+    /** Next tick time of each slot */
+    protected double[] nextTicks;
+    /** Last tick time of each slot */
+    protected double[] lastTicks;
+    /** Period of each slot */
+    protected double[] periods;
+    /** Last frame each slot was seen */
+    protected int[] seenFrames;
+    /** Free slots */
+    protected int[] freeSlots;
+    /** Number of free slots */
+    protected int freeCount;
+    /** Number of used slots (free slots included) */
+    protected int slotCount;
+    /** Number of components scheduled for each period (phase sequence) */
+    protected Map<Double, Integer> periodCounters;
+    /** Last tick, next tick and period of the swept components (dropped once the components are collected) */
+    protected Map<SweptKey, double[]> swept;
+    /** Collected swept components */
+    protected ReferenceQueue<Component> sweptQueue;
+
+    /** Current time (in seconds) */
+    protected double time;
+    /** Current frame */
+    protected int frame;
+    /** Components ticked during the current frame */
+    protected int tickedCount;
+    /** Components skipped during the current frame */
+    protected int skippedCount;
+
+    /** Golden ratio fraction, spreads the phases evenly whatever the number of components */
+    protected static final double PHASE_STEP = 0.6180339887498949;
+    /** Number of frames between two removals of the components not seen anymore */
+    protected static final int SWEEP_INTERVAL = 120;
+    /** Initial capacity */
+    protected static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Weak identity key of a swept component
+     */
+    protected static final class SweptKey extends WeakReference<Component> {
+        /** Identity hash of the component */
+        private final int hash;
+
+        /**
+         * Create a key
+         * @param component component
+         * @param queue queue notified when the component is collected (null for lookups)
+         */
+        SweptKey(Component component, ReferenceQueue<Component> queue) {
+            super(component, queue);
+            this.hash = System.identityHashCode(component);
+        }
+
+        /**
+         * Returns the identity hash of the component
+         * @return the identity hash of the component
+         */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * Returns true if both keys refer to the same alive component
+         * @param o other key
+         * @return true if both keys refer to the same component
+         */
+        @Override
+        public boolean equals(Object o) {
+            if(o == this) return true;
+            if(!(o instanceof SweptKey)) return false;
+            Component component = this.get();
+            return component != null && component == ((SweptKey)o).get();
+        }
+    }
+
+    /**
+     * Create an empty tick scheduler
+     */
+    public TickScheduler() {
+        this.slots = new IdentityHashMap<>();
+        this.periodCounters = new HashMap<>();
+        this.swept = new HashMap<>();
+        this.sweptQueue = new ReferenceQueue<>();
+        this.owners = new Component[INITIAL_CAPACITY];
+        this.nextTicks = new double[INITIAL_CAPACITY];
+        this.lastTicks = new double[INITIAL_CAPACITY];
+        this.periods = new double[INITIAL_CAPACITY];
+        this.seenFrames = new int[INITIAL_CAPACITY];
+        this.freeSlots = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Begin a frame
+     * @param delta frame delta time (in seconds)
+     */
+    public void beginFrame(double delta) {
+        this.time += delta;
+        this.frame++;
+        this.tickedCount = 0;
+        this.skippedCount = 0;
+        if(this.frame % SWEEP_INTERVAL == 0) this.sweep();
+    }
+
+    /**
+     * Check if a component ticks during the current frame
+     * @param component component
+     * @param rate update rate of the component (in Hz, greater than 0)
+     * @return the time elapsed since its last tick, or a negative value if it does not tick this frame
+     */
+    public double tick(Component component, float rate) {
+        double period = 1.0 / rate;
+        Integer slotIndex = this.slots.get(component);
+        int slot = (slotIndex == null) ? this.register(component, period) : slotIndex;
+        this.seenFrames[slot] = this.frame;
+        if(this.periods[slot] != period) {
+            this.periods[slot] = period;
+            this.nextTicks[slot] = this.lastTicks[slot] + period;
+        }
+
+        if(this.time < this.nextTicks[slot]) {
+            this.skippedCount++;
+            return -1.0;
+        }
+        double delta = this.time - this.lastTicks[slot];
+        this.lastTicks[slot] = this.time;
+        // keep the phase, skip the missed ticks (frames longer than the period)
+        long steps = (long)Math.floor((this.time - this.nextTicks[slot]) / period) + 1;
+        this.nextTicks[slot] += steps * period;
+        this.tickedCount++;
+        return delta;
+    }
+
+    /**
+     * Returns the number of components ticked during the current frame
+     * @return the number of components ticked during the current frame
+     */
+    public int getTickedCount() {
+        return tickedCount;
+    }
+
+    /**
+     * Returns the number of components skipped during the current frame
+     * @return the number of components skipped during the current frame
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Returns the number of scheduled components
+     * @return the number of scheduled components
+     */
+    public int size() {
+        return this.slots.size();
+    }
+
+    /**
+     * Schedule a component
+     * @param component component
+     * @param period period of the component (in seconds)
+     * @return the slot of the component
+     */
+    protected int register(Component component, double period) {
+        int slot;
+        if(this.freeCount > 0) {
+            slot = this.freeSlots[--this.freeCount];
+        } else {
+            if(this.slotCount == this.owners.length) this.grow(this.slotCount * 2);
+            slot = this.slotCount++;
+        }
+        this.owners[slot] = component;
+        this.periods[slot] = period;
+        this.slots.put(component, slot);
+
+        // a swept component resumes with its tick times, as if its slot had been kept
+        double[] ticks = this.swept.isEmpty() ? null : this.swept.remove(new SweptKey(component, null));
+        if(ticks != null) {
+            // a changed rate is applied by tick()
+            this.lastTicks[slot] = ticks[0];
+            this.nextTicks[slot] = ticks[1];
+            this.periods[slot] = ticks[2];
+            return slot;
+        }
+        Integer counter = this.periodCounters.get(period);
+        int n = (counter == null) ? 0 : counter;
+        this.periodCounters.put(period, n + 1);
+        double phase = (n * PHASE_STEP) % 1.0;
+        this.lastTicks[slot] = this.time;
+        this.nextTicks[slot] = this.time + phase * period;
+        return slot;
+    }
+
+    /**
+     * Unschedule the components not seen since the last sweep (removed from the scene),
+     * their tick times are kept until they are collected
+     */
+    protected void sweep() {
+        Reference<? extends Component> collected;
+        while((collected = this.sweptQueue.poll()) != null) {
+            this.swept.remove(collected);
+        }
+        for(int slot = 0; slot < this.slotCount; ++slot) {
+            if(this.owners[slot] == null) continue;
+            if(this.frame - this.seenFrames[slot] < SWEEP_INTERVAL) continue;
+            this.slots.remove(this.owners[slot]);
+            this.swept.put(new SweptKey(this.owners[slot], this.sweptQueue),
+                new double[] { this.lastTicks[slot], this.nextTicks[slot], this.periods[slot] });
+            this.owners[slot] = null;
+            if(this.freeCount == this.freeSlots.length) {
+                this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeCount * 2);
+            }
+            this.freeSlots[this.freeCount++] = slot;
+        }
+    }
+
+    /**
+     * Grow the slot arrays
+     * @param capacity new capacity
+     */
+    private void grow(int capacity) {
+        this.owners = Arrays.copyOf(this.owners, capacity);
+        this.nextTicks = Arrays.copyOf(this.nextTicks, capacity);
+        this.lastTicks = Arrays.copyOf(this.lastTicks, capacity);
+        this.periods = Arrays.copyOf(this.periods, capacity);
+        this.seenFrames = Arrays.copyOf(this.seenFrames, capacity);
+    }
+}
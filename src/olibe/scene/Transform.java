@@ -4,27 +4,59 @@ import org.joml.Matrix4f;
 import org.joml.Vector3f;
 
 /**
- * Transform class
+ * Transform class.
+ * Matrices are recalculated lazily: setters only mark the transform dirty,
+ * the local matrix is rebuilt on {@link #getTransformMatrix()} and the world
+ * matrix (parent world * local) on {@link #getWorldMatrix()}.
+ * If you modify the vectors returned by the getters, call {@link #markDirty()}.
+ * The local matrix is only stored once it is requested, the world matrix is
+ * otherwise built in place. The scale and rotation vectors are only allocated
+ * once set or requested (identity until then).
+ * <p>
+ * The vectors and matrices stay JOML objects per transform rather than slots in flat
+ * arrays: the getters hand out mutable references callers edit in place, and
+ * {@link TransformBuffer} is the flat layout for bulk transforms.
  */
 public class Transform {
     /** Position */
     protected Vector3f position;
-    /** Scale */
+    /** Scale (null for a unit scale) */
     protected Vector3f scale;
-    /** Euler rotation */
+    /** Euler rotation (null for no rotation) */
     protected Vector3f eulerRotations;
-    /** Calculated model matrix */
+    /** Calculated model matrix (local, null until {@link #getTransformMatrix()} is called) */
     protected Matrix4f calculatedMatrix;
+    /** Calculated world matrix (parent world * local) */
+    protected Matrix4f worldMatrix;
+    /** Parent transform (null if root) */
+    protected Transform parent;
+    /** Node owning this transform (null if standalone) */
+    protected SceneNode owner;
+
+    /** The local matrix needs to be recalculated */
+    protected boolean localDirty;
+    /** The world matrix needs to be recalculated */
+    protected boolean worldDirty;
+    /** This transform or one of its descendants needs its world matrix recalculated */
+    protected boolean childDirty;
+    /** Incremented each time the world matrix is recalculated */
+    protected int version;
+    /** Version of the parent world matrix used for the last world matrix */
+    protected int parentVersion;
 
     /**
      * Create a base transform
      */
     public Transform() {
         this.position = new Vector3f();
-        this.scale = new Vector3f(1f);
-        this.eulerRotations = new Vector3f();
-        this.calculatedMatrix = new Matrix4f();
-        this.recalculate();
+        this.scale = null;
+        this.eulerRotations = null;
+        this.calculatedMatrix = null;
+        this.worldMatrix = new Matrix4f();
+        this.parent = null;
+        this.version = 0;
+        this.parentVersion = 0;
+        this.markDirty();
     }
 
     /**
@@ -34,7 +66,7 @@ public class Transform {
     public void setPosition(Vector3f position) {
         if(position == null) return;
         this.position = position;
-        this.recalculate();
+        this.markDirty();
     }
 
     /**
@@ -44,7 +76,7 @@ public class Transform {
     public void setScale(Vector3f scale) {
         if(scale == null) return;
         this.scale = scale;
-        this.recalculate();
+        this.markDirty();
     }
 
     /**
@@ -54,7 +86,21 @@ public class Transform {
     public void setEulerRotations(Vector3f eulerRotations) {
         if(eulerRotations == null) return;
         this.eulerRotations = eulerRotations;
-        this.recalculate();
+        this.markDirty();
+    }
+
+    /**
+     * Sets the position, euler rotations and scale of this transform at once
+     * (null values are ignored)
+     * @param position new position
+     * @param eulerRotations new euler rotations angles
+     * @param scale new scale
+     */
+    public void setTRS(Vector3f position, Vector3f eulerRotations, Vector3f scale) {
+        if(position != null) this.position = position;
+        if(eulerRotations != null) this.eulerRotations = eulerRotations;
+        if(scale != null) this.scale = scale;
+        this.markDirty();
     }
 
     /**
@@ -62,6 +108,7 @@ public class Transform {
      * @return the euleur rotation of this transform
      */
     public Vector3f getEulerRotations() {
+        if(this.eulerRotations == null) this.eulerRotations = new Vector3f();
         return eulerRotations;
     }
     /**
@@ -76,19 +123,112 @@ public class Transform {
      * @return the scale of this transform
      */
     public Vector3f getScale() {
+        if(this.scale == null) this.scale = new Vector3f(1f);
         return scale;
     }
 
+    /**
+     * Mark this transform as modified, its matrices will be recalculated when needed
+     */
+    public void markDirty() {
+        if(!this.worldDirty && this.owner != null) {
+            // recorded once until the world matrix is recalculated
+            SceneJournal journal = this.owner.findJournal();
+            if(journal != null) journal.record(SceneJournal.EventType.TRANSFORM_DIRTY, this.owner, null);
+        }
+        this.localDirty = true;
+        this.worldDirty = true;
+        this.childDirty = true;
+        for(Transform t = this.parent; t != null && !t.childDirty; t = t.parent) {
+            t.childDirty = true;
+        }
+    }
+
+    /**
+     * Sets the parent of this transform
+     * @param parent new parent (null for none)
+     */
+    public void setParent(Transform parent) {
+        if(this.parent == parent) return;
+        this.parent = parent;
+        this.markDirty();
+    }
+
+    /**
+     * Returns the parent of this transform
+     * @return the parent of this transform (null if root)
+     */
+    public Transform getParent() {
+        return parent;
+    }
+
     /**
      * Recalculate the matrix
      */
     protected void recalculate() {
-        calculatedMatrix.identity()
-            .rotateX(this.eulerRotations.x) 
-            .rotateY(this.eulerRotations.y) 
-            .rotateZ(this.eulerRotations.z)
-            .scale(this.scale)
-            .translate(this.position);
+        this.computeLocal(this.calculatedMatrix);
+        this.localDirty = false;
+    }
+
+    /**
+     * Compute the local matrix
+     * @param dest destination matrix
+     * @return dest
+     */
+    protected Matrix4f computeLocal(Matrix4f dest) {
+        dest.identity();
+        if(this.eulerRotations != null) {
+            dest.rotateX(this.eulerRotations.x)
+                .rotateY(this.eulerRotations.y)
+                .rotateZ(this.eulerRotations.z);
+        }
+        if(this.scale != null) dest.scale(this.scale);
+        return dest.translate(this.position);
+    }
+
+    /**
+     * Recalculate the world matrix if this transform or its parent changed,
+     * the parent world matrix is assumed to be up to date
+     * @return true if the world matrix has been recalculated
+     */
+    protected boolean refreshWorld() {
+        int currentParentVersion = (this.parent == null) ? 0 : this.parent.version;
+        if(!this.worldDirty && currentParentVersion == this.parentVersion) return false;
+
+        if(this.calculatedMatrix != null) {
+            Matrix4f local = this.getTransformMatrix();
+            if(this.parent == null) {
+                this.worldMatrix.set(local);
+            } else {
+                this.parent.worldMatrix.mul(local, this.worldMatrix);
+            }
+        } else {
+            // local matrix never requested: build it in place
+            this.computeLocal(this.worldMatrix);
+            if(this.parent != null) this.worldMatrix.mulLocal(this.parent.worldMatrix);
+        }
+        this.parentVersion = currentParentVersion;
+        this.worldDirty = false;
+        this.childDirty = true; // children must compare against the new version
+        this.version++;
+        return true;
+    }
+
+    /**
+     * Take the world matrix from a bulk computation if this transform or its parent changed,
+     * the parent world matrix is assumed to be up to date (see {@link #refreshWorld()})
+     * @param buffer bulk transforms holding this transform
+     * @param slot slot of this transform in the buffer
+     * @return true if the world matrix has been replaced
+     */
+    protected boolean refreshWorld(TransformBuffer buffer, int slot) {
+        int currentParentVersion = (this.parent == null) ? 0 : this.parent.version;
+        if(!this.worldDirty && currentParentVersion == this.parentVersion) return false;
+        buffer.getWorldMatrix(slot, this.worldMatrix);
+        this.parentVersion = currentParentVersion;
+        this.worldDirty = false;
+        this.version++;
+        return true;
     }
 
     /**
@@ -96,6 +236,29 @@ public class Transform {
      * @return the matrix of this transform
      */
     public Matrix4f getTransformMatrix() {
+        if(this.calculatedMatrix == null) {
+            this.calculatedMatrix = new Matrix4f();
+            this.localDirty = true;
+        }
+        if(this.localDirty) this.recalculate();
         return calculatedMatrix;
     }
+
+    /**
+     * Returns the version of the world matrix, incremented each time it is recalculated
+     * @return the version of the world matrix
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the world matrix of this transform (parents included)
+     * @return the world matrix of this transform
+     */
+    public Matrix4f getWorldMatrix() {
+        if(this.parent != null) this.parent.getWorldMatrix();
+        this.refreshWorld();
+        return worldMatrix;
+    }
 }
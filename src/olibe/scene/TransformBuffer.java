@@ -0,0 +1,418 @@
+package olibe.scene;
+
+import static org.lwjgl.system.MemoryUtil.memPutFloat;
+
+import java.nio.*;
+import java.util.*;
+
+import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
+
+import olibe.render.StorageBuffer;
+
+/**
+ * Structure-of-arrays transform storage.
+ * Positions, scales, the sines and cosines of the rotations and the world
+ * matrices (affine, one array per coefficient) are stored in one float array
+ * per component. The rotations are converted once when they are set, so
+ * {@link #computeWorldMatrices()} has no trigonometry: its local pass is a
+ * branch-free unit-stride loop (vectorized with the Vector API when the
+ * jdk.incubator.vector module is available, see {@link TransformKernel}),
+ * the parent pass is a sequential gather since each slot needs its parent result.
+ * The parent pass also writes the world matrices into a contiguous off-heap
+ * array (16 floats per slot), which {@link #upload(StorageBuffer)} sends as is.
+ * The matrices match {@link Transform#getWorldMatrix()} up to rounding.
+ * A slot parent must be a lower slot than the slot itself.
+ */
+public class TransformBuffer {
+    /** Number of slots in use (freed slots included) */
+    protected int size;
+    /** Positions (x, y, z arrays) */
+    protected float[] posX, posY, posZ;
+    /** Scales (x, y, z arrays) */
+    protected float[] scaleX, scaleY, scaleZ;
+    /** Euler rotations (x, y, z arrays) */
+    protected float[] rotX, rotY, rotZ;
+    /** Cosines of the euler rotations (x, y, z arrays) */
+    protected float[] cosX, cosY, cosZ;
+    /** Sines of the euler rotations (x, y, z arrays) */
+    protected float[] sinX, sinY, sinZ;
+    /** Matrices coefficients (column, row), local after the local pass then world */
+    protected float[] m00, m01, m02, m10, m11, m12, m20, m21, m22, m30, m31, m32;
+    /** Parent slot of each slot (-1 for roots) */
+    protected int[] parents;
+    /** Number of children of each slot */
+    protected int[] childCounts;
+    /** Freed slots below size */
+    protected BitSet freeSlots;
+    /** World matrices of the slots, off-heap and contiguous (column-major, 16 floats per slot) */
+    protected FloatBuffer matrices;
+    /** Address of the off-heap world matrices */
+    protected long matricesAddress;
+
+    /** Initial capacity used for non positive capacities */
+    protected static final int MIN_CAPACITY = 16;
+    /** The Vector API kernel can be used */
+    protected static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /**
+     * Create a transform buffer
+     * @param capacity initial number of slots (grows when needed)
+     */
+    public TransformBuffer(int capacity) {
+        this.size = 0;
+        this.freeSlots = new BitSet();
+        this.allocateArrays(Math.max(capacity, MIN_CAPACITY));
+    }
+
+    /**
+     * Allocate a slot (identity transform), freed slots above the parent are reused first
+     * @param parent parent slot (-1 for none), must be an allocated slot
+     * @return the allocated slot
+     * @throws IllegalArgumentException invalid parent slot
+     */
+    public int allocate(int parent) throws IllegalArgumentException {
+        if(parent >= this.size || (parent >= 0 && this.freeSlots.get(parent)))
+            throw new IllegalArgumentException("Parent slot ["+parent+"] is not allocated");
+
+        int slot = this.freeSlots.nextSetBit(parent + 1);
+        if(slot >= 0) {
+            this.freeSlots.clear(slot);
+        } else {
+            if(this.size == this.parents.length) this.allocateArrays(this.size * 2);
+            slot = this.size++;
+        }
+        this.parents[slot] = parent;
+        this.childCounts[slot] = 0;
+        if(parent >= 0) this.childCounts[parent]++;
+        this.resetSlot(slot);
+        return slot;
+    }
+
+    /**
+     * Free a slot, it can be reused by a later allocation
+     * @param slot slot to free
+     * @throws IllegalArgumentException the slot is not allocated or still has children
+     */
+    public void free(int slot) throws IllegalArgumentException {
+        if(slot < 0 || slot >= this.size || this.freeSlots.get(slot))
+            throw new IllegalArgumentException("Slot ["+slot+"] is not allocated");
+        if(this.childCounts[slot] > 0)
+            throw new IllegalArgumentException("Slot ["+slot+"] still has "+this.childCounts[slot]+" children");
+
+        if(this.parents[slot] >= 0) this.childCounts[this.parents[slot]]--;
+        // freed slots are computed as identity roots until reused
+        this.parents[slot] = -1;
+        this.resetSlot(slot);
+        this.freeSlots.set(slot);
+        while(this.size > 0 && this.freeSlots.get(this.size - 1)) {
+            this.freeSlots.clear(--this.size);
+        }
+    }
+
+    /**
+     * Sets the identity transform in a slot
+     * @param slot slot
+     */
+    protected void resetSlot(int slot) {
+        this.setPosition(slot, 0f, 0f, 0f);
+        this.setScale(slot, 1f, 1f, 1f);
+        this.rotX[slot] = this.rotY[slot] = this.rotZ[slot] = 0f;
+        this.cosX[slot] = this.cosY[slot] = this.cosZ[slot] = 1f;
+        this.sinX[slot] = this.sinY[slot] = this.sinZ[slot] = 0f;
+    }
+
+    /**
+     * Sets the position of a slot
+     * @param slot slot
+     * @param x x position
+     * @param y y position
+     * @param z z position
+     */
+    public void setPosition(int slot, float x, float y, float z) {
+        this.posX[slot] = x;
+        this.posY[slot] = y;
+        this.posZ[slot] = z;
+    }
+
+    /**
+     * Sets the euler rotations of a slot (their sines and cosines are computed here, if they changed)
+     * @param slot slot
+     * @param x rotation around x
+     * @param y rotation around y
+     * @param z rotation around z
+     */
+    public void setEulerRotations(int slot, float x, float y, float z) {
+        if(this.rotX[slot] == x && this.rotY[slot] == y && this.rotZ[slot] == z) return;
+        this.rotX[slot] = x;
+        this.rotY[slot] = y;
+        this.rotZ[slot] = z;
+        this.cosX[slot] = (float)Math.cos(x);
+        this.sinX[slot] = (float)Math.sin(x);
+        this.cosY[slot] = (float)Math.cos(y);
+        this.sinY[slot] = (float)Math.sin(y);
+        this.cosZ[slot] = (float)Math.cos(z);
+        this.sinZ[slot] = (float)Math.sin(z);
+    }
+
+    /**
+     * Sets the scale of a slot
+     * @param slot slot
+     * @param x x scale
+     * @param y y scale
+     * @param z z scale
+     */
+    public void setScale(int slot, float x, float y, float z) {
+        this.scaleX[slot] = x;
+        this.scaleY[slot] = y;
+        this.scaleZ[slot] = z;
+    }
+
+    /**
+     * Sets the position, euler rotations and scale of a slot
+     * @param slot slot
+     * @param px x position
+     * @param py y position
+     * @param pz z position
+     * @param rx rotation around x
+     * @param ry rotation around y
+     * @param rz rotation around z
+     * @param sx x scale
+     * @param sy y scale
+     * @param sz z scale
+     */
+    public void setTRS(int slot, float px, float py, float pz, float rx, float ry, float rz, float sx, float sy, float sz) {
+        this.setPosition(slot, px, py, pz);
+        this.setEulerRotations(slot, rx, ry, rz);
+        this.setScale(slot, sx, sy, sz);
+    }
+
+    /**
+     * Copy the local data of a transform into a slot
+     * @param slot slot
+     * @param transform transform to copy
+     */
+    public void store(int slot, Transform transform) {
+        this.setPosition(slot, transform.position.x, transform.position.y, transform.position.z);
+        if(transform.eulerRotations == null) {
+            this.setEulerRotations(slot, 0f, 0f, 0f);
+        } else {
+            this.setEulerRotations(slot, transform.eulerRotations.x, transform.eulerRotations.y, transform.eulerRotations.z);
+        }
+        if(transform.scale == null) {
+            this.setScale(slot, 1f, 1f, 1f);
+        } else {
+            this.setScale(slot, transform.scale.x, transform.scale.y, transform.scale.z);
+        }
+    }
+
+    /**
+     * Compute the world matrices of every slot
+     */
+    public void computeWorldMatrices() {
+        int done = VECTOR_API ? TransformKernel.computeLocalMatrices(this) : 0;
+        this.computeLocalMatrices(done, this.size);
+        this.composeParents();
+    }
+
+    /**
+     * Compute the local matrices of a range of slots (rotateX * rotateY * rotateZ * scale * translate)
+     * @param from first slot
+     * @param to end slot (exclusive)
+     */
+    protected void computeLocalMatrices(int from, int to) {
+        for(int i = from; i < to; ++i) {
+            float cx = this.cosX[i], sx = this.sinX[i];
+            float cy = this.cosY[i], sy = this.sinY[i];
+            float cz = this.cosZ[i], sz = this.sinZ[i];
+            float kx = this.scaleX[i], ky = this.scaleY[i], kz = this.scaleZ[i];
+
+            // rotation (Rx * Ry * Rz) columns times the scale
+            float c00 = cy * cz * kx;
+            float c01 = (cx * sz + sx * sy * cz) * kx;
+            float c02 = (sx * sz - cx * sy * cz) * kx;
+            float c10 = -cy * sz * ky;
+            float c11 = (cx * cz - sx * sy * sz) * ky;
+            float c12 = (sx * cz + cx * sy * sz) * ky;
+            float c20 = sy * kz;
+            float c21 = -sx * cy * kz;
+            float c22 = cx * cy * kz;
+
+            float px = this.posX[i], py = this.posY[i], pz = this.posZ[i];
+            this.m00[i] = c00; this.m01[i] = c01; this.m02[i] = c02;
+            this.m10[i] = c10; this.m11[i] = c11; this.m12[i] = c12;
+            this.m20[i] = c20; this.m21[i] = c21; this.m22[i] = c22;
+            this.m30[i] = c00 * px + c10 * py + c20 * pz;
+            this.m31[i] = c01 * px + c11 * py + c21 * pz;
+            this.m32[i] = c02 * px + c12 * py + c22 * pz;
+        }
+    }
+
+    /**
+     * Multiply the local matrices by their parent world matrix (in slot order, parents first)
+     * and write the world matrices into the off-heap array
+     */
+    protected void composeParents() {
+        for(int i = 0; i < this.size; ++i) {
+            int p = this.parents[i];
+            if(p < 0) {
+                this.storeMatrix(i);
+                continue;
+            }
+            float p00 = this.m00[p], p01 = this.m01[p], p02 = this.m02[p];
+            float p10 = this.m10[p], p11 = this.m11[p], p12 = this.m12[p];
+            float p20 = this.m20[p], p21 = this.m21[p], p22 = this.m22[p];
+
+            float l0 = this.m00[i], l1 = this.m01[i], l2 = this.m02[i];
+            this.m00[i] = p00 * l0 + p10 * l1 + p20 * l2;
+            this.m01[i] = p01 * l0 + p11 * l1 + p21 * l2;
+            this.m02[i] = p02 * l0 + p12 * l1 + p22 * l2;
+            l0 = this.m10[i]; l1 = this.m11[i]; l2 = this.m12[i];
+            this.m10[i] = p00 * l0 + p10 * l1 + p20 * l2;
+            this.m11[i] = p01 * l0 + p11 * l1 + p21 * l2;
+            this.m12[i] = p02 * l0 + p12 * l1 + p22 * l2;
+            l0 = this.m20[i]; l1 = this.m21[i]; l2 = this.m22[i];
+            this.m20[i] = p00 * l0 + p10 * l1 + p20 * l2;
+            this.m21[i] = p01 * l0 + p11 * l1 + p21 * l2;
+            this.m22[i] = p02 * l0 + p12 * l1 + p22 * l2;
+            l0 = this.m30[i]; l1 = this.m31[i]; l2 = this.m32[i];
+            this.m30[i] = p00 * l0 + p10 * l1 + p20 * l2 + this.m30[p];
+            this.m31[i] = p01 * l0 + p11 * l1 + p21 * l2 + this.m31[p];
+            this.m32[i] = p02 * l0 + p12 * l1 + p22 * l2 + this.m32[p];
+            this.storeMatrix(i);
+        }
+    }
+
+    /**
+     * Write the world matrix of a slot into the off-heap array
+     * (the constant last row is written when the array is allocated)
+     * @param slot slot
+     */
+    protected void storeMatrix(int slot) {
+        // unchecked writes, the slot is below the allocated capacity
+        long m = this.matricesAddress + slot * 64L;
+        memPutFloat(m,      this.m00[slot]); memPutFloat(m + 4,  this.m01[slot]); memPutFloat(m + 8,  this.m02[slot]);
+        memPutFloat(m + 16, this.m10[slot]); memPutFloat(m + 20, this.m11[slot]); memPutFloat(m + 24, this.m12[slot]);
+        memPutFloat(m + 32, this.m20[slot]); memPutFloat(m + 36, this.m21[slot]); memPutFloat(m + 40, this.m22[slot]);
+        memPutFloat(m + 48, this.m30[slot]); memPutFloat(m + 52, this.m31[slot]); memPutFloat(m + 56, this.m32[slot]);
+    }
+
+    /**
+     * Returns the world matrix of a slot
+     * @param slot slot
+     * @param dest destination matrix
+     * @return dest
+     */
+    public Matrix4f getWorldMatrix(int slot, Matrix4f dest) {
+        return dest.set(
+            this.m00[slot], this.m01[slot], this.m02[slot], 0f,
+            this.m10[slot], this.m11[slot], this.m12[slot], 0f,
+            this.m20[slot], this.m21[slot], this.m22[slot], 0f,
+            this.m30[slot], this.m31[slot], this.m32[slot], 1f);
+    }
+
+    /**
+     * Copy the world matrices of the allocated slots (column-major, 16 floats per slot)
+     * @param dest destination (from its position, must have size() * 16 floats remaining)
+     * @return dest
+     */
+    public FloatBuffer getMatrices(FloatBuffer dest) {
+        dest.put(dest.position(), this.matrices, 0, this.size * 16);
+        return dest;
+    }
+
+    /**
+     * Returns the off-heap world matrices (column-major, 16 floats per slot, the
+     * first size() * 16 floats are in use), valid until the buffer grows
+     * @return the world matrices array
+     */
+    public FloatBuffer getMatrices() {
+        return this.matrices;
+    }
+
+    /**
+     * Upload the world matrices of the allocated slots in one shot (no copy on the CPU side)
+     * @param buffer storage buffer to upload to
+     */
+    public void upload(StorageBuffer buffer) {
+        this.matrices.limit(this.size * 16);
+        buffer.setData(this.matrices);
+        this.matrices.clear();
+    }
+
+    /**
+     * Returns the number of slots in use (freed slots below it included)
+     * @return the number of slots in use
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the parent of a slot
+     * @param slot slot
+     * @return the parent slot (-1 for roots)
+     */
+    public int getParent(int slot) {
+        return this.parents[slot];
+    }
+
+    /**
+     * Release all the slots
+     */
+    public void clear() {
+        this.size = 0;
+        this.freeSlots.clear();
+    }
+
+    /**
+     * Free the off-heap matrices of this buffer and release all the slots, the buffer can't be used afterwards
+     */
+    public void delete() {
+        if(this.matrices != null) MemoryUtil.memFree(this.matrices);
+        this.matrices = null;
+        this.matricesAddress = 0;
+        this.parents = null;
+        this.clear();
+    }
+
+    /**
+     * Grow the arrays
+     * @param capacity new number of slots
+     */
+    protected void allocateArrays(int capacity) {
+        int allocated = (this.parents == null) ? 0 : this.parents.length;
+        this.matrices = (this.matrices == null) ? MemoryUtil.memAllocFloat(capacity * 16)
+            : MemoryUtil.memRealloc(this.matrices, capacity * 16);
+        for(int i = allocated; i < capacity; ++i) {
+            int o = i * 16;
+            this.matrices.put(o+3, 0f).put(o+7, 0f).put(o+11, 0f).put(o+15, 1f);
+        }
+        this.matricesAddress = MemoryUtil.memAddress(this.matrices);
+        if(this.parents == null) {
+            this.parents = new int[capacity];
+            this.childCounts = new int[capacity];
+            this.posX = new float[capacity]; this.posY = new float[capacity]; this.posZ = new float[capacity];
+            this.scaleX = new float[capacity]; this.scaleY = new float[capacity]; this.scaleZ = new float[capacity];
+            this.rotX = new float[capacity]; this.rotY = new float[capacity]; this.rotZ = new float[capacity];
+            this.cosX = new float[capacity]; this.cosY = new float[capacity]; this.cosZ = new float[capacity];
+            this.sinX = new float[capacity]; this.sinY = new float[capacity]; this.sinZ = new float[capacity];
+            this.m00 = new float[capacity]; this.m01 = new float[capacity]; this.m02 = new float[capacity];
+            this.m10 = new float[capacity]; this.m11 = new float[capacity]; this.m12 = new float[capacity];
+            this.m20 = new float[capacity]; this.m21 = new float[capacity]; this.m22 = new float[capacity];
+            this.m30 = new float[capacity]; this.m31 = new float[capacity]; this.m32 = new float[capacity];
+            return;
+        }
+        this.parents = Arrays.copyOf(this.parents, capacity);
+        this.childCounts = Arrays.copyOf(this.childCounts, capacity);
+        this.posX = Arrays.copyOf(this.posX, capacity); this.posY = Arrays.copyOf(this.posY, capacity); this.posZ = Arrays.copyOf(this.posZ, capacity);
+        this.scaleX = Arrays.copyOf(this.scaleX, capacity); this.scaleY = Arrays.copyOf(this.scaleY, capacity); this.scaleZ = Arrays.copyOf(this.scaleZ, capacity);
+        this.rotX = Arrays.copyOf(this.rotX, capacity); this.rotY = Arrays.copyOf(this.rotY, capacity); this.rotZ = Arrays.copyOf(this.rotZ, capacity);
+        this.cosX = Arrays.copyOf(this.cosX, capacity); this.cosY = Arrays.copyOf(this.cosY, capacity); this.cosZ = Arrays.copyOf(this.cosZ, capacity);
+        this.sinX = Arrays.copyOf(this.sinX, capacity); this.sinY = Arrays.copyOf(this.sinY, capacity); this.sinZ = Arrays.copyOf(this.sinZ, capacity);
+        this.m00 = Arrays.copyOf(this.m00, capacity); this.m01 = Arrays.copyOf(this.m01, capacity); this.m02 = Arrays.copyOf(this.m02, capacity);
+        this.m10 = Arrays.copyOf(this.m10, capacity); this.m11 = Arrays.copyOf(this.m11, capacity); this.m12 = Arrays.copyOf(this.m12, capacity);
+        this.m20 = Arrays.copyOf(this.m20, capacity); this.m21 = Arrays.copyOf(this.m21, capacity); this.m22 = Arrays.copyOf(this.m22, capacity);
+        this.m30 = Arrays.copyOf(this.m30, capacity); this.m31 = Arrays.copyOf(this.m31, capacity); this.m32 = Arrays.copyOf(this.m32, capacity);
+    }
+}
@@ -0,0 +1,59 @@
+package olibe.scene;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernel of {@link TransformBuffer}.
+ * Only loaded when the jdk.incubator.vector module is present
+ * (run with --add-modules jdk.incubator.vector), the buffer falls back to its scalar loop otherwise.
+ */
+public final class TransformKernel {
+    /** Vector shape used by the kernel */
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * Not instantiable
+     */
+    private TransformKernel() {}
+
+    /**
+     * Compute the local matrices of the slots, a whole number of vectors at a time
+     * @param b transform buffer
+     * @return number of computed slots (the remaining ones are left to the scalar loop)
+     */
+    public static int computeLocalMatrices(TransformBuffer b) {
+        int bound = SPECIES.loopBound(b.size);
+        for(int i = 0; i < bound; i += SPECIES.length()) {
+            FloatVector cx = FloatVector.fromArray(SPECIES, b.cosX, i), sx = FloatVector.fromArray(SPECIES, b.sinX, i);
+            FloatVector cy = FloatVector.fromArray(SPECIES, b.cosY, i), sy = FloatVector.fromArray(SPECIES, b.sinY, i);
+            FloatVector cz = FloatVector.fromArray(SPECIES, b.cosZ, i), sz = FloatVector.fromArray(SPECIES, b.sinZ, i);
+            FloatVector kx = FloatVector.fromArray(SPECIES, b.scaleX, i);
+            FloatVector ky = FloatVector.fromArray(SPECIES, b.scaleY, i);
+            FloatVector kz = FloatVector.fromArray(SPECIES, b.scaleZ, i);
+
+            // rotation (Rx * Ry * Rz) columns times the scale
+            FloatVector sxsy = sx.mul(sy), cxsy = cx.mul(sy);
+            FloatVector c00 = cy.mul(cz).mul(kx);
+            FloatVector c01 = sxsy.fma(cz, cx.mul(sz)).mul(kx);
+            FloatVector c02 = sx.mul(sz).sub(cxsy.mul(cz)).mul(kx);
+            FloatVector c10 = cy.mul(sz).neg().mul(ky);
+            FloatVector c11 = cx.mul(cz).sub(sxsy.mul(sz)).mul(ky);
+            FloatVector c12 = cxsy.fma(sz, sx.mul(cz)).mul(ky);
+            FloatVector c20 = sy.mul(kz);
+            FloatVector c21 = sx.mul(cy).neg().mul(kz);
+            FloatVector c22 = cx.mul(cy).mul(kz);
+
+            FloatVector px = FloatVector.fromArray(SPECIES, b.posX, i);
+            FloatVector py = FloatVector.fromArray(SPECIES, b.posY, i);
+            FloatVector pz = FloatVector.fromArray(SPECIES, b.posZ, i);
+            c00.intoArray(b.m00, i); c01.intoArray(b.m01, i); c02.intoArray(b.m02, i);
+            c10.intoArray(b.m10, i); c11.intoArray(b.m11, i); c12.intoArray(b.m12, i);
+            c20.intoArray(b.m20, i); c21.intoArray(b.m21, i); c22.intoArray(b.m22, i);
+            c20.fma(pz, c10.fma(py, c00.mul(px))).intoArray(b.m30, i);
+            c21.fma(pz, c11.fma(py, c01.mul(px))).intoArray(b.m31, i);
+            c22.fma(pz, c12.fma(py, c02.mul(px))).intoArray(b.m32, i);
+        }
+        return bound;
+    }
+}
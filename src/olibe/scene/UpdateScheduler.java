@@ -0,0 +1,278 @@
+package olibe.scene;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Phased update of the components of a scene:
+ * <ol>
+ *   <li>pre-update: {@link Component#onPreUpdate(double)} on the main thread</li>
+ *   <li>update: {@link Component#onUpdate(double)}, parallel components run on a fork-join pool, then the others on the main thread</li>
+ *   <li>late-update: {@link Component#onLateUpdate(double)} on the main thread</li>
+ * </ol>
+ * Edits deferred during a phase are applied when the phase ends (even if the phase throws).
+ * In the update phase, all the parallel components are updated before the main thread ones,
+ * so the traversal order is only kept within each set (without parallel components
+ * the components are updated in traversal order, as before).
+ * Rate-limited components are only gathered on the frames they tick (see {@link TickScheduler}).
+ */
+public class UpdateScheduler {
+    /** Pool running the parallel components */
+    protected ForkJoinPool pool;
+    /** Components of the scene (traversal order) */
+    protected Component[] components;
+    /** Delta time of each component (time since its last update) */
+    protected double[] deltas;
+    /** Number of components */
+    protected int componentCount;
+    /** Components updated on the main thread */
+    protected Component[] serialComponents;
+    /** Delta time of each component updated on the main thread */
+    protected double[] serialDeltas;
+    /** Number of components updated on the main thread */
+    protected int serialCount;
+    /** Components updated on the pool */
+    protected Component[] parallelComponents;
+    /** Delta time of each component updated on the pool */
+    protected double[] parallelDeltas;
+    /** Number of components updated on the pool */
+    protected int parallelCount;
+    /** Edits deferred until the end of the current phase */
+    protected Queue<Runnable> deferred;
+    /** A phase is running */
+    protected volatile boolean inPhase;
+    /** Number of parallel components updated by a single task */
+    protected int batchSize;
+    /** Ticks of the rate-limited components */
+    protected TickScheduler ticks;
+    /** Delta time of the current frame */
+    protected float frameDelta;
+
+    /** Default number of parallel components updated by a single task */
+    protected static final int DEFAULT_BATCH_SIZE = 256;
+    /** Initial capacity of the component arrays */
+    protected static final int INITIAL_CAPACITY = 64;
+
+    /** Visitor gathering the components of the scene */
+    protected final SceneNodeVisitor gatherVisitor = new SceneNodeVisitor() {
+        public boolean visit(SceneNode node) {
+            List<Component> nodeComponents = node.components;
+            for(int i = 0; i < nodeComponents.size(); ++i) {
+                Component component = nodeComponents.get(i);
+                float rate = component.getUpdateRate();
+                if(rate <= 0f) {
+                    UpdateScheduler.this.gather(component, UpdateScheduler.this.frameDelta);
+                    continue;
+                }
+                double delta = UpdateScheduler.this.ticks.tick(component, rate);
+                if(delta >= 0.0) UpdateScheduler.this.gather(component, delta);
+            }
+            return true;
+        }
+    };
+
+    /**
+     * Task updating a range of parallel components
+     */
+    protected class UpdateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        /** First component */
+        protected final int start;
+        /** End of the range (excluded) */
+        protected final int end;
+
+        /**
+         * Create an update task
+         * @param start first component
+         * @param end end of the range (excluded)
+         */
+        protected UpdateTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if(this.end - this.start <= UpdateScheduler.this.batchSize) {
+                Component[] parallel = UpdateScheduler.this.parallelComponents;
+                double[] parallelDeltas = UpdateScheduler.this.parallelDeltas;
+                for(int i = this.start; i < this.end; ++i) {
+                    parallel[i].onUpdate(parallelDeltas[i]);
+                }
+                return;
+            }
+            int middle = (this.start + this.end) >>> 1;
+            invokeAll(new UpdateTask(this.start, middle), new UpdateTask(middle, this.end));
+        }
+    }
+
+    /**
+     * Create an update scheduler using the common fork-join pool
+     */
+    public UpdateScheduler() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create an update scheduler
+     * @param pool pool running the parallel components
+     */
+    public UpdateScheduler(ForkJoinPool pool) {
+        this.pool = pool;
+        this.components = new Component[INITIAL_CAPACITY];
+        this.serialComponents = new Component[INITIAL_CAPACITY];
+        this.parallelComponents = new Component[INITIAL_CAPACITY];
+        this.deltas = new double[INITIAL_CAPACITY];
+        this.serialDeltas = new double[INITIAL_CAPACITY];
+        this.parallelDeltas = new double[INITIAL_CAPACITY];
+        this.ticks = new TickScheduler();
+        this.deferred = new ConcurrentLinkedQueue<>();
+        this.inPhase = false;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * Change the number of parallel components updated by a single task
+     * @param batchSize number of components per task
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Run all the update phases on a scene traversal
+     * @param traversal traversal of the scene to update
+     * @param delta frame delta time (in seconds)
+     */
+    public void update(SceneTraversal traversal, float delta) {
+        this.componentCount = 0;
+        this.serialCount = 0;
+        this.parallelCount = 0;
+        this.frameDelta = delta;
+        this.ticks.beginFrame(delta);
+        traversal.forEach(this.gatherVisitor);
+
+        // pre-update
+        this.beginPhase();
+        try {
+            for(int i = 0; i < this.componentCount; ++i) {
+                this.components[i].onPreUpdate(this.deltas[i]);
+            }
+        } finally {
+            this.endPhase();
+        }
+
+        // update
+        this.beginPhase();
+        try {
+            if(this.parallelCount > this.batchSize) {
+                this.pool.invoke(new UpdateTask(0, this.parallelCount));
+            } else {
+                for(int i = 0; i < this.parallelCount; ++i) {
+                    this.parallelComponents[i].onUpdate(this.parallelDeltas[i]);
+                }
+            }
+            for(int i = 0; i < this.serialCount; ++i) {
+                this.serialComponents[i].onUpdate(this.serialDeltas[i]);
+            }
+        } finally {
+            this.endPhase();
+        }
+
+        // late-update
+        this.beginPhase();
+        try {
+            for(int i = 0; i < this.componentCount; ++i) {
+                this.components[i].onLateUpdate(this.deltas[i]);
+            }
+        } finally {
+            this.endPhase();
+            this.clear();
+        }
+    }
+
+    /**
+     * Defer an edit until the end of the current phase (runs it immediately outside of the phases)
+     * @param edit edit to run
+     */
+    public void defer(Runnable edit) {
+        if(this.inPhase) {
+            this.deferred.add(edit);
+        } else {
+            edit.run();
+        }
+    }
+
+    /**
+     * Returns true if an update phase is running
+     * @return true if an update phase is running
+     */
+    public boolean isInPhase() {
+        return inPhase;
+    }
+
+    /**
+     * Begin a phase
+     */
+    protected void beginPhase() {
+        this.inPhase = true;
+    }
+
+    /**
+     * End a phase and apply the deferred edits
+     */
+    protected void endPhase() {
+        this.inPhase = false;
+        Runnable edit;
+        while((edit = this.deferred.poll()) != null) {
+            edit.run();
+        }
+    }
+
+    /**
+     * Returns the tick scheduler of the rate-limited components
+     * @return the tick scheduler of the rate-limited components
+     */
+    public TickScheduler getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Add a component to the update lists
+     * @param component component to add
+     * @param delta delta time of the component (time since its last update)
+     */
+    protected void gather(Component component, double delta) {
+        if(this.componentCount == this.components.length) {
+            this.components = Arrays.copyOf(this.components, this.componentCount * 2);
+            this.deltas = Arrays.copyOf(this.deltas, this.componentCount * 2);
+        }
+        this.deltas[this.componentCount] = delta;
+        this.components[this.componentCount++] = component;
+
+        if(component.isParallelUpdate()) {
+            if(this.parallelCount == this.parallelComponents.length) {
+                this.parallelComponents = Arrays.copyOf(this.parallelComponents, this.parallelCount * 2);
+                this.parallelDeltas = Arrays.copyOf(this.parallelDeltas, this.parallelCount * 2);
+            }
+            this.parallelDeltas[this.parallelCount] = delta;
+            this.parallelComponents[this.parallelCount++] = component;
+        } else {
+            if(this.serialCount == this.serialComponents.length) {
+                this.serialComponents = Arrays.copyOf(this.serialComponents, this.serialCount * 2);
+                this.serialDeltas = Arrays.copyOf(this.serialDeltas, this.serialCount * 2);
+            }
+            this.serialDeltas[this.serialCount] = delta;
+            this.serialComponents[this.serialCount++] = component;
+        }
+    }
+
+    /**
+     * Clear the update lists (so removed components can be collected)
+     */
+    protected void clear() {
+        Arrays.fill(this.components, 0, this.componentCount, null);
+        Arrays.fill(this.serialComponents, 0, this.serialCount, null);
+        Arrays.fill(this.parallelComponents, 0, this.parallelCount, null);
+    }
+}
@@ -0,0 +1,132 @@
+package olibe.scene;
+
+import java.util.*;
+
+import olibe.render.BoundingBox;
+import olibe.render.Frustum;
+
+/**
+ * Frustum culling of the nodes of a scene.
+ * The world bounds of the nodes having bounds are gathered in contiguous
+ * arrays (traversal order) and tested at once against the frustum.
+ * Nodes without bounds are always visible.
+ */
+public class VisibilityCuller {
+    /** World bounds min x of the tested nodes */
+    protected float[] minX, minY, minZ;
+    /** World bounds max x of the tested nodes */
+    protected float[] maxX, maxY, maxZ;
+    /** Visibility of the tested nodes */
+    protected boolean[] tested;
+    /** Traversal index of each tested node */
+    protected int[] testedIndices;
+    /** Number of tested nodes */
+    protected int testedCount;
+    /** Visibility of each node (traversal order) */
+    protected boolean[] visible;
+    /** Number of nodes in the culled traversal */
+    protected int nodeCount;
+    /** Number of visible nodes having bounds */
+    protected int visibleCount;
+    /** Number of culled nodes */
+    protected int culledCount;
+
+    /** Initial capacity of the arrays */
+    protected static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Create a culler
+     */
+    public VisibilityCuller() {
+        this.allocateTested(INITIAL_CAPACITY);
+        this.visible = new boolean[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Compute the visibility of the nodes of a traversal
+     * @param traversal traversal of the scene
+     * @param frustum frustum to test against
+     */
+    public void cull(SceneTraversal traversal, Frustum frustum) {
+        this.nodeCount = traversal.size();
+        if(this.visible.length < this.nodeCount) {
+            this.visible = new boolean[Math.max(this.nodeCount, this.visible.length * 2)];
+        }
+
+        // gather the world bounds
+        this.testedCount = 0;
+        for(int i = 0; i < this.nodeCount; ++i) {
+            this.visible[i] = true;
+            BoundingBox bounds = traversal.getNode(i).getWorldBounds();
+            if(bounds == null) continue;
+            if(this.testedCount == this.tested.length) {
+                this.growTested(this.testedCount * 2);
+            }
+            int t = this.testedCount++;
+            this.minX[t] = bounds.min.x; this.minY[t] = bounds.min.y; this.minZ[t] = bounds.min.z;
+            this.maxX[t] = bounds.max.x; this.maxY[t] = bounds.max.y; this.maxZ[t] = bounds.max.z;
+            this.tested[t] = true;
+            this.testedIndices[t] = i;
+        }
+
+        frustum.test(this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ, this.testedCount, this.tested);
+
+        this.visibleCount = 0;
+        this.culledCount = 0;
+        for(int t = 0; t < this.testedCount; ++t) {
+            if(this.tested[t]) {
+                this.visibleCount++;
+            } else {
+                this.visible[this.testedIndices[t]] = false;
+                this.culledCount++;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the node at a traversal index is visible
+     * @param index traversal index
+     * @return true if the node is visible (or not culled yet)
+     */
+    public boolean isVisible(int index) {
+        return index >= this.nodeCount || this.visible[index];
+    }
+
+    /**
+     * Returns the number of visible nodes having bounds
+     * @return the number of visible nodes having bounds
+     */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /**
+     * Returns the number of culled nodes
+     * @return the number of culled nodes
+     */
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    /**
+     * Allocate the tested arrays
+     * @param capacity capacity
+     */
+    private void allocateTested(int capacity) {
+        this.minX = new float[capacity]; this.minY = new float[capacity]; this.minZ = new float[capacity];
+        this.maxX = new float[capacity]; this.maxY = new float[capacity]; this.maxZ = new float[capacity];
+        this.tested = new boolean[capacity];
+        this.testedIndices = new int[capacity];
+    }
+
+    /**
+     * Grow the tested arrays
+     * @param capacity new capacity
+     */
+    private void growTested(int capacity) {
+        this.minX = Arrays.copyOf(this.minX, capacity); this.minY = Arrays.copyOf(this.minY, capacity); this.minZ = Arrays.copyOf(this.minZ, capacity);
+        this.maxX = Arrays.copyOf(this.maxX, capacity); this.maxY = Arrays.copyOf(this.maxY, capacity); this.maxZ = Arrays.copyOf(this.maxZ, capacity);
+        this.tested = Arrays.copyOf(this.tested, capacity);
+        this.testedIndices = Arrays.copyOf(this.testedIndices, capacity);
+    }
+}
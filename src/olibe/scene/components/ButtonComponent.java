@@ -3,6 +3,7 @@ package olibe.scene.components;
 import java.security.InvalidParameterException;
 
 import olibe.scene.Component;
+import olibe.scene.RenderSnapshot;
 import olibe.ui.*;
 
 /**
@@ -32,6 +33,13 @@ public class ButtonComponent implements Component {
         this.button.draw();
     }
 
+    @Override
+    public boolean onExtract(RenderSnapshot snapshot) {
+        // the hover state is copied, the update of the next frame may change it while the snapshot is rendered
+        snapshot.addButton(this.button, this.button.isHovered());
+        return true;
+    }
+
     public void delete() {
         this.button.delete();
     }
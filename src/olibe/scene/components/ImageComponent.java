@@ -1,6 +1,7 @@
 package olibe.scene.components;
 
 import olibe.scene.Component;
+import olibe.scene.RenderSnapshot;
 
 import olibe.io.ShaderLibrary;
 import olibe.ui.*;
@@ -26,6 +27,12 @@ public class ImageComponent implements Component {
         this.image.draw();
     }
 
+    @Override
+    public boolean onExtract(RenderSnapshot snapshot) {
+        snapshot.addImage(this.image, this.image.getPosition());
+        return true;
+    }
+
     @Override
     public void delete() {
         this.image.delete();
@@ -0,0 +1,290 @@
+package olibe.scene.components;
+
+import java.security.InvalidParameterException;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import olibe.core.FrameStats;
+import olibe.render.*;
+import olibe.scene.Component;
+import olibe.scene.RenderSnapshot;
+import olibe.scene.SceneNode;
+import olibe.scene.SceneView;
+
+/**
+ * Level of detail component.
+ * Draws one of several models (finest first) at the node world transform
+ * times the model matrix of the level (as {@link ModelComponent}),
+ * chosen once per frame from the projected size of the bounding sphere of
+ * the finest level under the 3D camera of the frame view (the active camera
+ * outside of a pipeline update). The projected size is the
+ * sphere radius divided by the half height of the view at its distance.
+ * Switches use a hysteresis band, and can cross-fade (dithered) between
+ * the two levels.
+ */
+public class LODComponent implements Component {
+    /** Models of each level (finest first) */
+    protected Model[] levels;
+    /** Minimum projected size of each level (decreasing) */
+    protected float[] screenSizes;
+    /** Triangle count of each level */
+    protected int[] triangleCounts;
+    /** Relative size band around the thresholds where the level is kept */
+    protected float hysteresis;
+    /** Cross-fade duration (in seconds, 0 for none) */
+    protected float fadeDuration;
+
+    /** Node owning this component */
+    protected SceneNode node;
+    /** Current level */
+    protected int currentLevel;
+    /** Level faded out (-1 if none) */
+    protected int previousLevel;
+    /** Cross-fade progress (0 to 1) */
+    protected float fade;
+    /** Last projected size */
+    protected float projectedSize;
+
+    /** Bounding sphere center (local space) */
+    protected Vector3f localCenter;
+    /** Bounding sphere radius (local space) */
+    protected float localRadius;
+    /** Temp world center */
+    protected Vector3f worldCenter;
+    /** Temp world scale */
+    protected Vector3f worldScale;
+    /** Temp model matrix (node world * level model) */
+    protected Matrix4f matrix;
+
+    /** Minimum cross-fade value sent to the shaders */
+    protected static final float MIN_FADE = 1e-4f;
+    /** Default hysteresis */
+    public static final float DEFAULT_HYSTERESIS = .1f;
+
+    /**
+     * Create a level of detail component
+     * @param levels models of each level (finest first)
+     * @param screenSizes minimum projected size of each level (decreasing, ex: 0.5, 0.2, 0.05),
+     * the last level is also used under its size
+     */
+    public LODComponent(Model[] levels, float[] screenSizes) {
+        if(levels == null || levels.length == 0) {
+            throw new InvalidParameterException("[LODComponent] no levels.");
+        }
+        if(screenSizes == null || screenSizes.length != levels.length) {
+            throw new InvalidParameterException("[LODComponent] one screen size is needed per level.");
+        }
+        this.levels = levels;
+        this.screenSizes = screenSizes;
+        this.triangleCounts = new int[levels.length];
+        for(int i = 0; i < levels.length; ++i) {
+            this.triangleCounts[i] = levels[i].getTriangleCount();
+        }
+        this.hysteresis = DEFAULT_HYSTERESIS;
+        this.fadeDuration = 0f;
+        this.currentLevel = 0;
+        this.previousLevel = -1;
+
+        BoundingBox bounds = levels[0].getBounds(new BoundingBox());
+        this.localCenter = new Vector3f();
+        this.localRadius = 0f;
+        if(!bounds.isEmpty()) {
+            bounds.min.add(bounds.max, this.localCenter).mul(.5f);
+            this.localRadius = bounds.max.distance(bounds.min) * .5f;
+        }
+        this.worldCenter = new Vector3f();
+        this.worldScale = new Vector3f();
+        this.matrix = new Matrix4f();
+    }
+
+    /**
+     * Sets the hysteresis band
+     * @param hysteresis relative size band around the thresholds where the level is kept (ex: 0.1)
+     * @return this
+     */
+    public LODComponent setHysteresis(float hysteresis) {
+        this.hysteresis = hysteresis;
+        return this;
+    }
+
+    /**
+     * Sets the cross-fade duration
+     * @param fadeDuration cross-fade duration (in seconds, 0 for none)
+     * @return this
+     */
+    public LODComponent setFadeDuration(float fadeDuration) {
+        this.fadeDuration = fadeDuration;
+        return this;
+    }
+
+    /**
+     * Returns the current level
+     * @return the current level
+     */
+    public int getCurrentLevel() {
+        return currentLevel;
+    }
+
+    /**
+     * Returns the last projected size of the bounding sphere
+     * @return the last projected size of the bounding sphere
+     */
+    public float getProjectedSize() {
+        return projectedSize;
+    }
+
+    @Override
+    public void onAttach(SceneNode node) {
+        this.node = node;
+    }
+
+    @Override
+    public void onLateUpdate(double delta) {
+        if(this.previousLevel >= 0) {
+            this.fade += (float)delta / this.fadeDuration;
+            if(this.fade >= 1f) this.previousLevel = -1;
+        }
+
+        this.projectedSize = this.computeProjectedSize();
+        int level = this.selectLevel(this.projectedSize);
+        if(level == this.currentLevel) return;
+
+        FrameStats.Get().addLodTransition();
+        if(this.fadeDuration > 0f) {
+            this.previousLevel = this.currentLevel;
+            this.fade = 0f;
+        }
+        this.currentLevel = level;
+    }
+
+    /**
+     * Returns the projected size of the bounding sphere under the camera of the frame
+     * @return the projected size (Float.MAX_VALUE if unknown or the camera is inside)
+     */
+    protected float computeProjectedSize() {
+        if(this.node == null) return Float.MAX_VALUE;
+        // the update may run on the update thread: read the view copied for the frame
+        SceneView view = this.node.getContext().getView();
+        Vector3f eye;
+        float fov;
+        if(view != null) {
+            if(!view.isPerspective()) return Float.MAX_VALUE;
+            eye = view.getPosition();
+            fov = view.getFov();
+        } else {
+            Camera camera = Camera.GetActive();
+            if(!(camera instanceof Camera3D)) return Float.MAX_VALUE;
+            eye = camera.getPosition();
+            fov = ((Camera3D)camera).getFov();
+        }
+
+        // the bounds are in the space of the finest level model
+        Matrix4f world = this.computeMatrix(0);
+        world.transformPosition(this.localCenter, this.worldCenter);
+        world.getScale(this.worldScale);
+        float radius = this.localRadius * Math.max(this.worldScale.x, Math.max(this.worldScale.y, this.worldScale.z));
+        float distance = this.worldCenter.distance(eye);
+        if(distance <= radius) return Float.MAX_VALUE;
+
+        float tanHalfFov = (float)Math.tan(Math.toRadians(fov) * .5);
+        return radius / (distance * tanHalfFov);
+    }
+
+    /**
+     * Select the level to use for a projected size (hysteresis around the current level)
+     * @param size projected size
+     * @return the level to use
+     */
+    protected int selectLevel(float size) {
+        int level = this.levels.length - 1;
+        for(int i = 0; i < this.screenSizes.length; ++i) {
+            if(size >= this.screenSizes[i]) {
+                level = i;
+                break;
+            }
+        }
+        // coarser: only once clearly under the current level size
+        if(level > this.currentLevel && size > this.screenSizes[this.currentLevel] * (1f - this.hysteresis)) {
+            return this.currentLevel;
+        }
+        // finer: only once clearly over the finer level size
+        if(level < this.currentLevel && size < this.screenSizes[this.currentLevel - 1] * (1f + this.hysteresis)) {
+            return this.currentLevel;
+        }
+        return level;
+    }
+
+    @Override
+    public void onRender() {
+        Shader shader = Shader.GetActiveShader();
+        if(this.previousLevel >= 0) {
+            // -0 would hide both levels
+            float t = Math.min(Math.max(this.fade, MIN_FADE), 1f - MIN_FADE);
+            shader.setUniform(Uniforms.FADE, -t);
+            this.drawLevel(shader, this.previousLevel);
+            shader.setUniform(Uniforms.FADE, t);
+            this.drawLevel(shader, this.currentLevel);
+            shader.setUniform(Uniforms.FADE, 1f);
+        } else {
+            this.drawLevel(shader, this.currentLevel);
+        }
+    }
+
+    @Override
+    public boolean onExtract(RenderSnapshot snapshot) {
+        if(this.previousLevel >= 0) {
+            float t = Math.min(Math.max(this.fade, MIN_FADE), 1f - MIN_FADE);
+            snapshot.addModel(this.levels[this.previousLevel], this.computeMatrix(this.previousLevel), -t, this.previousLevel, this.triangleCounts[this.previousLevel]);
+            snapshot.addModel(this.levels[this.currentLevel], this.computeMatrix(this.currentLevel), t, this.currentLevel, this.triangleCounts[this.currentLevel]);
+        } else {
+            snapshot.addModel(this.levels[this.currentLevel], this.computeMatrix(this.currentLevel), 1f, this.currentLevel, this.triangleCounts[this.currentLevel]);
+        }
+        return true;
+    }
+
+    /**
+     * Compute the model matrix of a level (node world * level model)
+     * @param level level
+     * @return the model matrix
+     */
+    protected Matrix4f computeMatrix(int level) {
+        Matrix4f model = this.levels[level].getModelMatrix();
+        if(this.node == null) return model;
+        return this.node.getTransform().getWorldMatrix().mul(model, this.matrix);
+    }
+
+    /**
+     * Draw a level
+     * @param shader shader to use
+     * @param level level to draw
+     */
+    protected void drawLevel(Shader shader, int level) {
+        this.levels[level].draw(shader, this.computeMatrix(level));
+        FrameStats.Get().addLodObject(level, this.triangleCounts[level]);
+    }
+
+    @Override
+    public Component instantiate() {
+        return new LODComponent(this.levels, this.screenSizes)
+            .setHysteresis(this.hysteresis)
+            .setFadeDuration(this.fadeDuration);
+    }
+
+    @Override
+    public boolean resetFrom(Component template) {
+        LODComponent source = (LODComponent)template;
+        if(source.levels != this.levels) return false;
+        this.screenSizes = source.screenSizes;
+        this.hysteresis = source.hysteresis;
+        this.fadeDuration = source.fadeDuration;
+        this.currentLevel = 0;
+        this.previousLevel = -1;
+        this.fade = 0f;
+        this.projectedSize = 0f;
+        return true;
+    }
+
+    @Override
+    public void delete() {}
+}
@@ -3,6 +3,7 @@ package olibe.scene.components;
 import olibe.render.Mesh;
 import olibe.render.Shader;
 import olibe.scene.Component;
+import olibe.scene.RenderSnapshot;
 
 /**
  * Mesh render component
@@ -12,6 +13,8 @@ public class MeshRenderComponent implements Component {
     protected Mesh mesh;
     /** Mesh shader */
     protected Shader shader;
+    /** The mesh is shared with other components (prefab instance), it is not deleted with this component */
+    protected boolean shared;
 
     /**
      * Create a mesh render component
@@ -27,8 +30,29 @@ public class MeshRenderComponent implements Component {
         this.mesh.draw(this.shader);
     }
 
+    @Override
+    public boolean onExtract(RenderSnapshot snapshot) {
+        snapshot.addMesh(this.mesh, this.shader);
+        return true;
+    }
+
+    @Override
+    public Component instantiate() {
+        MeshRenderComponent copy = new MeshRenderComponent(this.mesh, this.shader);
+        copy.shared = true;
+        return copy;
+    }
+
+    @Override
+    public boolean resetFrom(Component template) {
+        MeshRenderComponent source = (MeshRenderComponent)template;
+        if(source.mesh != this.mesh) return false;
+        this.shader = source.shader;
+        return true;
+    }
+
     @Override
     public void delete() {
-        mesh.delete();
+        if(!this.shared) mesh.delete();
     }
 }
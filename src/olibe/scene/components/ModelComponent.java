@@ -2,17 +2,29 @@ package olibe.scene.components;
 
 import java.security.InvalidParameterException;
 
+import org.joml.Matrix4f;
+
+import olibe.render.Material;
 import olibe.render.Model;
 import olibe.render.Shader;
 import olibe.scene.Component;
+import olibe.scene.RenderSnapshot;
+import olibe.scene.SceneNode;
 
 /**
  * Model component
+ * (drawn at the node world transform combined with the model matrix)
  */
 public class ModelComponent implements Component {
 
     /** Model */
     protected Model model;
+    /** Material override of this component (null to use the meshes materials) */
+    protected Material material;
+    /** Node owning this component */
+    protected SceneNode node;
+    /** Model matrix (node world * model) */
+    protected Matrix4f matrix;
 
     /**
      * Create a model component
@@ -23,10 +35,70 @@ public class ModelComponent implements Component {
         if(this.model == null) {
             throw new InvalidParameterException("[ModelComponent] model is null.");
         }
+        this.matrix = new Matrix4f();
+    }
+
+    /**
+     * Override the material of the model for this component only (the shared model is not modified)
+     * @param material material override (null to use the meshes materials)
+     * @return this
+     */
+    public ModelComponent setMaterial(Material material) {
+        this.material = material;
+        return this;
+    }
+
+    /**
+     * Returns the material override of this component
+     * @return the material override of this component (or null)
+     */
+    public Material getMaterial() {
+        return material;
+    }
+
+    /**
+     * Returns the model of this component
+     * @return the model of this component
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    @Override
+    public void onAttach(SceneNode node) {
+        this.node = node;
     }
 
     public void onRender() {
-        this.model.draw(Shader.GetActiveShader());        
+        this.model.draw(Shader.GetActiveShader(), this.computeMatrix(), this.material);
+    }
+
+    @Override
+    public boolean onExtract(RenderSnapshot snapshot) {
+        snapshot.addModel(this.model, this.computeMatrix(), this.material, 1f, -1, this.model.getTriangleCount());
+        return true;
+    }
+
+    @Override
+    public Component instantiate() {
+        return new ModelComponent(this.model).setMaterial(this.material);
+    }
+
+    @Override
+    public boolean resetFrom(Component template) {
+        ModelComponent source = (ModelComponent)template;
+        if(source.model != this.model) return false;
+        this.material = source.material;
+        return true;
+    }
+
+    /**
+     * Compute the model matrix (node world * model)
+     * @return the model matrix
+     */
+    protected Matrix4f computeMatrix() {
+        if(this.node == null) return this.model.getModelMatrix();
+        return this.node.getTransform().getWorldMatrix().mul(this.model.getModelMatrix(), this.matrix);
     }
 
     @Override
@@ -1,19 +1,30 @@
 package olibe.scene.components;
 
 import olibe.scene.Component;
+import olibe.scene.RenderSnapshot;
+import olibe.scene.SceneNode;
 
 import org.joml.Matrix4f;
 
 import olibe.render.*;
 
 /**
- * Sprite component
+ * Sprite component.
+ * The sprite is drawn at its position in the space of its node (it follows the node transform),
+ * a node without bounds gets the sprite rectangle as bounds, so the sprites out of the
+ * camera view are culled with the other nodes during the extraction (see {@link olibe.scene.VisibilityCuller}).
  */
 public class SpriteComponent implements Component {
     /** Sprite */
     protected Sprite sprite;
     /** Model matrix */
     protected Matrix4f model;
+    /** The sprite is shared with other components (prefab instance), it is not deleted with this component */
+    protected boolean shared;
+    /** Node owning this component (null if not attached) */
+    protected SceneNode node;
+    /** World model matrix */
+    protected Matrix4f matrix;
 
     /**
      * Create a sprite component
@@ -22,17 +33,60 @@ public class SpriteComponent implements Component {
     public SpriteComponent(Sprite sprite) {
         this.sprite = sprite;
         model = new Matrix4f().setTranslation(sprite.getPosition().x(), sprite.getPosition().y(), 0);
+        this.matrix = new Matrix4f();
+    }
+
+    @Override
+    public void onAttach(SceneNode node) {
+        this.node = node;
+        if(node.getBounds() == null) {
+            float halfWidth = this.sprite.getWidth() * .5f, halfHeight = this.sprite.getHeight() * .5f;
+            float x = this.model.m30(), y = this.model.m31();
+            node.setBounds(new BoundingBox(x - halfWidth, y - halfHeight, 0f, x + halfWidth, y + halfHeight, 0f));
+        }
     }
 
     @Override
     public void onRender() {
-        this.sprite.getShader().setUniform("uAlpha", 1f);
-        this.sprite.getShader().setUniform("uModel", model);
+        this.sprite.getShader().setUniform(Uniforms.ALPHA, 1f);
+        this.sprite.getShader().setUniform(Uniforms.MODEL, this.computeMatrix());
         this.sprite.draw();
     }
 
+    @Override
+    public boolean onExtract(RenderSnapshot snapshot) {
+        Matrix4f world = this.computeMatrix();
+        snapshot.addSprite(this.sprite, world.m30(), world.m31(), 1f);
+        return true;
+    }
+
+    /**
+     * Compute the model matrix (node world * sprite model)
+     * @return the model matrix
+     */
+    protected Matrix4f computeMatrix() {
+        if(this.node == null) return this.model;
+        return this.node.getTransform().getWorldMatrix().mul(this.model, this.matrix);
+    }
+
+    @Override
+    public Component instantiate() {
+        SpriteComponent copy = new SpriteComponent(this.sprite);
+        copy.model.set(this.model);
+        copy.shared = true;
+        return copy;
+    }
+
+    @Override
+    public boolean resetFrom(Component template) {
+        SpriteComponent source = (SpriteComponent)template;
+        if(source.sprite != this.sprite) return false;
+        this.model.set(source.model);
+        return true;
+    }
+
     @Override
     public void delete() {
-        this.sprite.delete();
+        if(!this.shared) this.sprite.delete();
     }
 }
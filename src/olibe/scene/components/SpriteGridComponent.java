@@ -0,0 +1,212 @@
+package olibe.scene.components;
+
+import java.util.*;
+
+import org.joml.Matrix4f;
+import org.joml.Vector4f;
+
+import olibe.render.*;
+import olibe.scene.Component;
+import olibe.scene.RenderSnapshot;
+import olibe.scene.SceneView;
+import olibe.scene.spatial.AABBTree;
+import olibe.scene.spatial.SpatialHashGrid;
+
+/**
+ * Component drawing a large set of sprites indexed in a spatial hash grid,
+ * only the sprites overlapping the active 2D camera visible area are drawn.
+ * The sprites must be moved through {@link #move(int, float, float)}
+ * (or re-synced with {@link #update(int)} after a direct {@link Sprite#setPosition(float, float)}).
+ */
+public class SpriteGridComponent implements Component {
+    /** Sprites index */
+    protected SpatialHashGrid grid;
+    /** Model matrix (reused for each drawn sprite) */
+    protected Matrix4f model;
+    /** Visible area of the camera */
+    protected Vector4f visibleArea;
+    /** Sprites drawn during the last frame */
+    protected int drawnCount;
+    /** Draw callback */
+    protected AABBTree.QueryCallback drawCallback;
+
+    /** Default cell size (pixel) */
+    public static final float DEFAULT_CELL_SIZE = 256f;
+
+    /**
+     * Create an empty sprite grid
+     * @param cellSize size of the grid cells (pixel)
+     */
+    public SpriteGridComponent(float cellSize) {
+        this.grid = new SpatialHashGrid(cellSize);
+        this.model = new Matrix4f();
+        this.visibleArea = new Vector4f();
+        this.drawCallback = new AABBTree.QueryCallback() {
+            public boolean report(int proxyId) {
+                SpriteGridComponent.this.drawSprite((Sprite)SpriteGridComponent.this.grid.getUserData(proxyId));
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Create an empty sprite grid
+     */
+    public SpriteGridComponent() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Add a sprite
+     * @param sprite sprite
+     * @return the id of the sprite in this grid
+     */
+    public int add(Sprite sprite) {
+        float halfWidth = sprite.getWidth() * .5f, halfHeight = sprite.getHeight() * .5f;
+        float x = sprite.getPosition().x(), y = sprite.getPosition().y();
+        return this.grid.insert(x - halfWidth, y - halfHeight, x + halfWidth, y + halfHeight, sprite);
+    }
+
+    /**
+     * Move a sprite (its grid cells are only updated when needed)
+     * @param id id of the sprite
+     * @param x new x position (pixel)
+     * @param y new y position (pixel)
+     */
+    public void move(int id, float x, float y) {
+        Sprite sprite = this.get(id);
+        sprite.setPosition(x, y);
+        float halfWidth = sprite.getWidth() * .5f, halfHeight = sprite.getHeight() * .5f;
+        this.grid.move(id, x - halfWidth, y - halfHeight, x + halfWidth, y + halfHeight);
+    }
+
+    /**
+     * Update the grid cells of a sprite moved directly (see {@link Sprite#setPosition(float, float)})
+     * @param id id of the sprite
+     */
+    public void update(int id) {
+        Sprite sprite = this.get(id);
+        this.move(id, sprite.getPosition().x(), sprite.getPosition().y());
+    }
+
+    /**
+     * Remove a sprite (the sprite is not deleted)
+     * @param id id of the sprite
+     * @return the removed sprite
+     */
+    public Sprite remove(int id) {
+        Sprite sprite = this.get(id);
+        this.grid.remove(id);
+        return sprite;
+    }
+
+    /**
+     * Returns a sprite
+     * @param id id of the sprite
+     * @return the sprite
+     */
+    public Sprite get(int id) {
+        return (Sprite)this.grid.getUserData(id);
+    }
+
+    /**
+     * Add the sprites overlapping a rectangle to a list
+     * @param minX min x
+     * @param minY min y
+     * @param maxX max x
+     * @param maxY max y
+     * @param dest destination list
+     * @return dest
+     */
+    public List<Sprite> query(float minX, float minY, float maxX, float maxY, final List<Sprite> dest) {
+        this.grid.query(minX, minY, maxX, maxY, new AABBTree.QueryCallback() {
+            public boolean report(int proxyId) {
+                dest.add(SpriteGridComponent.this.get(proxyId));
+                return true;
+            }
+        });
+        return dest;
+    }
+
+    /**
+     * Returns the sprites index
+     * @return the sprites index
+     */
+    public SpatialHashGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the number of sprites drawn during the last frame
+     * @return the number of sprites drawn during the last frame
+     */
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+
+    /**
+     * Draw a sprite
+     * @param sprite sprite
+     */
+    protected void drawSprite(Sprite sprite) {
+        this.model.translation(sprite.getPosition().x(), sprite.getPosition().y(), 0f);
+        sprite.getShader().setUniform(Uniforms.ALPHA, 1f);
+        sprite.getShader().setUniform(Uniforms.MODEL, this.model);
+        sprite.draw();
+        this.drawnCount++;
+    }
+
+    @Override
+    public void onRender() {
+        this.drawnCount = 0;
+        this.queryVisible(this.drawCallback, null);
+    }
+
+    @Override
+    public boolean onExtract(final RenderSnapshot snapshot) {
+        if(!snapshot.isNodeVisible()) return true;
+        this.drawnCount = 0;
+        this.queryVisible(new AABBTree.QueryCallback() {
+            public boolean report(int proxyId) {
+                Sprite sprite = SpriteGridComponent.this.get(proxyId);
+                snapshot.addSprite(sprite, sprite.getPosition().x(), sprite.getPosition().y(), 1f);
+                SpriteGridComponent.this.drawnCount++;
+                return true;
+            }
+        }, snapshot.getView());
+        return true;
+    }
+
+    /**
+     * Report the sprites overlapping the visible area of a view
+     * @param callback callback
+     * @param view view copied for the frame (null to read the active camera, render thread only)
+     */
+    protected void queryVisible(AABBTree.QueryCallback callback, SceneView view) {
+        boolean flat;
+        if(view != null) {
+            flat = view.getVisibleArea(this.visibleArea);
+        } else {
+            Camera camera = Camera.GetActive();
+            flat = camera instanceof Camera2D;
+            if(flat) ((Camera2D)camera).getVisibleArea(this.visibleArea);
+        }
+        if(flat) {
+            this.grid.query(this.visibleArea.x, this.visibleArea.y, this.visibleArea.z, this.visibleArea.w, callback);
+        } else {
+            // no visible area to query (3D camera): report every sprite
+            this.grid.forEach(callback);
+        }
+    }
+
+    @Override
+    public void delete() {
+        this.grid.forEach(new AABBTree.QueryCallback() {
+            public boolean report(int proxyId) {
+                SpriteGridComponent.this.get(proxyId).delete();
+                return true;
+            }
+        });
+        this.grid.clear();
+    }
+}
@@ -5,6 +5,7 @@ import java.security.InvalidParameterException;
 import olibe.io.ShaderLibrary;
 import olibe.render.Shader;
 import olibe.scene.Component;
+import olibe.scene.RenderSnapshot;
 import olibe.ui.Text;
 
 /**
@@ -33,6 +34,12 @@ public class TextComponent implements Component {
         this.text.draw(this.shader);        
     }
 
+    @Override
+    public boolean onExtract(RenderSnapshot snapshot) {
+        snapshot.addText(this.text, this.shader);
+        return true;
+    }
+
     @Override
     public void delete() {
         text.delete();
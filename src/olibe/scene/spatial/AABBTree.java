@@ -0,0 +1,706 @@
+package olibe.scene.spatial;
+
+import java.util.*;
+
+import olibe.render.BoundingBox;
+
+/**
+ * Dynamic bounding volume tree (Box2D style).
+ * Leaves store fattened AABBs so small moves do not touch the tree: the bounds
+ * are grown by a margin and extended along the predicted displacement of the proxy,
+ * internal nodes are kept balanced with tree rotations.
+ * Proxies are identified by ints, queries do not allocate.
+ */
+public class AABBTree {
+    /** Null node */
+    public static final int NULL_NODE = -1;
+
+    /** Node bounds (minX, minY, minZ, maxX, maxY, maxZ per node) */
+    protected float[] boxes;
+    /** Parent of each node (next free node for free nodes) */
+    protected int[] parents;
+    /** First child of each node (NULL_NODE for leaves) */
+    protected int[] children1;
+    /** Second child of each node */
+    protected int[] children2;
+    /** Height of each node (0 for leaves, -1 for free nodes) */
+    protected int[] heights;
+    /** User data of each leaf */
+    protected Object[] userData;
+    /** Node capacity */
+    protected int capacity;
+    /** Number of allocated nodes */
+    protected int nodeCount;
+    /** Root node */
+    protected int root;
+    /** First free node */
+    protected int freeList;
+    /** Margin added around the proxies bounds */
+    protected float margin;
+
+    /** Traversal stack */
+    protected int[] stack;
+    /** Nearest query heap (nodes) */
+    protected int[] heapNodes;
+    /** Nearest query heap (squared distances) */
+    protected float[] heapDistances;
+
+    /** Number of rotations done to keep the tree balanced */
+    protected long rotationCount;
+    /** Number of leaves reinserted because they left their fat AABB */
+    protected long reinsertCount;
+    /** Time spent reinserting and balancing (in nanoseconds) */
+    protected long rebalanceNanos;
+
+    /** Default margin added around the proxies bounds */
+    public static final float DEFAULT_MARGIN = .1f;
+    /** Number of frames of displacement the fat AABBs are extended by */
+    public static final float DISPLACEMENT_MULTIPLIER = 4f;
+
+    /**
+     * Callback of an overlap query
+     */
+    public interface QueryCallback {
+        /**
+         * Report a proxy overlapping the query
+         * @param proxyId proxy
+         * @return false to stop the query
+         */
+        public boolean report(int proxyId);
+    }
+
+    /**
+     * Callback of a ray query
+     */
+    public interface RayCallback {
+        /**
+         * Report a proxy whose fat AABB is hit by the ray
+         * @param proxyId proxy
+         * @param distance distance along the ray where its fat AABB is entered
+         * @param maxDistance current max distance of the ray
+         * @return the new max distance of the ray (maxDistance to continue, 0 to stop)
+         */
+        public float report(int proxyId, float distance, float maxDistance);
+    }
+
+    /**
+     * Create an empty tree
+     * @param margin margin added around the proxies bounds
+     */
+    public AABBTree(float margin) {
+        this.margin = margin;
+        this.capacity = 16;
+        this.boxes = new float[this.capacity * 6];
+        this.parents = new int[this.capacity];
+        this.children1 = new int[this.capacity];
+        this.children2 = new int[this.capacity];
+        this.heights = new int[this.capacity];
+        this.userData = new Object[this.capacity];
+        this.root = NULL_NODE;
+        this.nodeCount = 0;
+        this.linkFreeNodes(0);
+        this.freeList = 0;
+
+        this.stack = new int[64];
+        this.heapNodes = new int[64];
+        this.heapDistances = new float[64];
+    }
+
+    /**
+     * Create an empty tree with the default margin
+     */
+    public AABBTree() {
+        this(DEFAULT_MARGIN);
+    }
+
+    /**
+     * Create a proxy
+     * @param bounds bounds of the proxy
+     * @param data user data of the proxy
+     * @return the proxy id
+     */
+    public int createProxy(BoundingBox bounds, Object data) {
+        int proxyId = this.allocateNode();
+        this.setFatBox(proxyId, bounds);
+        this.userData[proxyId] = data;
+        this.heights[proxyId] = 0;
+
+        long start = System.nanoTime();
+        this.insertLeaf(proxyId);
+        this.rebalanceNanos += System.nanoTime() - start;
+        return proxyId;
+    }
+
+    /**
+     * Destroy a proxy
+     * @param proxyId proxy to destroy
+     */
+    public void destroyProxy(int proxyId) {
+        this.removeLeaf(proxyId);
+        this.freeNode(proxyId);
+    }
+
+    /**
+     * Move a proxy, the tree is only modified if the new bounds leave the fat AABB
+     * @param proxyId proxy to move
+     * @param bounds new bounds of the proxy
+     * @return true if the proxy has been reinserted
+     */
+    public boolean moveProxy(int proxyId, BoundingBox bounds) {
+        return this.moveProxy(proxyId, bounds, 0f, 0f, 0f);
+    }
+
+    /**
+     * Move a proxy, the tree is only modified if the new bounds leave the fat AABB
+     * or if the fat AABB became much larger than needed. On reinsertion the fat AABB is
+     * extended by {@link #DISPLACEMENT_MULTIPLIER} times the displacement, so a proxy
+     * moving steadily stays in its fat AABB for several frames
+     * @param proxyId proxy to move
+     * @param bounds new bounds of the proxy
+     * @param dx displacement since the last move (x)
+     * @param dy displacement since the last move (y)
+     * @param dz displacement since the last move (z)
+     * @return true if the proxy has been reinserted
+     */
+    public boolean moveProxy(int proxyId, BoundingBox bounds, float dx, float dy, float dz) {
+        int o = proxyId * 6;
+        if(this.boxes[o]   <= bounds.min.x && this.boxes[o+1] <= bounds.min.y && this.boxes[o+2] <= bounds.min.z
+        && this.boxes[o+3] >= bounds.max.x && this.boxes[o+4] >= bounds.max.y && this.boxes[o+5] >= bounds.max.z) {
+            // still inside: keep it unless the fat AABB is too large (the proxy slowed down or turned)
+            float huge = 4f * this.margin;
+            float ex = DISPLACEMENT_MULTIPLIER * dx, ey = DISPLACEMENT_MULTIPLIER * dy, ez = DISPLACEMENT_MULTIPLIER * dz;
+            if(this.boxes[o]   >= bounds.min.x - this.margin + Math.min(ex, 0f) - huge
+            && this.boxes[o+1] >= bounds.min.y - this.margin + Math.min(ey, 0f) - huge
+            && this.boxes[o+2] >= bounds.min.z - this.margin + Math.min(ez, 0f) - huge
+            && this.boxes[o+3] <= bounds.max.x + this.margin + Math.max(ex, 0f) + huge
+            && this.boxes[o+4] <= bounds.max.y + this.margin + Math.max(ey, 0f) + huge
+            && this.boxes[o+5] <= bounds.max.z + this.margin + Math.max(ez, 0f) + huge) {
+                return false;
+            }
+        }
+
+        long start = System.nanoTime();
+        this.removeLeaf(proxyId);
+        this.setFatBox(proxyId, bounds, dx, dy, dz);
+        this.insertLeaf(proxyId);
+        this.rebalanceNanos += System.nanoTime() - start;
+        this.reinsertCount++;
+        return true;
+    }
+
+    /**
+     * Returns the user data of a proxy
+     * @param proxyId proxy
+     * @return the user data of the proxy
+     */
+    public Object getUserData(int proxyId) {
+        return this.userData[proxyId];
+    }
+
+    /**
+     * Returns the fat bounds of a proxy
+     * @param proxyId proxy
+     * @param dest destination
+     * @return dest
+     */
+    public BoundingBox getFatBounds(int proxyId, BoundingBox dest) {
+        int o = proxyId * 6;
+        dest.min.set(this.boxes[o], this.boxes[o+1], this.boxes[o+2]);
+        dest.max.set(this.boxes[o+3], this.boxes[o+4], this.boxes[o+5]);
+        return dest;
+    }
+
+    /**
+     * Report every proxy whose fat AABB overlaps some bounds
+     * @param bounds query bounds
+     * @param callback callback
+     */
+    public void query(BoundingBox bounds, QueryCallback callback) {
+        if(this.root == NULL_NODE) return;
+        int top = 0;
+        this.stack[top++] = this.root;
+        while(top > 0) {
+            int node = this.stack[--top];
+            int o = node * 6;
+            if(this.boxes[o] > bounds.max.x || this.boxes[o+3] < bounds.min.x
+            || this.boxes[o+1] > bounds.max.y || this.boxes[o+4] < bounds.min.y
+            || this.boxes[o+2] > bounds.max.z || this.boxes[o+5] < bounds.min.z) continue;
+
+            if(this.children1[node] == NULL_NODE) {
+                if(!callback.report(node)) return;
+            } else {
+                top = this.pushChildren(top, node);
+            }
+        }
+    }
+
+    /**
+     * Report every proxy whose fat AABB is hit by a ray
+     * @param originX ray origin x
+     * @param originY ray origin y
+     * @param originZ ray origin z
+     * @param dirX ray direction x
+     * @param dirY ray direction y
+     * @param dirZ ray direction z
+     * @param maxDistance max distance along the ray (in direction lengths)
+     * @param callback callback, its result clips the ray
+     */
+    public void raycast(float originX, float originY, float originZ, float dirX, float dirY, float dirZ, float maxDistance, RayCallback callback) {
+        if(this.root == NULL_NODE) return;
+        float invX = 1f / dirX, invY = 1f / dirY, invZ = 1f / dirZ;
+        int top = 0;
+        this.stack[top++] = this.root;
+        while(top > 0) {
+            int node = this.stack[--top];
+            float entry = this.rayEntry(node, originX, originY, originZ, invX, invY, invZ, maxDistance);
+            if(entry < 0f) continue;
+
+            if(this.children1[node] == NULL_NODE) {
+                float value = callback.report(node, entry, maxDistance);
+                if(value <= 0f) return;
+                maxDistance = Math.min(maxDistance, value);
+            } else {
+                top = this.pushChildren(top, node);
+            }
+        }
+    }
+
+    /**
+     * Returns the proxy whose fat AABB is the nearest of a point
+     * @param x point x
+     * @param y point y
+     * @param z point z
+     * @param maxDistance max search distance
+     * @return the nearest proxy or NULL_NODE if none is within maxDistance
+     */
+    public int nearest(float x, float y, float z, float maxDistance) {
+        if(this.root == NULL_NODE) return NULL_NODE;
+        float best = maxDistance * maxDistance;
+        int bestNode = NULL_NODE;
+
+        int heapSize = 0;
+        heapSize = this.heapPush(heapSize, this.root, this.distanceSquared(this.root, x, y, z));
+        while(heapSize > 0) {
+            int node = this.heapNodes[0];
+            float distance = this.heapDistances[0];
+            heapSize = this.heapPop(heapSize);
+            if(distance > best) break; // every remaining node is farther
+
+            if(this.children1[node] == NULL_NODE) {
+                best = distance;
+                bestNode = node;
+            } else {
+                int child1 = this.children1[node];
+                int child2 = this.children2[node];
+                float d1 = this.distanceSquared(child1, x, y, z);
+                float d2 = this.distanceSquared(child2, x, y, z);
+                if(d1 <= best) heapSize = this.heapPush(heapSize, child1, d1);
+                if(d2 <= best) heapSize = this.heapPush(heapSize, child2, d2);
+            }
+        }
+        return bestNode;
+    }
+
+    /**
+     * Returns the height of the tree
+     * @return the height of the tree
+     */
+    public int getHeight() {
+        return (this.root == NULL_NODE) ? 0 : this.heights[this.root];
+    }
+
+    /**
+     * Returns the number of proxies in the tree
+     * @return the number of proxies in the tree
+     */
+    public int getProxyCount() {
+        return (this.nodeCount + 1) / 2;
+    }
+
+    /**
+     * Returns the number of rotations done to keep the tree balanced
+     * @return the number of rotations done to keep the tree balanced
+     */
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    /**
+     * Returns the number of proxies reinserted after leaving their fat AABB
+     * @return the number of proxies reinserted after leaving their fat AABB
+     */
+    public long getReinsertCount() {
+        return reinsertCount;
+    }
+
+    /**
+     * Returns the time spent inserting, reinserting and balancing (in nanoseconds)
+     * @return the time spent inserting, reinserting and balancing (in nanoseconds)
+     */
+    public long getRebalanceNanos() {
+        return rebalanceNanos;
+    }
+
+    /**
+     * Reset the rebalancing statistics
+     */
+    public void resetStats() {
+        this.rotationCount = 0;
+        this.reinsertCount = 0;
+        this.rebalanceNanos = 0;
+    }
+
+    /**
+     * Set the fat bounds of a node
+     * @param node node
+     * @param bounds tight bounds
+     */
+    protected void setFatBox(int node, BoundingBox bounds) {
+        this.setFatBox(node, bounds, 0f, 0f, 0f);
+    }
+
+    /**
+     * Set the fat bounds of a node, extended along a predicted displacement
+     * @param node node
+     * @param bounds tight bounds
+     * @param dx displacement (x)
+     * @param dy displacement (y)
+     * @param dz displacement (z)
+     */
+    protected void setFatBox(int node, BoundingBox bounds, float dx, float dy, float dz) {
+        int o = node * 6;
+        float ex = DISPLACEMENT_MULTIPLIER * dx, ey = DISPLACEMENT_MULTIPLIER * dy, ez = DISPLACEMENT_MULTIPLIER * dz;
+        this.boxes[o]   = bounds.min.x - this.margin + Math.min(ex, 0f);
+        this.boxes[o+1] = bounds.min.y - this.margin + Math.min(ey, 0f);
+        this.boxes[o+2] = bounds.min.z - this.margin + Math.min(ez, 0f);
+        this.boxes[o+3] = bounds.max.x + this.margin + Math.max(ex, 0f);
+        this.boxes[o+4] = bounds.max.y + this.margin + Math.max(ey, 0f);
+        this.boxes[o+5] = bounds.max.z + this.margin + Math.max(ez, 0f);
+    }
+
+    /**
+     * Push the children of a node on the traversal stack
+     * @param top stack size
+     * @param node node
+     * @return the new stack size
+     */
+    protected int pushChildren(int top, int node) {
+        if(top + 2 > this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+        }
+        this.stack[top++] = this.children1[node];
+        this.stack[top++] = this.children2[node];
+        return top;
+    }
+
+    /**
+     * Returns the distance where a ray enters the box of a node
+     * @return the entry distance or -1 if the ray misses the box
+     */
+    private float rayEntry(int node, float ox, float oy, float oz, float invX, float invY, float invZ, float maxDistance) {
+        int o = node * 6;
+        float t1 = (this.boxes[o]   - ox) * invX, t2 = (this.boxes[o+3] - ox) * invX;
+        float tmin = Math.min(t1, t2), tmax = Math.max(t1, t2);
+        t1 = (this.boxes[o+1] - oy) * invY; t2 = (this.boxes[o+4] - oy) * invY;
+        tmin = Math.max(tmin, Math.min(t1, t2)); tmax = Math.min(tmax, Math.max(t1, t2));
+        t1 = (this.boxes[o+2] - oz) * invZ; t2 = (this.boxes[o+5] - oz) * invZ;
+        tmin = Math.max(tmin, Math.min(t1, t2)); tmax = Math.min(tmax, Math.max(t1, t2));
+        if(tmax < Math.max(tmin, 0f) || tmin > maxDistance) return -1f;
+        return Math.max(tmin, 0f);
+    }
+
+    /**
+     * Returns the squared distance between a point and the box of a node
+     */
+    private float distanceSquared(int node, float x, float y, float z) {
+        int o = node * 6;
+        float dx = Math.max(Math.max(this.boxes[o]   - x, 0f), x - this.boxes[o+3]);
+        float dy = Math.max(Math.max(this.boxes[o+1] - y, 0f), y - this.boxes[o+4]);
+        float dz = Math.max(Math.max(this.boxes[o+2] - z, 0f), z - this.boxes[o+5]);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Push a node in the nearest query heap (min-heap on distance)
+     */
+    private int heapPush(int size, int node, float distance) {
+        if(size == this.heapNodes.length) {
+            this.heapNodes = Arrays.copyOf(this.heapNodes, size * 2);
+            this.heapDistances = Arrays.copyOf(this.heapDistances, size * 2);
+        }
+        int i = size;
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            if(this.heapDistances[parent] <= distance) break;
+            this.heapNodes[i] = this.heapNodes[parent];
+            this.heapDistances[i] = this.heapDistances[parent];
+            i = parent;
+        }
+        this.heapNodes[i] = node;
+        this.heapDistances[i] = distance;
+        return size + 1;
+    }
+
+    /**
+     * Pop the nearest node of the nearest query heap
+     */
+    private int heapPop(int size) {
+        size--;
+        int node = this.heapNodes[size];
+        float distance = this.heapDistances[size];
+        int i = 0;
+        while(true) {
+            int child = 2 * i + 1;
+            if(child >= size) break;
+            if(child + 1 < size && this.heapDistances[child + 1] < this.heapDistances[child]) child++;
+            if(this.heapDistances[child] >= distance) break;
+            this.heapNodes[i] = this.heapNodes[child];
+            this.heapDistances[i] = this.heapDistances[child];
+            i = child;
+        }
+        this.heapNodes[i] = node;
+        this.heapDistances[i] = distance;
+        return size;
+    }
+
+    /**
+     * Returns the surface area of the union of two nodes boxes
+     */
+    private float unionArea(int a, int b) {
+        int oa = a * 6, ob = b * 6;
+        float dx = Math.max(this.boxes[oa+3], this.boxes[ob+3]) - Math.min(this.boxes[oa],   this.boxes[ob]);
+        float dy = Math.max(this.boxes[oa+4], this.boxes[ob+4]) - Math.min(this.boxes[oa+1], this.boxes[ob+1]);
+        float dz = Math.max(this.boxes[oa+5], this.boxes[ob+5]) - Math.min(this.boxes[oa+2], this.boxes[ob+2]);
+        return 2f * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * Returns the surface area of a node box
+     */
+    private float area(int node) {
+        int o = node * 6;
+        float dx = this.boxes[o+3] - this.boxes[o];
+        float dy = this.boxes[o+4] - this.boxes[o+1];
+        float dz = this.boxes[o+5] - this.boxes[o+2];
+        return 2f * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * Set the box of a node to the union of two nodes boxes
+     */
+    private void setUnion(int dest, int a, int b) {
+        int od = dest * 6, oa = a * 6, ob = b * 6;
+        for(int i = 0; i < 3; ++i) {
+            this.boxes[od+i]   = Math.min(this.boxes[oa+i],   this.boxes[ob+i]);
+            this.boxes[od+3+i] = Math.max(this.boxes[oa+3+i], this.boxes[ob+3+i]);
+        }
+    }
+
+    /**
+     * Insert a leaf in the tree
+     * @param leaf leaf to insert
+     */
+    protected void insertLeaf(int leaf) {
+        if(this.root == NULL_NODE) {
+            this.root = leaf;
+            this.parents[leaf] = NULL_NODE;
+            return;
+        }
+
+        // find the best sibling (surface area heuristic)
+        int index = this.root;
+        while(this.children1[index] != NULL_NODE) {
+            int child1 = this.children1[index];
+            int child2 = this.children2[index];
+
+            float area = this.area(index);
+            float combinedArea = this.unionArea(index, leaf);
+            float cost = 2f * combinedArea;
+            float inheritanceCost = 2f * (combinedArea - area);
+
+            float cost1 = this.unionArea(leaf, child1) + inheritanceCost;
+            if(this.children1[child1] != NULL_NODE) cost1 -= this.area(child1);
+            float cost2 = this.unionArea(leaf, child2) + inheritanceCost;
+            if(this.children1[child2] != NULL_NODE) cost2 -= this.area(child2);
+
+            if(cost < cost1 && cost < cost2) break;
+            index = (cost1 < cost2) ? child1 : child2;
+        }
+        int sibling = index;
+
+        // create a new parent
+        int oldParent = this.parents[sibling];
+        int newParent = this.allocateNode();
+        this.parents[newParent] = oldParent;
+        this.userData[newParent] = null;
+        this.setUnion(newParent, leaf, sibling);
+        this.heights[newParent] = this.heights[sibling] + 1;
+        this.children1[newParent] = sibling;
+        this.children2[newParent] = leaf;
+        this.parents[sibling] = newParent;
+        this.parents[leaf] = newParent;
+
+        if(oldParent != NULL_NODE) {
+            if(this.children1[oldParent] == sibling) this.children1[oldParent] = newParent;
+            else this.children2[oldParent] = newParent;
+        } else {
+            this.root = newParent;
+        }
+        this.fixUpwards(newParent);
+    }
+
+    /**
+     * Remove a leaf from the tree
+     * @param leaf leaf to remove
+     */
+    protected void removeLeaf(int leaf) {
+        if(leaf == this.root) {
+            this.root = NULL_NODE;
+            return;
+        }
+
+        int parent = this.parents[leaf];
+        int grandParent = this.parents[parent];
+        int sibling = (this.children1[parent] == leaf) ? this.children2[parent] : this.children1[parent];
+
+        if(grandParent != NULL_NODE) {
+            if(this.children1[grandParent] == parent) this.children1[grandParent] = sibling;
+            else this.children2[grandParent] = sibling;
+            this.parents[sibling] = grandParent;
+            this.freeNode(parent);
+            this.fixUpwards(grandParent);
+        } else {
+            this.root = sibling;
+            this.parents[sibling] = NULL_NODE;
+            this.freeNode(parent);
+        }
+    }
+
+    /**
+     * Balance and refit the ancestors of a node
+     * @param index first node to fix
+     */
+    protected void fixUpwards(int index) {
+        while(index != NULL_NODE) {
+            index = this.balance(index);
+            int child1 = this.children1[index];
+            int child2 = this.children2[index];
+            this.heights[index] = 1 + Math.max(this.heights[child1], this.heights[child2]);
+            this.setUnion(index, child1, child2);
+            index = this.parents[index];
+        }
+    }
+
+    /**
+     * Perform a left or right rotation if a node is imbalanced
+     * @param iA node to balance
+     * @return the new root of the balanced subtree
+     */
+    protected int balance(int iA) {
+        if(this.children1[iA] == NULL_NODE || this.heights[iA] < 2) return iA;
+
+        int iB = this.children1[iA];
+        int iC = this.children2[iA];
+        int balance = this.heights[iC] - this.heights[iB];
+
+        if(balance > 1) return this.rotate(iA, iC, iB, true);
+        if(balance < -1) return this.rotate(iA, iB, iC, false);
+        return iA;
+    }
+
+    /**
+     * Rotate the higher child of a node up
+     * @param iA imbalanced node
+     * @param iUp child to rotate up
+     * @param iOther other child
+     * @param upIsSecond true if iUp is the second child of iA
+     * @return the new root of the subtree (iUp)
+     */
+    private int rotate(int iA, int iUp, int iOther, boolean upIsSecond) {
+        this.rotationCount++;
+        int iF = this.children1[iUp];
+        int iG = this.children2[iUp];
+
+        // swap A and Up
+        this.children1[iUp] = iA;
+        this.parents[iUp] = this.parents[iA];
+        this.parents[iA] = iUp;
+
+        int oldParent = this.parents[iUp];
+        if(oldParent != NULL_NODE) {
+            if(this.children1[oldParent] == iA) this.children1[oldParent] = iUp;
+            else this.children2[oldParent] = iUp;
+        } else {
+            this.root = iUp;
+        }
+
+        // keep the highest grandchild under Up, move the other one under A
+        int kept = iF, moved = iG;
+        if(this.heights[iF] <= this.heights[iG]) {
+            kept = iG;
+            moved = iF;
+        }
+        this.children2[iUp] = kept;
+        if(upIsSecond) this.children2[iA] = moved;
+        else this.children1[iA] = moved;
+        this.parents[moved] = iA;
+
+        this.setUnion(iA, iOther, moved);
+        this.setUnion(iUp, iA, kept);
+        this.heights[iA] = 1 + Math.max(this.heights[iOther], this.heights[moved]);
+        this.heights[iUp] = 1 + Math.max(this.heights[iA], this.heights[kept]);
+        return iUp;
+    }
+
+    /**
+     * Allocate a node (grows the arrays if needed)
+     * @return the allocated node
+     */
+    protected int allocateNode() {
+        if(this.freeList == NULL_NODE) {
+            int oldCapacity = this.capacity;
+            this.capacity *= 2;
+            this.boxes = Arrays.copyOf(this.boxes, this.capacity * 6);
+            this.parents = Arrays.copyOf(this.parents, this.capacity);
+            this.children1 = Arrays.copyOf(this.children1, this.capacity);
+            this.children2 = Arrays.copyOf(this.children2, this.capacity);
+            this.heights = Arrays.copyOf(this.heights, this.capacity);
+            this.userData = Arrays.copyOf(this.userData, this.capacity);
+            this.linkFreeNodes(oldCapacity);
+            this.freeList = oldCapacity;
+        }
+        int node = this.freeList;
+        this.freeList = this.parents[node];
+        this.parents[node] = NULL_NODE;
+        this.children1[node] = NULL_NODE;
+        this.children2[node] = NULL_NODE;
+        this.heights[node] = 0;
+        this.nodeCount++;
+        return node;
+    }
+
+    /**
+     * Return a node to the free list
+     * @param node node to free
+     */
+    protected void freeNode(int node) {
+        this.parents[node] = this.freeList;
+        this.heights[node] = -1;
+        this.userData[node] = null;
+        this.freeList = node;
+        this.nodeCount--;
+    }
+
+    /**
+     * Link the nodes from an index to the capacity in the free list
+     * @param from first node to link
+     */
+    private void linkFreeNodes(int from) {
+        for(int i = from; i < this.capacity - 1; ++i) {
+            this.parents[i] = i + 1;
+            this.heights[i] = -1;
+        }
+        this.parents[this.capacity - 1] = NULL_NODE;
+        this.heights[this.capacity - 1] = -1;
+    }
+}
@@ -0,0 +1,147 @@
+package olibe.scene.spatial;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long keys to int values (linear probing, backward shift removal).
+ * Keys and values are stored in primitive arrays, nothing is boxed or allocated
+ * outside of the table growth.
+ */
+public class LongIntHashMap {
+    /** Keys of the slots */
+    protected long[] keys;
+    /** Values of the slots */
+    protected int[] values;
+    /** The slot is used */
+    protected boolean[] used;
+    /** Number of entries */
+    protected int size;
+    /** Slot index mask (capacity - 1) */
+    protected int mask;
+
+    /** Value returned for missing keys */
+    public static final int MISSING = -1;
+    /** Max load factor before the table grows */
+    protected static final float LOAD_FACTOR = 0.5f;
+    /** Initial capacity (power of two) */
+    protected static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Create an empty map
+     */
+    public LongIntHashMap() {
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the value of a key
+     * @param key key
+     * @return the value of the key ({@link #MISSING} if not found)
+     */
+    public int get(long key) {
+        for(int slot = this.slotOf(key); this.used[slot]; slot = (slot + 1) & this.mask) {
+            if(this.keys[slot] == key) return this.values[slot];
+        }
+        return MISSING;
+    }
+
+    /**
+     * Sets the value of a key
+     * @param key key
+     * @param value value
+     */
+    public void put(long key, int value) {
+        if(this.size + 1 > (this.mask + 1) * LOAD_FACTOR) this.grow();
+        int slot = this.slotOf(key);
+        for(; this.used[slot]; slot = (slot + 1) & this.mask) {
+            if(this.keys[slot] == key) {
+                this.values[slot] = value;
+                return;
+            }
+        }
+        this.used[slot] = true;
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+    }
+
+    /**
+     * Remove a key
+     * @param key key
+     * @return the removed value ({@link #MISSING} if not found)
+     */
+    public int remove(long key) {
+        int slot = this.slotOf(key);
+        for(; this.used[slot]; slot = (slot + 1) & this.mask) {
+            if(this.keys[slot] == key) break;
+        }
+        if(!this.used[slot]) return MISSING;
+        int value = this.values[slot];
+
+        // shift back the following entries of the cluster into the hole
+        int hole = slot;
+        for(int next = (hole + 1) & this.mask; this.used[next]; next = (next + 1) & this.mask) {
+            int home = this.slotOf(this.keys[next]);
+            // the entry can move if its home is not in (hole, next]
+            if(((next - home) & this.mask) >= ((next - hole) & this.mask)) {
+                this.keys[hole] = this.keys[next];
+                this.values[hole] = this.values[next];
+                hole = next;
+            }
+        }
+        this.used[hole] = false;
+        this.size--;
+        return value;
+    }
+
+    /**
+     * Returns the number of entries
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove every entry (the table keeps its capacity)
+     */
+    public void clear() {
+        Arrays.fill(this.used, false);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the home slot of a key
+     * @param key key
+     * @return the home slot of the key
+     */
+    protected int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32)) & this.mask;
+    }
+
+    /**
+     * Double the table and reinsert the entries
+     */
+    protected void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        boolean[] oldUsed = this.used;
+        this.allocate(oldKeys.length * 2);
+        for(int i = 0; i < oldKeys.length; ++i) {
+            if(oldUsed[i]) this.put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    /**
+     * Allocate an empty table
+     * @param capacity capacity (power of two)
+     */
+    protected void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.used = new boolean[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+}
@@ -0,0 +1,331 @@
+package olibe.scene.spatial;
+
+import java.util.*;
+
+import org.joml.Intersectionf;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+
+import olibe.render.BoundingBox;
+import olibe.render.Mesh;
+import olibe.scene.Scene;
+import olibe.scene.SceneJournal;
+import olibe.scene.SceneNode;
+import olibe.scene.Transform;
+
+/**
+ * Spatial index of scene nodes bounds, backed by a dynamic AABB tree.
+ * Tracked nodes are refreshed by {@link #update()}: only the nodes whose
+ * world matrix changed are tested, and only the ones leaving their fat AABB
+ * (extended along their last displacement) modify the tree.
+ * Created for a scene, the index reads the transform changes from the scene journal
+ * so an update only visits the moved subtrees, otherwise every tracked node is checked.
+ */
+public class SceneSpatialIndex {
+    /** Tree of the world bounds */
+    protected AABBTree tree;
+    /** Tracked entries */
+    protected List<Entry> entries;
+    /** Entries by node */
+    protected Map<SceneNode, Entry> entriesByNode;
+    /** Journal cursor of the scene (null if the index is not bound to a scene) */
+    protected SceneJournal.Cursor cursor;
+    /** Entries to refresh (moved since the last update) */
+    protected List<Entry> pending;
+    /** Nodes of the moved subtrees to visit */
+    protected ArrayDeque<SceneNode> moved;
+
+    /** Overlap query results */
+    protected List<SceneNode> queryResults;
+    /** Overlap query bounds */
+    protected BoundingBox queryBounds;
+    /** Ray query origin */
+    protected Vector3f rayOrigin;
+    /** Ray query direction */
+    protected Vector3f rayDirection;
+    /** Ray query closest hit */
+    protected Entry rayHit;
+    /** Ray query intersection result */
+    protected Vector2f rayResult;
+
+    /** Overlap query callback */
+    protected final AABBTree.QueryCallback queryCallback = new AABBTree.QueryCallback() {
+        public boolean report(int proxyId) {
+            Entry entry = (Entry)SceneSpatialIndex.this.tree.getUserData(proxyId);
+            if(entry.worldBounds.intersects(SceneSpatialIndex.this.queryBounds)) {
+                SceneSpatialIndex.this.queryResults.add(entry.node);
+            }
+            return true;
+        }
+    };
+
+    /** Journal listener queuing the tracked nodes of the moved subtrees */
+    protected final SceneJournal.Listener journalListener = new SceneJournal.Listener() {
+        public void onEvent(long sequence, SceneJournal.EventType type, SceneNode node, Object extra) {
+            if(type == SceneJournal.EventType.TRANSFORM_DIRTY) SceneSpatialIndex.this.queueSubtree(node);
+        }
+
+        public void onOverflow() {
+            List<Entry> entries = SceneSpatialIndex.this.entries;
+            for(int i = 0; i < entries.size(); ++i) {
+                SceneSpatialIndex.this.queue(entries.get(i));
+            }
+        }
+    };
+
+    /** Ray query callback (keeps the closest hit) */
+    protected final AABBTree.RayCallback rayCallback = new AABBTree.RayCallback() {
+        public float report(int proxyId, float distance, float maxDistance) {
+            SceneSpatialIndex index = SceneSpatialIndex.this;
+            Entry entry = (Entry)index.tree.getUserData(proxyId);
+            BoundingBox b = entry.worldBounds;
+            if(!Intersectionf.intersectRayAab(index.rayOrigin.x, index.rayOrigin.y, index.rayOrigin.z,
+                index.rayDirection.x, index.rayDirection.y, index.rayDirection.z,
+                b.min.x, b.min.y, b.min.z, b.max.x, b.max.y, b.max.z, index.rayResult)) {
+                return maxDistance;
+            }
+            float hit = Math.max(index.rayResult.x, 0f);
+            if(hit > maxDistance) return maxDistance;
+            index.rayHit = entry;
+            return hit;
+        }
+    };
+
+    /**
+     * Tracked node
+     */
+    protected static class Entry {
+        /** Tracked node */
+        protected SceneNode node;
+        /** Local bounds of the node */
+        protected BoundingBox localBounds;
+        /** Last computed world bounds */
+        protected BoundingBox worldBounds;
+        /** Proxy in the tree */
+        protected int proxyId;
+        /** Version of the world matrix used for the world bounds */
+        protected int transformVersion;
+        /** Index in the entries list (-1 once untracked) */
+        protected int index;
+        /** Center of the world bounds at the last refresh */
+        protected float centerX, centerY, centerZ;
+        /** The entry is waiting to be refreshed */
+        protected boolean queued;
+    }
+
+    /**
+     * Create an empty spatial index
+     * @param margin margin added around the bounds (larger margins mean less tree updates)
+     */
+    public SceneSpatialIndex(float margin) {
+        this.tree = new AABBTree(margin);
+        this.entries = new ArrayList<>();
+        this.entriesByNode = new HashMap<>();
+        this.cursor = null;
+        this.pending = new ArrayList<>();
+        this.moved = new ArrayDeque<>();
+        this.queryBounds = new BoundingBox();
+        this.rayOrigin = new Vector3f();
+        this.rayDirection = new Vector3f();
+        this.rayResult = new Vector2f();
+    }
+
+    /**
+     * Create an empty spatial index with the default margin
+     */
+    public SceneSpatialIndex() {
+        this(AABBTree.DEFAULT_MARGIN);
+    }
+
+    /**
+     * Create an empty spatial index refreshed from the change journal of a scene
+     * (the journal is enabled if needed)
+     * @param scene scene of the tracked nodes
+     * @param margin margin added around the bounds (larger margins mean less tree updates)
+     */
+    public SceneSpatialIndex(Scene scene, float margin) {
+        this(margin);
+        SceneJournal journal = scene.getJournal();
+        if(journal == null) journal = scene.enableJournal(SceneJournal.DEFAULT_CAPACITY);
+        this.cursor = journal.newCursor();
+    }
+
+    /**
+     * Track a node
+     * @param node node to track
+     * @param localBounds bounds of the node (in its local space)
+     */
+    public void track(SceneNode node, BoundingBox localBounds) {
+        if(node == null || localBounds == null || this.entriesByNode.containsKey(node)) return;
+        Entry entry = new Entry();
+        entry.node = node;
+        entry.localBounds = localBounds;
+        entry.worldBounds = new BoundingBox();
+        Transform transform = node.getTransform();
+        localBounds.transform(transform.getWorldMatrix(), entry.worldBounds);
+        entry.transformVersion = transform.getVersion();
+        entry.centerX = (entry.worldBounds.min.x + entry.worldBounds.max.x) * .5f;
+        entry.centerY = (entry.worldBounds.min.y + entry.worldBounds.max.y) * .5f;
+        entry.centerZ = (entry.worldBounds.min.z + entry.worldBounds.max.z) * .5f;
+        entry.proxyId = this.tree.createProxy(entry.worldBounds, entry);
+        entry.index = this.entries.size();
+        this.entries.add(entry);
+        this.entriesByNode.put(node, entry);
+    }
+
+    /**
+     * Track a node using the bounds of a mesh
+     * @param node node to track
+     * @param mesh mesh drawn by the node
+     */
+    public void track(SceneNode node, Mesh mesh) {
+        this.track(node, mesh.getBounds());
+    }
+
+    /**
+     * Stop tracking a node
+     * @param node node to untrack
+     */
+    public void untrack(SceneNode node) {
+        Entry entry = this.entriesByNode.remove(node);
+        if(entry == null) return;
+        this.tree.destroyProxy(entry.proxyId);
+
+        Entry last = this.entries.remove(this.entries.size() - 1);
+        if(last != entry) {
+            last.index = entry.index;
+            this.entries.set(entry.index, last);
+        }
+        entry.index = -1;
+    }
+
+    /**
+     * Refresh the world bounds of the nodes that moved
+     */
+    public void update() {
+        if(this.cursor == null) {
+            for(int i = 0; i < this.entries.size(); ++i) {
+                this.refresh(this.entries.get(i));
+            }
+            return;
+        }
+        this.cursor.poll(this.journalListener);
+        for(int i = 0; i < this.pending.size(); ++i) {
+            Entry entry = this.pending.get(i);
+            entry.queued = false;
+            if(entry.index >= 0) this.refresh(entry);
+        }
+        this.pending.clear();
+    }
+
+    /**
+     * Refresh the world bounds of an entry if its world matrix changed
+     * @param entry entry to refresh
+     */
+    protected void refresh(Entry entry) {
+        Transform transform = entry.node.getTransform();
+        transform.getWorldMatrix();
+        if(transform.getVersion() == entry.transformVersion) return;
+        entry.transformVersion = transform.getVersion();
+        entry.localBounds.transform(transform.getWorldMatrix(), entry.worldBounds);
+        float x = (entry.worldBounds.min.x + entry.worldBounds.max.x) * .5f;
+        float y = (entry.worldBounds.min.y + entry.worldBounds.max.y) * .5f;
+        float z = (entry.worldBounds.min.z + entry.worldBounds.max.z) * .5f;
+        this.tree.moveProxy(entry.proxyId, entry.worldBounds, x - entry.centerX, y - entry.centerY, z - entry.centerZ);
+        entry.centerX = x;
+        entry.centerY = y;
+        entry.centerZ = z;
+    }
+
+    /**
+     * Queue the tracked nodes of a moved subtree
+     * @param node root of the moved subtree
+     */
+    protected void queueSubtree(SceneNode node) {
+        this.moved.push(node);
+        while(!this.moved.isEmpty()) {
+            SceneNode n = this.moved.pop();
+            Entry entry = this.entriesByNode.get(n);
+            if(entry != null) this.queue(entry);
+            List<SceneNode> children = n.getChildren();
+            for(int i = 0; i < children.size(); ++i) {
+                this.moved.push(children.get(i));
+            }
+        }
+    }
+
+    /**
+     * Queue an entry to refresh (once)
+     * @param entry entry to refresh
+     */
+    protected void queue(Entry entry) {
+        if(entry.queued) return;
+        entry.queued = true;
+        this.pending.add(entry);
+    }
+
+    /**
+     * Stop reading the scene journal (the index keeps its nodes)
+     */
+    public void delete() {
+        if(this.cursor != null) this.cursor.close();
+        this.cursor = null;
+    }
+
+    /**
+     * Find the nodes whose world bounds overlap some bounds
+     * @param bounds query bounds
+     * @param results list receiving the overlapping nodes
+     * @return results
+     */
+    public List<SceneNode> query(BoundingBox bounds, List<SceneNode> results) {
+        this.queryBounds.set(bounds);
+        this.queryResults = results;
+        this.tree.query(bounds, this.queryCallback);
+        this.queryResults = null;
+        return results;
+    }
+
+    /**
+     * Returns the first node hit by a ray
+     * @param origin ray origin
+     * @param direction ray direction
+     * @param maxDistance max distance along the ray (in direction lengths)
+     * @return the first node hit by the ray or null
+     */
+    public SceneNode raycast(Vector3f origin, Vector3f direction, float maxDistance) {
+        this.rayOrigin.set(origin);
+        this.rayDirection.set(direction);
+        this.rayHit = null;
+        this.tree.raycast(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z, maxDistance, this.rayCallback);
+        return (this.rayHit == null) ? null : this.rayHit.node;
+    }
+
+    /**
+     * Returns the node nearest to a point (distance to its fat bounds)
+     * @param point point
+     * @param maxDistance max search distance
+     * @return the nearest node or null if none is within maxDistance
+     */
+    public SceneNode nearest(Vector3f point, float maxDistance) {
+        int proxyId = this.tree.nearest(point.x, point.y, point.z, maxDistance);
+        if(proxyId == AABBTree.NULL_NODE) return null;
+        return ((Entry)this.tree.getUserData(proxyId)).node;
+    }
+
+    /**
+     * Returns the number of tracked nodes
+     * @return the number of tracked nodes
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the underlying tree (for its rebalancing statistics)
+     * @return the underlying tree
+     */
+    public AABBTree getTree() {
+        return tree;
+    }
+}
@@ -0,0 +1,440 @@
+package olibe.scene.spatial;
+
+import java.util.*;
+
+/**
+ * Uniform grid spatial hash for 2D rectangles.
+ * Only the non-empty cells are stored (hashed by their coordinates in a primitive
+ * map, the cells are pooled and their arrays reused, moves do not allocate),
+ * a proxy is registered in every cell its rectangle overlaps and is only
+ * re-registered when a move changes the range of cells it covers.
+ * Queries only visit the cells overlapping the query rectangle.
+ */
+public class SpatialHashGrid {
+    /** Proxy rectangles (minX, minY, maxX, maxY per proxy) */
+    protected float[] rects;
+    /** Proxy cell ranges (minCellX, minCellY, maxCellX, maxCellY per proxy) */
+    protected int[] cellRanges;
+    /** User data of each proxy */
+    protected Object[] userData;
+    /** Last query stamp of each proxy (reported once per query) */
+    protected int[] stamps;
+    /** Next free proxy (-1 for used proxies) */
+    protected int[] nextFree;
+    /** First free proxy */
+    protected int freeList;
+    /** Proxy capacity */
+    protected int capacity;
+    /** Number of proxies */
+    protected int proxyCount;
+    /** Current query stamp */
+    protected int stamp;
+
+    /** Non-empty cells, by cell key */
+    protected LongIntHashMap cells;
+    /** Proxies of each pooled cell */
+    protected int[][] cellItems;
+    /** Number of proxies of each pooled cell (0 for free cells) */
+    protected int[] cellCounts;
+    /** Next free cell of each free pooled cell */
+    protected int[] nextFreeCell;
+    /** First free pooled cell */
+    protected int freeCell;
+    /** Number of pooled cells */
+    protected int cellCapacity;
+    /** Cell size */
+    protected float cellSize;
+    /** Inverse cell size */
+    protected float invCellSize;
+
+    /** Free proxy marker */
+    protected static final int USED = -2;
+    /** End of the free list */
+    protected static final int NULL_PROXY = -1;
+    /** Initial capacity */
+    protected static final int INITIAL_CAPACITY = 64;
+    /** Initial number of proxies of a cell */
+    protected static final int CELL_CAPACITY = 4;
+    /** Largest cell coordinate (cell coordinates are clamped, so unbounded rectangles do not overflow) */
+    protected static final int MAX_CELL = 1 << 30;
+
+    /**
+     * Create an empty grid
+     * @param cellSize size of the cells (a few times the size of the objects is a good value)
+     */
+    public SpatialHashGrid(float cellSize) {
+        if(cellSize <= 0f) throw new IllegalArgumentException("The cell size must be positive");
+        this.cellSize = cellSize;
+        this.invCellSize = 1f / cellSize;
+        this.cells = new LongIntHashMap();
+        this.cellCapacity = 0;
+        this.allocateCells(INITIAL_CAPACITY);
+        this.capacity = 0;
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Insert a rectangle
+     * @param minX min x
+     * @param minY min y
+     * @param maxX max x
+     * @param maxY max y
+     * @param data user data
+     * @return the proxy of the rectangle
+     */
+    public int insert(float minX, float minY, float maxX, float maxY, Object data) {
+        if(this.freeList == NULL_PROXY) {
+            this.allocate(this.capacity * 2);
+        }
+        int proxyId = this.freeList;
+        this.freeList = this.nextFree[proxyId];
+        this.nextFree[proxyId] = USED;
+        this.userData[proxyId] = data;
+        this.stamps[proxyId] = this.stamp;
+        this.setRect(proxyId, minX, minY, maxX, maxY);
+        this.computeRange(proxyId);
+        this.addToCells(proxyId);
+        this.proxyCount++;
+        return proxyId;
+    }
+
+    /**
+     * Remove a proxy
+     * @param proxyId proxy
+     */
+    public void remove(int proxyId) {
+        this.checkProxy(proxyId);
+        this.removeFromCells(proxyId);
+        this.userData[proxyId] = null;
+        this.nextFree[proxyId] = this.freeList;
+        this.freeList = proxyId;
+        this.proxyCount--;
+    }
+
+    /**
+     * Move a proxy, its cells are only updated if it covers other cells
+     * @param proxyId proxy
+     * @param minX new min x
+     * @param minY new min y
+     * @param maxX new max x
+     * @param maxY new max y
+     * @return true if the cells of the proxy changed
+     */
+    public boolean move(int proxyId, float minX, float minY, float maxX, float maxY) {
+        this.checkProxy(proxyId);
+        this.setRect(proxyId, minX, minY, maxX, maxY);
+        int r = proxyId * 4;
+        int cx0 = this.cellOf(minX), cy0 = this.cellOf(minY);
+        int cx1 = this.cellOf(maxX), cy1 = this.cellOf(maxY);
+        if(cx0 == this.cellRanges[r] && cy0 == this.cellRanges[r+1]
+        && cx1 == this.cellRanges[r+2] && cy1 == this.cellRanges[r+3]) {
+            return false;
+        }
+        this.removeFromCells(proxyId);
+        this.cellRanges[r] = cx0; this.cellRanges[r+1] = cy0;
+        this.cellRanges[r+2] = cx1; this.cellRanges[r+3] = cy1;
+        this.addToCells(proxyId);
+        return true;
+    }
+
+    /**
+     * Report each proxy overlapping a rectangle (once per proxy)
+     * @param minX min x
+     * @param minY min y
+     * @param maxX max x
+     * @param maxY max y
+     * @param callback callback
+     */
+    public void query(float minX, float minY, float maxX, float maxY, AABBTree.QueryCallback callback) {
+        this.stamp++;
+        int cx0 = this.cellOf(minX), cy0 = this.cellOf(minY);
+        int cx1 = this.cellOf(maxX), cy1 = this.cellOf(maxY);
+        long rangeCells = ((long)cx1 - cx0 + 1) * ((long)cy1 - cy0 + 1);
+
+        if(rangeCells >= this.cells.size()) {
+            // less stored cells than covered ones: scan the stored cells
+            for(int cell = 0; cell < this.cellCapacity; ++cell) {
+                if(this.cellCounts[cell] == 0) continue;
+                if(!this.queryCell(cell, minX, minY, maxX, maxY, callback)) return;
+            }
+            return;
+        }
+        for(int cy = cy0; cy <= cy1; ++cy) {
+            for(int cx = cx0; cx <= cx1; ++cx) {
+                int cell = this.cells.get(key(cx, cy));
+                if(cell == LongIntHashMap.MISSING) continue;
+                if(!this.queryCell(cell, minX, minY, maxX, maxY, callback)) return;
+            }
+        }
+    }
+
+    /**
+     * Report every proxy (without any cell lookup)
+     * @param callback callback
+     */
+    public void forEach(AABBTree.QueryCallback callback) {
+        for(int proxyId = 0; proxyId < this.capacity; ++proxyId) {
+            if(this.nextFree[proxyId] != USED) continue;
+            if(!callback.report(proxyId)) return;
+        }
+    }
+
+    /**
+     * Add each proxy user data overlapping a rectangle to a list
+     * @param minX min x
+     * @param minY min y
+     * @param maxX max x
+     * @param maxY max y
+     * @param dest destination list
+     * @return dest
+     */
+    public List<Object> query(float minX, float minY, float maxX, float maxY, final List<Object> dest) {
+        this.query(minX, minY, maxX, maxY, new AABBTree.QueryCallback() {
+            public boolean report(int proxyId) {
+                dest.add(SpatialHashGrid.this.userData[proxyId]);
+                return true;
+            }
+        });
+        return dest;
+    }
+
+    /**
+     * Returns the user data of a proxy
+     * @param proxyId proxy
+     * @return the user data of the proxy
+     */
+    public Object getUserData(int proxyId) {
+        return this.userData[proxyId];
+    }
+
+    /**
+     * Returns the number of proxies
+     * @return the number of proxies
+     */
+    public int getProxyCount() {
+        return proxyCount;
+    }
+
+    /**
+     * Returns the number of non-empty cells
+     * @return the number of non-empty cells
+     */
+    public int getCellCount() {
+        return this.cells.size();
+    }
+
+    /**
+     * Returns the cell size
+     * @return the cell size
+     */
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Remove every proxy
+     */
+    public void clear() {
+        this.cells.clear();
+        this.cellCapacity = 0;
+        this.allocateCells(INITIAL_CAPACITY);
+        this.capacity = 0;
+        this.proxyCount = 0;
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Report the proxies of a cell overlapping a rectangle
+     * @return false if the callback stopped the query
+     */
+    private boolean queryCell(int cell, float minX, float minY, float maxX, float maxY, AABBTree.QueryCallback callback) {
+        int[] items = this.cellItems[cell];
+        for(int i = 0; i < this.cellCounts[cell]; ++i) {
+            int proxyId = items[i];
+            if(this.stamps[proxyId] == this.stamp) continue;
+            this.stamps[proxyId] = this.stamp;
+            int r = proxyId * 4;
+            if(this.rects[r] > maxX || this.rects[r+2] < minX
+            || this.rects[r+1] > maxY || this.rects[r+3] < minY) continue;
+            if(!callback.report(proxyId)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Add a proxy to the cells of its range
+     * @param proxyId proxy
+     */
+    private void addToCells(int proxyId) {
+        int r = proxyId * 4;
+        for(int cy = this.cellRanges[r+1]; cy <= this.cellRanges[r+3]; ++cy) {
+            for(int cx = this.cellRanges[r]; cx <= this.cellRanges[r+2]; ++cx) {
+                long key = key(cx, cy);
+                int cell = this.cells.get(key);
+                if(cell == LongIntHashMap.MISSING) {
+                    cell = this.acquireCell();
+                    this.cells.put(key, cell);
+                }
+                int count = this.cellCounts[cell];
+                if(count == this.cellItems[cell].length) {
+                    this.cellItems[cell] = Arrays.copyOf(this.cellItems[cell], count * 2);
+                }
+                this.cellItems[cell][count] = proxyId;
+                this.cellCounts[cell] = count + 1;
+            }
+        }
+    }
+
+    /**
+     * Remove a proxy from the cells of its range (empty cells are dropped)
+     * @param proxyId proxy
+     */
+    private void removeFromCells(int proxyId) {
+        int r = proxyId * 4;
+        for(int cy = this.cellRanges[r+1]; cy <= this.cellRanges[r+3]; ++cy) {
+            for(int cx = this.cellRanges[r]; cx <= this.cellRanges[r+2]; ++cx) {
+                long key = key(cx, cy);
+                int cell = this.cells.get(key);
+                if(cell == LongIntHashMap.MISSING) continue;
+                int[] items = this.cellItems[cell];
+                int count = this.cellCounts[cell];
+                for(int i = 0; i < count; ++i) {
+                    if(items[i] == proxyId) {
+                        items[i] = items[--count];
+                        break;
+                    }
+                }
+                this.cellCounts[cell] = count;
+                if(count == 0) {
+                    this.cells.remove(key);
+                    this.releaseCell(cell);
+                }
+            }
+        }
+    }
+
+    /**
+     * Take a cell from the pool (its item array is reused)
+     * @return the cell
+     */
+    private int acquireCell() {
+        if(this.freeCell == NULL_PROXY) this.allocateCells(this.cellCapacity * 2);
+        int cell = this.freeCell;
+        this.freeCell = this.nextFreeCell[cell];
+        this.cellCounts[cell] = 0;
+        return cell;
+    }
+
+    /**
+     * Give an empty cell back to the pool
+     * @param cell cell
+     */
+    private void releaseCell(int cell) {
+        this.nextFreeCell[cell] = this.freeCell;
+        this.freeCell = cell;
+    }
+
+    /**
+     * Grow the cell pool and chain the new cells in the free list
+     * @param newCapacity new number of pooled cells
+     */
+    private void allocateCells(int newCapacity) {
+        int oldCapacity = this.cellCapacity;
+        if(oldCapacity == 0) {
+            this.cellItems = new int[newCapacity][];
+            this.cellCounts = new int[newCapacity];
+            this.nextFreeCell = new int[newCapacity];
+        } else {
+            this.cellItems = Arrays.copyOf(this.cellItems, newCapacity);
+            this.cellCounts = Arrays.copyOf(this.cellCounts, newCapacity);
+            this.nextFreeCell = Arrays.copyOf(this.nextFreeCell, newCapacity);
+        }
+        for(int i = oldCapacity; i < newCapacity; ++i) {
+            this.cellItems[i] = new int[CELL_CAPACITY];
+            this.nextFreeCell[i] = i + 1;
+        }
+        this.nextFreeCell[newCapacity - 1] = NULL_PROXY;
+        this.freeCell = oldCapacity;
+        this.cellCapacity = newCapacity;
+    }
+
+    /**
+     * Sets the rectangle of a proxy
+     */
+    private void setRect(int proxyId, float minX, float minY, float maxX, float maxY) {
+        int r = proxyId * 4;
+        this.rects[r] = minX; this.rects[r+1] = minY;
+        this.rects[r+2] = maxX; this.rects[r+3] = maxY;
+    }
+
+    /**
+     * Compute the cell range of a proxy from its rectangle
+     * @param proxyId proxy
+     */
+    private void computeRange(int proxyId) {
+        int r = proxyId * 4;
+        this.cellRanges[r]   = this.cellOf(this.rects[r]);
+        this.cellRanges[r+1] = this.cellOf(this.rects[r+1]);
+        this.cellRanges[r+2] = this.cellOf(this.rects[r+2]);
+        this.cellRanges[r+3] = this.cellOf(this.rects[r+3]);
+    }
+
+    /**
+     * Returns the cell coordinate of a position
+     * @param v position (one axis)
+     * @return the cell coordinate (clamped to [-MAX_CELL, MAX_CELL])
+     */
+    private int cellOf(float v) {
+        float cell = (float)Math.floor(v * this.invCellSize);
+        if(cell >= MAX_CELL) return MAX_CELL;
+        if(cell <= -MAX_CELL) return -MAX_CELL;
+        return (int)cell;
+    }
+
+    /**
+     * Returns the key of a cell
+     * @param cx cell x
+     * @param cy cell y
+     * @return the key of the cell
+     */
+    private static long key(int cx, int cy) {
+        return ((long)cx << 32) | (cy & 0xffffffffL);
+    }
+
+    /**
+     * Check that a proxy is in use
+     * @param proxyId proxy
+     */
+    private void checkProxy(int proxyId) {
+        if(proxyId < 0 || proxyId >= this.capacity || this.nextFree[proxyId] != USED) {
+            throw new IllegalArgumentException("Invalid proxy " + proxyId);
+        }
+    }
+
+    /**
+     * Grow the proxy arrays and chain the new proxies in the free list
+     * @param newCapacity new capacity
+     */
+    private void allocate(int newCapacity) {
+        int oldCapacity = this.capacity;
+        if(oldCapacity == 0) {
+            this.rects = new float[newCapacity * 4];
+            this.cellRanges = new int[newCapacity * 4];
+            this.userData = new Object[newCapacity];
+            this.stamps = new int[newCapacity];
+            this.nextFree = new int[newCapacity];
+        } else {
+            this.rects = Arrays.copyOf(this.rects, newCapacity * 4);
+            this.cellRanges = Arrays.copyOf(this.cellRanges, newCapacity * 4);
+            this.userData = Arrays.copyOf(this.userData, newCapacity);
+            this.stamps = Arrays.copyOf(this.stamps, newCapacity);
+            this.nextFree = Arrays.copyOf(this.nextFree, newCapacity);
+        }
+        for(int i = oldCapacity; i < newCapacity - 1; ++i) {
+            this.nextFree[i] = i + 1;
+        }
+        this.nextFree[newCapacity - 1] = NULL_PROXY;
+        this.freeList = oldCapacity;
+        this.capacity = newCapacity;
+    }
+}
@@ -0,0 +1,29 @@
+package olibe.scene.streaming;
+
+import olibe.scene.SceneNode;
+
+/**
+ * Builds the subtree of a streaming cell.
+ * Loads run on background threads: the built nodes must not be attached
+ * to a scene and their construction must not use the OpenGL context.
+ * The OpenGL objects (meshes, models, sprites...) are created afterwards by
+ * {@link #upload(StreamingCell, SceneNode)} on the render thread, before the cell is attached.
+ */
+public interface CellLoader {
+    /**
+     * Build the subtree of a cell (background thread)
+     * @param cell cell to load
+     * @return the root of the subtree of the cell
+     * @throws Exception failed to load the cell
+     */
+    public SceneNode load(StreamingCell cell) throws Exception;
+
+    /**
+     * Create the OpenGL objects of a loaded subtree from the data read by {@link #load(StreamingCell)}
+     * (render thread, the subtree is not attached yet)
+     * @param cell loaded cell
+     * @param subtree subtree of the cell
+     * @throws Exception failed to upload the cell
+     */
+    default public void upload(StreamingCell cell, SceneNode subtree) throws Exception {}
+}
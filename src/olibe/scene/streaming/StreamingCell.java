@@ -0,0 +1,95 @@
+package olibe.scene.streaming;
+
+import org.joml.Vector3f;
+
+import olibe.scene.SceneNode;
+
+/**
+ * Cell of a streamed world, its subtree is loaded when the camera comes close
+ */
+public class StreamingCell {
+    /** Residency state of a cell */
+    public enum State {
+        /** Not in memory */
+        UNLOADED,
+        /** Being loaded on a background thread */
+        LOADING,
+        /** Loaded, waiting for its OpenGL objects to be created on the render thread */
+        UPLOADING,
+        /** Loaded, waiting to be attached */
+        LOADED,
+        /** Attached to the scene */
+        RESIDENT
+    }
+
+    /** Name of the cell */
+    protected final String name;
+    /** Center of the cell (world) */
+    protected final Vector3f center;
+    /** Loader of the cell subtree */
+    protected final CellLoader loader;
+    /** Current state */
+    protected volatile State state;
+    /** Loaded subtree (null if unloaded) */
+    protected volatile SceneNode subtree;
+    /** The cell left the load radius while loading, its subtree is dropped once loaded */
+    protected volatile boolean cancelled;
+    /** Number of consecutive failed loads */
+    protected int failures;
+    /** Time before which a failed cell is not loaded again (nanoTime) */
+    protected long retryTime;
+
+    /**
+     * Create a cell
+     * @param name name of the cell
+     * @param center center of the cell (world)
+     * @param loader loader of the cell subtree
+     */
+    public StreamingCell(String name, Vector3f center, CellLoader loader) {
+        if(loader == null) throw new IllegalArgumentException("[StreamingCell] loader is null.");
+        this.name = name;
+        this.center = new Vector3f(center);
+        this.loader = loader;
+        this.state = State.UNLOADED;
+    }
+
+    /**
+     * Returns the name of this cell
+     * @return the name of this cell
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the center of this cell
+     * @return the center of this cell
+     */
+    public Vector3f getCenter() {
+        return center;
+    }
+
+    /**
+     * Returns the state of this cell
+     * @return the state of this cell
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the number of consecutive failed loads of this cell
+     * @return the number of consecutive failed loads
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the subtree of this cell (null if not loaded)
+     * @return the subtree of this cell
+     */
+    public SceneNode getSubtree() {
+        return subtree;
+    }
+}
@@ -0,0 +1,381 @@
+package olibe.scene.streaming;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.joml.Vector3f;
+
+import olibe.core.Log;
+import olibe.scene.SceneNode;
+
+/**
+ * Streams the cells of a world around a position.
+ * Cells closer than the load radius are loaded on background threads, their
+ * OpenGL objects are created on the render thread ({@link CellLoader#upload(StreamingCell, SceneNode)}),
+ * then they are attached to a parent node at frame boundaries ({@link #update(Vector3f)}),
+ * cells farther than the unload radius are detached and deleted.
+ * The gap between the two radii avoids thrashing at the borders.
+ * A cell failing to load is retried after a delay doubling on each failure.
+ */
+public class WorldStreamer {
+    /** Cells of the world */
+    protected List<StreamingCell> cells;
+    /** Node the resident cells are attached to */
+    protected SceneNode parent;
+    /** Background loading threads */
+    protected ExecutorService executor;
+    /** Cells loaded and uploaded, waiting to be attached */
+    protected Queue<StreamingCell> loaded;
+    /** Cells whose load or upload failed, with their error */
+    protected Queue<Map.Entry<StreamingCell, Exception>> failed;
+    /** Uploads waiting for the next update (no uploader) */
+    protected Queue<Runnable> uploads;
+    /** Distance under which the cells are loaded */
+    protected float loadRadius;
+    /** Distance over which the cells are unloaded */
+    protected float unloadRadius;
+    /** Maximum number of cells attached per frame */
+    protected int maxAttachPerFrame;
+    /** Runs the deletion of the unloaded subtrees (null to delete them immediately) */
+    protected Executor deleter;
+    /** Runs the uploads of the loaded subtrees (null to run them in the next update) */
+    protected volatile Executor uploader;
+    /** The streamer is deleted (pending uploads are skipped) */
+    protected volatile boolean deleted;
+
+    /** Time spent attaching cells during the last update (in nanoseconds) */
+    protected long attachNanos;
+    /** Maximum time spent attaching cells during an update (in nanoseconds) */
+    protected long maxAttachNanos;
+    /** Cells attached during the last update */
+    protected int attachedCount;
+    /** Cells detached during the last update */
+    protected int detachedCount;
+    /** Number of resident cells */
+    protected int residentCount;
+    /** Number of cells being loaded (or waiting to be attached) */
+    protected int pendingCount;
+
+    /** Default maximum number of cells attached per frame */
+    public static final int DEFAULT_MAX_ATTACH_PER_FRAME = 4;
+    /** Time waited for the loading threads to stop on delete (in milliseconds) */
+    protected static final long SHUTDOWN_TIMEOUT_MS = 1000;
+    /** Delay before loading a cell again after its first failure (in milliseconds) */
+    public static final long RETRY_DELAY_MS = 500;
+    /** Maximum delay before loading a failed cell again (in milliseconds) */
+    public static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    /**
+     * Create a streamer
+     * @param parent node the resident cells are attached to
+     * @param loadRadius distance under which the cells are loaded
+     * @param unloadRadius distance over which the cells are unloaded (greater than loadRadius)
+     * @param threads number of background loading threads
+     */
+    public WorldStreamer(SceneNode parent, float loadRadius, float unloadRadius, int threads) {
+        if(unloadRadius < loadRadius) {
+            throw new IllegalArgumentException("The unload radius must be greater than the load radius");
+        }
+        this.parent = parent;
+        this.loadRadius = loadRadius;
+        this.unloadRadius = unloadRadius;
+        this.maxAttachPerFrame = DEFAULT_MAX_ATTACH_PER_FRAME;
+        this.cells = new ArrayList<>();
+        this.loaded = new ConcurrentLinkedQueue<>();
+        this.failed = new ConcurrentLinkedQueue<>();
+        this.uploads = new ConcurrentLinkedQueue<>();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "olibe-streaming");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Add a cell to the world
+     * @param cell cell to add
+     */
+    public void addCell(StreamingCell cell) {
+        this.cells.add(cell);
+    }
+
+    /**
+     * Sets the maximum number of cells attached per frame (the others wait for the next frames)
+     * @param maxAttachPerFrame maximum number of cells attached per frame
+     */
+    public void setMaxAttachPerFrame(int maxAttachPerFrame) {
+        this.maxAttachPerFrame = Math.max(1, maxAttachPerFrame);
+    }
+
+    /**
+     * Sets the executor running the deletion of the unloaded subtrees. The streamer may be updated
+     * on the update thread while their OpenGL objects must be deleted on the render thread
+     * @param deleter executor running the deletions (null to delete the subtrees immediately)
+     */
+    public void setDeleter(Executor deleter) {
+        this.deleter = deleter;
+    }
+
+    /**
+     * Sets the executor running the uploads of the loaded subtrees ({@link CellLoader#upload(StreamingCell, SceneNode)}),
+     * it must run them on the thread owning the OpenGL context (render thread)
+     * @param uploader executor running the uploads (null to run them in {@link #update(Vector3f)})
+     */
+    public void setUploader(Executor uploader) {
+        this.uploader = uploader;
+    }
+
+    /**
+     * Update the streamed cells, must be called at a frame boundary (scene update thread)
+     * @param position position the cells are streamed around (camera position)
+     */
+    public void update(Vector3f position) {
+        this.attachedCount = 0;
+        this.detachedCount = 0;
+        long now = System.nanoTime();
+
+        // uploads without uploader (the thread calling update owns the OpenGL context)
+        Runnable upload;
+        while((upload = this.uploads.poll()) != null) {
+            upload.run();
+        }
+
+        // failed cells are loaded again after a delay
+        Map.Entry<StreamingCell, Exception> failure;
+        while((failure = this.failed.poll()) != null) {
+            this.fail(failure.getKey(), failure.getValue(), now);
+        }
+
+        // attach the loaded cells
+        long start = System.nanoTime();
+        StreamingCell cell;
+        while(this.attachedCount < this.maxAttachPerFrame && (cell = this.loaded.poll()) != null) {
+            if(cell.cancelled) {
+                this.drop(cell);
+                continue;
+            }
+            this.parent.addChild(cell.subtree);
+            cell.state = StreamingCell.State.RESIDENT;
+            cell.failures = 0;
+            this.attachedCount++;
+        }
+        this.attachNanos = System.nanoTime() - start;
+        this.maxAttachNanos = Math.max(this.maxAttachNanos, this.attachNanos);
+
+        // load / unload depending on the distance
+        float loadRadiusSq = this.loadRadius * this.loadRadius;
+        float unloadRadiusSq = this.unloadRadius * this.unloadRadius;
+        this.residentCount = 0;
+        this.pendingCount = 0;
+        for(int i = 0; i < this.cells.size(); ++i) {
+            cell = this.cells.get(i);
+            float distanceSq = cell.center.distanceSquared(position);
+            switch(cell.state) {
+            case UNLOADED:
+                if(distanceSq < loadRadiusSq && now - cell.retryTime >= 0) this.load(cell);
+                break;
+            case LOADING:
+            case UPLOADING:
+            case LOADED:
+                // cancelled cells come back if the camera returns before they are loaded
+                cell.cancelled = distanceSq > unloadRadiusSq;
+                break;
+            case RESIDENT:
+                if(distanceSq > unloadRadiusSq) this.unload(cell);
+                break;
+            }
+            if(cell.state == StreamingCell.State.RESIDENT) this.residentCount++;
+            else if(cell.state != StreamingCell.State.UNLOADED) this.pendingCount++;
+        }
+    }
+
+    /**
+     * Start loading a cell on the background threads
+     * @param cell cell to load
+     */
+    protected void load(final StreamingCell cell) {
+        cell.state = StreamingCell.State.LOADING;
+        cell.cancelled = false;
+        this.executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    cell.subtree = cell.loader.load(cell);
+                } catch(Exception e) {
+                    WorldStreamer.this.failed.add(new AbstractMap.SimpleEntry<>(cell, e));
+                    return;
+                }
+                WorldStreamer.this.upload(cell);
+            }
+        });
+    }
+
+    /**
+     * Create the OpenGL objects of a loaded cell on the render thread (loading thread)
+     * @param cell loaded cell
+     */
+    protected void upload(final StreamingCell cell) {
+        cell.state = StreamingCell.State.UPLOADING;
+        Runnable task = new Runnable() {
+            public void run() {
+                if(WorldStreamer.this.deleted) return;
+                // a cancelled cell is dropped by the next update without being uploaded
+                if(!cell.cancelled) {
+                    try {
+                        cell.loader.upload(cell, cell.subtree);
+                    } catch(Exception e) {
+                        WorldStreamer.this.failed.add(new AbstractMap.SimpleEntry<>(cell, e));
+                        return;
+                    }
+                }
+                cell.state = StreamingCell.State.LOADED;
+                WorldStreamer.this.loaded.add(cell);
+            }
+        };
+        Executor uploader = this.uploader;
+        if(uploader != null) uploader.execute(task);
+        else this.uploads.add(task);
+    }
+
+    /**
+     * Drop a cell whose load or upload failed, it is loaded again after a delay
+     * doubling on each consecutive failure
+     * @param cell failed cell
+     * @param error error of the load or upload
+     * @param now current time (nanoTime)
+     */
+    protected void fail(StreamingCell cell, Exception error, long now) {
+        cell.failures++;
+        long delayMs = Math.min(RETRY_DELAY_MS << Math.min(cell.failures - 1, 16), MAX_RETRY_DELAY_MS);
+        cell.retryTime = now + delayMs * 1_000_000L;
+        Log.Get().error("Failed to load the cell [" + cell.name + "] (attempt " + cell.failures
+            + ", retry in " + delayMs + " ms): " + error.getMessage());
+        this.drop(cell);
+    }
+
+    /**
+     * Detach and delete a resident cell
+     * @param cell cell to unload
+     */
+    protected void unload(StreamingCell cell) {
+        cell.subtree.detach();
+        this.drop(cell);
+        this.detachedCount++;
+    }
+
+    /**
+     * Delete the subtree of a cell
+     * @param cell cell
+     */
+    protected void drop(StreamingCell cell) {
+        final SceneNode subtree = cell.subtree;
+        if(subtree != null && this.deleter != null) {
+            this.deleter.execute(new Runnable() {
+                public void run() {
+                    subtree.delete();
+                }
+            });
+        } else if(subtree != null) {
+            subtree.delete();
+        }
+        cell.subtree = null;
+        cell.cancelled = false;
+        cell.state = StreamingCell.State.UNLOADED;
+    }
+
+    /**
+     * Returns the cells of the world
+     * @return the cells of the world
+     */
+    public List<StreamingCell> getCells() {
+        return cells;
+    }
+
+    /**
+     * Returns the time spent attaching cells during the last update (in nanoseconds)
+     * @return the time spent attaching cells during the last update
+     */
+    public long getAttachNanos() {
+        return attachNanos;
+    }
+
+    /**
+     * Returns the maximum time spent attaching cells during an update (in nanoseconds)
+     * @return the maximum time spent attaching cells during an update
+     */
+    public long getMaxAttachNanos() {
+        return maxAttachNanos;
+    }
+
+    /**
+     * Returns the number of cells attached during the last update
+     * @return the number of cells attached during the last update
+     */
+    public int getAttachedCount() {
+        return attachedCount;
+    }
+
+    /**
+     * Returns the number of cells detached during the last update
+     * @return the number of cells detached during the last update
+     */
+    public int getDetachedCount() {
+        return detachedCount;
+    }
+
+    /**
+     * Returns the number of resident cells
+     * @return the number of resident cells
+     */
+    public int getResidentCount() {
+        return residentCount;
+    }
+
+    /**
+     * Returns the number of cells being loaded or waiting to be attached
+     * @return the number of cells being loaded or waiting to be attached
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Stop the loading threads and delete the resident cells and the loaded cells waiting to be attached
+     * (render thread, once the scene updates are stopped: the subtrees are deleted immediately)
+     */
+    public void delete() {
+        this.deleter = null;
+        this.deleted = true;
+        this.executor.shutdownNow();
+        try {
+            // a load finishing now would add its cell after the drain
+            if(!this.executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.Get().error("Streaming threads did not stop, some cells may leak");
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        StreamingCell cell;
+        while((cell = this.loaded.poll()) != null) {
+            this.drop(cell);
+        }
+        for(int i = 0; i < this.cells.size(); ++i) {
+            cell = this.cells.get(i);
+            switch(cell.state) {
+            case RESIDENT:
+                cell.subtree.detach();
+                this.drop(cell);
+                break;
+            case LOADED:
+            case UPLOADING:
+            case LOADING:
+                this.drop(cell);
+                break;
+            default:
+                break;
+            }
+        }
+    }
+}
@@ -67,10 +67,26 @@ public abstract class Button {
         return this.clicked;
     }
 
+    /**
+     * Returns true if the button is hovered
+     * @return true if the button is hovered
+     */
+    public boolean isHovered() {
+        return this.hovered;
+    }
+
     /**
      * Draw the button (its background and text)
      */
-    public abstract void draw();
+    public void draw() {
+        this.draw(this.hovered);
+    }
+
+    /**
+     * Draw the button in a given hover state (copied when the button is extracted)
+     * @param hovered the button is drawn hovered
+     */
+    public abstract void draw(boolean hovered);
 
     /** 
      * Delete the button graphics objects
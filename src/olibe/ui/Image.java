@@ -42,10 +42,18 @@ public class Image {
      * Draw the image
      */
     public void draw() {
+        this.draw(this.position);
+    }
+
+    /**
+     * Draw the image at a given position (copied when the image is extracted)
+     * @param position position of the image (screen UV)
+     */
+    public void draw(Vector2f position) {
         this.shader.bind();
         this.texture.bind(0);
         this.shader.setUniform("uTex", 0);
-        this.shader.setUniform("uPosition", this.position);
+        this.shader.setUniform("uPosition", position);
         this.quad.draw(this.shader);
         this.shader.unbind();
     }
@@ -71,9 +71,11 @@ public class TextButton extends Button {
 
     /**
      * Draw the text button
+     * @param hovered the button is drawn hovered
      */
-    public void draw() {
-        this.screenUIShader.setUniform("uColor", (this.hovered? this.hoverColor : this.color));
+    @Override
+    public void draw(boolean hovered) {
+        this.screenUIShader.setUniform("uColor", (hovered? this.hoverColor : this.color));
         this.screenUIShader.setUniform("uPosition", this.position);
         this.back.draw(this.screenUIShader);        
         this.text.draw(this.textShader); 
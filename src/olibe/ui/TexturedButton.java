@@ -28,8 +28,8 @@ public class TexturedButton extends Button {
     }
 
     @Override
-    public void draw() {
-        this.image.getShader().setUniform("uAlpha", (this.hovered?.8f:1f));
+    public void draw(boolean hovered) {
+        this.image.getShader().setUniform("uAlpha", (hovered?.8f:1f));
         this.image.draw();
     }
 